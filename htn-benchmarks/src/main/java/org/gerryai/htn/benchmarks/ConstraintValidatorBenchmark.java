@@ -0,0 +1,175 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.simple.constraint.validation.ConstraintValidatorFactory;
+import org.gerryai.htn.simple.constraint.validation.impl.SimpleConstraintValidatorFactory;
+import org.gerryai.htn.simple.planner.impl.SimplePlanningFactory;
+import org.gerryai.htn.simple.tasknetwork.TaskNetworkBuilder;
+import org.gerryai.htn.simple.tasknetwork.impl.SimpleTaskNetwork;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the constraint validator's replace and apply operations, measured through the
+ * task network that uses it as the planner does.
+ * The copy benchmark measures copying a network into a fresh validator, which both of the
+ * other operations include, so it can be subtracted from them.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstraintValidatorBenchmark {
+
+    /**
+     * The number of tasks in the network.
+     */
+    @Param({"8", "64", "256" })
+    private int size;
+
+    /**
+     * Factory used to build the networks.
+     */
+    private SimplePlanningFactory planningFactory;
+
+    /**
+     * Factory for the validators used when copying the network.
+     */
+    private ConstraintValidatorFactory constraintValidatorFactory;
+
+    /**
+     * A network of tasks carried out in order, with a non-primitive task in the middle.
+     */
+    private TaskNetwork taskNetwork;
+
+    /**
+     * The non-primitive task in the middle of the network.
+     */
+    private Task task;
+
+    /**
+     * A network of two ordered tasks to replace the non-primitive task with.
+     */
+    private TaskNetwork replacement;
+
+    /**
+     * A substitution binding every variable in the network.
+     */
+    private Map<Term, Term> substitution;
+
+    /**
+     * Build the networks and substitution.
+     * @throws InvalidConstraint only if the benchmark is broken
+     */
+    @Setup
+    public final void setup() throws InvalidConstraint {
+        planningFactory = new SimplePlanningFactory();
+        constraintValidatorFactory = new SimpleConstraintValidatorFactory();
+        substitution = new HashMap<Term, Term>();
+        TaskNetworkBuilder builder = planningFactory.getTaskNetworkFactory().createTaskNetworkBuilder();
+        Task previous = null;
+        for (int i = 0; i < size; i++) {
+            Variable variable = planningFactory.getLogicFactory().createVariable("v" + i);
+            substitution.put(variable, planningFactory.getLogicFactory().createConstant("c" + i));
+            Task current = planningFactory.getTaskNetworkFactory().createTaskBuilder()
+                    .setName("task")
+                    .setIsPrimitive(i != size / 2)
+                    .addArgument(variable)
+                    .build();
+            if (i == size / 2) {
+                task = current;
+            }
+            builder = builder.addTask(current);
+            if (previous != null) {
+                builder = builder.addPrecedenceConstraint(
+                        planningFactory.getConstraintFactory().createPrecedenceConstraint(previous, current));
+            }
+            previous = current;
+        }
+        taskNetwork = builder.build();
+
+        Variable variable = planningFactory.getLogicFactory().createVariable("r");
+        Task first = planningFactory.getTaskNetworkFactory().createTaskBuilder()
+                .setName("first")
+                .setIsPrimitive(true)
+                .addArgument(variable)
+                .build();
+        Task second = planningFactory.getTaskNetworkFactory().createTaskBuilder()
+                .setName("second")
+                .setIsPrimitive(true)
+                .addArgument(variable)
+                .build();
+        replacement = planningFactory.getTaskNetworkFactory().createTaskNetworkBuilder()
+                .addTask(first)
+                .addTask(second)
+                .addPrecedenceConstraint(planningFactory.getConstraintFactory().createPrecedenceConstraint(first, second))
+                .build();
+    }
+
+    /**
+     * Copy the network into a fresh validator.
+     * @return the copy
+     * @throws InvalidConstraint only if the benchmark is broken
+     */
+    @Benchmark
+    public final TaskNetwork copy() throws InvalidConstraint {
+        return new SimpleTaskNetwork.Builder(constraintValidatorFactory, taskNetwork).build();
+    }
+
+    /**
+     * Replace the non-primitive task with the two-task network.
+     * @return the new network
+     * @throws InvalidConstraint only if the benchmark is broken
+     */
+    @Benchmark
+    public final TaskNetwork replace() throws InvalidConstraint {
+        return taskNetwork.replace(task, replacement);
+    }
+
+    /**
+     * Apply a substitution binding every variable in the network.
+     * @return the new network
+     * @throws InvalidConstraint only if the benchmark is broken
+     */
+    @Benchmark
+    public final TaskNetwork apply() throws InvalidConstraint {
+        return taskNetwork.apply(substitution);
+    }
+}
@@ -0,0 +1,389 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Domain;
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.domain.Operator;
+import org.gerryai.htn.simple.domain.ImmutableDomainBuilder;
+import org.gerryai.htn.simple.planner.ImmutablePlanningFactory;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.htn.simple.tasknetwork.TaskBuilder;
+import org.gerryai.htn.simple.tasknetwork.TaskNetworkBuilder;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Constant;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+import org.gerryai.logic.builder.PredicateBuilder;
+
+/**
+ * Generates planning problems of a given size for benchmarking.
+ * Each family stresses a different part of the planner:
+ * <ul>
+ * <li>blocks: builds a tower of blocks from the table, so plans grow linearly with little search;</li>
+ * <li>swap: a chain of swaps where half pick the wrong method first, so the search must backtrack;
+ * without interleaving the failures are only found at the leaves, so the work grows exponentially;</li>
+ * <li>deep: a chain of methods each decomposing into the next, so the decomposition is as deep as the size.</li>
+ * </ul>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class DomainGenerator {
+
+    /**
+     * Factory used to build the domains and problems.
+     */
+    private ImmutablePlanningFactory planningFactory;
+
+    /**
+     * Constructor.
+     * @param planningFactory the factory used to build the domains and problems
+     */
+    public DomainGenerator(ImmutablePlanningFactory planningFactory) {
+        this.planningFactory = planningFactory;
+    }
+
+    /**
+     * Generate a problem from a named family.
+     * @param family the family: blocks, swap or deep
+     * @param size the size of the problem
+     * @return the problem
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    public final ImmutableProblem generate(String family, int size) throws InvalidConstraint {
+        if ("blocks".equals(family)) {
+            return blocksTower(size);
+        } else if ("swap".equals(family)) {
+            return swapChain(size);
+        } else if ("deep".equals(family)) {
+            return deepRecursion(size);
+        } else {
+            throw new IllegalArgumentException("Unknown domain family: " + family);
+        }
+    }
+
+    /**
+     * Generate a blocks world problem that stacks the given number of blocks, all initially on
+     * the table, into a single tower.
+     * @param blocks the number of blocks
+     * @return the problem
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    public final ImmutableProblem blocksTower(int blocks) throws InvalidConstraint {
+
+        Variable a = variable("a");
+        Variable b = variable("b");
+        Operator pickup = planningFactory.getDomainBuilderFactory().createOperatorBuilder()
+                .setName("pickup")
+                .addArgument(a)
+                .addPrecondition(condition(predicate("clear", a)))
+                .addPrecondition(condition(predicate("ontable", a)))
+                .addPrecondition(condition(predicate("handempty")))
+                .addEffect(effect(predicate("holding", a)))
+                .addEffect(effect(negate(predicate("ontable", a))))
+                .addEffect(effect(negate(predicate("clear", a))))
+                .addEffect(effect(negate(predicate("handempty"))))
+                .build();
+        Operator stack = planningFactory.getDomainBuilderFactory().createOperatorBuilder()
+                .setName("stack")
+                .addArgument(a)
+                .addArgument(b)
+                .addPrecondition(condition(predicate("holding", a)))
+                .addPrecondition(condition(predicate("clear", b)))
+                .addEffect(effect(predicate("on", a, b)))
+                .addEffect(effect(predicate("clear", a)))
+                .addEffect(effect(predicate("handempty")))
+                .addEffect(effect(negate(predicate("holding", a))))
+                .addEffect(effect(negate(predicate("clear", b))))
+                .build();
+
+        Variable x = variable("x");
+        Variable y = variable("y");
+        Method move = method("move", task("move", false, x, y),
+                task("pickup", true, x), task("stack", true, x, y));
+
+        Domain domain = planningFactory.getDomainBuilderFactory().createDomainBuilder()
+                .addOperator(pickup)
+                .addOperator(stack)
+                .addMethod(move)
+                .build();
+
+        List<Constant> constants = constants("block", blocks);
+        ImmutableStateBuilder stateBuilder = planningFactory.getStateService().createStateBuilder()
+                .tell(effect(predicate("handempty")));
+        for (Constant constant : constants) {
+            stateBuilder = stateBuilder
+                    .tell(effect(predicate("clear", constant)))
+                    .tell(effect(predicate("ontable", constant)));
+        }
+        List<Task> tasks = new ArrayList<Task>();
+        for (int i = 1; i < blocks; i++) {
+            tasks.add(task("move", false, constants.get(i), constants.get(i - 1)));
+        }
+
+        return problem(domain, stateBuilder, tasks);
+    }
+
+    /**
+     * Generate a chain of swaps in the style of the JSHOP basic example. Every other swap can
+     * only be achieved by the second of its two methods, so the planner has to backtrack.
+     * @param swaps the number of swaps
+     * @return the problem
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    public final ImmutableProblem swapChain(int swaps) throws InvalidConstraint {
+
+        Variable a = variable("a");
+        Operator pickup = planningFactory.getDomainBuilderFactory().createOperatorBuilder()
+                .setName("pickup")
+                .addArgument(a)
+                .addPrecondition(condition(negate(predicate("have", a))))
+                .addEffect(effect(predicate("have", a)))
+                .build();
+        Operator drop = planningFactory.getDomainBuilderFactory().createOperatorBuilder()
+                .setName("drop")
+                .addArgument(a)
+                .addPrecondition(condition(predicate("have", a)))
+                .addEffect(effect(negate(predicate("have", a))))
+                .build();
+
+        Variable x = variable("x");
+        Variable y = variable("y");
+        Method swapForward = method("swap", task("swap", false, x, y),
+                task("drop", true, x), task("pickup", true, y));
+        Method swapBackward = method("swap", task("swap", false, x, y),
+                task("drop", true, y), task("pickup", true, x));
+
+        Domain domain = planningFactory.getDomainBuilderFactory().createDomainBuilder()
+                .addOperator(pickup)
+                .addOperator(drop)
+                .addMethod(swapForward)
+                .addMethod(swapBackward)
+                .build();
+
+        List<Constant> firsts = constants("first", swaps);
+        List<Constant> seconds = constants("second", swaps);
+        ImmutableStateBuilder stateBuilder = planningFactory.getStateService().createStateBuilder();
+        List<Task> tasks = new ArrayList<Task>();
+        for (int i = 0; i < swaps; i++) {
+            if (i % 2 == 0) {
+                stateBuilder = stateBuilder.tell(effect(predicate("have", firsts.get(i))));
+            } else {
+                stateBuilder = stateBuilder.tell(effect(predicate("have", seconds.get(i))));
+            }
+            tasks.add(task("swap", false, firsts.get(i), seconds.get(i)));
+        }
+
+        return problem(domain, stateBuilder, tasks);
+    }
+
+    /**
+     * Generate a chain of methods where each level carries out a step and then decomposes
+     * into the next level, so that a plan needs as many decompositions as there are levels.
+     * @param levels the number of levels
+     * @return the problem
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    public final ImmutableProblem deepRecursion(int levels) throws InvalidConstraint {
+
+        Variable a = variable("a");
+        Variable b = variable("b");
+        Operator step = planningFactory.getDomainBuilderFactory().createOperatorBuilder()
+                .setName("step")
+                .addArgument(a)
+                .addArgument(b)
+                .addEffect(effect(predicate("visited", a, b)))
+                .build();
+
+        // Each level's step names the level, as identical tasks would collapse within a network
+        Variable x = variable("x");
+        List<Constant> names = constants("level", levels);
+        ImmutableDomainBuilder domainBuilder = planningFactory.getDomainBuilderFactory().createDomainBuilder()
+                .addOperator(step);
+        for (int i = 0; i < levels - 1; i++) {
+            domainBuilder = domainBuilder.addMethod(method("level" + i, task("level" + i, false, x),
+                    task("step", true, x, names.get(i)), task("level" + (i + 1), false, x)));
+        }
+        domainBuilder = domainBuilder.addMethod(method("level" + (levels - 1),
+                task("level" + (levels - 1), false, x), task("step", true, x, names.get(levels - 1))));
+
+        List<Task> tasks = new ArrayList<Task>();
+        tasks.add(task("level0", false, constant("origin")));
+
+        return problem(domainBuilder.build(), planningFactory.getStateService().createStateBuilder(), tasks);
+    }
+
+    /**
+     * Create a method whose task network carries out the given subtasks in order.
+     * @param name the name of the method
+     * @param task the task the method achieves
+     * @param subtasks the subtasks, in order
+     * @return the method
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    private Method method(String name, Task task, Task... subtasks) throws InvalidConstraint {
+        List<Task> orderedTasks = new ArrayList<Task>();
+        for (Task subtask : subtasks) {
+            orderedTasks.add(subtask);
+        }
+        return planningFactory.getDomainBuilderFactory().createMethodBuilder()
+                .setName(name)
+                .setTask(task)
+                .setTaskNetwork(orderedNetwork(orderedTasks))
+                .build();
+    }
+
+    /**
+     * Create a problem to carry out the given tasks in order.
+     * @param domain the domain
+     * @param stateBuilder a builder for the initial state
+     * @param tasks the tasks, in order
+     * @return the problem
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    private ImmutableProblem problem(Domain domain, ImmutableStateBuilder stateBuilder, List<Task> tasks)
+            throws InvalidConstraint {
+        return planningFactory.getProblemBuilderFactory().createProblemBuilder()
+                .setDomain(domain)
+                .setState(stateBuilder.build())
+                .setTaskNetwork(orderedNetwork(tasks))
+                .build();
+    }
+
+    /**
+     * Create a task network that carries out the given tasks in order.
+     * @param tasks the tasks, in order
+     * @return the task network
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    private TaskNetwork orderedNetwork(List<Task> tasks) throws InvalidConstraint {
+        TaskNetworkBuilder builder = planningFactory.getTaskNetworkFactory().createTaskNetworkBuilder();
+        for (Task task : tasks) {
+            builder = builder.addTask(task);
+        }
+        for (int i = 1; i < tasks.size(); i++) {
+            builder = builder.addPrecedenceConstraint(planningFactory.getConstraintFactory()
+                    .createPrecedenceConstraint(tasks.get(i - 1), tasks.get(i)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a task.
+     * @param name the name of the task
+     * @param primitive whether the task is primitive
+     * @param arguments the arguments of the task
+     * @return the task
+     */
+    private Task task(String name, boolean primitive, Term... arguments) {
+        TaskBuilder builder = planningFactory.getTaskNetworkFactory()
+                .createTaskBuilder()
+                .setName(name)
+                .setIsPrimitive(primitive);
+        for (Term argument : arguments) {
+            builder = builder.addArgument(argument);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Create a predicate.
+     * @param name the name of the predicate
+     * @param terms the terms of the predicate
+     * @return the predicate
+     */
+    private Sentence predicate(String name, Term... terms) {
+        PredicateBuilder builder = planningFactory.getLogicFactory()
+                .sentenceBuilder().predicate(name);
+        for (Term term : terms) {
+            builder = builder.addTerm(term);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Negate a sentence.
+     * @param sentence the sentence
+     * @return the negated sentence
+     */
+    private Sentence negate(Sentence sentence) {
+        return planningFactory.getLogicFactory().sentenceBuilder().negate(sentence);
+    }
+
+    /**
+     * Create a condition.
+     * @param sentence the sentence that must hold
+     * @return the condition
+     */
+    private Condition condition(Sentence sentence) {
+        return planningFactory.getDomainBuilderFactory().createConditionBuilder()
+                .setSentence(sentence)
+                .build();
+    }
+
+    /**
+     * Create an effect.
+     * @param sentence the sentence made to hold
+     * @return the effect
+     */
+    private Effect effect(Sentence sentence) {
+        return planningFactory.getDomainBuilderFactory().createEffectBuilder()
+                .setSentence(sentence)
+                .build();
+    }
+
+    /**
+     * Create a variable.
+     * @param name the name of the variable
+     * @return the variable
+     */
+    private Variable variable(String name) {
+        return planningFactory.getLogicFactory().createVariable(name);
+    }
+
+    /**
+     * Create a constant.
+     * @param name the name of the constant
+     * @return the constant
+     */
+    private Constant constant(String name) {
+        return planningFactory.getLogicFactory().createConstant(name);
+    }
+
+    /**
+     * Create a numbered series of constants.
+     * @param prefix the prefix of each constant's name
+     * @param howMany the number of constants
+     * @return the constants
+     */
+    private List<Constant> constants(String prefix, int howMany) {
+        List<Constant> constants = new ArrayList<Constant>(howMany);
+        for (int i = 0; i < howMany; i++) {
+            constants.add(constant(prefix + i));
+        }
+        return constants;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerFactory;
+import org.gerryai.htn.simple.planner.impl.BestFirstPlannerFactory;
+import org.gerryai.htn.simple.planner.impl.IterativeDeepeningPlannerFactory;
+import org.gerryai.htn.simple.planner.impl.SimplePlannerFactory;
+import org.gerryai.htn.simple.planner.impl.SimplePlanningFactory;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of finding a plan for generated problems of increasing size with each planner.
+ * The planner is created once per trial, so only the search itself is measured.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlannerBenchmark {
+
+    /**
+     * The family of problem to generate.
+     */
+    @Param({"blocks", "swap", "deep" })
+    private String family;
+
+    /**
+     * The size of the problem to generate.
+     */
+    @Param({"4", "8", "12" })
+    private int size;
+
+    /**
+     * The planner to use: simple, iterative, interleaved or bestfirst.
+     */
+    @Param({"simple", "iterative", "interleaved", "bestfirst" })
+    private String planner;
+
+    /**
+     * Whether to compile the domain into ground actions over the problem's constants first.
+     */
+    @Param({"false", "true" })
+    private boolean grounded;
+
+    /**
+     * The problem to solve.
+     */
+    private ImmutableProblem problem;
+
+    /**
+     * The planner created for the problem's domain.
+     */
+    private ImmutablePlanner immutablePlanner;
+
+    /**
+     * Generate the problem and create the planner.
+     * @throws InvalidConstraint only if the generator is broken
+     */
+    @Setup
+    public final void setup() throws InvalidConstraint {
+        SimplePlanningFactory planningFactory = new SimplePlanningFactory();
+        problem = new DomainGenerator(planningFactory).generate(family, size);
+        ImmutablePlannerFactory plannerFactory;
+        if ("simple".equals(planner)) {
+            plannerFactory = new SimplePlannerFactory(planningFactory.getStateService());
+        } else if ("iterative".equals(planner)) {
+            plannerFactory = new IterativeDeepeningPlannerFactory(planningFactory.getStateService());
+        } else if ("interleaved".equals(planner)) {
+            plannerFactory = new IterativeDeepeningPlannerFactory(planningFactory.getStateService(), true);
+        } else if ("bestfirst".equals(planner)) {
+            plannerFactory = new BestFirstPlannerFactory(planningFactory.getStateService());
+        } else {
+            throw new IllegalArgumentException("Unknown planner: " + planner);
+        }
+        if (grounded) {
+            immutablePlanner = plannerFactory.createGrounded(problem);
+        } else {
+            immutablePlanner = plannerFactory.create(problem.getDomain());
+        }
+    }
+
+    /**
+     * Find a plan for the problem.
+     * @return the plan
+     * @throws PlanNotFound only if the generator is broken
+     */
+    @Benchmark
+    public final Plan findPlan() throws PlanNotFound {
+        return immutablePlanner.findPlan(problem.getState(), problem.getTaskNetwork());
+    }
+}
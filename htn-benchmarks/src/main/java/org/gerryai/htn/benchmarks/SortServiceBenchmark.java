@@ -0,0 +1,111 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.impl.SimplePlanningFactory;
+import org.gerryai.htn.simple.planner.sort.SortService;
+import org.gerryai.htn.simple.planner.sort.impl.SimpleSortService;
+import org.gerryai.htn.tasknetwork.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of sorting the tasks of a primitive network by their precedence constraints.
+ * The tasks form a single chain and are added in reverse order, so no sort can get away
+ * with keeping the order it was given.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortServiceBenchmark {
+
+    /**
+     * The number of tasks to sort.
+     */
+    @Param({"8", "64", "512" })
+    private int size;
+
+    /**
+     * The sort service.
+     */
+    private SortService sortService;
+
+    /**
+     * The tasks to sort.
+     */
+    private Set<Task> tasks;
+
+    /**
+     * The constraints to sort the tasks by.
+     */
+    private Set<PrecedenceConstraint> constraints;
+
+    /**
+     * Build the tasks and constraints.
+     */
+    @Setup
+    public final void setup() {
+        SimplePlanningFactory planningFactory = new SimplePlanningFactory();
+        sortService = new SimpleSortService();
+        tasks = new LinkedHashSet<Task>();
+        constraints = new LinkedHashSet<PrecedenceConstraint>();
+        Task next = null;
+        for (int i = size - 1; i >= 0; i--) {
+            Task current = planningFactory.getTaskNetworkFactory().createTaskBuilder()
+                    .setName("task")
+                    .setIsPrimitive(true)
+                    .addArgument(planningFactory.getLogicFactory().createConstant("c" + i))
+                    .build();
+            tasks.add(current);
+            if (next != null) {
+                constraints.add(planningFactory.getConstraintFactory().createPrecedenceConstraint(current, next));
+            }
+            next = current;
+        }
+    }
+
+    /**
+     * Sort the tasks.
+     * @return the sorted tasks
+     * @throws PlanNotFound only if the benchmark is broken
+     */
+    @Benchmark
+    public final List<Task> sortByConstraints() throws PlanNotFound {
+        return sortService.sortByConstaints(tasks, constraints);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.simple.planner.impl.SimplePlanningFactory;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+import org.gerryai.htn.simple.problem.impl.FactIndex;
+import org.gerryai.htn.simple.problem.impl.SimpleStateService;
+import org.gerryai.logic.Predicate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of telling a state a single effect, adding or removing one fact, with each state service.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateServiceBenchmark {
+
+    /**
+     * The number of facts in the state.
+     */
+    @Param({"16", "256", "4096" })
+    private int size;
+
+    /**
+     * The state service to use: simple, persistent, indexed or bitset.
+     */
+    @Param({"simple", "persistent", "indexed", "bitset" })
+    private String stateService;
+
+    /**
+     * The state service.
+     */
+    private ImmutableStateService immutableStateService;
+
+    /**
+     * The state to tell.
+     */
+    private ImmutableState state;
+
+    /**
+     * An effect adding a fact not in the state.
+     */
+    private Effect addEffect;
+
+    /**
+     * An effect removing a fact in the state.
+     */
+    private Effect deleteEffect;
+
+    /**
+     * Build the state and effects.
+     */
+    @Setup
+    public final void setup() {
+        SimplePlanningFactory planningFactory = new SimplePlanningFactory();
+        Predicate[] facts = new Predicate[size + 1];
+        for (int i = 0; i < facts.length; i++) {
+            facts[i] = planningFactory.getLogicFactory().sentenceBuilder().predicate("fact")
+                    .addTerm(planningFactory.getLogicFactory().createConstant("c" + i))
+                    .build();
+        }
+        if ("simple".equals(stateService)) {
+            immutableStateService = new SimpleStateService();
+        } else if ("persistent".equals(stateService)) {
+            immutableStateService = SimpleStateService.persistent();
+        } else if ("indexed".equals(stateService)) {
+            immutableStateService = SimpleStateService.indexed();
+        } else if ("bitset".equals(stateService)) {
+            FactIndex.Builder indexBuilder = new FactIndex.Builder();
+            for (Predicate fact : facts) {
+                indexBuilder.add(fact);
+            }
+            immutableStateService = SimpleStateService.bitset(indexBuilder.build());
+        } else {
+            throw new IllegalArgumentException("Unknown state service: " + stateService);
+        }
+        ImmutableStateBuilder builder = immutableStateService.createStateBuilder();
+        for (int i = 0; i < size; i++) {
+            builder = builder.tell(planningFactory.getDomainBuilderFactory().createEffectBuilder()
+                    .setSentence(facts[i])
+                    .build());
+        }
+        state = builder.build();
+        addEffect = planningFactory.getDomainBuilderFactory().createEffectBuilder()
+                .setSentence(facts[size])
+                .build();
+        deleteEffect = planningFactory.getDomainBuilderFactory().createEffectBuilder()
+                .setSentence(planningFactory.getLogicFactory().sentenceBuilder().negate(facts[size - 1]))
+                .build();
+    }
+
+    /**
+     * Tell the state an effect that adds a fact.
+     * @return the new state
+     */
+    @Benchmark
+    public final ImmutableState tellAdd() {
+        return immutableStateService.tell(state, addEffect);
+    }
+
+    /**
+     * Tell the state an effect that removes a fact.
+     * @return the new state
+     */
+    @Benchmark
+    public final ImmutableState tellDelete() {
+        return immutableStateService.tell(state, deleteEffect);
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.decomposition.UnificationService;
+import org.gerryai.htn.simple.decomposition.UnifierNotFound;
+import org.gerryai.htn.simple.decomposition.impl.SimpleUnificationService;
+import org.gerryai.htn.simple.planner.impl.SimplePlanningFactory;
+import org.gerryai.htn.simple.tasknetwork.TaskBuilder;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.logic.Term;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of unifying a ground task with the task of a method whose arguments are all variables.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnificationBenchmark {
+
+    /**
+     * The number of arguments of the task.
+     */
+    @Param({"1", "4", "16" })
+    private int arity;
+
+    /**
+     * The unification service.
+     */
+    private UnificationService unificationService;
+
+    /**
+     * The ground task.
+     */
+    private Task task;
+
+    /**
+     * The method to unify the task with.
+     */
+    private Method method;
+
+    /**
+     * Build the task and method.
+     * @throws InvalidConstraint only if the benchmark is broken
+     */
+    @Setup
+    public final void setup() throws InvalidConstraint {
+        SimplePlanningFactory planningFactory = new SimplePlanningFactory();
+        unificationService = new SimpleUnificationService();
+        TaskBuilder groundBuilder = planningFactory.getTaskNetworkFactory().createTaskBuilder()
+                .setName("task")
+                .setIsPrimitive(false);
+        TaskBuilder methodBuilder = planningFactory.getTaskNetworkFactory().createTaskBuilder()
+                .setName("task")
+                .setIsPrimitive(false);
+        for (int i = 0; i < arity; i++) {
+            groundBuilder = groundBuilder.addArgument(planningFactory.getLogicFactory().createConstant("c" + i));
+            methodBuilder = methodBuilder.addArgument(planningFactory.getLogicFactory().createVariable("v" + i));
+        }
+        task = groundBuilder.build();
+        method = planningFactory.getDomainBuilderFactory().createMethodBuilder()
+                .setName("method")
+                .setTask(methodBuilder.build())
+                .setTaskNetwork(planningFactory.getTaskNetworkFactory().createTaskNetworkBuilder().build())
+                .build();
+    }
+
+    /**
+     * Find the unifier.
+     * @return the unifier
+     * @throws UnifierNotFound only if the benchmark is broken
+     */
+    @Benchmark
+    public final Map<Term, Term> findUnifier() throws UnifierNotFound {
+        return unificationService.findUnifier(task, method);
+    }
+}
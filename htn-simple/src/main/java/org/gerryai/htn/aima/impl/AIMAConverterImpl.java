@@ -33,11 +33,19 @@ import org.gerryai.logic.Variable;
 import aima.core.logic.fol.parsing.ast.Predicate;
 
 /**
+ * Converter between our logic classes and the AIMA FOL classes.
+ * Renamed instances of variables are carried across as AIMA indexicals, so that unification keeps them
+ * apart; symbol IDs are not carried across.
  * @author David Edwards <david@more.fool.me.uk>
  * 
  */
 public class AIMAConverterImpl implements AIMAConverter {
 
+	/**
+	 * Indexical of an AIMA variable that has not been given one.
+	 */
+	private static final int NO_INDEXICAL = -1;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -68,6 +76,13 @@ public class AIMAConverterImpl implements AIMAConverter {
 		aima.core.logic.fol.parsing.ast.Term aimaTerm;
 		if (term instanceof Constant) {
 			aimaTerm = new aima.core.logic.fol.parsing.ast.Constant(term.getName());
+		} else if (term instanceof SimpleVariable
+				&& ((SimpleVariable) term).getInstance() != SimpleVariable.ORIGINAL) {
+			long instance = ((SimpleVariable) term).getInstance();
+			if (instance < 0 || instance > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Cannot convert variable instance " + instance);
+			}
+			aimaTerm = new aima.core.logic.fol.parsing.ast.Variable(term.getName(), (int) instance);
 		} else if (term instanceof Variable) {
 			aimaTerm = new aima.core.logic.fol.parsing.ast.Variable(term.getName());
 		} else {
@@ -123,7 +138,12 @@ public class AIMAConverterImpl implements AIMAConverter {
 		if (aimaTerm instanceof aima.core.logic.fol.parsing.ast.Constant) {
 			term = new SimpleConstant(aimaTerm.getSymbolicName());
 		} else if (aimaTerm instanceof aima.core.logic.fol.parsing.ast.Variable) {
-			term = new SimpleVariable(aimaTerm.getSymbolicName());
+			int indexical = ((aima.core.logic.fol.parsing.ast.Variable) aimaTerm).getIndexical();
+			if (indexical == NO_INDEXICAL) {
+				term = new SimpleVariable(aimaTerm.getSymbolicName());
+			} else {
+				term = new SimpleVariable(aimaTerm.getSymbolicName(), SimpleVariable.NO_ID, indexical);
+			}
 		} else {
 			throw new IllegalArgumentException();
 		}
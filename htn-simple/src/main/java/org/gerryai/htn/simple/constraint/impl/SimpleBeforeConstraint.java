@@ -76,12 +76,29 @@ public class SimpleBeforeConstraint implements BeforeConstraint {
     
     @Override
     public final BeforeConstraint replace(Multimap<Task, Task> taskMap) {
+        if (!mentionsAny(taskMap.keySet())) {
+            return this;
+        }
         return new Builder()
         .copy(this)
         .replace(taskMap)
         .build();    	
     }
 
+    /**
+     * Check whether this constraint mentions any of the given tasks.
+     * @param candidates the tasks to check
+     * @return true if at least one of the tasks is mentioned
+     */
+    private boolean mentionsAny(Set<Task> candidates) {
+        for (Task task : candidates) {
+            if (tasks.contains(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
     @Override
     public final int hashCode() {
         return Objects.hashCode(tasks, condition);
@@ -149,7 +166,7 @@ public class SimpleBeforeConstraint implements BeforeConstraint {
         @Override
         public final Builder apply(Map<Term, Term> substitution) {
         	condition = condition.applyToCopy(substitution);
-        	for (Task oldTask : tasks) {
+        	for (Task oldTask : new HashSet<Task>(tasks)) {
         		Task newTask = oldTask.applyToCopy(substitution);
         		if (!oldTask.equals(newTask)) {
         			tasks.remove(oldTask);
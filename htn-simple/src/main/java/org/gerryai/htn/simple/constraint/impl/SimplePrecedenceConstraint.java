@@ -75,12 +75,29 @@ public class SimplePrecedenceConstraint	implements PrecedenceConstraint {
     
     @Override
     public final PrecedenceConstraint replace(Multimap<Task, Task> taskMap) {
+        if (!mentionsAny(taskMap.keySet())) {
+            return this;
+        }
         return new Builder()
         .copy(this)
         .replace(taskMap)
         .build();    	
     }
     
+    /**
+     * Check whether this constraint mentions any of the given tasks.
+     * @param candidates the tasks to check
+     * @return true if at least one of the tasks is mentioned
+     */
+    private boolean mentionsAny(Set<Task> candidates) {
+        for (Task task : candidates) {
+            if (precedingTasks.contains(task) || proceedingTasks.contains(task)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
 	@Override
 	public final int hashCode() {
 		return Objects.hashCode(precedingTasks, proceedingTasks);
@@ -140,14 +157,14 @@ public class SimplePrecedenceConstraint	implements PrecedenceConstraint {
 
         @Override
         public final Builder apply(Map<Term, Term> substitution) {
-        	for (Task oldTask : precedingTasks) {
+        	for (Task oldTask : new HashSet<Task>(precedingTasks)) {
         		Task newTask = oldTask.applyToCopy(substitution);
         		if (!oldTask.equals(newTask)) {
         			precedingTasks.remove(oldTask);
         			precedingTasks.add(newTask);
         		}
         	}
-        	for (Task oldTask : proceedingTasks) {
+        	for (Task oldTask : new HashSet<Task>(proceedingTasks)) {
         		Task newTask = oldTask.applyToCopy(substitution);
         		if (!oldTask.equals(newTask)) {
         			proceedingTasks.remove(oldTask);
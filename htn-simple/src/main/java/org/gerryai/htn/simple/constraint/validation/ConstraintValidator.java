@@ -98,6 +98,13 @@ public interface ConstraintValidator {
 	 * @param task the task to add
 	 */
 	void add(Task task);
+
+	/**
+	 * Add every task and constraint of a task network already known to be valid, such as one built by
+	 * another validator, without validating them again.
+	 * @param taskNetwork the valid task network to add
+	 */
+	void copy(TaskNetwork taskNetwork);
 	
     /**
      * Apply the provided substitution to the tasks and constraints in this validator.
@@ -0,0 +1,259 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.constraint.validation.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.tasknetwork.Task;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+
+/**
+ * Graph of the orderings precedence constraints impose between tasks, kept in a topological order as it
+ * changes, after Pearce and Kelly's dynamic topological sort.
+ * <p>
+ * Every task has a distinct position, and every ordering goes from a lower position to a higher one.
+ * An ordering that already agrees with the positions is added at once. Otherwise only the tasks between
+ * the two positions that are reachable from either end are searched and moved, and finding the earlier
+ * task while searching forwards from the later one means the ordering would close a cycle.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+final class PrecedenceOrder {
+
+    /**
+     * Position of each task in the topological order.
+     */
+    private final Map<Task, Integer> positions;
+
+    /**
+     * Each task mapped to the tasks that must directly follow it.
+     */
+    private final SetMultimap<Task, Task> successors;
+
+    /**
+     * Each task mapped to the tasks that must directly precede it.
+     */
+    private final SetMultimap<Task, Task> predecessors;
+
+    /**
+     * The position the next new task will be given.
+     */
+    private int nextPosition;
+
+    /**
+     * Orders tasks by their position.
+     */
+    private final Comparator<Task> byPosition = new Comparator<Task>() {
+        public int compare(Task first, Task second) {
+            return positions.get(first).compareTo(positions.get(second));
+        }
+    };
+
+    /**
+     * Constructor for an empty order.
+     */
+    PrecedenceOrder() {
+        positions = new HashMap<Task, Integer>();
+        successors = HashMultimap.create();
+        predecessors = HashMultimap.create();
+    }
+
+    /**
+     * Add a task, after every task already in the order.
+     * @param task the task
+     */
+    void add(Task task) {
+        if (!positions.containsKey(task)) {
+            positions.put(task, nextPosition++);
+        }
+    }
+
+    /**
+     * Check whether requiring one task to precede another would close a cycle.
+     * Both tasks must already have been added.
+     * @param precedingTask the task that would come first
+     * @param procedingTask the task that would come after
+     * @return true if the ordering would close a cycle
+     */
+    boolean wouldCycle(Task precedingTask, Task procedingTask) {
+        if (precedingTask.equals(procedingTask)) {
+            return true;
+        }
+        int upperBound = positions.get(precedingTask);
+        if (positions.get(procedingTask) > upperBound) {
+            // Every path leads to higher positions, so none can lead back to the preceding task
+            return false;
+        }
+        return searchForward(procedingTask, precedingTask, upperBound) == null;
+    }
+
+    /**
+     * Require one task to precede another, moving tasks as needed to keep the order topological.
+     * Both tasks must already have been added.
+     * @param precedingTask the task that must come first
+     * @param procedingTask the task that must come after
+     * @return false, leaving the order unchanged, if the ordering would close a cycle
+     */
+    boolean add(Task precedingTask, Task procedingTask) {
+        if (precedingTask.equals(procedingTask)) {
+            return false;
+        }
+        if (successors.containsEntry(precedingTask, procedingTask)) {
+            return true;
+        }
+        int lowerBound = positions.get(procedingTask);
+        int upperBound = positions.get(precedingTask);
+        if (lowerBound < upperBound) {
+            List<Task> forward = searchForward(procedingTask, precedingTask, upperBound);
+            if (forward == null) {
+                return false;
+            }
+            List<Task> backward = searchBackward(precedingTask, lowerBound);
+            reorder(backward, forward);
+        }
+        successors.put(precedingTask, procedingTask);
+        predecessors.put(procedingTask, precedingTask);
+        return true;
+    }
+
+    /**
+     * Remove a task, and every ordering involving it.
+     * @param task the task
+     */
+    void remove(Task task) {
+        positions.remove(task);
+        for (Task successor : successors.removeAll(task)) {
+            predecessors.remove(successor, task);
+        }
+        for (Task predecessor : predecessors.removeAll(task)) {
+            successors.remove(predecessor, task);
+        }
+    }
+
+    /**
+     * Get the tasks that must directly follow a task.
+     * @param task the task
+     * @return the successors
+     */
+    Set<Task> getSuccessors(Task task) {
+        return Collections.unmodifiableSet(successors.get(task));
+    }
+
+    /**
+     * Get the tasks that must directly precede a task.
+     * @param task the task
+     * @return the predecessors
+     */
+    Set<Task> getPredecessors(Task task) {
+        return Collections.unmodifiableSet(predecessors.get(task));
+    }
+
+    /**
+     * Get the position of a task in the order.
+     * @param task the task
+     * @return the position
+     */
+    int getPosition(Task task) {
+        return positions.get(task);
+    }
+
+    /**
+     * Find the tasks reachable from a task without passing the given upper bound on position.
+     * @param start the task to search from
+     * @param target the task whose discovery means a cycle
+     * @param upperBound the highest position to visit
+     * @return the tasks found, or null if the target was found
+     */
+    private List<Task> searchForward(Task start, Task target, int upperBound) {
+        List<Task> found = new ArrayList<Task>();
+        Set<Task> visited = new HashSet<Task>();
+        Deque<Task> stack = new ArrayDeque<Task>();
+        stack.push(start);
+        visited.add(start);
+        while (!stack.isEmpty()) {
+            Task task = stack.pop();
+            found.add(task);
+            for (Task successor : successors.get(task)) {
+                if (successor.equals(target)) {
+                    return null;
+                }
+                if (positions.get(successor) < upperBound && visited.add(successor)) {
+                    stack.push(successor);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the tasks that can reach a task without passing the given lower bound on position.
+     * @param start the task to search back from
+     * @param lowerBound the lowest position to visit
+     * @return the tasks found
+     */
+    private List<Task> searchBackward(Task start, int lowerBound) {
+        List<Task> found = new ArrayList<Task>();
+        Set<Task> visited = new HashSet<Task>();
+        Deque<Task> stack = new ArrayDeque<Task>();
+        stack.push(start);
+        visited.add(start);
+        while (!stack.isEmpty()) {
+            Task task = stack.pop();
+            found.add(task);
+            for (Task predecessor : predecessors.get(task)) {
+                if (positions.get(predecessor) > lowerBound && visited.add(predecessor)) {
+                    stack.push(predecessor);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Move the tasks found by the two searches so that all those found backwards come before all those
+     * found forwards, reusing the positions they already occupy.
+     * @param backward the tasks that can reach the preceding task
+     * @param forward the tasks reachable from the proceding task
+     */
+    private void reorder(List<Task> backward, List<Task> forward) {
+        Collections.sort(backward, byPosition);
+        Collections.sort(forward, byPosition);
+        List<Task> moved = new ArrayList<Task>(backward.size() + forward.size());
+        moved.addAll(backward);
+        moved.addAll(forward);
+        List<Integer> slots = new ArrayList<Integer>(moved.size());
+        for (Task task : moved) {
+            slots.add(positions.get(task));
+        }
+        Collections.sort(slots);
+        for (int i = 0; i < moved.size(); i++) {
+            positions.put(moved.get(i), slots.get(i));
+        }
+    }
+}
@@ -68,10 +68,16 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 	private Set<BetweenConstraint> betweenConstraints;
 	
 	/**
-	 * Map of precedence constraints, using their preceding task as the key.
-	 * Used to simplify looking for cycles.
+	 * The orderings imposed by the precedence constraints, kept in topological order.
+	 * Used to check for cycles.
 	 */
-	private Multimap<Task, PrecedenceConstraint> precedingTasks;
+	private PrecedenceOrder order;
+	
+	/**
+	 * Whether the tasks or precedence constraints have changed in a way the order does not follow,
+	 * so that it must be rebuilt before it is next used.
+	 */
+	private boolean orderStale;
 	
 	@Override
 	public final Set<Task> getTasks() {
@@ -104,7 +110,7 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 	public SimpleConstraintValidator() {
 		tasks = new HashSet<Task>();
 		precedenceConstraints = new HashSet<PrecedenceConstraint>();
-		precedingTasks = HashMultimap.create();
+		order = new PrecedenceOrder();
 		beforeConstraints = new HashSet<BeforeConstraint>();
 		afterConstraints = new HashSet<AfterConstraint>();
 		betweenConstraints = new HashSet<BetweenConstraint>();
@@ -114,9 +120,7 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 	public final void add(PrecedenceConstraint constraint) throws InvalidConstraint {
 		if (validate(constraint)) {
 			precedenceConstraints.add(constraint);
-			for (Task task : constraint.getPrecedingTasks()) {
-			    precedingTasks.get(task).add(constraint);
-			}
+			addToOrder(constraint);
 		} else {
 			throw new InvalidConstraint();
 		}
@@ -152,6 +156,20 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 	@Override
 	public final void add(Task task) {
 		tasks.add(task);
+		if (!orderStale) {
+			order.add(task);
+		}
+	}
+	
+	@Override
+	public final void copy(TaskNetwork taskNetwork) {
+		tasks.addAll(taskNetwork.getTasks());
+		beforeConstraints.addAll(taskNetwork.getBeforeConstraints());
+		afterConstraints.addAll(taskNetwork.getAfterConstraints());
+		betweenConstraints.addAll(taskNetwork.getBetweenConstraints());
+		precedenceConstraints.addAll(taskNetwork.getPrecedenceConstraints());
+		// Only build the order if a constraint is later added that needs checking for cycles
+		orderStale = true;
 	}
 	
     @Override
@@ -171,12 +189,18 @@ public class SimpleConstraintValidator implements ConstraintValidator {
         afterConstraints = applyReplace(afterConstraints, substitution, taskReplacementMap);
         betweenConstraints = applyReplace(betweenConstraints, substitution, taskReplacementMap);
         precedenceConstraints = applyReplace(precedenceConstraints, substitution, taskReplacementMap);
+        orderStale = true;
 
     }
 	
     @Override
-    public final void replace(Task oldTask, TaskNetwork newTaskNetwork) {
+    public final void replace(Task oldTask, TaskNetwork newTaskNetwork) throws InvalidConstraint {
         //TODO: Check implementation
+        boolean replaced = tasks.contains(oldTask);
+        if (replaced) {
+            // The new tasks may close a cycle, so the order must be current before they are added
+            refreshOrder();
+        }
         
         // Build a new set of tasks
     	int numTasks = tasks.size() + newTaskNetwork.getTasks().size() - 1;
@@ -201,6 +225,42 @@ public class SimpleConstraintValidator implements ConstraintValidator {
         		newTaskNetwork.getBetweenConstraints(), taskMap);
         precedenceConstraints = mergeAndReplace(precedenceConstraints,
         		newTaskNetwork.getPrecedenceConstraints(), taskMap);
+        if (replaced) {
+            replaceInOrder(oldTask, newTaskNetwork);
+        }
+    }
+    
+    /**
+     * Update the order in place of a replaced task, without disturbing the rest of it.
+     * The new tasks inherit the replaced task's orderings, along with those of their own network.
+     * @param oldTask the task that was replaced
+     * @param newTaskNetwork the task network that replaced it
+     * @throws InvalidConstraint if the new orderings close a cycle, which can only happen when a new
+     *         task is identical to one already in the network
+     */
+    private void replaceInOrder(Task oldTask, TaskNetwork newTaskNetwork) throws InvalidConstraint {
+        Set<Task> predecessors = new HashSet<Task>(order.getPredecessors(oldTask));
+        Set<Task> successors = new HashSet<Task>(order.getSuccessors(oldTask));
+        order.remove(oldTask);
+        boolean acyclic = true;
+        for (Task task : newTaskNetwork.getTasks()) {
+            order.add(task);
+        }
+        for (Task task : newTaskNetwork.getTasks()) {
+            for (Task predecessor : predecessors) {
+                acyclic = acyclic && order.add(predecessor, task);
+            }
+            for (Task successor : successors) {
+                acyclic = acyclic && order.add(task, successor);
+            }
+        }
+        for (PrecedenceConstraint constraint : newTaskNetwork.getPrecedenceConstraints()) {
+            acyclic = acyclic && addToOrder(constraint);
+        }
+        if (!acyclic) {
+            orderStale = true;
+            throw new InvalidConstraint("Replacement closes a cycle of precedence constraints");
+        }
     }
     
     /**
@@ -265,16 +325,15 @@ public class SimpleConstraintValidator implements ConstraintValidator {
         }
         
 		// Check if an existing identical constraint exists
-		for (PrecedenceConstraint existingConstraint : precedenceConstraints) {	
-			if (existingConstraint.equals(constraint)) {
-				return false;
-			}
+		if (precedenceConstraints.contains(constraint)) {
+			return false;
 		}
 		
 		//Check for cycles
+		refreshOrder();
 		for (Task precedingTask : constraint.getPrecedingTasks()) {
 		    for (Task procedingTask : constraint.getProcedingTasks()) {
-		        if (checkForPrecedenceConstraintCycle(precedingTask, procedingTask)) {
+		        if (order.wouldCycle(precedingTask, procedingTask)) {
 		            return false;
 		        }
 		    }
@@ -296,12 +355,7 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 			}
 		}
 		// Check if an existing identical constraint exists
-		for (BeforeConstraint existingConstraint : beforeConstraints) {	
-			if (existingConstraint.equals(constraint)) {
-				return false;
-			}
-		}
-		return true;
+		return !beforeConstraints.contains(constraint);
 	}
 	
 	/**
@@ -317,12 +371,7 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 			}
 		}
 		// Check if an existing identical constraint exists
-		for (AfterConstraint existingConstraint : afterConstraints) {	
-			if (existingConstraint.equals(constraint)) {
-				return false;
-			}
-		}
-		return true;
+		return !afterConstraints.contains(constraint);
 	}
 
 	/**
@@ -343,36 +392,39 @@ public class SimpleConstraintValidator implements ConstraintValidator {
 			}
 		}
 		// Check if an existing identical constraint exists
-		for (BetweenConstraint existingConstraint : betweenConstraints) {	
-			if (existingConstraint.equals(constraint)) {
-				return false;
+		return !betweenConstraints.contains(constraint);
+	}
+
+	/**
+	 * Add the orderings a precedence constraint introduces to the order.
+	 * @param constraint the constraint
+	 * @return false if any of the orderings closes a cycle
+	 */
+	private boolean addToOrder(PrecedenceConstraint constraint) {
+		boolean acyclic = true;
+		for (Task precedingTask : constraint.getPrecedingTasks()) {
+			for (Task procedingTask : constraint.getProcedingTasks()) {
+				acyclic = order.add(precedingTask, procedingTask) && acyclic;
 			}
 		}
-		return true;
+		return acyclic;
 	}
-
+	
 	/**
-	 * Helper method to help check for cycles.
-	 * @param initialTask task we are looking for
-	 * @param nextTask next task we should check from
-	 * @return true if a cycle was found
+	 * Rebuild the order from the current tasks and precedence constraints, if they have changed in a way
+	 * it does not follow since it was last built.
 	 */
-	private boolean checkForPrecedenceConstraintCycle(Task initialTask, Task nextTask) {
-		
-		if (initialTask.equals(nextTask)) {
-			return true;
-		} else if (!precedingTasks.containsKey(nextTask)) {
-			return false;
-		} else {
-			for (PrecedenceConstraint constraint : precedingTasks.get(nextTask)) {
-				for (Task task : constraint.getProcedingTasks()) {
-				    if (checkForPrecedenceConstraintCycle(initialTask, task)) {
-				        return true;
-				    }
-				}
+	private void refreshOrder() {
+		if (orderStale) {
+			orderStale = false;
+			order = new PrecedenceOrder();
+			for (Task task : tasks) {
+				order.add(task);
+			}
+			for (PrecedenceConstraint constraint : precedenceConstraints) {
+				// Any ordering that closes a cycle left by a substitution is left out
+				addToOrder(constraint);
 			}
-			return false;
 		}
-		
 	}
 }
@@ -43,4 +43,13 @@ public interface DecompositionService {
 	TaskNetwork decompose(Map<Term, Term> substitution, TaskNetwork taskNetwork,
 			Task task, Method method)  throws InvalidConstraint;
 	
+	/**
+	 * Prepare a problem's task network to be decomposed, standardising its variables apart from those of
+	 * every method if methods are standardised as they are applied.
+	 * @param taskNetwork the task network of the problem
+	 * @return the prepared task network
+	 * @throws InvalidConstraint if the prepared network's constraints are invalid
+	 */
+	TaskNetwork standardise(TaskNetwork taskNetwork) throws InvalidConstraint;
+	
 }
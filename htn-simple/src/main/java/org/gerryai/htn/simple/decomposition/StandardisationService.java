@@ -0,0 +1,53 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.decomposition;
+
+import java.util.Map;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+
+/**
+ * Interface for a service that standardises the variables of a method apart from every other use of it.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public interface StandardisationService {
+
+	/**
+	 * Extend a unifier for a method so that every variable of the method it leaves unbound is renamed to a
+	 * fresh variable, and every binding to such a variable follows the renaming.
+	 * Applying the result to the method's task network gives an instance of it that shares no unbound
+	 * variables with any other.
+	 * @param method the method being applied
+	 * @param unifier the unifier between the method and the task it decomposes
+	 * @return the extended unifier
+	 */
+	Map<Term, Term> standardise(Method method, Map<Term, Term> unifier);
+	
+	/**
+	 * Rename every variable of a problem's task network to a fresh variable, so that none can share a name
+	 * with a variable of any method.
+	 * This must be done once, before the network is searched, for unifiers to tell the two apart.
+	 * @param taskNetwork the task network of the problem
+	 * @return the standardised task network
+	 * @throws InvalidConstraint if the renamed network's constraints are invalid
+	 */
+	TaskNetwork standardise(TaskNetwork taskNetwork) throws InvalidConstraint;
+}
@@ -17,35 +17,154 @@
  */
 package org.gerryai.htn.simple.decomposition.impl;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import org.gerryai.htn.domain.Method;
 import org.gerryai.htn.simple.decomposition.DecompositionService;
+import org.gerryai.htn.simple.decomposition.StandardisationService;
+import org.gerryai.htn.simple.tasknetwork.impl.TaskNetworkTemplate;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
 import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Function;
 import org.gerryai.logic.Term;
 
+import com.google.common.collect.MapMaker;
+
 /**
  * Simple implementation of a decomposition service, for decomposing a task
  * within a network using a specified method and unifier.
+ * In scoped mode, the rest of the task network only receives the bindings for variables of the task being
+ * decomposed. This is only sound when the method's variables are standardised apart from the network's,
+ * but then leaves every other task and constraint untouched and shared with the original network.
+ * Given a standardisation service, the service works in scoped mode and standardises each method as it
+ * is applied, once the problem's own task network has been standardised.
+ * Each method's task network is compiled into a template the first time the method is used, and later
+ * uses instantiate the template rather than applying the substitution to the network.
  * @author David Edwards <david@more.fool.me.uk>
  */
 public class SimpleDecompositionService implements DecompositionService {
 	
+	/**
+	 * Whether to restrict the substitution applied to the rest of the network.
+	 */
+	private final boolean scoped;
+	
+	/**
+	 * Service standardising methods apart as they are applied, or null if they are used as written.
+	 */
+	private final StandardisationService standardisationService;
+	
+	/**
+	 * Compiled task networks of the methods used so far, keyed by identity.
+	 */
+	private final ConcurrentMap<Method, TaskNetworkTemplate> templates = new MapMaker().weakKeys().makeMap();
+	
+	/**
+	 * Default constructor, applying the whole substitution to the whole network.
+	 */
+	public SimpleDecompositionService() {
+		this(false);
+	}
+	
+	/**
+	 * Constructor choosing whether to scope substitutions.
+	 * @param scoped true to apply to the rest of the network only the bindings of the decomposed task's variables
+	 */
+	public SimpleDecompositionService(boolean scoped) {
+		this.scoped = scoped;
+		this.standardisationService = null;
+	}
+	
+	/**
+	 * Constructor for scoped decomposition, standardising each method apart as it is applied.
+	 * @param standardisationService the standardisation service
+	 */
+	public SimpleDecompositionService(StandardisationService standardisationService) {
+		this.scoped = true;
+		this.standardisationService = standardisationService;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
-	public final TaskNetwork decompose(Map<Term, Term> substitution,
+	public final TaskNetwork decompose(Map<Term, Term> unifier,
 			TaskNetwork taskNetwork, Task task, Method method) throws InvalidConstraint {
 	    
-		// Apply unifier where relevant
-		TaskNetwork unifiedMethodSubTasks = method.getTaskNetwork().apply(substitution);
+		Map<Term, Term> substitution;
+		if (standardisationService == null) {
+			substitution = unifier;
+		} else {
+			substitution = standardisationService.standardise(method, unifier);
+		}
 		
-		// TODO: Confirm if unifier really needs to be applied to the rest of the task network
-		TaskNetwork updatedTaskNetwork = taskNetwork.apply(substitution)
-		        .replace(task, unifiedMethodSubTasks);
+		// Apply unifier where relevant
+		TaskNetwork unifiedMethodSubTasks = getTemplate(method).instantiate(substitution);
 		
-		return updatedTaskNetwork;
+		TaskNetwork decomposedTaskNetwork;
+		if (scoped) {
+			// Variables outside the decomposed task belong to the method alone, so only the task's own
+			// bindings reach the rest of the network, once the task itself has been replaced
+			decomposedTaskNetwork = taskNetwork.replace(task, unifiedMethodSubTasks);
+			Map<Term, Term> taskSubstitution = restrict(substitution, task.getArguments(), null);
+			if (taskSubstitution != null) {
+				decomposedTaskNetwork = decomposedTaskNetwork.apply(taskSubstitution);
+			}
+		} else {
+			decomposedTaskNetwork = taskNetwork.apply(substitution)
+			        .replace(task, unifiedMethodSubTasks);
+		}
+		return decomposedTaskNetwork;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public final TaskNetwork standardise(TaskNetwork taskNetwork) throws InvalidConstraint {
+		if (standardisationService == null) {
+			return taskNetwork;
+		} else {
+			return standardisationService.standardise(taskNetwork);
+		}
+	}
+	
+	/**
+	 * Get the compiled task network of a method, compiling it if the method has not been used before.
+	 * @param method the method
+	 * @return the template
+	 */
+	private TaskNetworkTemplate getTemplate(Method method) {
+		TaskNetworkTemplate template = templates.get(method);
+		if (template == null) {
+			template = TaskNetworkTemplate.compile(method.getTaskNetwork());
+			templates.putIfAbsent(method, template);
+		}
+		return template;
+	}
+	
+	/**
+	 * Collect the bindings of a substitution for the variables within some terms.
+	 * @param substitution the full substitution
+	 * @param terms the terms whose variables to keep
+	 * @param restricted the bindings collected so far, or null if there are none yet
+	 * @return the bindings collected, or null if there are none
+	 */
+	private Map<Term, Term> restrict(Map<Term, Term> substitution, List<Term> terms,
+			Map<Term, Term> restricted) {
+		Map<Term, Term> result = restricted;
+		for (Term term : terms) {
+			if (term instanceof Function) {
+				result = restrict(substitution, ((Function) term).getTerms(), result);
+			} else if (substitution.containsKey(term)) {
+				if (result == null) {
+					result = new HashMap<Term, Term>();
+				}
+				result.put(term, substitution.get(term));
+			}
+		}
+		return result;
 	}
 }
@@ -0,0 +1,200 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.decomposition.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.gerryai.htn.constraint.AfterConstraint;
+import org.gerryai.htn.constraint.BeforeConstraint;
+import org.gerryai.htn.constraint.BetweenConstraint;
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.decomposition.StandardisationService;
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Function;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Standardisation service that renames variables by giving them a fresh instance number.
+ * Each application of a method takes the next number from a shared counter, so renaming never builds new
+ * names. The variables of each method are found once and cached against the method.
+ * The problem's task network is standardised once before it is searched, so that none of its variables
+ * is an original as written in a method. Every variable of a method the unifier does not bind can then
+ * be told apart from the task's variables and renamed.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SimpleStandardisationService implements StandardisationService {
+
+    /**
+     * Counter of method applications, from which each takes its instance number.
+     */
+    private final AtomicLong instances = new AtomicLong(SimpleVariable.ORIGINAL);
+
+    /**
+     * Variables of each method seen so far, keyed by identity.
+     */
+    private final ConcurrentMap<Method, List<SimpleVariable>> methodVariables
+            = new MapMaker().weakKeys().makeMap();
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Map<Term, Term> standardise(Method method, Map<Term, Term> unifier) {
+
+        // Rename every variable the unifier leaves unbound, all to the same new instance
+        Map<Term, Term> renaming = null;
+        long instance = SimpleVariable.ORIGINAL;
+        for (SimpleVariable variable : getVariables(method)) {
+            if (!unifier.containsKey(variable)) {
+                if (renaming == null) {
+                    renaming = new HashMap<Term, Term>();
+                    instance = instances.incrementAndGet();
+                }
+                renaming.put(variable, variable.rename(instance));
+            }
+        }
+        if (renaming == null) {
+            return unifier;
+        }
+
+        // Bindings to renamed variables must follow them
+        Map<Term, Term> standardised = new HashMap<Term, Term>(renaming);
+        for (Map.Entry<Term, Term> binding : unifier.entrySet()) {
+            standardised.put(binding.getKey(), binding.getValue().applyToCopy(renaming));
+        }
+        return standardised;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final TaskNetwork standardise(TaskNetwork taskNetwork) throws InvalidConstraint {
+        Set<SimpleVariable> found = new LinkedHashSet<SimpleVariable>();
+        addVariables(taskNetwork, found);
+        if (found.isEmpty()) {
+            return taskNetwork;
+        }
+        long instance = instances.incrementAndGet();
+        Map<Term, Term> renaming = new HashMap<Term, Term>();
+        for (SimpleVariable variable : found) {
+            renaming.put(variable, variable.rename(instance));
+        }
+        return taskNetwork.apply(renaming);
+    }
+
+    /**
+     * Get the variables used by a method, finding them if the method has not been seen before.
+     * @param method the method
+     * @return the variables
+     */
+    private List<SimpleVariable> getVariables(Method method) {
+        List<SimpleVariable> variables = methodVariables.get(method);
+        if (variables == null) {
+            Set<SimpleVariable> found = new LinkedHashSet<SimpleVariable>();
+            addVariables(method.getTask(), found);
+            addVariables(method.getTaskNetwork(), found);
+            variables = Collections.unmodifiableList(new ArrayList<SimpleVariable>(found));
+            methodVariables.putIfAbsent(method, variables);
+        }
+        return variables;
+    }
+
+    /**
+     * Add the variables in a task network's tasks and constraints to a set.
+     * @param taskNetwork the task network
+     * @param variables the set to add to
+     */
+    private void addVariables(TaskNetwork taskNetwork, Set<SimpleVariable> variables) {
+        for (Task task : taskNetwork.getTasks()) {
+            addVariables(task, variables);
+        }
+        for (BeforeConstraint constraint : taskNetwork.getBeforeConstraints()) {
+            addVariables(constraint.getCondition(), variables);
+        }
+        for (AfterConstraint constraint : taskNetwork.getAfterConstraints()) {
+            addVariables(constraint.getCondition(), variables);
+        }
+        for (BetweenConstraint constraint : taskNetwork.getBetweenConstraints()) {
+            addVariables(constraint.getCondition(), variables);
+        }
+    }
+
+    /**
+     * Add the variables in a task's arguments to a set.
+     * @param task the task
+     * @param variables the set to add to
+     */
+    private void addVariables(Task task, Set<SimpleVariable> variables) {
+        addVariables(task.getArguments(), variables);
+    }
+
+    /**
+     * Add the variables in a condition to a set.
+     * @param condition the condition, which may be null
+     * @param variables the set to add to
+     */
+    private void addVariables(Condition condition, Set<SimpleVariable> variables) {
+        if (condition != null) {
+            addVariables(condition.getSentence(), variables);
+        }
+    }
+
+    /**
+     * Add the variables in a sentence to a set.
+     * @param sentence the sentence
+     * @param variables the set to add to
+     */
+    private void addVariables(Sentence sentence, Set<SimpleVariable> variables) {
+        if (sentence instanceof Predicate) {
+            addVariables(((Predicate) sentence).getTerms(), variables);
+        } else if (sentence instanceof NegatedSentence) {
+            addVariables(((NegatedSentence) sentence).getSentence(), variables);
+        }
+    }
+
+    /**
+     * Add the variables in some terms to a set, searching within functions.
+     * @param terms the terms
+     * @param variables the set to add to
+     */
+    private void addVariables(List<Term> terms, Set<SimpleVariable> variables) {
+        for (Term term : terms) {
+            if (term instanceof SimpleVariable) {
+                variables.add((SimpleVariable) term);
+            } else if (term instanceof Function) {
+                addVariables(((Function) term).getTerms(), variables);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.decomposition.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.decomposition.UnificationService;
+import org.gerryai.htn.simple.decomposition.UnifierNotFound;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.logic.Function;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+/**
+ * Unification service that works directly on our own terms.
+ * Bindings are recorded on a trail of variable and value arrays that is kept per thread
+ * and reused between calls, and unification gives up as soon as a name or arity differs.
+ * Functions are unified structurally, with an occurs check.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SimpleUnificationService implements UnificationService {
+
+    /**
+     * Initial capacity of each thread's trail.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Trail of bindings, one per thread so that the service can be shared.
+     */
+    private final ThreadLocal<Trail> trails = new ThreadLocal<Trail>() {
+        @Override
+        protected Trail initialValue() {
+            return new Trail();
+        }
+    };
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Map<Term, Term> findUnifier(Task task, Method method) throws UnifierNotFound {
+
+        Task methodTask = method.getTask();
+        if (!task.getName().equals(methodTask.getName())) {
+            throw new UnifierNotFound();
+        }
+        List<Term> arguments = task.getArguments();
+        List<Term> methodArguments = methodTask.getArguments();
+        if (arguments.size() != methodArguments.size()) {
+            throw new UnifierNotFound();
+        }
+
+        Trail trail = trails.get();
+        try {
+            for (int i = 0; i < arguments.size(); i++) {
+                if (!unify(arguments.get(i), methodArguments.get(i), trail)) {
+                    throw new UnifierNotFound();
+                }
+            }
+            return trail.toSubstitution();
+        } finally {
+            trail.clear();
+        }
+    }
+
+    /**
+     * Unify two terms, extending the trail with any new bindings needed.
+     * @param left the first term
+     * @param right the second term
+     * @param trail the bindings so far
+     * @return true if the terms could be unified
+     */
+    private boolean unify(Term left, Term right, Trail trail) {
+        Term x = trail.walk(left);
+        Term y = trail.walk(right);
+        if (x == y || x.equals(y)) {
+            return true;
+        } else if (x instanceof Variable) {
+            return bind((Variable) x, y, trail);
+        } else if (y instanceof Variable) {
+            return bind((Variable) y, x, trail);
+        } else if (x instanceof Function && y instanceof Function) {
+            Function f = (Function) x;
+            Function g = (Function) y;
+            if (!f.getName().equals(g.getName()) || f.getTerms().size() != g.getTerms().size()) {
+                return false;
+            }
+            for (int i = 0; i < f.getTerms().size(); i++) {
+                if (!unify(f.getTerms().get(i), g.getTerms().get(i), trail)) {
+                    return false;
+                }
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Bind an unbound variable to a term, unless the variable occurs within it.
+     * @param variable the variable
+     * @param term the term to bind it to
+     * @param trail the bindings so far
+     * @return true if the binding was made
+     */
+    private boolean bind(Variable variable, Term term, Trail trail) {
+        if (occurs(variable, term, trail)) {
+            return false;
+        }
+        trail.push(variable, term);
+        return true;
+    }
+
+    /**
+     * Check whether a variable occurs within a term, following existing bindings.
+     * @param variable the variable
+     * @param term the term to search
+     * @param trail the bindings so far
+     * @return true if the variable occurs in the term
+     */
+    private boolean occurs(Variable variable, Term term, Trail trail) {
+        Term t = trail.walk(term);
+        if (t instanceof Function) {
+            for (Term inner : ((Function) t).getTerms()) {
+                if (occurs(variable, inner, trail)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return variable.equals(t);
+    }
+
+    /**
+     * Reusable record of the variable bindings made during one unification.
+     */
+    private static final class Trail {
+
+        /**
+         * Variables bound, in the order they were bound.
+         */
+        private Variable[] variables;
+
+        /**
+         * Values the variables are bound to.
+         */
+        private Term[] values;
+
+        /**
+         * Number of bindings on the trail.
+         */
+        private int size;
+
+        /**
+         * Constructor.
+         */
+        private Trail() {
+            variables = new Variable[INITIAL_CAPACITY];
+            values = new Term[INITIAL_CAPACITY];
+        }
+
+        /**
+         * Record a new binding.
+         * @param variable the variable
+         * @param value the value it is bound to
+         */
+        private void push(Variable variable, Term value) {
+            if (size == variables.length) {
+                Variable[] newVariables = new Variable[size * 2];
+                Term[] newValues = new Term[size * 2];
+                System.arraycopy(variables, 0, newVariables, 0, size);
+                System.arraycopy(values, 0, newValues, 0, size);
+                variables = newVariables;
+                values = newValues;
+            }
+            variables[size] = variable;
+            values[size] = value;
+            size++;
+        }
+
+        /**
+         * Find the value a variable is bound to.
+         * @param variable the variable
+         * @return the value, or null if the variable is unbound
+         */
+        private Term lookup(Term variable) {
+            for (int i = 0; i < size; i++) {
+                if (variables[i] == variable || variables[i].equals(variable)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Follow the chain of bindings from a term until reaching a non-variable or an unbound variable.
+         * @param term the term
+         * @return the term at the end of the chain
+         */
+        private Term walk(Term term) {
+            Term current = term;
+            while (current instanceof Variable) {
+                Term value = lookup(current);
+                if (value == null) {
+                    return current;
+                }
+                current = value;
+            }
+            return current;
+        }
+
+        /**
+         * Build the substitution described by the trail, with every value fully resolved.
+         * @return the substitution
+         */
+        private Map<Term, Term> toSubstitution() {
+            Map<Term, Term> substitution = new HashMap<Term, Term>();
+            boolean hasFunctions = false;
+            for (int i = 0; i < size; i++) {
+                Term value = walk(values[i]);
+                substitution.put(variables[i], value);
+                hasFunctions |= value instanceof Function;
+            }
+            if (hasFunctions) {
+                // Function values may still contain bound variables, so keep substituting
+                // until nothing changes; the occurs check guarantees this terminates
+                boolean changed = true;
+                while (changed) {
+                    changed = false;
+                    for (Map.Entry<Term, Term> entry : substitution.entrySet()) {
+                        if (entry.getValue() instanceof Function && !entry.getValue().isGround()) {
+                            Term resolved = entry.getValue().applyToCopy(substitution);
+                            if (!resolved.equals(entry.getValue())) {
+                                entry.setValue(resolved);
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+            return substitution;
+        }
+
+        /**
+         * Remove all bindings so that the trail can be reused.
+         */
+        private void clear() {
+            for (int i = 0; i < size; i++) {
+                variables[i] = null;
+                values[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.domain.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.domain.Operator;
+import org.gerryai.htn.simple.plan.impl.GroundAction;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+import org.gerryai.htn.simple.problem.impl.FactIndex;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.logic.Constant;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+/**
+ * Preprocessor that compiles the operators of a problem's domain into ground actions over the
+ * problem's constants.
+ * <p>
+ * Instances are found by relaxed reachability: starting from the initial state, an instance is kept once
+ * every one of its positive preconditions has been reached, and its add effects are then reached in turn,
+ * until nothing new is reached. Delete effects and negative preconditions are ignored while doing so, so
+ * every instance that could ever fire is kept, but instances that could never fire are pruned.
+ * Arguments are bound one at a time, and a precondition is checked as soon as its arguments are bound.
+ * </p>
+ * <p>
+ * Operators whose preconditions or effects use variables that are not among their arguments cannot be
+ * ground, and are left to be turned into actions when they are needed, as before.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class DomainGrounder {
+
+    /**
+     * Compile the domain of a problem against the problem's constants.
+     * @param problem the problem
+     * @return the ground domain
+     */
+    public final GroundDomain ground(ImmutableProblem problem) {
+
+        Set<Predicate> reached = new LinkedHashSet<Predicate>();
+        for (Sentence sentence : problem.getState().getAssertions()) {
+            if (sentence instanceof Predicate) {
+                reached.add((Predicate) sentence);
+            }
+        }
+        List<Term> objects = new ArrayList<Term>(getConstants(problem));
+
+        // Where operators share a name, only the first is used, so only the first is ground
+        List<Schema> schemas = new ArrayList<Schema>();
+        Set<String> names = new HashSet<String>();
+        for (Operator operator : problem.getDomain().getOperators()) {
+            if (names.add(operator.getName())) {
+                Schema schema = Schema.compile(operator);
+                if (schema != null) {
+                    schemas.add(schema);
+                }
+            }
+        }
+
+        Map<List<Object>, Instance> instances = new LinkedHashMap<List<Object>, Instance>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Schema schema : schemas) {
+                Map<Term, Term> substitution = new HashMap<Term, Term>();
+                if (isReached(schema.readyAt.get(0), substitution, reached)) {
+                    changed |= instantiate(schema, 0, objects, substitution, reached, instances);
+                }
+            }
+        }
+
+        FactIndex.Builder indexBuilder = new FactIndex.Builder();
+        for (Predicate predicate : reached) {
+            indexBuilder.add(predicate);
+        }
+        for (Instance instance : instances.values()) {
+            for (Condition condition : instance.conditions) {
+                addPredicate(indexBuilder, condition.getSentence());
+            }
+            for (Effect effect : instance.effects) {
+                addPredicate(indexBuilder, effect.getSentence());
+            }
+        }
+        FactIndex index = indexBuilder.build();
+
+        List<GroundAction> actions = new ArrayList<GroundAction>(instances.size());
+        for (Instance instance : instances.values()) {
+            actions.add(new GroundAction.Builder()
+                    .setOperator(instance.operator)
+                    .setBindings(instance.bindings)
+                    .setConditions(instance.conditions)
+                    .setEffects(instance.effects)
+                    .setIndex(index)
+                    .build());
+        }
+        return new GroundDomain(problem.getDomain(), index, actions);
+    }
+
+    /**
+     * Bind the remaining arguments of an operator in every way whose preconditions have been reached,
+     * recording each new instance and reaching its add effects.
+     * @param schema the compiled operator
+     * @param next the position of the next argument to bind
+     * @param objects the constants to bind arguments to
+     * @param substitution the bindings of the arguments before the next
+     * @param reached the predicates reached so far
+     * @param instances the instances found so far, keyed by operator name and arguments
+     * @return true if any new predicate was reached
+     */
+    private boolean instantiate(Schema schema, int next, List<Term> objects, Map<Term, Term> substitution,
+            Set<Predicate> reached, Map<List<Object>, Instance> instances) {
+
+        if (next == schema.arguments.size()) {
+            return record(schema, substitution, reached, instances);
+        }
+        Variable variable = schema.arguments.get(next);
+        if (substitution.containsKey(variable)) {
+            // The same variable appears twice in the argument list, and is already bound
+            return instantiate(schema, next + 1, objects, substitution, reached, instances);
+        }
+        boolean changed = false;
+        for (Term object : objects) {
+            substitution.put(variable, object);
+            if (isReached(schema.readyAt.get(next + 1), substitution, reached)) {
+                changed |= instantiate(schema, next + 1, objects, substitution, reached, instances);
+            }
+        }
+        substitution.remove(variable);
+        return changed;
+    }
+
+    /**
+     * Record an instance of an operator, if it is new, and reach its add effects.
+     * @param schema the compiled operator
+     * @param substitution the bindings of every argument
+     * @param reached the predicates reached so far
+     * @param instances the instances found so far
+     * @return true if any new predicate was reached
+     */
+    private boolean record(Schema schema, Map<Term, Term> substitution,
+            Set<Predicate> reached, Map<List<Object>, Instance> instances) {
+
+        List<Object> key = new ArrayList<Object>(schema.arguments.size() + 1);
+        key.add(schema.operator.getName());
+        for (Variable variable : schema.arguments) {
+            key.add(substitution.get(variable));
+        }
+        if (instances.containsKey(key)) {
+            return false;
+        }
+        Instance instance = new Instance(schema.operator, substitution);
+        instances.put(key, instance);
+
+        boolean changed = false;
+        for (Effect effect : instance.effects) {
+            if (effect.getSentence() instanceof Predicate) {
+                changed |= reached.add((Predicate) effect.getSentence());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Check that every one of a set of preconditions has been reached under a substitution.
+     * @param preconditions the positive preconditions
+     * @param substitution the substitution grounding them
+     * @param reached the predicates reached so far
+     * @return true if all have been reached
+     */
+    private boolean isReached(List<Predicate> preconditions, Map<Term, Term> substitution, Set<Predicate> reached) {
+        for (Predicate precondition : preconditions) {
+            if (!reached.contains(precondition.applyToCopy(substitution))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add the predicate underlying a sentence to an index, if it is a predicate or a negated predicate.
+     * @param indexBuilder the index being built
+     * @param sentence the sentence
+     */
+    private void addPredicate(FactIndex.Builder indexBuilder, Sentence sentence) {
+        if (sentence instanceof NegatedSentence) {
+            addPredicate(indexBuilder, ((NegatedSentence) sentence).getSentence());
+        } else if (sentence instanceof Predicate) {
+            indexBuilder.add((Predicate) sentence);
+        }
+    }
+
+    /**
+     * Get the constants of a problem: those in its initial state, its tasks, and its domain.
+     * @param problem the problem
+     * @return the constants, in the order first found
+     */
+    private Set<Term> getConstants(ImmutableProblem problem) {
+        Set<Term> constants = new LinkedHashSet<Term>();
+        for (Sentence sentence : problem.getState().getAssertions()) {
+            addConstants(constants, sentence);
+        }
+        for (Task task : problem.getTaskNetwork().getTasks()) {
+            addConstants(constants, task.getArguments());
+        }
+        for (Method method : problem.getDomain().getMethods()) {
+            addConstants(constants, method.getTask().getArguments());
+            for (Task task : method.getTaskNetwork().getTasks()) {
+                addConstants(constants, task.getArguments());
+            }
+        }
+        for (Operator operator : problem.getDomain().getOperators()) {
+            for (Condition condition : operator.getPreconditions()) {
+                addConstants(constants, condition.getSentence());
+            }
+            for (Effect effect : operator.getEffects()) {
+                addConstants(constants, effect.getSentence());
+            }
+        }
+        return constants;
+    }
+
+    /**
+     * Add the constants of a predicate, or negated predicate, to a set.
+     * @param constants the set of constants
+     * @param sentence the sentence
+     */
+    private void addConstants(Set<Term> constants, Sentence sentence) {
+        if (sentence instanceof NegatedSentence) {
+            addConstants(constants, ((NegatedSentence) sentence).getSentence());
+        } else if (sentence instanceof Predicate) {
+            addConstants(constants, ((Predicate) sentence).getTerms());
+        }
+    }
+
+    /**
+     * Add the constants among a list of terms to a set.
+     * @param constants the set of constants
+     * @param terms the terms
+     */
+    private void addConstants(Set<Term> constants, List<Term> terms) {
+        for (Term term : terms) {
+            if (term instanceof Constant) {
+                constants.add(term);
+            }
+        }
+    }
+
+    /**
+     * An operator prepared for grounding, with each positive precondition filed under the number of
+     * arguments that must be bound before it can be checked.
+     */
+    private static final class Schema {
+
+        /**
+         * The operator.
+         */
+        private final Operator operator;
+
+        /**
+         * The operator's arguments.
+         */
+        private final List<Variable> arguments;
+
+        /**
+         * For each number of bound arguments, the positive preconditions that can be checked once that many
+         * arguments are bound.
+         */
+        private final List<List<Predicate>> readyAt;
+
+        /**
+         * Constructor.
+         * @param operator the operator
+         * @param readyAt the positive preconditions that can be checked for each number of bound arguments
+         */
+        private Schema(Operator operator, List<List<Predicate>> readyAt) {
+            this.operator = operator;
+            this.arguments = operator.getArguments();
+            this.readyAt = readyAt;
+        }
+
+        /**
+         * Prepare an operator for grounding.
+         * @param operator the operator
+         * @return the compiled operator, or null if it cannot be ground
+         */
+        private static Schema compile(Operator operator) {
+            List<Variable> arguments = operator.getArguments();
+            List<List<Predicate>> readyAt = new ArrayList<List<Predicate>>(arguments.size() + 1);
+            for (int i = 0; i <= arguments.size(); i++) {
+                readyAt.add(new ArrayList<Predicate>());
+            }
+            for (Condition condition : operator.getPreconditions()) {
+                int last = getLastArgument(condition.getSentence(), arguments);
+                if (last == arguments.size()) {
+                    return null;
+                } else if (condition.getSentence() instanceof Predicate) {
+                    readyAt.get(last + 1).add((Predicate) condition.getSentence());
+                }
+            }
+            for (Effect effect : operator.getEffects()) {
+                if (getLastArgument(effect.getSentence(), arguments) == arguments.size()) {
+                    return null;
+                }
+            }
+            return new Schema(operator, readyAt);
+        }
+
+        /**
+         * Find the last argument position a flat predicate, or negated predicate, depends on.
+         * @param sentence the sentence
+         * @param arguments the operator's arguments
+         * @return the last position, -1 if it depends on none, or the number of arguments if it
+         *          cannot be ground by binding them
+         */
+        private static int getLastArgument(Sentence sentence, List<Variable> arguments) {
+            if (sentence instanceof NegatedSentence) {
+                return getLastArgument(((NegatedSentence) sentence).getSentence(), arguments);
+            } else if (!(sentence instanceof Predicate)) {
+                return arguments.size();
+            }
+            int last = -1;
+            for (Term term : ((Predicate) sentence).getTerms()) {
+                if (term instanceof Variable) {
+                    int position = arguments.indexOf(term);
+                    if (position < 0) {
+                        return arguments.size();
+                    }
+                    last = Math.max(last, position);
+                } else if (!(term instanceof Constant)) {
+                    return arguments.size();
+                }
+            }
+            return last;
+        }
+    }
+
+    /**
+     * An instance of an operator, with its preconditions and effects ground.
+     */
+    private static final class Instance {
+
+        /**
+         * The operator.
+         */
+        private final Operator operator;
+
+        /**
+         * The bindings of the operator's arguments.
+         */
+        private final Map<Variable, Constant> bindings;
+
+        /**
+         * The ground preconditions.
+         */
+        private final List<Condition> conditions;
+
+        /**
+         * The ground effects.
+         */
+        private final List<Effect> effects;
+
+        /**
+         * Constructor.
+         * @param operator the operator
+         * @param substitution the bindings of every argument
+         */
+        private Instance(Operator operator, Map<Term, Term> substitution) {
+            this.operator = operator;
+            bindings = new HashMap<Variable, Constant>();
+            for (Variable variable : operator.getArguments()) {
+                bindings.put(variable, (Constant) substitution.get(variable));
+            }
+            conditions = new ArrayList<Condition>(operator.getPreconditions().size());
+            for (Condition condition : operator.getPreconditions()) {
+                conditions.add(condition.applyToCopy(new HashMap<Term, Term>(substitution)));
+            }
+            effects = new ArrayList<Effect>(operator.getEffects().size());
+            for (Effect effect : operator.getEffects()) {
+                effects.add(effect.applyToCopy(new HashMap<Term, Term>(substitution)));
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.domain.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gerryai.htn.domain.Domain;
+import org.gerryai.htn.simple.plan.impl.GroundAction;
+import org.gerryai.htn.simple.problem.impl.FactIndex;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+/**
+ * A domain compiled against the objects of a problem: every ground action that can ever fire, together
+ * with the index numbering every ground predicate those actions and the initial state mention.
+ * Actions are keyed on the name and arguments of the primitive task they carry out.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class GroundDomain {
+
+    /**
+     * The domain that was ground.
+     */
+    private final Domain domain;
+
+    /**
+     * Numbering of the ground predicates.
+     */
+    private final FactIndex index;
+
+    /**
+     * Ground actions keyed by operator name, then by the constants bound to the operator's arguments.
+     */
+    private final Map<String, Map<List<Term>, GroundAction>> actions;
+
+    /**
+     * Number of ground actions.
+     */
+    private final int size;
+
+    /**
+     * Constructor.
+     * @param domain the domain that was ground
+     * @param index the numbering of the ground predicates
+     * @param actions the ground actions
+     */
+    public GroundDomain(Domain domain, FactIndex index, Collection<GroundAction> actions) {
+        this.domain = domain;
+        this.index = index;
+        this.actions = new HashMap<String, Map<List<Term>, GroundAction>>();
+        int count = 0;
+        for (GroundAction action : actions) {
+            Map<List<Term>, GroundAction> byArguments = this.actions.get(action.getOperator().getName());
+            if (byArguments == null) {
+                byArguments = new HashMap<List<Term>, GroundAction>();
+                this.actions.put(action.getOperator().getName(), byArguments);
+            }
+            List<Term> arguments = new ArrayList<Term>(action.getOperator().getArguments().size());
+            for (Variable variable : action.getOperator().getArguments()) {
+                arguments.add(action.getBindings().get(variable));
+            }
+            if (byArguments.put(arguments, action) == null) {
+                count++;
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * Get the domain that was ground.
+     * @return the domain
+     */
+    public Domain getDomain() {
+        return domain;
+    }
+
+    /**
+     * Get the numbering of the ground predicates.
+     * @return the fact index
+     */
+    public FactIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the ground action that carries out a primitive task.
+     * @param task the task
+     * @return the action, or null if no reachable action carries out the task
+     */
+    public GroundAction getAction(Task task) {
+        Map<List<Term>, GroundAction> byArguments = actions.get(task.getName());
+        if (byArguments == null) {
+            return null;
+        } else {
+            return byArguments.get(task.getArguments());
+        }
+    }
+
+    /**
+     * Get every ground action.
+     * @return the actions
+     */
+    public Collection<GroundAction> getActions() {
+        List<GroundAction> all = new ArrayList<GroundAction>(size);
+        for (Map<List<Term>, GroundAction> byArguments : actions.values()) {
+            all.addAll(byArguments.values());
+        }
+        return Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Get the number of ground actions.
+     * @return the number of actions
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -24,6 +24,8 @@ import org.gerryai.htn.simple.domain.ConditionBuilder;
 import org.gerryai.logic.Sentence;
 import org.gerryai.logic.Term;
 
+import com.google.common.base.Objects;
+
 /**
  * Simple immutable implementation of a logical condition.
  * @author David Edwards <david@more.fool.me.uk>
@@ -108,6 +110,21 @@ public final class SimpleCondition implements Condition {
         }
     }
     
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(sentence);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof SimpleCondition) {
+            final SimpleCondition other = (SimpleCondition) obj;
+            return Objects.equal(sentence, other.sentence);
+        } else {
+            return false;
+        }
+    }
+
     @Override
     public String toString() {
         return sentence.toString();
@@ -18,7 +18,7 @@
 package org.gerryai.htn.simple.domain.impl;
 
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.gerryai.htn.domain.Domain;
@@ -43,6 +43,11 @@ public class SimpleDomain implements Domain {
 	 */
 	private Set<Method> methods;
 	
+	/**
+	 * Index over the operators and methods, built once along with the domain.
+	 */
+	private SimpleDomainIndex index;
+	
 	/**
 	 * Constructor for a simple domain.
 	 * @param builder the builder to build this domain from
@@ -50,6 +55,7 @@ public class SimpleDomain implements Domain {
 	protected SimpleDomain(ImmutableDomainBuilder builder) {
 		operators = builder.getOperators();
 		methods = builder.getMethods();
+		index = new SimpleDomainIndex(operators, methods);
 	}
 	
 	/**
@@ -66,6 +72,14 @@ public class SimpleDomain implements Domain {
 		return Collections.unmodifiableSet(methods);
 	}
 
+	/**
+	 * Get the index over this domain's operators and methods.
+	 * @return the index
+	 */
+	public final SimpleDomainIndex getIndex() {
+		return index;
+	}
+
 	/**
 	 * Builder class for SimpleDomains.
 	 * @author David Edwards <david@more.fool.me.uk>
@@ -86,8 +100,8 @@ public class SimpleDomain implements Domain {
 	     * Default constructor.
 	     */
 	    public Builder() {
-	        operators = new HashSet<Operator>();
-	        methods = new HashSet<Method>();
+	        operators = new LinkedHashSet<Operator>();
+	        methods = new LinkedHashSet<Method>();
 	    }
 
 	    /**
@@ -18,7 +18,6 @@
 package org.gerryai.htn.simple.domain.impl;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -45,12 +44,23 @@ public class SimpleDomainHelper implements ImmutableDomainHelper {
 	 */
 	private Domain domain;
 	
+	/**
+	 * Index over the domain's operators and methods.
+	 */
+	private SimpleDomainIndex index;
+	
 	/**
 	 * Constructor taking a domain to work on.
+	 * Uses the domain's own index if it has one, otherwise indexes it now.
 	 * @param domain the domain to work on
 	 */
 	public SimpleDomainHelper(Domain domain) {
 		this.domain = domain;
+		if (domain instanceof SimpleDomain) {
+			index = ((SimpleDomain) domain).getIndex();
+		} else {
+			index = new SimpleDomainIndex(domain.getOperators(), domain.getMethods());
+		}
 	}
 	
 	/**
@@ -65,26 +75,18 @@ public class SimpleDomainHelper implements ImmutableDomainHelper {
 	 */
 	public final Operator getOperatorByName(String name) throws OperatorNotFound {
 		// TODO Ensure that two operators cannot have the same name and arguments match
-		for (Operator operator : domain.getOperators()) {
-			if (operator.getName().equals(name)) {
-				return operator;
-			}
+		Operator operator = index.getOperator(name);
+		if (operator == null) {
+			throw new OperatorNotFound();
 		}
-		throw new OperatorNotFound();
+		return operator;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public final Set<Method> getMethodsByTask(Task task) {
-		// TODO Check task arguments match
-		Set<Method> methods = new HashSet<Method>();
-		for (Method method : domain.getMethods()) {
-			if (method.getTask().getName().equals(task.getName())) {
-				methods.add(method);
-			}
-		}
-		return methods;
+		return index.getMethods(task);
 	}
 
     /**
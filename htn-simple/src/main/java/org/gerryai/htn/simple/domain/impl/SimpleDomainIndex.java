@@ -0,0 +1,142 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.domain.impl;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.domain.Operator;
+import org.gerryai.htn.tasknetwork.Task;
+
+import com.google.common.base.Objects;
+
+/**
+ * Immutable index over the operators and methods of a domain.
+ * Methods are keyed on the name and arity of the task they decompose and are returned as
+ * shared, unmodifiable sets that keep the order the methods were added to the domain in.
+ * Operators are keyed on their name.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class SimpleDomainIndex {
+
+    /**
+     * Operators keyed by name.
+     */
+    private Map<String, Operator> operators;
+
+    /**
+     * Methods keyed by the name and arity of the task they decompose.
+     */
+    private Map<TaskKey, Set<Method>> methods;
+
+    /**
+     * Constructor that indexes the given operators and methods.
+     * Where more than one operator has the same name, the first one is kept.
+     * @param operators the operators to index
+     * @param methods the methods to index
+     */
+    public SimpleDomainIndex(Set<Operator> operators, Set<Method> methods) {
+        this.operators = new HashMap<String, Operator>();
+        for (Operator operator : operators) {
+            if (!this.operators.containsKey(operator.getName())) {
+                this.operators.put(operator.getName(), operator);
+            }
+        }
+
+        Map<TaskKey, Set<Method>> grouped = new HashMap<TaskKey, Set<Method>>();
+        for (Method method : methods) {
+            TaskKey key = new TaskKey(method.getTask());
+            Set<Method> group = grouped.get(key);
+            if (group == null) {
+                group = new LinkedHashSet<Method>();
+                grouped.put(key, group);
+            }
+            group.add(method);
+        }
+        this.methods = new HashMap<TaskKey, Set<Method>>();
+        for (Map.Entry<TaskKey, Set<Method>> entry : grouped.entrySet()) {
+            this.methods.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+        }
+    }
+
+    /**
+     * Get the operator with the given name.
+     * @param name the name of the operator
+     * @return the operator, or null if there is none
+     */
+    public Operator getOperator(String name) {
+        return operators.get(name);
+    }
+
+    /**
+     * Get the methods that decompose tasks with the same name and arity as the given task.
+     * @param task the task to be decomposed
+     * @return an unmodifiable, possibly empty, set of methods
+     */
+    public Set<Method> getMethods(Task task) {
+        Set<Method> found = methods.get(new TaskKey(task));
+        if (found == null) {
+            return Collections.emptySet();
+        }
+        return found;
+    }
+
+    /**
+     * Key on the name and arity of a task.
+     */
+    private static final class TaskKey {
+
+        /**
+         * Name of the task.
+         */
+        private final String name;
+
+        /**
+         * Number of arguments the task takes.
+         */
+        private final int arity;
+
+        /**
+         * Constructor.
+         * @param task the task to key on
+         */
+        private TaskKey(Task task) {
+            this.name = task.getName();
+            this.arity = task.getArguments().size();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name, arity);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof TaskKey) {
+                final TaskKey other = (TaskKey) obj;
+                return arity == other.arity && Objects.equal(name, other.name);
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.logic.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.gerryai.htn.simple.logic.LogicFactory;
+import org.gerryai.logic.Constant;
+import org.gerryai.logic.Function;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+import org.gerryai.logic.builder.SentenceBuilder;
+
+/**
+ * Logic factory that interns every symbol it is given.
+ * Constants and variables are created once per name and then shared, so equal terms are
+ * usually the same object and compare by reference. Predicate and function names are
+ * replaced by their canonical instances, and every symbol is given a dense ID by the
+ * factory's symbol table.
+ * <p>
+ * Terms created here are equal to, and hash the same as, those created by
+ * {@link SimpleLogicFactory}, so the two can be mixed.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class InterningLogicFactory implements LogicFactory {
+
+    /**
+     * Table of all symbols seen by this factory.
+     */
+    private SymbolTable symbolTable;
+
+    /**
+     * Shared constants, keyed by name.
+     */
+    private ConcurrentMap<String, Constant> constants;
+
+    /**
+     * Shared variables, keyed by name.
+     */
+    private ConcurrentMap<String, Variable> variables;
+
+    /**
+     * Constructor using a new, empty, symbol table.
+     */
+    public InterningLogicFactory() {
+        this(new SymbolTable());
+    }
+
+    /**
+     * Constructor using the given symbol table.
+     * @param symbolTable the table to intern symbols with
+     */
+    public InterningLogicFactory(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        constants = new ConcurrentHashMap<String, Constant>();
+        variables = new ConcurrentHashMap<String, Variable>();
+    }
+
+    /**
+     * Get the table of symbols interned by this factory.
+     * @return the symbol table
+     */
+    public final SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Function createFunction(String name, Term term) {
+        List<Term> terms = new ArrayList<Term>(1);
+        terms.add(term);
+        return createFunction(name, terms);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Function createFunction(String name, List<Term> terms) {
+        return new SimpleFunction.Builder(symbolTable.intern(name))
+                .addTerm(terms)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Variable createVariable(String name) {
+        Variable variable = variables.get(name);
+        if (variable == null) {
+            String symbol = symbolTable.intern(name);
+            variable = new SimpleVariable(symbol, symbolTable.getId(symbol));
+            Variable existing = variables.putIfAbsent(symbol, variable);
+            if (existing != null) {
+                variable = existing;
+            }
+        }
+        return variable;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Constant createConstant(String name) {
+        Constant constant = constants.get(name);
+        if (constant == null) {
+            String symbol = symbolTable.intern(name);
+            constant = new SimpleConstant(symbol, symbolTable.getId(symbol));
+            Constant existing = constants.putIfAbsent(symbol, constant);
+            if (existing != null) {
+                constant = existing;
+            }
+        }
+        return constant;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Predicate createPredicate(String name, Term term) {
+        List<Term> terms = new ArrayList<Term>(1);
+        terms.add(term);
+        return createPredicate(name, terms);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Predicate createPredicate(String name, List<Term> terms) {
+        return new SimplePredicate.Builder(symbolTable.intern(name))
+                .addTerms(terms)
+                .build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final List<Term> apply(List<Term> oldTerms,
+            Map<Term, Term> substitution) {
+        List<Term> updatedTerms = new ArrayList<Term>(oldTerms.size());
+        for (Term oldTerm : oldTerms) {
+            Term newTerm = substitution.get(oldTerm);
+            if (newTerm == null) {
+                updatedTerms.add(oldTerm);
+            } else {
+                updatedTerms.add(newTerm);
+            }
+        }
+        return updatedTerms;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final SentenceBuilder sentenceBuilder() {
+        return new SimpleSentenceBuilder(symbolTable);
+    }
+}
@@ -31,12 +31,46 @@ import com.google.common.base.Objects;
 public final class SimpleConstant extends aima.core.logic.fol.parsing.ast.Constant
 		implements Constant {
 
+	/**
+	 * ID given to constants that have not been interned.
+	 */
+	public static final int NO_ID = -1;
+
+	/**
+	 * Symbol ID of this constant, or NO_ID if it has not been interned.
+	 */
+	private final int id;
+
+	/**
+	 * Cached hash code.
+	 */
+	private final int hash;
+
 	/**
 	 * Constructor.
 	 * @param s name of the constant
 	 */
 	public SimpleConstant(String s) {
+		this(s, NO_ID);
+	}
+
+	/**
+	 * Constructor for an interned constant.
+	 * @param s name of the constant
+	 * @param id symbol ID of the constant
+	 */
+	public SimpleConstant(String s, int id) {
 		super(s);
+		this.id = id;
+		this.hash = Objects.hashCode(s);
+	}
+
+	/**
+	 * Get the symbol ID of this constant.
+	 * @return the ID, or NO_ID if the constant has not been interned
+	 */
+	public int getId() {
+		return id;
 	}
 
 	/**
@@ -67,12 +101,14 @@ public final class SimpleConstant extends aima.core.logic.fol.parsing.ast.Consta
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.getName());
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof Constant) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof Constant) {
             final Constant other = (Constant) obj;
             return Objects.equal(this.getName(), other.getName());
         } else {
@@ -25,6 +25,8 @@ import java.util.Map;
 import org.gerryai.logic.Function;
 import org.gerryai.logic.Term;
 
+import com.google.common.base.Objects;
+
 /**
  * Implementation of a function that uses a map to describe its return values.
  * @author David Edwards <david@more.fool.me.uk>
@@ -41,6 +43,11 @@ public final class SimpleFunction implements Function {
      */
     private List<Term> terms;
 
+    /**
+     * Cached hash code, or zero if not yet calculated.
+     */
+    private int hash;
+
     /**
      * {@inheritDoc}
      */
@@ -154,4 +161,29 @@ public final class SimpleFunction implements Function {
             return new SimpleFunction(this);
         }
     }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hashCode(name, terms);
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof SimpleFunction && hashCode() != obj.hashCode()) {
+            return false;
+        } else if (obj instanceof Function) {
+            final Function other = (Function) obj;
+            return Objects.equal(name, other.getName())
+                && Objects.equal(terms, other.getTerms());
+        } else {
+            return false;
+        }
+    }
 }
@@ -44,6 +44,11 @@ public final class SimplePredicate implements Predicate {
 	 */
 	private List<Term> terms;
 	
+	/**
+	 * Cached hash code, or zero if not yet calculated.
+	 */
+	private int hash;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -162,12 +167,21 @@ public final class SimplePredicate implements Predicate {
     
     @Override
     public int hashCode() {
-        return Objects.hashCode(name, terms);
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hashCode(name, terms);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof Predicate) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof SimplePredicate && hashCode() != obj.hashCode()) {
+            return false;
+        } else if (obj instanceof Predicate) {
             final Predicate other = (Predicate) obj;
             return Objects.equal(name, other.getName())
                 && Objects.equal(terms, other.getTerms());
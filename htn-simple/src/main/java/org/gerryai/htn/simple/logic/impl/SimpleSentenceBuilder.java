@@ -28,6 +28,26 @@ import org.gerryai.logic.builder.SentenceBuilder;
  */
 public final class SimpleSentenceBuilder implements SentenceBuilder {
 
+    /**
+     * Table to intern predicate names with, or null if names are not interned.
+     */
+    private SymbolTable symbolTable;
+
+    /**
+     * Constructor for a builder that does not intern names.
+     */
+    public SimpleSentenceBuilder() {
+        this(null);
+    }
+
+    /**
+     * Constructor for a builder that interns predicate names.
+     * @param symbolTable the table to intern names with, or null to leave them as they are
+     */
+    public SimpleSentenceBuilder(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -40,7 +60,9 @@ public final class SimpleSentenceBuilder implements SentenceBuilder {
      * {@inheritDoc}
      */
     public PredicateBuilder predicate(String name) {
-        // TODO Auto-generated method stub
+        if (symbolTable != null) {
+            return new SimplePredicate.Builder(symbolTable.intern(name));
+        }
         return new SimplePredicate.Builder(name);
     }
 
@@ -31,11 +31,88 @@ import com.google.common.base.Objects;
 public final class SimpleVariable extends aima.core.logic.fol.parsing.ast.Variable
 		implements Variable {
 
+	/**
+	 * ID given to variables that have not been interned.
+	 */
+	public static final int NO_ID = -1;
+
+	/**
+	 * Instance number of a variable as it was written, before any renaming.
+	 */
+	public static final long ORIGINAL = 0L;
+
+	/**
+	 * Symbol ID of this variable, or NO_ID if it has not been interned.
+	 */
+	private final int id;
+
+	/**
+	 * Instance number distinguishing renamed copies of the same variable, or ORIGINAL.
+	 */
+	private final long instance;
+
+	/**
+	 * Cached hash code.
+	 */
+	private final int hash;
+
 	/**
 	 * @param name name of the variable
 	 */
 	public SimpleVariable(String name) {
+		this(name, NO_ID);
+	}
+
+	/**
+	 * Constructor for an interned variable.
+	 * @param name name of the variable
+	 * @param id symbol ID of the variable
+	 */
+	public SimpleVariable(String name, int id) {
+		this(name, id, ORIGINAL);
+	}
+
+	/**
+	 * Constructor for a renamed instance of a variable.
+	 * Instances share the name and symbol ID of the original, but are distinct from it and from each other.
+	 * @param name name of the variable
+	 * @param id symbol ID of the variable
+	 * @param instance instance number of the variable
+	 */
+	public SimpleVariable(String name, int id, long instance) {
 		super(name);
+		this.id = id;
+		this.instance = instance;
+		if (instance == ORIGINAL) {
+			this.hash = Objects.hashCode(name);
+		} else {
+			this.hash = Objects.hashCode(name, instance);
+		}
+	}
+
+	/**
+	 * Get the symbol ID of this variable.
+	 * @return the ID, or NO_ID if the variable has not been interned
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Get the instance number of this variable.
+	 * @return the instance number, or ORIGINAL if the variable has not been renamed
+	 */
+	public long getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Create a renamed instance of this variable.
+	 * @param newInstance the instance number to give it
+	 * @return the renamed variable
+	 */
+	public SimpleVariable rename(long newInstance) {
+		return new SimpleVariable(getName(), id, newInstance);
 	}
 
 	/**
@@ -73,12 +150,24 @@ public final class SimpleVariable extends aima.core.logic.fol.parsing.ast.Variab
          * Name of the term to be built.
          */
         private String name;
+
+        /**
+         * Symbol ID of the term to be built.
+         */
+        private int id = NO_ID;
+
+        /**
+         * Instance number of the term to be built.
+         */
+        private long instance = ORIGINAL;
         
         /**
          * {@inheritDoc}
          */
         public Builder copy(SimpleVariable term) {
             this.name = term.getName();
+            this.id = term.id;
+            this.instance = term.instance;
             return this;
         }
         
@@ -98,22 +187,37 @@ public final class SimpleVariable extends aima.core.logic.fol.parsing.ast.Variab
          * {@inheritDoc}
          */
         public SimpleVariable build() {
-            return new SimpleVariable(this.name);
+            return new SimpleVariable(this.name, this.id, this.instance);
         }
     }
     
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.getName());
+        return hash;
     }
 
     @Override
     public boolean equals(Object obj) {
-        if (obj instanceof Variable) {
-            final Variable other = (Variable) obj;
-            return Objects.equal(this.getName(), other.getName());
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof SimpleVariable) {
+            final SimpleVariable other = (SimpleVariable) obj;
+            return instance == other.instance
+                    && Objects.equal(this.getName(), other.getName());
         } else {
             return false;
         }
     }
+
+    @Override
+    public String toString() {
+        if (instance == ORIGINAL) {
+            return getName();
+        } else {
+            return new StringBuilder(getName())
+                    .append('#')
+                    .append(instance)
+                    .toString();
+        }
+    }
 }
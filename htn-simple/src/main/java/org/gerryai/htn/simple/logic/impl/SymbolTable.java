@@ -0,0 +1,136 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.logic.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe table that interns symbol names, giving each distinct name a dense integer ID
+ * and a single canonical string instance.
+ * IDs start at zero and are never reused, so they can be used to index arrays and bitsets.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class SymbolTable {
+
+    /**
+     * Interned symbols keyed by name.
+     */
+    private final ConcurrentMap<String, Symbol> symbols;
+
+    /**
+     * Canonical symbol names, indexed by ID.
+     */
+    private final List<String> names;
+
+    /**
+     * Constructor for an empty table.
+     */
+    public SymbolTable() {
+        symbols = new ConcurrentHashMap<String, Symbol>();
+        names = new ArrayList<String>();
+    }
+
+    /**
+     * Get the ID for a symbol name, assigning the next free ID if it has not been seen before.
+     * @param name the symbol name
+     * @return the ID
+     */
+    public int getId(String name) {
+        return lookup(name).id;
+    }
+
+    /**
+     * Get the canonical instance of a symbol name, interning it if necessary.
+     * @param name the symbol name
+     * @return the canonical string equal to the given name
+     */
+    public String intern(String name) {
+        return lookup(name).name;
+    }
+
+    /**
+     * Get the symbol name for an ID.
+     * @param id the ID
+     * @return the canonical symbol name
+     */
+    public String getName(int id) {
+        synchronized (names) {
+            return names.get(id);
+        }
+    }
+
+    /**
+     * Get the number of symbols interned so far.
+     * @return the number of symbols
+     */
+    public int size() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+
+    /**
+     * Find the interned symbol for a name, interning it if necessary.
+     * @param name the symbol name
+     * @return the symbol
+     */
+    private Symbol lookup(String name) {
+        Symbol symbol = symbols.get(name);
+        if (symbol != null) {
+            return symbol;
+        }
+        synchronized (names) {
+            symbol = symbols.get(name);
+            if (symbol == null) {
+                symbol = new Symbol(names.size(), name);
+                names.add(name);
+                symbols.put(name, symbol);
+            }
+            return symbol;
+        }
+    }
+
+    /**
+     * An interned symbol.
+     */
+    private static final class Symbol {
+
+        /**
+         * The dense ID of the symbol.
+         */
+        private final int id;
+
+        /**
+         * The canonical name of the symbol.
+         */
+        private final String name;
+
+        /**
+         * Constructor.
+         * @param id the ID
+         * @param name the canonical name
+         */
+        private Symbol(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.plan.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.domain.Operator;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.simple.problem.impl.FactIndex;
+import org.gerryai.logic.Constant;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Variable;
+
+/**
+ * Action for a ground instance of an operator, compiled once before planning starts.
+ * The operator's preconditions and effects are held already ground, and where every one of them is a
+ * predicate in the fact index they are also held as fact numbers, so that applying the action to a
+ * bitset state needs no substitution at all.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class GroundAction implements Action {
+
+    /**
+     * Empty list of fact numbers.
+     */
+    private static final int[] NONE = new int[0];
+
+    /**
+     * The operator this is an instance of.
+     */
+    private final Operator operator;
+
+    /**
+     * The bindings of the operator's arguments.
+     */
+    private final Map<Variable, Constant> bindings;
+
+    /**
+     * The ground preconditions.
+     */
+    private final List<Condition> conditions;
+
+    /**
+     * The ground effects.
+     */
+    private final List<Effect> effects;
+
+    /**
+     * The fact index the fact numbers refer to, or null if the action is not indexed.
+     */
+    private final FactIndex index;
+
+    /**
+     * Numbers of the predicates that must be true for the action to apply.
+     */
+    private final int[] positivePreconditions;
+
+    /**
+     * Numbers of the predicates that must be false for the action to apply.
+     */
+    private final int[] negativePreconditions;
+
+    /**
+     * Numbers of the predicates the action makes false.
+     */
+    private final int[] deletes;
+
+    /**
+     * Numbers of the predicates the action makes true.
+     */
+    private final int[] adds;
+
+    /**
+     * Private constructor taking a builder to build from.
+     * @param builder the builder to build from
+     */
+    private GroundAction(Builder builder) {
+        operator = builder.operator;
+        bindings = Collections.unmodifiableMap(new HashMap<Variable, Constant>(builder.bindings));
+        conditions = Collections.unmodifiableList(new ArrayList<Condition>(builder.conditions));
+        effects = Collections.unmodifiableList(new ArrayList<Effect>(builder.effects));
+
+        List<Integer> positive = new ArrayList<Integer>();
+        List<Integer> negative = new ArrayList<Integer>();
+        boolean indexed = builder.index != null;
+        for (Condition condition : conditions) {
+            indexed = indexed && addId(builder.index, condition.getSentence(), positive, negative);
+        }
+        List<Integer> added = new ArrayList<Integer>();
+        List<Integer> deleted = new ArrayList<Integer>();
+        for (Effect effect : effects) {
+            indexed = indexed && addId(builder.index, effect.getSentence(), added, deleted);
+        }
+        if (indexed) {
+            index = builder.index;
+            positivePreconditions = toArray(positive);
+            negativePreconditions = toArray(negative);
+            adds = toArray(added);
+            deletes = toArray(deleted);
+        } else {
+            index = null;
+            positivePreconditions = NONE;
+            negativePreconditions = NONE;
+            adds = NONE;
+            deletes = NONE;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<Variable, Constant> getBindings() {
+        return bindings;
+    }
+
+    /**
+     * Get the operator's preconditions, ground with this action's bindings.
+     * @return the ground preconditions
+     */
+    public List<Condition> getConditions() {
+        return conditions;
+    }
+
+    /**
+     * Get the operator's effects, ground with this action's bindings.
+     * @return the ground effects
+     */
+    public List<Effect> getEffects() {
+        return effects;
+    }
+
+    /**
+     * Check whether every precondition and effect is held as a fact number.
+     * @return true if the fact numbers describe the action completely
+     */
+    public boolean isIndexed() {
+        return index != null;
+    }
+
+    /**
+     * Get the fact index the fact numbers refer to.
+     * @return the fact index, or null if the action is not indexed
+     */
+    public FactIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get the numbers of the predicates that must be true for the action to apply.
+     * The array is shared and must not be changed.
+     * @return the fact numbers
+     */
+    public int[] getPositivePreconditions() {
+        return positivePreconditions;
+    }
+
+    /**
+     * Get the numbers of the predicates that must be false for the action to apply.
+     * The array is shared and must not be changed.
+     * @return the fact numbers
+     */
+    public int[] getNegativePreconditions() {
+        return negativePreconditions;
+    }
+
+    /**
+     * Get the numbers of the predicates the action makes false.
+     * The array is shared and must not be changed.
+     * @return the fact numbers
+     */
+    public int[] getDeletes() {
+        return deletes;
+    }
+
+    /**
+     * Get the numbers of the predicates the action makes true.
+     * The array is shared and must not be changed.
+     * @return the fact numbers
+     */
+    public int[] getAdds() {
+        return adds;
+    }
+
+    /**
+     * Add the number of a ground sentence to the positive or negative list, depending on whether it is negated.
+     * @param index the fact index
+     * @param sentence the sentence
+     * @param positive the numbers of positive sentences
+     * @param negative the numbers of negated sentences
+     * @return false if the sentence is not a predicate, or negated predicate, in the index
+     */
+    private static boolean addId(FactIndex index, Sentence sentence,
+            List<Integer> positive, List<Integer> negative) {
+        List<Integer> ids = positive;
+        Sentence atom = sentence;
+        if (atom instanceof NegatedSentence) {
+            ids = negative;
+            atom = ((NegatedSentence) atom).getSentence();
+        }
+        if (!(atom instanceof Predicate)) {
+            return false;
+        }
+        int id = index.getId((Predicate) atom);
+        if (id == FactIndex.NOT_FOUND) {
+            return false;
+        }
+        ids.add(id);
+        return true;
+    }
+
+    /**
+     * Convert a list of fact numbers to an array.
+     * @param ids the list
+     * @return the array
+     */
+    private static int[] toArray(List<Integer> ids) {
+        int[] array = new int[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return operator.getName() + bindings;
+    }
+
+    /**
+     * Builder class for GroundAction objects.
+     * @author David Edwards <david@more.fool.me.uk>
+     */
+    public static class Builder {
+
+        /**
+         * The operator.
+         */
+        private Operator operator;
+
+        /**
+         * The bindings of the operator's arguments.
+         */
+        private Map<Variable, Constant> bindings;
+
+        /**
+         * The ground preconditions.
+         */
+        private List<Condition> conditions;
+
+        /**
+         * The ground effects.
+         */
+        private List<Effect> effects;
+
+        /**
+         * The fact index to number predicates with.
+         */
+        private FactIndex index;
+
+        /**
+         * Constructor.
+         */
+        public Builder() {
+            bindings = Collections.emptyMap();
+            conditions = Collections.emptyList();
+            effects = Collections.emptyList();
+        }
+
+        /**
+         * Set the operator.
+         * @param operator the operator
+         * @return the updated builder
+         */
+        public final Builder setOperator(Operator operator) {
+            this.operator = operator;
+            return this;
+        }
+
+        /**
+         * Set the bindings of the operator's arguments.
+         * @param bindings the bindings
+         * @return the updated builder
+         */
+        public final Builder setBindings(Map<Variable, Constant> bindings) {
+            this.bindings = bindings;
+            return this;
+        }
+
+        /**
+         * Set the ground preconditions.
+         * @param conditions the ground preconditions
+         * @return the updated builder
+         */
+        public final Builder setConditions(List<Condition> conditions) {
+            this.conditions = conditions;
+            return this;
+        }
+
+        /**
+         * Set the ground effects.
+         * @param effects the ground effects
+         * @return the updated builder
+         */
+        public final Builder setEffects(List<Effect> effects) {
+            this.effects = effects;
+            return this;
+        }
+
+        /**
+         * Set the fact index to number predicates with.
+         * @param index the fact index
+         * @return the updated builder
+         */
+        public final Builder setIndex(FactIndex index) {
+            this.index = index;
+            return this;
+        }
+
+        /**
+         * Build the finished action.
+         * @return the action
+         */
+        public final GroundAction build() {
+            return new GroundAction(this);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.plan.impl;
+
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.plan.TaskNotActionable;
+import org.gerryai.htn.simple.domain.impl.GroundDomain;
+import org.gerryai.htn.simple.plan.ActionFactory;
+import org.gerryai.htn.tasknetwork.Task;
+
+/**
+ * Action factory that looks tasks up among the precompiled actions of a ground domain.
+ * Tasks with no ground action are passed to another factory, which builds their actions as before.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class GroundActionFactory implements ActionFactory {
+
+    /**
+     * The ground domain to look actions up in.
+     */
+    private GroundDomain groundDomain;
+
+    /**
+     * Factory for tasks with no ground action.
+     */
+    private ActionFactory fallback;
+
+    /**
+     * Constructor.
+     * @param groundDomain the ground domain to look actions up in
+     * @param fallback the factory for tasks with no ground action
+     */
+    public GroundActionFactory(GroundDomain groundDomain, ActionFactory fallback) {
+        this.groundDomain = groundDomain;
+        this.fallback = fallback;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Action create(Task task) throws TaskNotActionable {
+        Action action = groundDomain.getAction(task);
+        if (action == null) {
+            return fallback.create(task);
+        } else {
+            return action;
+        }
+    }
+}
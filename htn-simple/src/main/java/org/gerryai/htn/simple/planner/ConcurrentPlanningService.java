@@ -0,0 +1,61 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+
+/**
+ * Interface for a planning service that can solve problems in the background.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public interface ConcurrentPlanningService extends ImmutablePlanningService {
+
+    /**
+     * Start finding a plan that solves the given problem.
+     * If too many problems are already pending, the future fails at once with a
+     * RejectedExecutionException rather than waiting for room.
+     * @param problem the problem to be solved
+     * @return a future that completes with the plan, or fails with PlanNotFound if no plan exists
+     */
+    CompletableFuture<Plan> solveAsync(ImmutableProblem problem);
+
+    /**
+     * Start finding a plan that solves the given problem, giving up once the search budget is used up.
+     * The budget's deadline runs from when it was created, so time spent waiting to start counts against it.
+     * If too many problems are already pending, the future fails at once with a
+     * RejectedExecutionException rather than waiting for room.
+     * @param problem the problem to be solved
+     * @param budget the limits on the search
+     * @return a future that completes with the plan, or fails with PlanningTimeout or PlanNotFound
+     */
+    CompletableFuture<Plan> solveAsync(ImmutableProblem problem, SearchBudget budget);
+
+    /**
+     * Solve each of the given problems, waiting for room whenever too many are pending,
+     * and return once all of them are done.
+     * @param problems the problems to be solved
+     * @return completed futures holding the plan, or the reason no plan was found, for each problem in order
+     * @throws InterruptedException if interrupted while waiting; problems already started carry on
+     */
+    List<CompletableFuture<Plan>> solveAll(Collection<ImmutableProblem> problems) throws InterruptedException;
+}
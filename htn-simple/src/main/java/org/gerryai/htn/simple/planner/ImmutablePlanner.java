@@ -17,8 +17,11 @@
  */
 package org.gerryai.htn.simple.planner;
 
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
 import org.gerryai.htn.planner.Planner;
 import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
 
 /**
  * Interface for a planner that works with immutable objects.
@@ -26,4 +29,15 @@ import org.gerryai.htn.simple.problem.ImmutableState;
  */
 public interface ImmutablePlanner extends Planner<ImmutableState> {
 
+    /**
+     * Find a plan for the given task network, giving up once the search budget is used up.
+     * @param state the initial state
+     * @param taskNetwork the task network to find a plan for
+     * @param budget the limits on the search
+     * @return the plan
+     * @throws PlanningTimeout if the budget was used up before a plan was found
+     * @throws PlanNotFound if no plan exists
+     */
+    Plan findPlan(ImmutableState state, TaskNetwork taskNetwork, SearchBudget budget)
+            throws PlanNotFound;
 }
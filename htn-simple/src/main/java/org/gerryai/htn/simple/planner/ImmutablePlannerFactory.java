@@ -17,6 +17,7 @@
  */
 package org.gerryai.htn.simple.planner;
 
+import org.gerryai.htn.simple.problem.ImmutableProblem;
 import org.gerryai.htn.simple.problem.ImmutableState;
 
 /**
@@ -27,4 +28,12 @@ public interface ImmutablePlannerFactory extends PlannerFactory<
         ImmutableState,
         ImmutablePlanner> {
 
+    /**
+     * Create a planner for the domain of a problem, with the domain's operators compiled in advance into
+     * ground actions over the problem's constants.
+     * The planner is only suited to solving problems over the same constants.
+     * @param problem the problem whose domain and constants to use
+     * @return the planner
+     */
+    ImmutablePlanner createGrounded(ImmutableProblem problem);
 }
@@ -17,6 +17,8 @@
  */
 package org.gerryai.htn.simple.planner;
 
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
 import org.gerryai.htn.planner.PlanningService;
 import org.gerryai.htn.simple.problem.ImmutableProblem;
 import org.gerryai.htn.simple.problem.ImmutableState;
@@ -29,4 +31,14 @@ public interface ImmutablePlanningService extends PlanningService<
         ImmutableState,
         ImmutableProblem> {
 
+    /**
+     * Find a plan that solves the given problem, giving up once the search budget is used up.
+     * @param problem the problem to be solved
+     * @param budget the limits on the search
+     * @return a solution
+     * @throws PlanningTimeout if the budget was used up before a plan was found
+     * @throws PlanNotFound if no plan exists for the given problem
+     */
+    Plan solve(ImmutableProblem problem, SearchBudget budget) throws PlanNotFound;
+
 }
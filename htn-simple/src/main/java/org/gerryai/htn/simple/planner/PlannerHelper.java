@@ -17,7 +17,10 @@
  */
 package org.gerryai.htn.simple.planner;
 
+import java.util.List;
+
 import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Action;
 import org.gerryai.htn.plan.Plan;
 import org.gerryai.htn.planner.PlanNotFound;
 import org.gerryai.htn.problem.State;
@@ -50,6 +53,30 @@ public interface PlannerHelper<S extends State> {
 	 */
 	Plan findPlanForPrimitive(S state, TaskNetwork taskNetwork) throws PlanNotFound;
 	
+	/**
+	 * Try to convert a single primitive task into a grounded operator represented as an action.
+	 * @param task the primitive task to convert
+	 * @return the action
+	 * @throws PlanNotFound if the task cannot be turned into an action
+	 */
+	Action createAction(Task task) throws PlanNotFound;
+	
+	/**
+	 * Apply an action to a state, checking first that the action's preconditions hold in it.
+	 * @param state the state to apply the action to
+	 * @param action the action to apply
+	 * @return the state after the action's effects have been applied
+	 * @throws PlanNotFound if the action's preconditions do not hold in the state
+	 */
+	S apply(S state, Action action) throws PlanNotFound;
+	
+	/**
+	 * Build a plan from actions that have already been checked against the state.
+	 * @param actions the actions, in the order they are to be carried out
+	 * @return the plan
+	 */
+	Plan createPlan(List<Action> actions);
+	
 	/**
 	 * Try to get a non-primitive task from a given network.
 	 * @param taskNetwork the task network
@@ -58,6 +85,15 @@ public interface PlannerHelper<S extends State> {
 	 */
 	Task getNonPrimitiveTask(TaskNetwork taskNetwork) throws NonPrimitiveTaskNotFound;
 	
+	/**
+	 * Put some of the tasks in a network in the order they should be tried, using the same strategy
+	 * as getNonPrimitiveTask, so that searches choosing between them are repeatable.
+	 * @param taskNetwork the task network
+	 * @param tasks the tasks to order, all from the network
+	 * @return the same tasks, most preferred first
+	 */
+	List<Task> orderTasks(TaskNetwork taskNetwork, List<Task> tasks);
+	
 	/**
 	 * Try to decompose the given task within a task network using the given method.
 	 * @param taskNetwork the task network
@@ -69,4 +105,13 @@ public interface PlannerHelper<S extends State> {
 	 */
 	TaskNetwork decompose(TaskNetwork taskNetwork, Task task, Method method)
 			throws DecompositionNotFound, InvalidConstraint;
+	
+	/**
+	 * Prepare a problem's task network to be searched, standardising its variables apart from those of
+	 * the domain's methods where decomposition needs it.
+	 * @param taskNetwork the task network of the problem
+	 * @return the prepared task network
+	 * @throws PlanNotFound if the prepared task network is invalid
+	 */
+	TaskNetwork standardise(TaskNetwork taskNetwork) throws PlanNotFound;
 }
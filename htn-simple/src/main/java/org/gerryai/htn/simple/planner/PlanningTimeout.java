@@ -0,0 +1,83 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner;
+
+import org.gerryai.htn.planner.PlanNotFound;
+
+/**
+ * Thrown when a planner gives up because its search budget was used up before a plan was found.
+ * Unlike other reasons for not finding a plan, this does not mean that no plan exists.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class PlanningTimeout extends PlanNotFound {
+
+	/**
+	 * Whether the deadline was reached, rather than the limit on expansions.
+	 */
+	private final boolean deadlineReached;
+
+	/**
+	 * Number of nodes expanded before the search gave up.
+	 */
+	private final long expansions;
+
+	/**
+	 * Constructor.
+	 * @param budget the budget that was used up
+	 */
+	public PlanningTimeout(SearchBudget budget) {
+		super(describe(budget));
+		this.deadlineReached = budget.isDeadlineReached();
+		this.expansions = budget.getExpansions();
+	}
+
+	/**
+	 * Check whether the search gave up because the deadline was reached.
+	 * @return true if the deadline was reached, false if the limit on expansions was
+	 */
+	public final boolean isDeadlineReached() {
+		return deadlineReached;
+	}
+
+	/**
+	 * Get the number of nodes expanded before the search gave up.
+	 * @return the number of expansions
+	 */
+	public final long getExpansions() {
+		return expansions;
+	}
+
+	/**
+	 * Describe why a budget was used up.
+	 * @param budget the budget
+	 * @return the message
+	 */
+	private static String describe(SearchBudget budget) {
+		if (budget.isDeadlineReached()) {
+			return "Deadline reached after " + budget.getExpansions() + " expansions";
+		} else {
+			return "No plan found within " + budget.getExpansions() + " expansions";
+		}
+	}
+
+	/**
+	 * Generated serialVersionUID.
+	 */
+	private static final long serialVersionUID = 6053290341735871942L;
+
+}
@@ -0,0 +1,154 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on how long a planner may search and how many expansions it may make.
+ * Planners check the budget cooperatively and give up with a PlanningTimeout once it is
+ * used up, so a search can be bounded without interrupting or killing the thread it runs on.
+ * <p>
+ * An expansion is one method application: every planner charges the budget once each time
+ * it is about to decompose a task with a method, whether or not the decomposition succeeds,
+ * and nowhere else. Backtracking, applying primitive tasks and settling nodes are free, so the
+ * same limit bounds the same amount of decomposition work whichever planner is used.
+ * </p>
+ * <p>
+ * The deadline is fixed when the budget is created. A budget is used up for good once
+ * either limit is reached, and may be shared by the threads of a single parallel search,
+ * but should not be reused for another search.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class SearchBudget {
+
+    /**
+     * Value for a limit that is never reached.
+     */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * Value of System.nanoTime after which the search must stop.
+     */
+    private final long deadline;
+
+    /**
+     * Whether the budget has a deadline.
+     */
+    private final boolean timed;
+
+    /**
+     * Number of method applications that may be made.
+     */
+    private final long maxExpansions;
+
+    /**
+     * Number of method applications made so far.
+     */
+    private final AtomicLong expansions;
+
+    /**
+     * Set once either limit has been reached.
+     */
+    private volatile boolean exhausted;
+
+    /**
+     * Set if the budget was used up by reaching the deadline.
+     */
+    private volatile boolean deadlineReached;
+
+    /**
+     * Constructor taking the time allowed from now and the number of method applications that may be made.
+     * @param timeout the time allowed, or UNBOUNDED for no deadline
+     * @param unit the unit the time allowed is given in
+     * @param maxExpansions the number of method applications that may be made, or UNBOUNDED for no limit
+     */
+    public SearchBudget(long timeout, TimeUnit unit, long maxExpansions) {
+        if (timeout < 0 || maxExpansions < 0) {
+            throw new IllegalArgumentException("Budget must not be negative");
+        }
+        this.timed = timeout != UNBOUNDED;
+        this.deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.maxExpansions = maxExpansions;
+        this.expansions = new AtomicLong();
+    }
+
+    /**
+     * Create a budget that is never used up.
+     * @return the budget
+     */
+    public static SearchBudget unlimited() {
+        return new SearchBudget(UNBOUNDED, TimeUnit.NANOSECONDS, UNBOUNDED);
+    }
+
+    /**
+     * Record that a method is about to be applied, if the budget allows it.
+     * @return true if the method may be applied, or false if the budget is used up
+     */
+    public boolean tryExpand() {
+        if (exhausted) {
+            return false;
+        }
+        if (expansions.incrementAndGet() > maxExpansions) {
+            exhausted = true;
+            return false;
+        }
+        if (timed && System.nanoTime() - deadline >= 0) {
+            deadlineReached = true;
+            exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record that a method is about to be applied, giving up if the budget is used up.
+     * @throws PlanningTimeout if the budget is used up
+     */
+    public void expand() throws PlanningTimeout {
+        if (!tryExpand()) {
+            throw new PlanningTimeout(this);
+        }
+    }
+
+    /**
+     * Check whether the budget has been used up.
+     * @return true if either limit has been reached
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Check whether the budget was used up by reaching the deadline.
+     * @return true if the deadline was reached
+     */
+    public boolean isDeadlineReached() {
+        return deadlineReached;
+    }
+
+    /**
+     * Get the number of method applications made so far.
+     * @return the number of expansions, not counting any refused once the budget was used up
+     */
+    public long getExpansions() {
+        return Math.min(expansions.get(), maxExpansions);
+    }
+}
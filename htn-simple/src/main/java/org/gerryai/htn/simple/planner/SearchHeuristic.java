@@ -0,0 +1,48 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner;
+
+import java.util.Set;
+
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Interface for estimating how far a node in a planner's search is from a plan.
+ * The cost of reaching a plan is counted in steps, where each decomposition and each
+ * action applied is one step; an estimate that never exceeds the true cost lets a
+ * best-first planner find plans with the fewest steps.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public interface SearchHeuristic {
+
+    /**
+     * Estimate returned for a node from which no plan can be reached.
+     */
+    int UNSOLVABLE = Integer.MAX_VALUE;
+
+    /**
+     * Estimate the number of steps still needed to reach a plan.
+     * @param state the state reached
+     * @param taskNetwork the task network reached
+     * @param applied the tasks in the network that have already been applied to the state
+     * @return the estimated number of steps, or UNSOLVABLE if no plan can be reached
+     */
+    int estimate(ImmutableState state, TaskNetwork taskNetwork, Set<Task> applied);
+}
@@ -0,0 +1,137 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import org.gerryai.htn.domain.Domain;
+import org.gerryai.htn.simple.decomposition.DecompositionService;
+import org.gerryai.htn.simple.decomposition.UnificationService;
+import org.gerryai.htn.simple.decomposition.impl.SimpleDecompositionService;
+import org.gerryai.htn.simple.decomposition.impl.SimpleStandardisationService;
+import org.gerryai.htn.simple.decomposition.impl.SimpleUnificationService;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.domain.impl.DomainGrounder;
+import org.gerryai.htn.simple.domain.impl.GroundDomain;
+import org.gerryai.htn.simple.domain.impl.SimpleDomainHelper;
+import org.gerryai.htn.simple.plan.ActionFactory;
+import org.gerryai.htn.simple.plan.ActionFactoryHelper;
+import org.gerryai.htn.simple.plan.impl.GroundActionFactory;
+import org.gerryai.htn.simple.plan.impl.SimpleActionFactory;
+import org.gerryai.htn.simple.plan.impl.SimpleActionFactoryHelper;
+import org.gerryai.htn.simple.plan.impl.SimplePlanBuilderFactory;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerFactory;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.select.TaskSelector;
+import org.gerryai.htn.simple.planner.select.impl.DeterministicTaskSelector;
+import org.gerryai.htn.simple.planner.sort.SortService;
+import org.gerryai.htn.simple.planner.sort.impl.SimpleSortService;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+import org.gerryai.htn.simple.problem.impl.SimpleStateService;
+
+/**
+ * Base class for planner factories that share the simple planner helper wiring.
+ * Subclasses only decide which search strategy the created planner uses.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public abstract class AbstractPlannerFactory implements ImmutablePlannerFactory {
+
+    /**
+     * The state service.
+     */
+    private ImmutableStateService stateService;
+
+    /**
+     * Constructor taking a state service to use.
+     * @param stateService the state service to use
+     */
+    public AbstractPlannerFactory(ImmutableStateService stateService) {
+        this.stateService = stateService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final ImmutablePlanner create(Domain domain) {
+        return create(domain, null, stateService);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final ImmutablePlanner createGrounded(ImmutableProblem problem) {
+        GroundDomain groundDomain = new DomainGrounder().ground(problem);
+        return create(problem.getDomain(), groundDomain, SimpleStateService.bitset(groundDomain.getIndex()));
+    }
+
+    /**
+     * Create a planner for a domain.
+     * @param domain the domain the planner will work in
+     * @param groundDomain the domain's precompiled actions, or null to build actions as they are needed
+     * @param plannerStateService the state service the planner will use
+     * @return the planner
+     */
+    private ImmutablePlanner create(Domain domain, GroundDomain groundDomain,
+            ImmutableStateService plannerStateService) {
+
+        ImmutableDomainHelper domainHelper = new SimpleDomainHelper(domain);
+
+        ActionFactoryHelper actionFactoryHelper = new SimpleActionFactoryHelper(domainHelper);
+        ActionFactory actionFactory = new SimpleActionFactory(actionFactoryHelper);
+        if (groundDomain != null) {
+            actionFactory = new GroundActionFactory(groundDomain, actionFactory);
+        }
+        SimplePlanBuilderFactory planFactory = new SimplePlanBuilderFactory();
+
+        UnificationService unificationService = new SimpleUnificationService();
+
+        DecompositionService decompositionService = new SimpleDecompositionService(
+                new SimpleStandardisationService());
+
+        SortService sortService = new SimpleSortService();
+
+        SimplePlannerHelper plannerHelper = new SimplePlannerHelper(actionFactory,
+                planFactory, decompositionService, unificationService, sortService,
+                plannerStateService, domainHelper, createTaskSelector(domainHelper, unificationService));
+
+        return createPlanner(domainHelper, plannerHelper);
+    }
+
+    /**
+     * Create the strategy for choosing which non-primitive task to decompose next.
+     * By default tasks are chosen by name and arguments, which is cheap and repeatable; subclasses can
+     * override this to choose, for example, the task with the fewest applicable methods first.
+     * @param domainHelper the helper for the domain being planned in
+     * @param unificationService the unification service the planner will use
+     * @return the task selector
+     */
+    protected TaskSelector createTaskSelector(ImmutableDomainHelper domainHelper,
+            UnificationService unificationService) {
+        return new DeterministicTaskSelector();
+    }
+
+    /**
+     * Create the planner that will search using the given helpers.
+     * @param domainHelper the helper for the domain being planned in
+     * @param plannerHelper the helper for decomposing and grounding task networks
+     * @return the planner
+     */
+    protected abstract ImmutablePlanner createPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper);
+
+}
@@ -0,0 +1,253 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.planner.SearchHeuristic;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Planner that searches in best-first order, always expanding the open node with the lowest
+ * estimated total cost, in the style of A*.
+ * <p>
+ * Each node holds a task network, the state reached and the actions applied so far. Primitive tasks
+ * are applied as soon as they become the earliest unapplied tasks in the partial order, as in the
+ * interleaved mode of the iterative-deepening planner, so each node is left with non-primitive tasks
+ * to decompose; where several tasks are ready at once they are taken in the order the task selector
+ * prefers, and a node has a child for every method of every ready non-primitive task. The cost of a node is the number of decompositions and actions made to reach it,
+ * and the pluggable heuristic estimates the steps still needed; where the heuristic never
+ * overestimates, the first plan found has the fewest steps. Ties are broken in favour of the node
+ * nearer to a plan and then the node reached first, so searches are repeatable.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class BestFirstPlanner implements ImmutablePlanner {
+
+    /**
+     * Manager the domain being worked in.
+     */
+    private ImmutableDomainHelper domainHelper;
+
+    /**
+     * Helper for off-loading some of the logic.
+     */
+    private ImmutablePlannerHelper plannerHelper;
+
+    /**
+     * Heuristic used to order the open nodes.
+     */
+    private SearchHeuristic heuristic;
+
+    /**
+     * Constructor taking the domain manager, planner helper and heuristic to use.
+     * @param domainHelper the domain manager
+     * @param plannerHelper the planner helper
+     * @param heuristic the heuristic used to order the open nodes
+     */
+    public BestFirstPlanner(ImmutableDomainHelper domainHelper, ImmutablePlannerHelper plannerHelper,
+            SearchHeuristic heuristic) {
+        this.domainHelper = domainHelper;
+        this.plannerHelper = plannerHelper;
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork)
+            throws PlanNotFound {
+        return findPlan(state, taskNetwork, SearchBudget.unlimited());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork, SearchBudget budget)
+            throws PlanNotFound {
+
+        PriorityQueue<Node> frontier = new PriorityQueue<Node>();
+        long sequence = 0;
+        Node root = settle(new DepthFirstSearch.Progress(state), plannerHelper.standardise(taskNetwork), 0,
+                sequence);
+        if (root != null) {
+            frontier.add(root);
+            sequence++;
+        }
+        while (!frontier.isEmpty()) {
+            Node node = frontier.poll();
+            if (node.tasks.isEmpty()) {
+                return plannerHelper.createPlan(node.progress.getActions());
+            }
+            for (Task task : node.tasks) {
+                for (Method method : domainHelper.getMethodsByTask(task)) {
+                    budget.expand();
+                    TaskNetwork decomposedNetwork;
+                    try {
+                        decomposedNetwork = plannerHelper.decompose(node.taskNetwork, task, method);
+                    } catch (DecompositionNotFound e) {
+                        continue;
+                    } catch (InvalidConstraint e) {
+                        continue;
+                    }
+                    Node child = settle(node.progress, decomposedNetwork, node.cost + 1, sequence);
+                    if (child != null) {
+                        frontier.add(child);
+                        sequence++;
+                    }
+                }
+            }
+        }
+        throw new PlanNotFound("No methods found to decompose this task");
+    }
+
+    /**
+     * Create a node for a newly reached task network, first applying each primitive task that
+     * becomes ready until only non-primitive tasks are ready or every task has been applied.
+     * @param progress the state reached and the actions applied so far
+     * @param taskNetwork the task network reached
+     * @param cost the number of steps taken to reach the network
+     * @param sequence the number of nodes created before this one
+     * @return the node, or null if no plan can be reached from the network
+     */
+    private Node settle(DepthFirstSearch.Progress progress, TaskNetwork taskNetwork, int cost, long sequence) {
+        if (plannerHelper.isUnsolvable(taskNetwork)) {
+            return null;
+        }
+        DepthFirstSearch.Progress current = progress;
+        int currentCost = cost;
+        while (true) {
+            Task primitiveTask = null;
+            List<Task> nonPrimitiveTasks = new ArrayList<Task>();
+            List<Task> readyTasks = DepthFirstSearch.getReadyTasks(taskNetwork, current.getApplied());
+            for (Task task : plannerHelper.orderTasks(taskNetwork, readyTasks)) {
+                if (task.isPrimitive()) {
+                    primitiveTask = task;
+                    break;
+                } else {
+                    nonPrimitiveTasks.add(task);
+                }
+            }
+            if (primitiveTask != null) {
+                try {
+                    Action action = plannerHelper.createAction(primitiveTask);
+                    current = current.apply(primitiveTask, action,
+                            plannerHelper.apply(current.getState(), action));
+                    currentCost++;
+                } catch (PlanNotFound e) {
+                    return null;
+                }
+            } else if (!nonPrimitiveTasks.isEmpty() || current.getApplied().containsAll(taskNetwork.getTasks())) {
+                int estimate = heuristic.estimate(current.getState(), taskNetwork, current.getApplied());
+                if (estimate == SearchHeuristic.UNSOLVABLE) {
+                    return null;
+                }
+                return new Node(current, taskNetwork, nonPrimitiveTasks, currentCost, estimate, sequence);
+            } else {
+                // The remaining tasks are ordered in a cycle, so none can ever become ready
+                return null;
+            }
+        }
+    }
+
+    /**
+     * An open node in the search, ordered by estimated total cost.
+     */
+    private static final class Node implements Comparable<Node> {
+
+        /**
+         * The state reached and the actions applied so far.
+         */
+        private final DepthFirstSearch.Progress progress;
+
+        /**
+         * The task network reached.
+         */
+        private final TaskNetwork taskNetwork;
+
+        /**
+         * The ready non-primitive tasks to decompose next, empty if every task has been applied.
+         */
+        private final List<Task> tasks;
+
+        /**
+         * The number of steps taken to reach this node.
+         */
+        private final int cost;
+
+        /**
+         * The estimated number of steps still needed.
+         */
+        private final int estimate;
+
+        /**
+         * The number of nodes created before this one.
+         */
+        private final long sequence;
+
+        /**
+         * Constructor.
+         * @param progress the state reached and the actions applied so far
+         * @param taskNetwork the task network reached
+         * @param tasks the ready non-primitive tasks to decompose next, empty if every task has been applied
+         * @param cost the number of steps taken to reach this node
+         * @param estimate the estimated number of steps still needed
+         * @param sequence the number of nodes created before this one
+         */
+        private Node(DepthFirstSearch.Progress progress, TaskNetwork taskNetwork, List<Task> tasks,
+                int cost, int estimate, long sequence) {
+            this.progress = progress;
+            this.taskNetwork = taskNetwork;
+            this.tasks = tasks;
+            this.cost = cost;
+            this.estimate = estimate;
+            this.sequence = sequence;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public int compareTo(Node other) {
+            long total = (long) cost + estimate;
+            long otherTotal = (long) other.cost + other.estimate;
+            if (total != otherTotal) {
+                return total < otherTotal ? -1 : 1;
+            } else if (estimate != other.estimate) {
+                return estimate < other.estimate ? -1 : 1;
+            } else if (sequence != other.sequence) {
+                return sequence < other.sequence ? -1 : 1;
+            } else {
+                return 0;
+            }
+        }
+    }
+}
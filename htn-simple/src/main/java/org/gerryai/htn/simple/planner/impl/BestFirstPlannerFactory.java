@@ -0,0 +1,58 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.SearchHeuristic;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+
+/**
+ * Factory for creating best-first planners that generate immutable plans.
+ * By default created planners are guided by a decomposition depth heuristic for the domain;
+ * subclasses can override createHeuristic to plug in another.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class BestFirstPlannerFactory extends AbstractPlannerFactory {
+
+    /**
+     * Constructor.
+     * @param stateService the state service to use
+     */
+    public BestFirstPlannerFactory(ImmutableStateService stateService) {
+        super(stateService);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected final ImmutablePlanner createPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper) {
+        return new BestFirstPlanner(domainHelper, plannerHelper, createHeuristic(domainHelper));
+    }
+
+    /**
+     * Create the heuristic that will guide a planner in the given domain.
+     * @param domainHelper the helper for the domain being planned in
+     * @return the heuristic
+     */
+    protected SearchHeuristic createHeuristic(ImmutableDomainHelper domainHelper) {
+        return new DecompositionDepthHeuristic(domainHelper);
+    }
+}
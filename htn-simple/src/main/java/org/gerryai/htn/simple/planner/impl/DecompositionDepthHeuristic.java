@@ -0,0 +1,134 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.SearchHeuristic;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Heuristic based on the fewest levels of decomposition each remaining task needs before it is
+ * reduced to primitive tasks, ignoring the state.
+ * <p>
+ * The minimum depth of each method in the domain is computed once, as one more than the greatest
+ * minimum depth of its non-primitive subtasks, iterating until no depth changes so that recursive
+ * methods are handled. A node is then estimated as the sum of the minimum depths of its unapplied
+ * non-primitive tasks, plus one for each unapplied primitive task. Tasks that no method can reduce
+ * to primitive tasks mark the node as unsolvable.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class DecompositionDepthHeuristic implements SearchHeuristic {
+
+    /**
+     * Helper for the domain the estimates are made in.
+     */
+    private final ImmutableDomainHelper domainHelper;
+
+    /**
+     * Minimum depth of decomposition of each method that can be reduced to primitive tasks.
+     */
+    private final Map<Method, Integer> methodDepths;
+
+    /**
+     * Constructor, computing the minimum depth of each method in the domain.
+     * @param domainHelper helper for the domain the estimates are made in
+     */
+    public DecompositionDepthHeuristic(ImmutableDomainHelper domainHelper) {
+        this.domainHelper = domainHelper;
+        this.methodDepths = new HashMap<Method, Integer>();
+        Set<Method> methods = domainHelper.getDomain().getMethods();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Method method : methods) {
+                int depth = getMethodDepth(method);
+                Integer known = methodDepths.get(method);
+                if (depth != UNSOLVABLE && (known == null || depth < known)) {
+                    methodDepths.put(method, depth);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public int estimate(ImmutableState state, TaskNetwork taskNetwork, Set<Task> applied) {
+        int estimate = 0;
+        for (Task task : taskNetwork.getTasks()) {
+            if (applied.contains(task)) {
+                continue;
+            }
+            int depth = getDepth(task);
+            if (depth == UNSOLVABLE) {
+                return UNSOLVABLE;
+            }
+            estimate += depth;
+        }
+        return estimate;
+    }
+
+    /**
+     * Get the fewest levels of decomposition needed to reduce a task to primitive tasks.
+     * @param task the task
+     * @return the minimum depth, one for a primitive task, or UNSOLVABLE if it cannot be reduced
+     */
+    private int getDepth(Task task) {
+        if (task.isPrimitive()) {
+            return 1;
+        }
+        int depth = UNSOLVABLE;
+        for (Method method : domainHelper.getMethodsByTask(task)) {
+            Integer methodDepth = methodDepths.get(method);
+            if (methodDepth != null && methodDepth < depth) {
+                depth = methodDepth;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Compute the minimum depth of a method from the depths known so far.
+     * @param method the method
+     * @return the minimum depth, or UNSOLVABLE if it cannot yet be reduced to primitive tasks
+     */
+    private int getMethodDepth(Method method) {
+        int deepest = 0;
+        for (Task subtask : method.getTaskNetwork().getTasks()) {
+            if (subtask.isPrimitive()) {
+                continue;
+            }
+            int depth = getDepth(subtask);
+            if (depth == UNSOLVABLE) {
+                return UNSOLVABLE;
+            } else if (depth > deepest) {
+                deepest = depth;
+            }
+        }
+        return deepest + 1;
+    }
+}
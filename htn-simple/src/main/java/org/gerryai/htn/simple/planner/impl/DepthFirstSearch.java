@@ -0,0 +1,561 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.impl.PersistentHashSet;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * A single depth-bounded depth-first search over task network decompositions.
+ * The open decompositions are kept on an explicit stack, so the depth of the search
+ * is limited by the heap rather than the thread's stack, and backtracking is just
+ * a matter of popping a frame.
+ * <p>
+ * In interleaved mode the search works in the style of SHOP2's ordered task decomposition:
+ * whenever a primitive task becomes one of the earliest unapplied tasks in the partial order
+ * it is applied to the state straight away, and a branch is pruned as soon as one of its
+ * preconditions fails rather than once the whole network has been decomposed.
+ * Concurrently ready tasks are put in order by the planner helper's task selector, so the choice
+ * between them does not depend on how the network happens to hold its tasks. When only non-primitive
+ * tasks are ready the search branches over each of them in turn, with every method for each, so
+ * no way of decomposing them is missed. Ready primitive tasks are still applied eagerly, ahead of
+ * any decomposition, so interleaved mode remains a heuristic: plans that need a non-primitive task's
+ * subtasks to come before an unordered primitive task, or unordered primitive tasks to be applied
+ * in some other order, may not be found.
+ * </p>
+ * When given a transposition table, the search looks up each node before expanding it and
+ * records the sub-plan found or the depth explored without finding one, so that identical
+ * nodes reached through different method orderings, or in later searches, are not solved again.
+ * Instances hold the state of one search and must not be shared between threads.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+class DepthFirstSearch {
+
+    /**
+     * Helper for the domain being searched.
+     */
+    private ImmutableDomainHelper domainHelper;
+
+    /**
+     * Helper for decomposing and grounding task networks.
+     */
+    private ImmutablePlannerHelper plannerHelper;
+
+    /**
+     * Maximum number of decompositions allowed along any one branch.
+     */
+    private int depthLimit;
+
+    /**
+     * Whether primitive tasks are applied to the state as soon as they become ready.
+     */
+    private boolean interleaved;
+
+    /**
+     * Whether any branch was abandoned because it reached the depth limit.
+     */
+    private boolean cutOff;
+
+    /**
+     * Number of times a branch has been abandoned because of the depth limit.
+     */
+    private int cutOffs;
+
+    /**
+     * Table of outcomes of nodes already searched, or null if none is kept.
+     */
+    private TranspositionTable transpositionTable;
+
+    /**
+     * Limits on the search, shared with any other searches made for the same plan.
+     */
+    private SearchBudget budget;
+
+    /**
+     * Constructor.
+     * @param domainHelper the domain helper
+     * @param plannerHelper the planner helper
+     * @param depthLimit the maximum number of decompositions along any branch
+     */
+    DepthFirstSearch(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper, int depthLimit) {
+        this(domainHelper, plannerHelper, depthLimit, false, null, SearchBudget.unlimited());
+    }
+
+    /**
+     * Constructor.
+     * @param domainHelper the domain helper
+     * @param plannerHelper the planner helper
+     * @param depthLimit the maximum number of decompositions along any branch
+     * @param interleaved whether to apply primitive tasks as soon as they become ready
+     * @param transpositionTable table of outcomes of nodes already searched, or null to keep none
+     * @param budget the limits on the search
+     */
+    DepthFirstSearch(ImmutableDomainHelper domainHelper, ImmutablePlannerHelper plannerHelper,
+            int depthLimit, boolean interleaved, TranspositionTable transpositionTable, SearchBudget budget) {
+        this.domainHelper = domainHelper;
+        this.plannerHelper = plannerHelper;
+        this.depthLimit = depthLimit;
+        this.interleaved = interleaved;
+        this.transpositionTable = transpositionTable;
+        this.budget = budget;
+    }
+
+    /**
+     * Search for a plan that achieves the given task network.
+     * @param state the initial state
+     * @param taskNetwork the task network to achieve
+     * @return the plan, or null if none was found within the depth limit
+     */
+    Plan search(ImmutableState state, TaskNetwork taskNetwork) {
+        Deque<Frame> stack = new ArrayDeque<Frame>();
+        Plan plan = expand(new Progress(state), taskNetwork, 0, stack);
+        while (plan == null && !stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (!hasNextMethod(frame)) {
+                // Every method for every task in this frame has failed, so backtrack
+                stack.pop();
+                recordFailure(frame);
+                continue;
+            }
+            Method method = frame.methods.next();
+            if (isAbandoned() || !budget.tryExpand()) {
+                return null;
+            }
+            TaskNetwork decomposedNetwork;
+            try {
+                decomposedNetwork = plannerHelper.decompose(frame.taskNetwork, frame.task, method);
+            } catch (DecompositionNotFound e) {
+                continue;
+            } catch (InvalidConstraint e) {
+                continue;
+            }
+            plan = expand(frame.progress, decomposedNetwork, frame.depth + 1, stack);
+        }
+        if (plan != null && transpositionTable != null) {
+            // Every open frame is an ancestor of the solution, so each has found its sub-plan
+            List<Action> actions = plan.getActions();
+            for (Frame frame : stack) {
+                transpositionTable.recordPlan(frame.key, actions.subList(frame.progress.size, actions.size()));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Check whether the last search abandoned any branch because of the depth limit.
+     * @return true if the search was cut off
+     */
+    boolean isCutOff() {
+        return cutOff;
+    }
+
+    /**
+     * Check whether the search should be given up without a result.
+     * Polled before each method application, which is then charged to the budget; the default
+     * abandons the search once its budget is used up.
+     * @return true if the search should stop
+     */
+    boolean isAbandoned() {
+        return budget.isExhausted();
+    }
+
+    /**
+     * Expand a newly reached task network, either solving it if it is primitive
+     * or pushing a frame to try each of the methods for the chosen non-primitive task.
+     * @param progress the state reached and the actions applied so far
+     * @param taskNetwork the task network reached
+     * @param depth the number of decompositions made to reach it
+     * @param stack the stack of open frames
+     * @return a plan if the network was primitive and solvable, otherwise null
+     */
+    private Plan expand(Progress progress, TaskNetwork taskNetwork, int depth, Deque<Frame> stack) {
+        if (plannerHelper.isUnsolvable(taskNetwork)) {
+            return null;
+        }
+        if (interleaved) {
+            return expandInterleaved(progress, taskNetwork, depth, stack);
+        }
+        Task task;
+        try {
+            task = plannerHelper.getNonPrimitiveTask(taskNetwork);
+        } catch (NonPrimitiveTaskNotFound e) {
+            return solvePrimitive(progress, taskNetwork);
+        }
+        return push(progress, taskNetwork, Collections.singletonList(task), depth, stack);
+    }
+
+    /**
+     * Expand a newly reached task network in interleaved mode, applying each primitive task
+     * as soon as it becomes ready and then pushing a frame to try every ready non-primitive task,
+     * with ready tasks taken in the order the task selector prefers.
+     * @param progress the state reached and the actions applied so far
+     * @param taskNetwork the task network reached
+     * @param depth the number of decompositions made to reach it
+     * @param stack the stack of open frames
+     * @return a plan if every task in the network has been applied, otherwise null
+     */
+    private Plan expandInterleaved(Progress progress, TaskNetwork taskNetwork, int depth, Deque<Frame> stack) {
+        Progress current = progress;
+        while (true) {
+            Task primitiveTask = null;
+            List<Task> nonPrimitiveTasks = new ArrayList<Task>();
+            for (Task task : plannerHelper.orderTasks(taskNetwork, getReadyTasks(taskNetwork, current.applied))) {
+                if (task.isPrimitive()) {
+                    primitiveTask = task;
+                    break;
+                } else {
+                    nonPrimitiveTasks.add(task);
+                }
+            }
+            if (primitiveTask != null) {
+                try {
+                    Action action = plannerHelper.createAction(primitiveTask);
+                    current = current.apply(primitiveTask, action,
+                            plannerHelper.apply(current.state, action));
+                } catch (PlanNotFound e) {
+                    // Prune this branch without decomposing the rest of the network
+                    return null;
+                }
+            } else if (!nonPrimitiveTasks.isEmpty()) {
+                return push(current, taskNetwork, nonPrimitiveTasks, depth, stack);
+            } else if (current.applied.containsAll(taskNetwork.getTasks())) {
+                return plannerHelper.createPlan(current.getActions());
+            } else {
+                // The remaining tasks are ordered in a cycle, so none can ever become ready
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Push a frame to try each of the methods for some tasks, unless the depth limit has been reached.
+     * @param progress the state reached and the actions applied so far
+     * @param taskNetwork the task network being decomposed
+     * @param tasks the tasks to decompose, in the order they are to be tried
+     * @param depth the number of decompositions made to reach the network
+     * @param stack the stack of open frames
+     * @return always null, as no plan is found until the frame is tried
+     */
+    private Plan push(Progress progress, TaskNetwork taskNetwork, List<Task> tasks, int depth, Deque<Frame> stack) {
+        TranspositionTable.Key key = null;
+        if (transpositionTable != null) {
+            key = TranspositionTable.key(taskNetwork, progress.state, progress.applied);
+            TranspositionTable.Entry entry = transpositionTable.get(key);
+            if (entry != null && entry.isSolved()) {
+                return plannerHelper.createPlan(progress.getActions(entry.getActions()));
+            } else if (entry != null && entry.getFailureDepth() >= depthLimit - depth) {
+                if (entry.getFailureDepth() != TranspositionTable.UNBOUNDED) {
+                    // The recorded failure was itself cut off, so a deeper search might still succeed
+                    markCutOff();
+                }
+                return null;
+            }
+        }
+        if (depth >= depthLimit) {
+            markCutOff();
+            return null;
+        }
+        stack.push(new Frame(progress, taskNetwork, tasks.iterator(), depth, key, cutOffs));
+        return null;
+    }
+
+    /**
+     * Move a frame on to the next task with methods left to try, if its current task has none left.
+     * @param frame the frame
+     * @return true if there is another method to try
+     */
+    private boolean hasNextMethod(Frame frame) {
+        while (!frame.methods.hasNext() && frame.tasks.hasNext()) {
+            frame.task = frame.tasks.next();
+            frame.methods = domainHelper.getMethodsByTask(frame.task).iterator();
+        }
+        return frame.methods.hasNext();
+    }
+
+    /**
+     * Find a plan for a primitive task network reached in the normal, non-interleaved mode.
+     * @param progress the state reached
+     * @param taskNetwork the primitive task network
+     * @return the plan, or null if the network cannot be achieved
+     */
+    private Plan solvePrimitive(Progress progress, TaskNetwork taskNetwork) {
+        TranspositionTable.Key key = null;
+        if (transpositionTable != null) {
+            key = TranspositionTable.key(taskNetwork, progress.state, progress.applied);
+            TranspositionTable.Entry entry = transpositionTable.get(key);
+            if (entry != null && entry.isSolved()) {
+                return plannerHelper.createPlan(progress.getActions(entry.getActions()));
+            } else if (entry != null) {
+                return null;
+            }
+        }
+        try {
+            return plannerHelper.findPlanForPrimitive(progress.state, taskNetwork);
+        } catch (PlanNotFound e) {
+            if (key != null) {
+                transpositionTable.recordFailure(key, TranspositionTable.UNBOUNDED);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Record that a branch was abandoned because of the depth limit.
+     */
+    private void markCutOff() {
+        cutOff = true;
+        cutOffs++;
+    }
+
+    /**
+     * Record that every method for a frame's task has failed.
+     * @param frame the frame that failed
+     */
+    private void recordFailure(Frame frame) {
+        if (frame.key == null) {
+            return;
+        }
+        if (cutOffs > frame.cutOffs) {
+            // Some branch below this frame was cut off, so it has only failed down to the depth limit
+            transpositionTable.recordFailure(frame.key, depthLimit - frame.depth);
+        } else {
+            transpositionTable.recordFailure(frame.key, TranspositionTable.UNBOUNDED);
+        }
+    }
+
+    /**
+     * Find the tasks that have not yet been applied and that have no unapplied predecessors.
+     * @param taskNetwork the task network
+     * @param applied the tasks already applied
+     * @return the ready tasks, in the network's iteration order
+     */
+    static List<Task> getReadyTasks(TaskNetwork taskNetwork, Set<Task> applied) {
+        Set<Task> blocked = new HashSet<Task>();
+        for (PrecedenceConstraint constraint : taskNetwork.getPrecedenceConstraints()) {
+            if (!applied.containsAll(constraint.getPrecedingTasks())) {
+                blocked.addAll(constraint.getProcedingTasks());
+            }
+        }
+        List<Task> ready = new ArrayList<Task>();
+        for (Task task : taskNetwork.getTasks()) {
+            if (!applied.contains(task) && !blocked.contains(task)) {
+                ready.add(task);
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * The state reached along a branch, along with the tasks and actions applied to reach it.
+     * Progress is shared between branches, so applying a task creates a new instance.
+     */
+    static final class Progress {
+
+        /**
+         * The state reached.
+         */
+        private final ImmutableState state;
+
+        /**
+         * The tasks applied so far.
+         */
+        private final PersistentHashSet<Task> applied;
+
+        /**
+         * The last action applied, or null if none have been.
+         */
+        private final Action action;
+
+        /**
+         * The progress before the last action was applied, or null if none have been.
+         */
+        private final Progress previous;
+
+        /**
+         * The number of actions applied so far.
+         */
+        private final int size;
+
+        /**
+         * Constructor for the progress at the start of a search.
+         * @param state the initial state
+         */
+        Progress(ImmutableState state) {
+            this(state, PersistentHashSet.<Task>empty(), null, null);
+        }
+
+        /**
+         * Constructor.
+         * @param state the state reached
+         * @param applied the tasks applied so far
+         * @param action the last action applied
+         * @param previous the progress before the last action was applied
+         */
+        private Progress(ImmutableState state, PersistentHashSet<Task> applied,
+                Action action, Progress previous) {
+            this.state = state;
+            this.applied = applied;
+            this.action = action;
+            this.previous = previous;
+            if (previous == null) {
+                this.size = 0;
+            } else {
+                this.size = previous.size + 1;
+            }
+        }
+
+        /**
+         * Get the state reached.
+         * @return the state
+         */
+        ImmutableState getState() {
+            return state;
+        }
+
+        /**
+         * Get the tasks applied so far.
+         * @return the tasks
+         */
+        Set<Task> getApplied() {
+            return applied;
+        }
+
+        /**
+         * Record that a task has been applied.
+         * @param task the task applied
+         * @param appliedAction the action the task was turned into
+         * @param nextState the state after applying the action
+         * @return the new progress
+         */
+        Progress apply(Task task, Action appliedAction, ImmutableState nextState) {
+            return new Progress(nextState, applied.plus(task), appliedAction, this);
+        }
+
+        /**
+         * Get the actions applied so far.
+         * @return the actions, in the order they were applied
+         */
+        List<Action> getActions() {
+            List<Action> actions = new ArrayList<Action>(size);
+            for (Progress progress = this; progress.action != null; progress = progress.previous) {
+                actions.add(progress.action);
+            }
+            Collections.reverse(actions);
+            return actions;
+        }
+
+        /**
+         * Get the actions applied so far followed by the actions of a sub-plan.
+         * @param remainingActions the actions of the sub-plan
+         * @return the actions, in order
+         */
+        private List<Action> getActions(List<Action> remainingActions) {
+            List<Action> actions = getActions();
+            actions.addAll(remainingActions);
+            return actions;
+        }
+    }
+
+    /**
+     * A task network on the search stack, along with the tasks and methods still to be tried.
+     */
+    private static final class Frame {
+
+        /**
+         * The state reached and the actions applied before this network.
+         */
+        private final Progress progress;
+
+        /**
+         * The task network being decomposed.
+         */
+        private final TaskNetwork taskNetwork;
+
+        /**
+         * The tasks within the network not yet started on.
+         */
+        private final Iterator<Task> tasks;
+
+        /**
+         * The task within the network being decomposed, or null before the first is started on.
+         */
+        private Task task;
+
+        /**
+         * The methods not yet tried for the current task.
+         */
+        private Iterator<Method> methods;
+
+        /**
+         * The number of decompositions made to reach this network.
+         */
+        private final int depth;
+
+        /**
+         * The key for this node in the transposition table, or null if none is kept.
+         */
+        private final TranspositionTable.Key key;
+
+        /**
+         * The number of cut offs made before this frame was pushed.
+         */
+        private final int cutOffs;
+
+        /**
+         * Constructor.
+         * @param progress the state reached and the actions applied before this network
+         * @param taskNetwork the task network being decomposed
+         * @param tasks the tasks to decompose, in the order they are to be tried
+         * @param depth the depth of this frame
+         * @param key the key for this node in the transposition table
+         * @param cutOffs the number of cut offs made before this frame was pushed
+         */
+        private Frame(Progress progress, TaskNetwork taskNetwork, Iterator<Task> tasks, int depth,
+                TranspositionTable.Key key, int cutOffs) {
+            this.progress = progress;
+            this.taskNetwork = taskNetwork;
+            this.tasks = tasks;
+            this.methods = Collections.<Method>emptyList().iterator();
+            this.depth = depth;
+            this.key = key;
+            this.cutOffs = cutOffs;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.ConcurrentPlanningService;
+import org.gerryai.htn.simple.planner.ImmutablePlanningService;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+
+/**
+ * Planning service that solves problems on an executor, using another planning service to do the work.
+ * <p>
+ * Any executor can be used: a fixed pool sized to the number of cores for CPU-bound work, or on Java 21
+ * and later a virtual thread per task executor. Either way the number of problems pending, whether
+ * queued or running, is bounded; solveAsync rejects problems beyond the bound straight away, while
+ * solveAll waits for room, so overload is pushed back to the caller instead of growing an unbounded queue.
+ * Wrapping a SimplePlanningService lets every problem in the same domain share one planner.
+ * The executor is not shut down by this service.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class ExecutorPlanningService implements ConcurrentPlanningService {
+
+    /**
+     * Default number of problems that may be pending at once.
+     */
+    public static final int DEFAULT_MAX_PENDING = 1024;
+
+    /**
+     * The service that does the work.
+     */
+    private ImmutablePlanningService planningService;
+
+    /**
+     * The executor to solve problems on.
+     */
+    private Executor executor;
+
+    /**
+     * Permits for the problems that may be pending.
+     */
+    private Semaphore pending;
+
+    /**
+     * Constructor taking the service that does the work and the executor to run it on.
+     * @param planningService the service that does the work
+     * @param executor the executor to solve problems on
+     */
+    public ExecutorPlanningService(ImmutablePlanningService planningService, Executor executor) {
+        this(planningService, executor, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * Constructor taking the service that does the work, the executor to run it on
+     * and the number of problems that may be pending at once.
+     * @param planningService the service that does the work
+     * @param executor the executor to solve problems on
+     * @param maxPending the number of problems that may be queued or running at once
+     */
+    public ExecutorPlanningService(ImmutablePlanningService planningService, Executor executor, int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("At least one problem must be allowed to be pending");
+        }
+        this.planningService = planningService;
+        this.executor = executor;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan solve(ImmutableProblem problem) throws PlanNotFound {
+        return planningService.solve(problem);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan solve(ImmutableProblem problem, SearchBudget budget) throws PlanNotFound {
+        return planningService.solve(problem, budget);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final CompletableFuture<Plan> solveAsync(ImmutableProblem problem) {
+        return solveAsync(problem, SearchBudget.unlimited());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final CompletableFuture<Plan> solveAsync(ImmutableProblem problem, SearchBudget budget) {
+        CompletableFuture<Plan> future = new CompletableFuture<Plan>();
+        if (pending.tryAcquire()) {
+            submit(problem, budget, future);
+        } else {
+            future.completeExceptionally(new RejectedExecutionException("Too many problems pending"));
+        }
+        return future;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final List<CompletableFuture<Plan>> solveAll(Collection<ImmutableProblem> problems)
+            throws InterruptedException {
+        List<CompletableFuture<Plan>> futures = new ArrayList<CompletableFuture<Plan>>(problems.size());
+        for (ImmutableProblem problem : problems) {
+            CompletableFuture<Plan> future = new CompletableFuture<Plan>();
+            pending.acquire();
+            submit(problem, SearchBudget.unlimited(), future);
+            futures.add(future);
+        }
+        for (CompletableFuture<Plan> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                // The failure is left in the future for the caller to inspect
+                continue;
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Hand a problem to the executor, having already taken a permit for it.
+     * The permit is released once the problem is done, or straight away if the executor refuses it.
+     * @param problem the problem to be solved
+     * @param budget the limits on the search
+     * @param future the future to complete with the result
+     */
+    private void submit(final ImmutableProblem problem, final SearchBudget budget,
+            final CompletableFuture<Plan> future) {
+        try {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        if (!future.isDone()) {
+                            future.complete(planningService.solve(problem, budget));
+                        }
+                    } catch (PlanNotFound e) {
+                        future.completeExceptionally(e);
+                    } catch (RuntimeException e) {
+                        future.completeExceptionally(e);
+                    } catch (Error e) {
+                        future.completeExceptionally(e);
+                        throw e;
+                    } finally {
+                        pending.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            future.completeExceptionally(e);
+        }
+    }
+}
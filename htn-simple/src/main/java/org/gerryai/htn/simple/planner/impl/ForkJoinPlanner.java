@@ -0,0 +1,309 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Planner that explores the alternative methods for a task in parallel on a fork-join pool.
+ * The first few levels of decomposition are forked, one branch per method, and below that
+ * each branch is searched sequentially. Since task networks and states are immutable the
+ * branches share nothing but the result.
+ * <p>
+ * In the default mode the first plan found by any branch is returned and every other branch
+ * is abandoned. In deterministic mode a branch is only abandoned once an earlier sibling has
+ * found a plan, so the plan returned is the same one a sequential depth-first search would find.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class ForkJoinPlanner implements ImmutablePlanner {
+
+    /**
+     * Default number of decomposition levels to fork before searching sequentially.
+     */
+    public static final int DEFAULT_FORK_DEPTH = 8;
+
+    /**
+     * Manager the domain being worked in.
+     */
+    private ImmutableDomainHelper domainHelper;
+
+    /**
+     * Helper for off-loading some of the logic.
+     */
+    private ImmutablePlannerHelper plannerHelper;
+
+    /**
+     * The pool to run the branches on.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Number of decomposition levels to fork before searching sequentially.
+     */
+    private int forkDepth;
+
+    /**
+     * Whether the plan returned must be the one a sequential search would find.
+     */
+    private boolean deterministic;
+
+    /**
+     * Constructor.
+     * @param domainHelper the domain manager
+     * @param plannerHelper the planner helper
+     * @param pool the fork-join pool to run branches on
+     * @param forkDepth the number of decomposition levels to fork before searching sequentially
+     * @param deterministic true if the result must not depend on thread scheduling
+     */
+    public ForkJoinPlanner(ImmutableDomainHelper domainHelper, ImmutablePlannerHelper plannerHelper,
+            ForkJoinPool pool, int forkDepth, boolean deterministic) {
+        if (forkDepth < 0) {
+            throw new IllegalArgumentException("Fork depth must not be negative");
+        }
+        this.domainHelper = domainHelper;
+        this.plannerHelper = plannerHelper;
+        this.pool = pool;
+        this.forkDepth = forkDepth;
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork)
+            throws PlanNotFound {
+        return findPlan(state, taskNetwork, SearchBudget.unlimited());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork, SearchBudget budget)
+            throws PlanNotFound {
+
+        AtomicReference<Plan> solution = new AtomicReference<Plan>();
+        Plan plan = pool.invoke(new Branch(state, solution, budget, null,
+                plannerHelper.standardise(taskNetwork), null, null, 0));
+        if (!deterministic) {
+            plan = solution.get();
+        }
+        if (plan == null && budget.isExhausted()) {
+            throw new PlanningTimeout(budget);
+        } else if (plan == null) {
+            throw new PlanNotFound("No methods found to decompose this task");
+        }
+        return plan;
+    }
+
+    /**
+     * The search beneath a single method choice.
+     */
+    private final class Branch extends RecursiveTask<Plan> {
+
+        /**
+         * Serial version ID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The initial state.
+         */
+        private final ImmutableState state;
+
+        /**
+         * The first plan found by any branch of this search.
+         */
+        private final AtomicReference<Plan> solution;
+
+        /**
+         * The limits on the search, shared by every branch.
+         */
+        private final SearchBudget budget;
+
+        /**
+         * The branch that forked this one, or null for the root.
+         */
+        private final Branch parent;
+
+        /**
+         * The task network to decompose, or to solve directly for the root.
+         */
+        private final TaskNetwork taskNetwork;
+
+        /**
+         * The task to decompose, or null for the root.
+         */
+        private final Task task;
+
+        /**
+         * The method to decompose the task with, or null for the root.
+         */
+        private final Method method;
+
+        /**
+         * The number of decompositions made to reach this branch.
+         */
+        private final int depth;
+
+        /**
+         * Set once a sibling has made this branch redundant.
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Constructor.
+         * @param state the initial state
+         * @param solution the shared result of the search
+         * @param budget the shared limits on the search
+         * @param parent the parent branch
+         * @param taskNetwork the task network
+         * @param task the task to decompose
+         * @param method the method to decompose it with
+         * @param depth the depth of this branch
+         */
+        private Branch(ImmutableState state, AtomicReference<Plan> solution, SearchBudget budget,
+                Branch parent, TaskNetwork taskNetwork, Task task, Method method, int depth) {
+            this.state = state;
+            this.solution = solution;
+            this.budget = budget;
+            this.parent = parent;
+            this.taskNetwork = taskNetwork;
+            this.task = task;
+            this.method = method;
+            this.depth = depth;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        protected Plan compute() {
+            if (isAbandoned()) {
+                return null;
+            }
+            TaskNetwork network = taskNetwork;
+            if (method != null) {
+                // Only branches that apply a method are charged; the search beneath charges its own
+                if (!budget.tryExpand()) {
+                    return null;
+                }
+                try {
+                    network = plannerHelper.decompose(taskNetwork, task, method);
+                } catch (DecompositionNotFound e) {
+                    return null;
+                } catch (InvalidConstraint e) {
+                    return null;
+                }
+            }
+            Plan plan;
+            if (depth >= forkDepth) {
+                plan = searchSequentially(network);
+            } else {
+                plan = fork(network);
+            }
+            if (plan != null) {
+                solution.compareAndSet(null, plan);
+            }
+            return plan;
+        }
+
+        /**
+         * Check whether this branch, or any branch it was forked from, is no longer needed.
+         * @return true if the branch should stop
+         */
+        private boolean isAbandoned() {
+            if (cancelled || budget.isExhausted() || (!deterministic && solution.get() != null)) {
+                return true;
+            }
+            return parent != null && parent.isAbandoned();
+        }
+
+        /**
+         * Search beneath the given network on the current thread.
+         * @param network the task network to search from
+         * @return the plan, or null if none was found
+         */
+        private Plan searchSequentially(TaskNetwork network) {
+            DepthFirstSearch search = new DepthFirstSearch(domainHelper, plannerHelper, Integer.MAX_VALUE,
+                    false, null, budget) {
+                boolean isAbandoned() {
+                    return Branch.this.isAbandoned() || super.isAbandoned();
+                }
+            };
+            return search.search(state, network);
+        }
+
+        /**
+         * Fork one branch for each method that could decompose the network, and wait for them in order.
+         * @param network the task network to search from
+         * @return the plan, or null if none was found
+         */
+        private Plan fork(TaskNetwork network) {
+            if (plannerHelper.isUnsolvable(network)) {
+                return null;
+            }
+            Task nextTask;
+            try {
+                nextTask = plannerHelper.getNonPrimitiveTask(network);
+            } catch (NonPrimitiveTaskNotFound e) {
+                try {
+                    return plannerHelper.findPlanForPrimitive(state, network);
+                } catch (PlanNotFound planNotFound) {
+                    return null;
+                }
+            }
+            List<Branch> children = new ArrayList<Branch>();
+            for (Method nextMethod : domainHelper.getMethodsByTask(nextTask)) {
+                children.add(new Branch(state, solution, budget, this, network, nextTask, nextMethod, depth + 1));
+            }
+            // Fork in reverse so that this thread picks up the first method itself
+            for (int i = children.size() - 1; i > 0; i--) {
+                children.get(i).fork();
+            }
+            Plan plan = null;
+            for (int i = 0; i < children.size(); i++) {
+                Branch child = children.get(i);
+                if (plan != null) {
+                    child.cancelled = true;
+                } else if (i == 0) {
+                    plan = child.compute();
+                } else {
+                    plan = child.join();
+                }
+            }
+            return plan;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+
+/**
+ * Factory for creating planners that search method alternatives in parallel.
+ * All planners created by one factory share its fork-join pool, which belongs to the caller:
+ * the factory never shuts it down. By default the common pool is used.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class ForkJoinPlannerFactory extends AbstractPlannerFactory {
+
+    /**
+     * The pool shared by the planners created.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Number of decomposition levels to fork before searching sequentially.
+     */
+    private int forkDepth;
+
+    /**
+     * Whether the planners created must give deterministic results.
+     */
+    private boolean deterministic;
+
+    /**
+     * Constructor using the common pool and non-deterministic results.
+     * @param stateService the state service to use
+     */
+    public ForkJoinPlannerFactory(ImmutableStateService stateService) {
+        this(stateService, ForkJoinPool.commonPool(), ForkJoinPlanner.DEFAULT_FORK_DEPTH, false);
+    }
+
+    /**
+     * Constructor.
+     * @param stateService the state service to use
+     * @param pool the pool to search with, which the caller remains responsible for shutting down
+     * @param forkDepth the number of decomposition levels to fork before searching sequentially
+     * @param deterministic true if the plans found must not depend on thread scheduling
+     */
+    public ForkJoinPlannerFactory(ImmutableStateService stateService, ForkJoinPool pool,
+            int forkDepth, boolean deterministic) {
+        super(stateService);
+        this.pool = pool;
+        this.forkDepth = forkDepth;
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected final ImmutablePlanner createPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper) {
+        return new ForkJoinPlanner(domainHelper, plannerHelper, pool, forkDepth, deterministic);
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Planner that runs depth-first searches with an increasing limit on the number of
+ * decompositions, so that shallow plans are found before deep branches are explored.
+ * Each search uses an explicit stack, so deep decompositions are limited by the heap
+ * and not by the thread's stack.
+ * In interleaved mode primitive tasks are applied to the state as soon as they become
+ * the earliest unapplied tasks, so that branches with failing preconditions are pruned early.
+ * Interleaved mode is a heuristic: the search branches over every ready non-primitive task, but
+ * applies ready primitive tasks eagerly, so it may miss plans that the normal mode would find.
+ * An optional transposition table remembers the outcome of nodes across searches, so later,
+ * deeper searches skip subtrees already known to fail and repeated problems are answered at once.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class IterativeDeepeningPlanner implements ImmutablePlanner {
+
+    /**
+     * Default depth limit for the first search.
+     */
+    public static final int DEFAULT_INITIAL_DEPTH_LIMIT = 16;
+
+    /**
+     * Default amount to increase the depth limit by after each search.
+     */
+    public static final int DEFAULT_DEPTH_INCREMENT = 16;
+
+    /**
+     * Default depth limit beyond which no further searches are made.
+     */
+    public static final int DEFAULT_MAX_DEPTH_LIMIT = Integer.MAX_VALUE;
+
+    /**
+     * Manager the domain being worked in.
+     */
+    private ImmutableDomainHelper domainHelper;
+
+    /**
+     * Helper for off-loading some of the logic.
+     */
+    private ImmutablePlannerHelper plannerHelper;
+
+    /**
+     * Depth limit for the first search.
+     */
+    private int initialDepthLimit;
+
+    /**
+     * Amount to increase the depth limit by after each search.
+     */
+    private int depthIncrement;
+
+    /**
+     * Depth limit beyond which no further searches are made.
+     */
+    private int maxDepthLimit;
+
+    /**
+     * Whether primitive tasks are applied to the state as soon as they become ready.
+     */
+    private boolean interleaved;
+
+    /**
+     * Table of outcomes of nodes already searched, or null if none is kept.
+     */
+    private TranspositionTable transpositionTable;
+
+    /**
+     * Constructor taking the domain manager and planner helper to use, with default depth limits.
+     * @param domainHelper the domain manager
+     * @param plannerHelper the planner helper
+     */
+    public IterativeDeepeningPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper) {
+        this(domainHelper, plannerHelper, DEFAULT_INITIAL_DEPTH_LIMIT,
+                DEFAULT_DEPTH_INCREMENT, DEFAULT_MAX_DEPTH_LIMIT);
+    }
+
+    /**
+     * Constructor taking the domain manager and planner helper to use, along with the depth limits.
+     * @param domainHelper the domain manager
+     * @param plannerHelper the planner helper
+     * @param initialDepthLimit the depth limit for the first search
+     * @param depthIncrement the amount to increase the depth limit by after each search
+     * @param maxDepthLimit the depth limit beyond which no further searches are made
+     */
+    public IterativeDeepeningPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper, int initialDepthLimit,
+            int depthIncrement, int maxDepthLimit) {
+        this(domainHelper, plannerHelper, initialDepthLimit, depthIncrement, maxDepthLimit, false);
+    }
+
+    /**
+     * Constructor taking the domain manager and planner helper to use, along with the depth limits
+     * and whether to interleave the application of primitive tasks with decomposition.
+     * @param domainHelper the domain manager
+     * @param plannerHelper the planner helper
+     * @param initialDepthLimit the depth limit for the first search
+     * @param depthIncrement the amount to increase the depth limit by after each search
+     * @param maxDepthLimit the depth limit beyond which no further searches are made
+     * @param interleaved whether to apply primitive tasks as soon as they become ready
+     */
+    public IterativeDeepeningPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper, int initialDepthLimit,
+            int depthIncrement, int maxDepthLimit, boolean interleaved) {
+        this(domainHelper, plannerHelper, initialDepthLimit, depthIncrement, maxDepthLimit, interleaved, null);
+    }
+
+    /**
+     * Constructor taking the domain manager and planner helper to use, along with the depth limits,
+     * whether to interleave the application of primitive tasks with decomposition and a
+     * transposition table to remember the outcome of nodes already searched.
+     * @param domainHelper the domain manager
+     * @param plannerHelper the planner helper
+     * @param initialDepthLimit the depth limit for the first search
+     * @param depthIncrement the amount to increase the depth limit by after each search
+     * @param maxDepthLimit the depth limit beyond which no further searches are made
+     * @param interleaved whether to apply primitive tasks as soon as they become ready
+     * @param transpositionTable the transposition table, or null to keep none
+     */
+    public IterativeDeepeningPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper, int initialDepthLimit,
+            int depthIncrement, int maxDepthLimit, boolean interleaved,
+            TranspositionTable transpositionTable) {
+        if (initialDepthLimit < 0 || depthIncrement < 1 || maxDepthLimit < initialDepthLimit) {
+            throw new IllegalArgumentException("Invalid depth limits");
+        }
+        this.domainHelper = domainHelper;
+        this.plannerHelper = plannerHelper;
+        this.initialDepthLimit = initialDepthLimit;
+        this.depthIncrement = depthIncrement;
+        this.maxDepthLimit = maxDepthLimit;
+        this.interleaved = interleaved;
+        this.transpositionTable = transpositionTable;
+    }
+
+    /**
+     * Get the transposition table used by this planner, for example to read its hit and miss counters.
+     * @return the transposition table, or null if none is kept
+     */
+    public final TranspositionTable getTranspositionTable() {
+        return transpositionTable;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork)
+            throws PlanNotFound {
+        return findPlan(state, taskNetwork, SearchBudget.unlimited());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork, SearchBudget budget)
+            throws PlanNotFound {
+
+        TaskNetwork standardisedNetwork = plannerHelper.standardise(taskNetwork);
+        int depthLimit = initialDepthLimit;
+        while (true) {
+            DepthFirstSearch search = new DepthFirstSearch(domainHelper, plannerHelper, depthLimit,
+                    interleaved, transpositionTable, budget);
+            Plan plan = search.search(state, standardisedNetwork);
+            if (plan != null) {
+                return plan;
+            }
+            if (budget.isExhausted()) {
+                throw new PlanningTimeout(budget);
+            }
+            if (!search.isCutOff()) {
+                // The whole space was explored without reaching the limit
+                throw new PlanNotFound("No methods found to decompose this task");
+            }
+            if (depthLimit >= maxDepthLimit) {
+                throw new PlanNotFound("No plan found within depth limit of " + maxDepthLimit);
+            }
+            if (maxDepthLimit - depthLimit <= depthIncrement) {
+                depthLimit = maxDepthLimit;
+            } else {
+                depthLimit += depthIncrement;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.ImmutablePlanner;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+
+/**
+ * Factory for creating iterative-deepening planners that generate immutable plans.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class IterativeDeepeningPlannerFactory extends AbstractPlannerFactory {
+
+    /**
+     * Whether created planners apply primitive tasks as soon as they become ready.
+     */
+    private boolean interleaved;
+
+    /**
+     * Maximum weight of each created planner's transposition table, or zero to keep none.
+     */
+    private long transpositionTableWeight;
+
+    /**
+     * Constructor.
+     * @param stateService the state service to use
+     */
+    public IterativeDeepeningPlannerFactory(ImmutableStateService stateService) {
+        this(stateService, false);
+    }
+
+    /**
+     * Constructor choosing whether created planners interleave the application of
+     * primitive tasks with decomposition. Interleaving prunes failing branches early but is
+     * a heuristic, as ready primitive tasks are applied before any other ready task is tried,
+     * so interleaved planners may miss plans that need another order; leave it off for a complete search.
+     * @param stateService the state service to use
+     * @param interleaved whether to apply primitive tasks as soon as they become ready
+     */
+    public IterativeDeepeningPlannerFactory(ImmutableStateService stateService, boolean interleaved) {
+        this(stateService, interleaved, 0);
+    }
+
+    /**
+     * Constructor choosing whether created planners interleave the application of primitive tasks
+     * with decomposition, and how large a transposition table each should keep.
+     * Interleaving is a heuristic that may miss plans, as for the two-argument constructor.
+     * @param stateService the state service to use
+     * @param interleaved whether to apply primitive tasks as soon as they become ready
+     * @param transpositionTableWeight the maximum weight of each planner's transposition table,
+     *        or zero to keep none
+     */
+    public IterativeDeepeningPlannerFactory(ImmutableStateService stateService, boolean interleaved,
+            long transpositionTableWeight) {
+        super(stateService);
+        if (transpositionTableWeight < 0) {
+            throw new IllegalArgumentException("Transposition table weight must not be negative");
+        }
+        this.interleaved = interleaved;
+        this.transpositionTableWeight = transpositionTableWeight;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected final ImmutablePlanner createPlanner(ImmutableDomainHelper domainHelper,
+            ImmutablePlannerHelper plannerHelper) {
+        TranspositionTable transpositionTable = null;
+        if (transpositionTableWeight > 0) {
+            transpositionTable = new TranspositionTable(transpositionTableWeight);
+        }
+        return new IterativeDeepeningPlanner(domainHelper, plannerHelper,
+                IterativeDeepeningPlanner.DEFAULT_INITIAL_DEPTH_LIMIT, IterativeDeepeningPlanner.DEFAULT_DEPTH_INCREMENT,
+                IterativeDeepeningPlanner.DEFAULT_MAX_DEPTH_LIMIT, interleaved, transpositionTable);
+    }
+}
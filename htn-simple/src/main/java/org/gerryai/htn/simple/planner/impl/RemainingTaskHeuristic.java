@@ -0,0 +1,46 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.Set;
+
+import org.gerryai.htn.simple.planner.SearchHeuristic;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Heuristic that counts the tasks not yet applied, each of which needs at least one more
+ * step to either decompose or apply it.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class RemainingTaskHeuristic implements SearchHeuristic {
+
+    /**
+     * {@inheritDoc}
+     */
+    public int estimate(ImmutableState state, TaskNetwork taskNetwork, Set<Task> applied) {
+        int remaining = 0;
+        for (Task task : taskNetwork.getTasks()) {
+            if (!applied.contains(task)) {
+                remaining++;
+            }
+        }
+        return remaining;
+    }
+}
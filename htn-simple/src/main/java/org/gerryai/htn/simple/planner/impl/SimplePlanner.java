@@ -24,6 +24,8 @@ import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
 import org.gerryai.htn.simple.planner.DecompositionNotFound;
 import org.gerryai.htn.simple.planner.ImmutablePlanner;
 import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
@@ -61,6 +63,27 @@ public class SimplePlanner implements ImmutablePlanner {
 	 */
 	public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork)
 	        throws PlanNotFound {
+		return findPlan(state, taskNetwork, SearchBudget.unlimited());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public final Plan findPlan(ImmutableState state, TaskNetwork taskNetwork, SearchBudget budget)
+	        throws PlanNotFound {
+		return search(state, plannerHelper.standardise(taskNetwork), budget);
+	}
+	
+	/**
+	 * Search for a plan for a task network, recursing into each decomposition in turn.
+	 * @param state the initial state
+	 * @param taskNetwork the task network to find a plan for
+	 * @param budget the limits on the search
+	 * @return the plan
+	 * @throws PlanNotFound if no plan exists
+	 */
+	private Plan search(ImmutableState state, TaskNetwork taskNetwork, SearchBudget budget)
+	        throws PlanNotFound {
 		
 		if (plannerHelper.isUnsolvable(taskNetwork)) {
 			// 1. No solution
@@ -76,10 +99,14 @@ public class SimplePlanner implements ImmutablePlanner {
 				// TODO: Confirm implementation
 				// TODO: Handle state changes (and correct backtracking?)			
 				for (Method method : domainHelper.getMethodsByTask(task)) {
+					budget.expand();
 					try {
 						TaskNetwork decomposedNetwork = plannerHelper.decompose(taskNetwork, task, method);
 						// Try recursing to further process the decomposed network
-						return findPlan(state, decomposedNetwork);
+						return search(state, decomposedNetwork, budget);
+					} catch (PlanningTimeout e) {
+						// Give up the whole search, not just this method
+						throw e;
 					} catch (InvalidConstraint e) {
 					    //TODO: Is this necessary and the correct way to handle this?
 					    continue;
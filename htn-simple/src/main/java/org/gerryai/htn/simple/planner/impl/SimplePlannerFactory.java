@@ -17,71 +17,31 @@
  */
 package org.gerryai.htn.simple.planner.impl;
 
-import org.gerryai.htn.aima.AIMAConverter;
-import org.gerryai.htn.aima.impl.AIMAConverterImpl;
-import org.gerryai.htn.aima.unification.AIMAUnificationService;
-import org.gerryai.htn.domain.Domain;
-import org.gerryai.htn.simple.decomposition.DecompositionService;
-import org.gerryai.htn.simple.decomposition.impl.SimpleDecompositionService;
 import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
-import org.gerryai.htn.simple.domain.impl.SimpleDomainHelper;
-import org.gerryai.htn.simple.plan.ActionFactory;
-import org.gerryai.htn.simple.plan.ActionFactoryHelper;
-import org.gerryai.htn.simple.plan.impl.SimpleActionFactory;
-import org.gerryai.htn.simple.plan.impl.SimpleActionFactoryHelper;
-import org.gerryai.htn.simple.plan.impl.SimplePlanBuilderFactory;
 import org.gerryai.htn.simple.planner.ImmutablePlanner;
-import org.gerryai.htn.simple.planner.ImmutablePlannerFactory;
-import org.gerryai.htn.simple.planner.sort.SortService;
-import org.gerryai.htn.simple.planner.sort.impl.SimpleSortService;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
 import org.gerryai.htn.simple.problem.ImmutableStateService;
 
 /**
  * Simple factory for creating planners that generate imutable plans.
  * @author David Edwards <david@more.fool.me.uk>
  */
-public class SimplePlannerFactory implements ImmutablePlannerFactory {
-    
-    /**
-     * The state service.
-     */
-    private ImmutableStateService stateService;
-    
+public class SimplePlannerFactory extends AbstractPlannerFactory {
+
     /**
      * Constructor taking a state service to use.
      * @param stateService the state service to use
      */
     public SimplePlannerFactory(ImmutableStateService stateService) {
-        this.stateService = stateService;
+        super(stateService);
     }
 
 	/**
 	 * {@inheritDoc}
 	 */
-	public final ImmutablePlanner create(Domain domain) {
-		
-	    ImmutableDomainHelper domainHelper = new SimpleDomainHelper(domain);
-		
-		ActionFactoryHelper actionFactoryHelper = new SimpleActionFactoryHelper(domainHelper);
-		ActionFactory actionFactory = new SimpleActionFactory(actionFactoryHelper);
-		SimplePlanBuilderFactory planFactory = new SimplePlanBuilderFactory();
-		
-		aima.core.logic.fol.Unifier unifier = new aima.core.logic.fol.Unifier();
-		AIMAConverter converter = new AIMAConverterImpl();
-		AIMAUnificationService unificationService =
-		        new AIMAUnificationService(unifier, converter);
-		
-		DecompositionService decompositionService =	new SimpleDecompositionService();
-		
-		SortService sortService = new SimpleSortService();
-
-		SimplePlannerHelper plannerHelper = new SimplePlannerHelper(actionFactory,
-		        planFactory, decompositionService, unificationService, sortService,
-		        stateService, domainHelper);
-		
-		SimplePlanner planner = new SimplePlanner(domainHelper, plannerHelper);
-		
-		return planner;	
+	protected final ImmutablePlanner createPlanner(ImmutableDomainHelper domainHelper,
+	        ImmutablePlannerHelper plannerHelper) {
+		return new SimplePlanner(domainHelper, plannerHelper);
 	}
 
 }
@@ -17,8 +17,10 @@
  */
 package org.gerryai.htn.simple.planner.impl;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.gerryai.htn.domain.Condition;
 import org.gerryai.htn.domain.Effect;
@@ -34,11 +36,15 @@ import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
 import org.gerryai.htn.simple.plan.ActionFactory;
 import org.gerryai.htn.simple.plan.PlanBuilder;
 import org.gerryai.htn.simple.plan.PlanBuilderFactory;
+import org.gerryai.htn.simple.plan.impl.GroundAction;
 import org.gerryai.htn.simple.planner.DecompositionNotFound;
 import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.select.TaskSelector;
+import org.gerryai.htn.simple.planner.select.impl.DeterministicTaskSelector;
 import org.gerryai.htn.simple.planner.sort.SortService;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.simple.problem.ImmutableStateService;
+import org.gerryai.htn.simple.problem.impl.BitsetState;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
 import org.gerryai.htn.tasknetwork.TaskNetwork;
@@ -86,7 +92,12 @@ public class SimplePlannerHelper implements ImmutablePlannerHelper {
 	private ImmutableStateService stateService;
 	
 	/**
-	 * Constructor providing all the dependencies required to function.
+	 * Strategy for choosing the next non-primitive task to decompose.
+	 */
+	private TaskSelector taskSelector;
+	
+	/**
+	 * Constructor providing all the dependencies required to function, choosing tasks deterministically.
 	 * @param actionFactory the action factory
 	 * @param planBuilderFactory the plan factory
 	 * @param decompositionservice the decomposition service
@@ -103,6 +114,30 @@ public class SimplePlannerHelper implements ImmutablePlannerHelper {
 			SortService sortService,
 			ImmutableStateService stateService,
 			ImmutableDomainHelper domainHelper) {
+		this(actionFactory, planBuilderFactory, decompositionservice, unificationService, sortService,
+				stateService, domainHelper, new DeterministicTaskSelector());
+	}
+	
+	/**
+	 * Constructor providing all the dependencies required to function, along with the task selection strategy.
+	 * @param actionFactory the action factory
+	 * @param planBuilderFactory the plan factory
+	 * @param decompositionservice the decomposition service
+	 * @param unificationService the unification service
+	 * @param sortService the sorting service
+	 * @param stateService the state service
+	 * @param domainHelper the helper for manipulating domain objects
+	 * @param taskSelector the strategy for choosing the next non-primitive task to decompose
+	 */
+	public SimplePlannerHelper(
+	        ActionFactory actionFactory,
+	        PlanBuilderFactory planBuilderFactory,
+			DecompositionService decompositionservice,
+			UnificationService unificationService,
+			SortService sortService,
+			ImmutableStateService stateService,
+			ImmutableDomainHelper domainHelper,
+			TaskSelector taskSelector) {
 		this.actionFactory = actionFactory;
 		this.planBuilderFactory = planBuilderFactory;
 		this.decompositionService = decompositionservice;
@@ -110,6 +145,7 @@ public class SimplePlannerHelper implements ImmutablePlannerHelper {
 		this.sortService = sortService;
 		this.stateService = stateService;
 		this.domainHelper = domainHelper;
+		this.taskSelector = taskSelector;
 	}
 	
 	/**
@@ -133,29 +169,95 @@ public class SimplePlannerHelper implements ImmutablePlannerHelper {
 		PlanBuilder planBuilder = planBuilderFactory.createBuilder();
 		
 		for (Task task : sortedTasks) {
-			Action action;
-			try {
-				action = actionFactory.create(task);
-			} catch (TaskNotActionable e) {
-				throw new PlanNotFound("Could not turn task into action", e);
-			}
-			for (Condition condition : action.getOperator().getPreconditions()) {
-			    Condition groundCondition = domainHelper.getGroundedCondition(condition, action.getBindings());
-			    if (!stateService.ask(state, groundCondition)) {
-			        throw new PlanNotFound("Preconditions of operator not satisfied");
-			    } else {
-			        for (Effect effect : action.getOperator().getEffects()) {
-			            Effect groundEffect = domainHelper.getGroundedEffect(effect, action.getBindings());
-			            state = stateService.tell(state, groundEffect);
-			        }
-			    }
-			}
+			Action action = createAction(task);
+			state = apply(state, action);
 			planBuilder = planBuilder.addAction(action);
 		}
 		
 		return planBuilder.build();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	public final Action createAction(Task task) throws PlanNotFound {
+		try {
+			return actionFactory.create(task);
+		} catch (TaskNotActionable e) {
+			throw new PlanNotFound("Could not turn task into action", e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final ImmutableState apply(ImmutableState state, Action action) throws PlanNotFound {
+		if (action instanceof GroundAction) {
+		    return apply(state, (GroundAction) action);
+		}
+		for (Condition condition : action.getOperator().getPreconditions()) {
+		    Condition groundCondition = domainHelper.getGroundedCondition(condition, action.getBindings());
+		    if (!stateService.ask(state, groundCondition)) {
+		        throw new PlanNotFound("Preconditions of operator not satisfied");
+		    }
+		}
+		// Apply all the action's effects at once, building a single new state
+		Set<Effect> effects = action.getOperator().getEffects();
+		if (effects.isEmpty()) {
+		    return state;
+		}
+		List<Effect> groundEffects = new ArrayList<Effect>(effects.size());
+		for (Effect effect : effects) {
+		    groundEffects.add(domainHelper.getGroundedEffect(effect, action.getBindings()));
+		}
+		return stateService.apply(state, groundEffects);
+	}
+
+	/**
+	 * Apply a precompiled action, whose preconditions and effects are already ground.
+	 * On a bitset state over the action's fact index this works directly on the bits.
+	 * @param state the state to apply the action to
+	 * @param action the action
+	 * @return the new state
+	 * @throws PlanNotFound if the action's preconditions are not satisfied
+	 */
+	private ImmutableState apply(ImmutableState state, GroundAction action) throws PlanNotFound {
+		if (action.isIndexed() && state instanceof BitsetState
+		        && ((BitsetState) state).getIndex() == action.getIndex()) {
+		    BitsetState bitsetState = (BitsetState) state;
+		    if (!bitsetState.askAll(action.getPositivePreconditions())
+		            || !bitsetState.askNone(action.getNegativePreconditions())) {
+		        throw new PlanNotFound("Preconditions of operator not satisfied");
+		    }
+		    if (action.getEffects().isEmpty()) {
+		        return state;
+		    }
+		    return ((BitsetState.Builder) bitsetState.createCopyBuilder())
+		            .apply(action.getDeletes(), action.getAdds())
+		            .build();
+		}
+		for (Condition condition : action.getConditions()) {
+		    if (!stateService.ask(state, condition)) {
+		        throw new PlanNotFound("Preconditions of operator not satisfied");
+		    }
+		}
+		if (action.getEffects().isEmpty()) {
+		    return state;
+		}
+		return stateService.apply(state, action.getEffects());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final Plan createPlan(List<Action> actions) {
+		PlanBuilder planBuilder = planBuilderFactory.createBuilder();
+		for (Action action : actions) {
+			planBuilder = planBuilder.addAction(action);
+		}
+		return planBuilder.build();
+	}
+
 	/**
 	 * {@inheritDoc}.
 	 *
@@ -167,12 +269,14 @@ public class SimplePlannerHelper implements ImmutablePlannerHelper {
 
 	@Override
 	public final Task getNonPrimitiveTask(TaskNetwork taskNetwork) throws NonPrimitiveTaskNotFound {
-		for (Task task : taskNetwork.getTasks()) {
-			if (!task.isPrimitive()) {
-				return task;
-			}
-		}
-		throw new NonPrimitiveTaskNotFound("Could not find a non-primitive task");
+		return taskSelector.select(taskNetwork);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	public final List<Task> orderTasks(TaskNetwork taskNetwork, List<Task> tasks) {
+		return taskSelector.order(taskNetwork, tasks);
 	}
 
 	@Override
@@ -187,4 +291,13 @@ public class SimplePlannerHelper implements ImmutablePlannerHelper {
 		return decompositionService.decompose(substitution, taskNetwork, task, method);
 	}
 
+	@Override
+	public final TaskNetwork standardise(TaskNetwork taskNetwork) throws PlanNotFound {
+		try {
+			return decompositionService.standardise(taskNetwork);
+		} catch (InvalidConstraint e) {
+			throw new PlanNotFound("Could not standardise the task network", e);
+		}
+	}
+
 }
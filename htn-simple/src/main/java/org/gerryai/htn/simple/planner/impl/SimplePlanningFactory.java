@@ -90,7 +90,17 @@ public class SimplePlanningFactory implements ImmutablePlanningFactory {
      * Constructor to initialise all the factories this factory can produce.
      */
     public SimplePlanningFactory() {
-        logicFactory = new SimpleLogicFactory();
+        this(new SimpleLogicFactory());
+    }
+    
+    /**
+     * Constructor to initialise all the factories this factory can produce, using the given logic factory.
+     * Passing an {@link org.gerryai.htn.simple.logic.impl.InterningLogicFactory} interns every symbol
+     * used by the domain and problem.
+     * @param logicFactory the logic factory to use
+     */
+    public SimplePlanningFactory(LogicFactory logicFactory) {
+        this.logicFactory = logicFactory;
         domainBuilderFactory = new SimpleDomainBuilderFactory();
         problemBuilderFactory = new SimpleProblemBuilderFactory();
         
@@ -98,8 +108,8 @@ public class SimplePlanningFactory implements ImmutablePlanningFactory {
         taskNetworkFactory = new SimpleTaskNetworkFactory(logicFactory, constraintValidatorFactory);
 
         constraintFactory = new SimpleConstraintFactory();
-        stateService = new SimpleStateService();
-        plannerFactory = new SimplePlannerFactory(stateService);
+        stateService = SimpleStateService.persistent();
+        plannerFactory = new IterativeDeepeningPlannerFactory(stateService);
         planningService = new SimplePlanningService(plannerFactory);
     }
     
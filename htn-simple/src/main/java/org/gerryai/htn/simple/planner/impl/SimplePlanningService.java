@@ -17,30 +17,96 @@
  */
 package org.gerryai.htn.simple.planner.impl;
 
+import org.gerryai.htn.domain.Domain;
 import org.gerryai.htn.plan.Plan;
 import org.gerryai.htn.planner.PlanNotFound;
 import org.gerryai.htn.simple.planner.ImmutablePlanner;
 import org.gerryai.htn.simple.planner.ImmutablePlannerFactory;
 import org.gerryai.htn.simple.planner.ImmutablePlanningService;
+import org.gerryai.htn.simple.planner.SearchBudget;
 import org.gerryai.htn.simple.problem.ImmutableProblem;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 /**
  * A simple domain non-specific planning service that uses the simple planner.
+ * Unless domains are ground against each problem, the planner created for a domain is cached
+ * and shared by every later problem in the same domain, so that the per-request cost of setting
+ * up the planner's helpers and services is only paid once. Domains are compared by identity,
+ * and a cached planner stays alive until the least recently used planners are evicted once the
+ * cache is full.
  * @author David Edwards <david@more.fool.me.uk>
  */
 public class SimplePlanningService implements ImmutablePlanningService {
 
+	/**
+	 * Default number of planners to cache.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 16;
+	
 	/**
 	 * A factory for creating planners.
 	 */
 	private ImmutablePlannerFactory plannerFactory;
 	
+	/**
+	 * Whether to compile each problem's domain into ground actions before solving it.
+	 */
+	private boolean grounded;
+	
+	/**
+	 * Planners already created for each domain, or null if planners are not cached.
+	 */
+	private LoadingCache<Domain, ImmutablePlanner> planners;
+	
 	/**
 	 * Constructor taking a factory for creating planners.
 	 * @param plannerFactory the factory
 	 */
 	public SimplePlanningService(ImmutablePlannerFactory plannerFactory) {
+		this(plannerFactory, false);
+	}
+	
+	/**
+	 * Constructor taking a factory for creating planners, and whether to ground domains before solving.
+	 * Grounded planners depend on each problem's objects and initial state, so they are never cached
+	 * and a new planner is created for every problem.
+	 * @param plannerFactory the factory
+	 * @param grounded true to compile each problem's domain into ground actions before solving it
+	 */
+	public SimplePlanningService(ImmutablePlannerFactory plannerFactory, boolean grounded) {
+		this(plannerFactory, grounded, DEFAULT_CACHE_SIZE);
+	}
+	
+	/**
+	 * Constructor taking a factory for creating planners, whether to ground domains before solving,
+	 * and how many planners to cache.
+	 * Grounded planners depend on each problem's objects and initial state, so they are never cached
+	 * and the cache size is ignored when grounding.
+	 * @param plannerFactory the factory
+	 * @param grounded true to compile each problem's domain into ground actions before solving it
+	 * @param cacheSize the number of planners to cache, or zero to create a planner for every problem
+	 */
+	public SimplePlanningService(final ImmutablePlannerFactory plannerFactory, boolean grounded, int cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Cache size must not be negative");
+		}
 		this.plannerFactory = plannerFactory;
+		this.grounded = grounded;
+		if (cacheSize > 0 && !grounded) {
+			// Weak keys are only used to compare domains by identity; each planner refers back to
+			// its domain, so entries are only ever dropped by eviction
+			this.planners = CacheBuilder.newBuilder()
+					.weakKeys()
+					.maximumSize(cacheSize)
+					.build(new CacheLoader<Domain, ImmutablePlanner>() {
+						public ImmutablePlanner load(Domain domain) {
+							return plannerFactory.create(domain);
+						}
+					});
+		}
 	}
 	
 	/**
@@ -48,11 +114,32 @@ public class SimplePlanningService implements ImmutablePlanningService {
 	 */
 	public final Plan solve(ImmutableProblem problem) throws PlanNotFound {
 		
-		// Create a planner that will work in the domain of the given problem
-		ImmutablePlanner planner = plannerFactory.create(problem.getDomain());
-				
 		// Find a plan of the given problem
-		return planner.findPlan(problem.getState(), problem.getTaskNetwork());
+		return createPlanner(problem).findPlan(problem.getState(), problem.getTaskNetwork());
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public final Plan solve(ImmutableProblem problem, SearchBudget budget) throws PlanNotFound {
+		
+		// Find a plan of the given problem within the budget
+		return createPlanner(problem).findPlan(problem.getState(), problem.getTaskNetwork(), budget);
+	}
+	
+	/**
+	 * Create a planner that will work in the domain of the given problem.
+	 * @param problem the problem
+	 * @return the planner
+	 */
+	private ImmutablePlanner createPlanner(ImmutableProblem problem) {
+		if (grounded) {
+		    return plannerFactory.createGrounded(problem);
+		} else if (planners != null) {
+		    return planners.getUnchecked(problem.getDomain());
+		} else {
+		    return plannerFactory.create(problem.getDomain());
+		}
 	}
 
 }
@@ -0,0 +1,632 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.constraint.AfterConstraint;
+import org.gerryai.htn.constraint.BeforeConstraint;
+import org.gerryai.htn.constraint.BetweenConstraint;
+import org.gerryai.htn.constraint.Constraint;
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Function;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+
+import com.google.common.base.Objects;
+
+/**
+ * Bounded, thread-safe cache of the outcome of searching from a task network in a given state,
+ * so that identical nodes reached through different method orderings are only solved once.
+ * <p>
+ * Both outcomes are recorded: the actions of a sub-plan found from a node, or the number of
+ * decompositions below a node that were explored without finding one. The table is bounded by
+ * a weight that approximates memory use, counting each task, constraint and action an entry holds,
+ * and evicts the least recently used entries once the bound is exceeded.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class TranspositionTable {
+
+    /**
+     * Failure depth recorded when a node's whole search space was explored without finding a plan.
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /**
+     * Default maximum total weight of the entries in a table.
+     */
+    public static final long DEFAULT_MAX_WEIGHT = 1L << 20;
+
+    /**
+     * Initial capacity of the map of entries.
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Load factor of the map of entries.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Entries in least recently used order.
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    /**
+     * Maximum total weight of the entries held.
+     */
+    private final long maxWeight;
+
+    /**
+     * Total weight of the entries currently held.
+     */
+    private long weight;
+
+    /**
+     * Number of lookups that found an entry.
+     */
+    private long hits;
+
+    /**
+     * Number of lookups that found no entry.
+     */
+    private long misses;
+
+    /**
+     * Number of entries evicted to stay within the weight bound.
+     */
+    private long evictions;
+
+    /**
+     * Constructor for a table with the default weight bound.
+     */
+    public TranspositionTable() {
+        this(DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Constructor.
+     * @param maxWeight the maximum total weight of the entries held
+     */
+    public TranspositionTable(long maxWeight) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Maximum weight must be positive");
+        }
+        this.maxWeight = maxWeight;
+        entries = new LinkedHashMap<Key, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+    }
+
+    /**
+     * Create the key for a node of the search.
+     * @param taskNetwork the task network at the node
+     * @param state the state at the node
+     * @param applied the tasks in the network already applied to the state
+     * @return the key
+     */
+    public static Key key(TaskNetwork taskNetwork, ImmutableState state, Set<Task> applied) {
+        return new Key(taskNetwork, state, applied);
+    }
+
+    /**
+     * Look up the recorded outcome for a node, counting a hit or a miss.
+     * @param key the key for the node
+     * @return the entry, or null if none is held
+     */
+    public synchronized Entry get(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Record that no plan exists within the given number of decompositions from a node.
+     * A deeper failure already recorded is kept.
+     * @param key the key for the node
+     * @param depth the number of decompositions explored, or {@link #UNBOUNDED}
+     */
+    public synchronized void recordFailure(Key key, int depth) {
+        Entry existing = entries.get(key);
+        if (existing == null || (existing.actions == null && existing.failureDepth < depth)) {
+            put(key, new Entry(null, depth));
+        }
+    }
+
+    /**
+     * Record the actions of a plan found from a node.
+     * @param key the key for the node
+     * @param actions the actions that achieve the node's remaining tasks
+     */
+    public synchronized void recordPlan(Key key, List<Action> actions) {
+        put(key, new Entry(Collections.unmodifiableList(new ArrayList<Action>(actions)), 0));
+    }
+
+    /**
+     * Remove all entries, leaving the counters untouched.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Get the number of entries held.
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the total weight of the entries held.
+     * @return the weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Get the number of lookups that found an entry.
+     * @return the number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that found no entry.
+     * @return the number of misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of entries evicted to stay within the weight bound.
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Add an entry, replacing any held for the same key, then evict until within the weight bound.
+     * @param key the key
+     * @param entry the entry
+     */
+    private void put(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            weight -= weigh(key, previous);
+        }
+        weight += weigh(key, entry);
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            Map.Entry<Key, Entry> eldest = iterator.next();
+            weight -= weigh(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimate the memory held by an entry as the number of tasks, constraints and actions it refers to.
+     * @param key the key
+     * @param entry the entry
+     * @return the weight
+     */
+    private static long weigh(Key key, Entry entry) {
+        long entryWeight = 1 + key.size;
+        if (entry.actions != null) {
+            entryWeight += entry.actions.size();
+        }
+        return entryWeight;
+    }
+
+    /**
+     * Recorded outcome of searching from a node.
+     */
+    public static final class Entry {
+
+        /**
+         * Actions of the sub-plan found, or null if the node failed.
+         */
+        private final List<Action> actions;
+
+        /**
+         * Number of decompositions explored without finding a plan, if the node failed.
+         */
+        private final int failureDepth;
+
+        /**
+         * Constructor.
+         * @param actions the actions of the sub-plan, or null for a failure
+         * @param failureDepth the number of decompositions explored for a failure
+         */
+        private Entry(List<Action> actions, int failureDepth) {
+            this.actions = actions;
+            this.failureDepth = failureDepth;
+        }
+
+        /**
+         * Check whether a sub-plan was recorded.
+         * @return true if a plan was found from the node
+         */
+        public boolean isSolved() {
+            return actions != null;
+        }
+
+        /**
+         * Get the actions of the sub-plan found from the node.
+         * @return the actions, or null if the node failed
+         */
+        public List<Action> getActions() {
+            return actions;
+        }
+
+        /**
+         * Get the number of decompositions explored from the node without finding a plan.
+         * @return the depth, or {@link TranspositionTable#UNBOUNDED} if the whole space was explored
+         */
+        public int getFailureDepth() {
+            return failureDepth;
+        }
+    }
+
+    /**
+     * Canonical key for a node of the search, comparing task networks by content.
+     * Renamed variables are numbered afresh in order of first appearance, so that networks differing only
+     * in the instances drawn as methods were applied, as on each round of iterative deepening, share a key.
+     * The hash code is computed once, as networks are immutable.
+     */
+    public static final class Key {
+
+        /**
+         * The tasks in the network.
+         */
+        private final Set<Task> tasks;
+
+        /**
+         * The constraints in the network, grouped by type.
+         */
+        private final List<Set<?>> constraints;
+
+        /**
+         * The state.
+         */
+        private final ImmutableState state;
+
+        /**
+         * The tasks already applied to the state.
+         */
+        private final Set<Task> applied;
+
+        /**
+         * Number of tasks and constraints in the network.
+         */
+        private final int size;
+
+        /**
+         * Cached hash code.
+         */
+        private final int hash;
+
+        /**
+         * Constructor.
+         * @param taskNetwork the task network
+         * @param state the state
+         * @param applied the tasks already applied to the state
+         */
+        private Key(TaskNetwork taskNetwork, ImmutableState state, Set<Task> applied) {
+            Map<Term, Term> renaming = canonicalise(taskNetwork);
+            this.tasks = renameTasks(taskNetwork.getTasks(), renaming);
+            List<Set<?>> allConstraints = new ArrayList<Set<?>>();
+            allConstraints.add(renameConstraints(taskNetwork.getBeforeConstraints(), renaming));
+            allConstraints.add(renameConstraints(taskNetwork.getAfterConstraints(), renaming));
+            allConstraints.add(renameConstraints(taskNetwork.getBetweenConstraints(), renaming));
+            allConstraints.add(renameConstraints(taskNetwork.getPrecedenceConstraints(), renaming));
+            this.constraints = allConstraints;
+            this.state = state;
+            this.applied = renameTasks(applied, renaming);
+            int count = tasks.size();
+            for (Set<?> constraintSet : constraints) {
+                count += constraintSet.size();
+            }
+            this.size = count;
+            this.hash = Objects.hashCode(tasks, constraints, state, this.applied);
+        }
+
+        /**
+         * Build the renaming of every renamed variable in a task network to its canonical instance.
+         * The tasks and then the conditions of the constraints are visited in an order that ignores instances,
+         * and canonical instances are negative so that none can equal an instance drawn as a method was applied.
+         * @param taskNetwork the task network
+         * @return the renaming, which is empty if the network holds no renamed variables
+         */
+        private static Map<Term, Term> canonicalise(TaskNetwork taskNetwork) {
+            Map<Term, Term> renaming = new HashMap<Term, Term>();
+            List<Sentence> conditions = getConditions(taskNetwork);
+            if (hasRenamed(taskNetwork.getTasks(), conditions)) {
+                // Order the tasks by name and arguments, ignoring the instances of variables
+                final Map<Task, String> descriptions = new HashMap<Task, String>();
+                for (Task task : taskNetwork.getTasks()) {
+                    descriptions.put(task, describe(task));
+                }
+                List<Task> ordered = new ArrayList<Task>(taskNetwork.getTasks());
+                Collections.sort(ordered, new Comparator<Task>() {
+                    public int compare(Task first, Task second) {
+                        return descriptions.get(first).compareTo(descriptions.get(second));
+                    }
+                });
+                for (Task task : ordered) {
+                    addCanonical(task.getArguments(), renaming);
+                }
+                // Then any variables only mentioned by the conditions of constraints, ordered the same way
+                final Map<Sentence, String> conditionDescriptions = new HashMap<Sentence, String>();
+                for (Sentence condition : conditions) {
+                    conditionDescriptions.put(condition, describe(condition));
+                }
+                Collections.sort(conditions, new Comparator<Sentence>() {
+                    public int compare(Sentence first, Sentence second) {
+                        return conditionDescriptions.get(first).compareTo(conditionDescriptions.get(second));
+                    }
+                });
+                for (Sentence condition : conditions) {
+                    addCanonical(condition, renaming);
+                }
+            }
+            return renaming;
+        }
+
+        /**
+         * Get the sentences of the conditions of a task network's before, after and between constraints.
+         * @param taskNetwork the task network
+         * @return the sentences
+         */
+        private static List<Sentence> getConditions(TaskNetwork taskNetwork) {
+            List<Sentence> conditions = new ArrayList<Sentence>();
+            for (BeforeConstraint constraint : taskNetwork.getBeforeConstraints()) {
+                addCondition(constraint.getCondition(), conditions);
+            }
+            for (AfterConstraint constraint : taskNetwork.getAfterConstraints()) {
+                addCondition(constraint.getCondition(), conditions);
+            }
+            for (BetweenConstraint constraint : taskNetwork.getBetweenConstraints()) {
+                addCondition(constraint.getCondition(), conditions);
+            }
+            return conditions;
+        }
+
+        /**
+         * Add the sentence of a condition to a list.
+         * @param condition the condition, which may be null
+         * @param conditions the list to add to
+         */
+        private static void addCondition(Condition condition, List<Sentence> conditions) {
+            if (condition != null && condition.getSentence() != null) {
+                conditions.add(condition.getSentence());
+            }
+        }
+
+        /**
+         * Check whether any of some tasks or condition sentences holds a renamed variable.
+         * @param tasks the tasks
+         * @param conditions the condition sentences
+         * @return true if a renamed variable was found
+         */
+        private static boolean hasRenamed(Set<Task> tasks, List<Sentence> conditions) {
+            for (Task task : tasks) {
+                if (hasRenamed(task.getArguments())) {
+                    return true;
+                }
+            }
+            for (Sentence condition : conditions) {
+                if (hasRenamed(condition)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Check whether a sentence holds a renamed variable.
+         * @param sentence the sentence
+         * @return true if a renamed variable was found
+         */
+        private static boolean hasRenamed(Sentence sentence) {
+            if (sentence instanceof Predicate) {
+                return hasRenamed(((Predicate) sentence).getTerms());
+            } else if (sentence instanceof NegatedSentence) {
+                return hasRenamed(((NegatedSentence) sentence).getSentence());
+            } else {
+                return false;
+            }
+        }
+
+        /**
+         * Check whether some terms include a renamed variable, searching within functions.
+         * @param terms the terms
+         * @return true if a renamed variable was found
+         */
+        private static boolean hasRenamed(List<Term> terms) {
+            for (Term term : terms) {
+                if (term instanceof SimpleVariable) {
+                    if (((SimpleVariable) term).getInstance() != SimpleVariable.ORIGINAL) {
+                        return true;
+                    }
+                } else if (term instanceof Function && hasRenamed(((Function) term).getTerms())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Give each renamed variable in some terms not already renamed the next canonical instance.
+         * @param terms the terms
+         * @param renaming the renaming built so far
+         */
+        private static void addCanonical(List<Term> terms, Map<Term, Term> renaming) {
+            for (Term term : terms) {
+                if (term instanceof SimpleVariable) {
+                    SimpleVariable variable = (SimpleVariable) term;
+                    if (variable.getInstance() != SimpleVariable.ORIGINAL && !renaming.containsKey(variable)) {
+                        renaming.put(variable, variable.rename(-1L - renaming.size()));
+                    }
+                } else if (term instanceof Function) {
+                    addCanonical(((Function) term).getTerms(), renaming);
+                }
+            }
+        }
+
+        /**
+         * Give each renamed variable in a sentence not already renamed the next canonical instance.
+         * @param sentence the sentence
+         * @param renaming the renaming built so far
+         */
+        private static void addCanonical(Sentence sentence, Map<Term, Term> renaming) {
+            if (sentence instanceof Predicate) {
+                addCanonical(((Predicate) sentence).getTerms(), renaming);
+            } else if (sentence instanceof NegatedSentence) {
+                addCanonical(((NegatedSentence) sentence).getSentence(), renaming);
+            }
+        }
+
+        /**
+         * Describe a sentence by its predicate and terms, leaving out the instances of variables.
+         * @param sentence the sentence
+         * @return the description
+         */
+        private static String describe(Sentence sentence) {
+            if (sentence instanceof Predicate) {
+                StringBuilder description = new StringBuilder(((Predicate) sentence).getName());
+                describe(((Predicate) sentence).getTerms(), description);
+                return description.toString();
+            } else if (sentence instanceof NegatedSentence) {
+                return "!" + describe(((NegatedSentence) sentence).getSentence());
+            } else {
+                return String.valueOf(sentence);
+            }
+        }
+
+        /**
+         * Describe a task by its name and arguments, leaving out the instances of variables.
+         * @param task the task
+         * @return the description
+         */
+        private static String describe(Task task) {
+            StringBuilder description = new StringBuilder(task.getName());
+            describe(task.getArguments(), description);
+            return description.toString();
+        }
+
+        /**
+         * Describe some terms, leaving out the instances of variables.
+         * @param terms the terms
+         * @param description the description to add to
+         */
+        private static void describe(List<Term> terms, StringBuilder description) {
+            description.append('(');
+            for (Term term : terms) {
+                description.append(term.getName());
+                if (term instanceof Function) {
+                    describe(((Function) term).getTerms(), description);
+                }
+                description.append(',');
+            }
+            description.append(')');
+        }
+
+        /**
+         * Apply a renaming to some tasks.
+         * @param tasks the tasks
+         * @param renaming the renaming
+         * @return the renamed tasks, or the original set if the renaming is empty
+         */
+        private static Set<Task> renameTasks(Set<Task> tasks, Map<Term, Term> renaming) {
+            if (renaming.isEmpty()) {
+                return tasks;
+            }
+            Set<Task> renamed = new HashSet<Task>();
+            for (Task task : tasks) {
+                renamed.add(task.applyToCopy(renaming));
+            }
+            return renamed;
+        }
+
+        /**
+         * Apply a renaming to some constraints, and so to the tasks they mention.
+         * @param constraints the constraints
+         * @param renaming the renaming
+         * @param <T> type of constraint being renamed
+         * @return the renamed constraints, or the original set if the renaming is empty
+         */
+        private static <T extends Constraint<T>> Set<T> renameConstraints(Set<T> constraints,
+                Map<Term, Term> renaming) {
+            if (renaming.isEmpty()) {
+                return constraints;
+            }
+            Set<T> renamed = new HashSet<T>();
+            for (T constraint : constraints) {
+                renamed.add(constraint.apply(renaming));
+            }
+            return renamed;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            } else if (obj instanceof Key) {
+                final Key other = (Key) obj;
+                return hash == other.hash
+                    && tasks.equals(other.tasks)
+                    && constraints.equals(other.constraints)
+                    && state.equals(other.state)
+                    && applied.equals(other.applied);
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select;
+
+import java.util.List;
+
+import org.gerryai.htn.simple.planner.impl.NonPrimitiveTaskNotFound;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Interface for a strategy that chooses which non-primitive task in a network to decompose next.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public interface TaskSelector {
+
+    /**
+     * Choose the next non-primitive task to decompose.
+     * @param taskNetwork the task network
+     * @return a non-primitive task from the network
+     * @throws NonPrimitiveTaskNotFound if no non-primitive tasks are present in the task network
+     */
+    Task select(TaskNetwork taskNetwork) throws NonPrimitiveTaskNotFound;
+
+    /**
+     * Put some of the tasks in a network in order of preference, independently of the order the network
+     * holds them in.
+     * @param taskNetwork the task network
+     * @param candidates the tasks to order, all from the network
+     * @return the same tasks, the one this selector would choose first
+     */
+    List<Task> order(TaskNetwork taskNetwork, List<Task> candidates);
+}
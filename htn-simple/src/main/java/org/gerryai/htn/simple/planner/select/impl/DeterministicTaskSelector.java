@@ -0,0 +1,45 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import java.util.List;
+
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Task selector that chooses the non-primitive task that comes first by name and then arguments,
+ * so that the same network always gives the same choice from one run to the next.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class DeterministicTaskSelector extends RankedTaskSelector {
+
+    /**
+     * Constructor.
+     */
+    public DeterministicTaskSelector() {
+        super(null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected int[] rank(TaskNetwork taskNetwork, List<Task> candidates) {
+        return new int[candidates.size()];
+    }
+}
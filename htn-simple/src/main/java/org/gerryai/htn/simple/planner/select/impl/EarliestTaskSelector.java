@@ -0,0 +1,93 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Task selector that chooses a task as early as possible in the network's partial order, so that
+ * networks are decomposed roughly in the order their tasks will be carried out.
+ * Each task is ranked by the length of the longest chain of precedence constraints leading to it;
+ * where the constraints form a cycle, the ranks of the tasks on it stop growing after one pass per task.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class EarliestTaskSelector extends RankedTaskSelector {
+
+    /**
+     * Constructor, breaking ties by the content of the tasks.
+     */
+    public EarliestTaskSelector() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * @param tieBreaker selector used to choose between tasks equally early, or null to order them by content
+     */
+    public EarliestTaskSelector(RankedTaskSelector tieBreaker) {
+        super(tieBreaker);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected int[] rank(TaskNetwork taskNetwork, List<Task> candidates) {
+        Map<Task, Integer> levels = new HashMap<Task, Integer>();
+        int passes = taskNetwork.getTasks().size();
+        boolean changed = true;
+        for (int pass = 0; pass < passes && changed; pass++) {
+            changed = false;
+            for (PrecedenceConstraint constraint : taskNetwork.getPrecedenceConstraints()) {
+                for (Task precedingTask : constraint.getPrecedingTasks()) {
+                    int level = getLevel(levels, precedingTask) + 1;
+                    for (Task procedingTask : constraint.getProcedingTasks()) {
+                        if (getLevel(levels, procedingTask) < level) {
+                            levels.put(procedingTask, level);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        int[] ranks = new int[candidates.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            ranks[i] = getLevel(levels, candidates.get(i));
+        }
+        return ranks;
+    }
+
+    /**
+     * Get the level reached so far by a task.
+     * @param levels the levels reached so far
+     * @param task the task
+     * @return the task's level, or zero if no constraint leads to it
+     */
+    private static int getLevel(Map<Task, Integer> levels, Task task) {
+        Integer level = levels.get(task);
+        if (level == null) {
+            return 0;
+        }
+        return level;
+    }
+}
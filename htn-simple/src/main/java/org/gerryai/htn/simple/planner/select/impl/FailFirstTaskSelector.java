@@ -0,0 +1,87 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import java.util.List;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.decomposition.UnificationService;
+import org.gerryai.htn.simple.decomposition.UnifierNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+
+/**
+ * Task selector that chooses the most constrained task first: the one with the fewest methods whose
+ * head unifies with it. A task with no applicable methods is chosen straight away, so a doomed network
+ * fails at once, and otherwise the search branches as little as possible at each decomposition.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class FailFirstTaskSelector extends RankedTaskSelector {
+
+    /**
+     * Helper for finding the methods for a task.
+     */
+    private final ImmutableDomainHelper domainHelper;
+
+    /**
+     * Service for checking whether a method applies to a task.
+     */
+    private final UnificationService unificationService;
+
+    /**
+     * Constructor, breaking ties by the content of the tasks.
+     * @param domainHelper helper for finding the methods for a task
+     * @param unificationService service for checking whether a method applies to a task
+     */
+    public FailFirstTaskSelector(ImmutableDomainHelper domainHelper, UnificationService unificationService) {
+        this(domainHelper, unificationService, null);
+    }
+
+    /**
+     * Constructor.
+     * @param domainHelper helper for finding the methods for a task
+     * @param unificationService service for checking whether a method applies to a task
+     * @param tieBreaker selector used to choose between tasks with as many methods, or null to order them by content
+     */
+    public FailFirstTaskSelector(ImmutableDomainHelper domainHelper, UnificationService unificationService,
+            RankedTaskSelector tieBreaker) {
+        super(tieBreaker);
+        this.domainHelper = domainHelper;
+        this.unificationService = unificationService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected int[] rank(TaskNetwork taskNetwork, List<Task> candidates) {
+        int[] ranks = new int[candidates.size()];
+        for (int i = 0; i < ranks.length; i++) {
+            Task task = candidates.get(i);
+            for (Method method : domainHelper.getMethodsByTask(task)) {
+                try {
+                    unificationService.findUnifier(task, method);
+                    ranks[i]++;
+                } catch (UnifierNotFound e) {
+                    continue;
+                }
+            }
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.htn.simple.planner.impl.NonPrimitiveTaskNotFound;
+import org.gerryai.htn.simple.planner.select.TaskSelector;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Function;
+import org.gerryai.logic.Term;
+
+/**
+ * Base class for task selectors that rank the non-primitive tasks in a network and choose the lowest.
+ * Tasks that share the lowest rank are passed to the next selector in the chain, if there is one, and
+ * any still tied are finally ordered by name and arguments, so the choice never depends on the order
+ * in which the network happens to hold its tasks.
+ * Renamed variables are ordered by name and then by instance number. Instances are drawn in order within
+ * any one search, so the choice does not depend on how other searches sharing the counter interleave.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public abstract class RankedTaskSelector implements TaskSelector {
+
+    /**
+     * Order on the content of tasks used to break any remaining ties.
+     */
+    private static final Comparator<Task> TASK_ORDER = new Comparator<Task>() {
+        public int compare(Task task, Task other) {
+            int result = compareStrings(task.getName(), other.getName());
+            if (result != 0) {
+                return result;
+            }
+            return compareTerms(task.getArguments(), other.getArguments());
+        }
+    };
+
+    /**
+     * Selector used to choose between tasks of equal rank, or null to order them by content alone.
+     */
+    private final RankedTaskSelector tieBreaker;
+
+    /**
+     * Constructor.
+     * @param tieBreaker selector used to choose between tasks of equal rank, or null to order them by content
+     */
+    protected RankedTaskSelector(RankedTaskSelector tieBreaker) {
+        this.tieBreaker = tieBreaker;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final Task select(TaskNetwork taskNetwork) throws NonPrimitiveTaskNotFound {
+        List<Task> candidates = new ArrayList<Task>();
+        for (Task task : taskNetwork.getTasks()) {
+            if (!task.isPrimitive()) {
+                candidates.add(task);
+            }
+        }
+        if (candidates.isEmpty()) {
+            throw new NonPrimitiveTaskNotFound("Could not find a non-primitive task");
+        }
+        List<Task> best = narrow(taskNetwork, candidates);
+        Task selected = best.get(0);
+        for (int i = 1; i < best.size(); i++) {
+            if (TASK_ORDER.compare(best.get(i), selected) < 0) {
+                selected = best.get(i);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Tasks are ordered by their rank, then by their rank under each tie breaker in turn, and finally by content.
+     */
+    public final List<Task> order(TaskNetwork taskNetwork, final List<Task> candidates) {
+        if (candidates.size() < 2) {
+            return new ArrayList<Task>(candidates);
+        }
+        final List<int[]> ranks = new ArrayList<int[]>();
+        for (RankedTaskSelector selector = this; selector != null; selector = selector.tieBreaker) {
+            ranks.add(selector.rank(taskNetwork, candidates));
+        }
+        List<Integer> positions = new ArrayList<Integer>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            positions.add(i);
+        }
+        Collections.sort(positions, new Comparator<Integer>() {
+            public int compare(Integer position, Integer other) {
+                for (int[] rank : ranks) {
+                    if (rank[position] != rank[other]) {
+                        return rank[position] < rank[other] ? -1 : 1;
+                    }
+                }
+                return TASK_ORDER.compare(candidates.get(position), candidates.get(other));
+            }
+        });
+        List<Task> ordered = new ArrayList<Task>(candidates.size());
+        for (int position : positions) {
+            ordered.add(candidates.get(position));
+        }
+        return ordered;
+    }
+
+    /**
+     * Rank each of the candidate tasks, where lower ranks are preferred.
+     * @param taskNetwork the task network the candidates belong to
+     * @param candidates the non-primitive tasks to rank
+     * @return the rank of each candidate, in the same order
+     */
+    protected abstract int[] rank(TaskNetwork taskNetwork, List<Task> candidates);
+
+    /**
+     * Narrow the candidates down to those of lowest rank, consulting the tie breaker if more than one remains.
+     * @param taskNetwork the task network the candidates belong to
+     * @param candidates the candidates
+     * @return the best candidates
+     */
+    private List<Task> narrow(TaskNetwork taskNetwork, List<Task> candidates) {
+        if (candidates.size() == 1) {
+            return candidates;
+        }
+        int[] ranks = rank(taskNetwork, candidates);
+        int lowest = Integer.MAX_VALUE;
+        for (int rank : ranks) {
+            lowest = Math.min(lowest, rank);
+        }
+        List<Task> best = new ArrayList<Task>();
+        for (int i = 0; i < ranks.length; i++) {
+            if (ranks[i] == lowest) {
+                best.add(candidates.get(i));
+            }
+        }
+        if (tieBreaker != null) {
+            return tieBreaker.narrow(taskNetwork, best);
+        } else {
+            return best;
+        }
+    }
+
+    /**
+     * Compare two lists of terms, shorter lists first and then term by term.
+     * @param terms the first list
+     * @param others the second list
+     * @return the comparison
+     */
+    private static int compareTerms(List<Term> terms, List<Term> others) {
+        if (terms.size() != others.size()) {
+            return terms.size() < others.size() ? -1 : 1;
+        }
+        int result = 0;
+        for (int i = 0; i < terms.size() && result == 0; i++) {
+            result = compareTerms(terms.get(i), others.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Compare two terms, ordering variables by name and instance number and functions by name and terms.
+     * @param term the first term
+     * @param other the second term
+     * @return the comparison
+     */
+    private static int compareTerms(Term term, Term other) {
+        int result = compareStrings(label(term), label(other));
+        if (result != 0) {
+            return result;
+        } else if (term instanceof SimpleVariable && other instanceof SimpleVariable) {
+            long instance = ((SimpleVariable) term).getInstance();
+            long otherInstance = ((SimpleVariable) other).getInstance();
+            if (instance == otherInstance) {
+                return 0;
+            }
+            return instance < otherInstance ? -1 : 1;
+        } else if (term instanceof Function && other instanceof Function) {
+            return compareTerms(((Function) term).getTerms(), ((Function) other).getTerms());
+        } else {
+            return compareStrings(String.valueOf(term), String.valueOf(other));
+        }
+    }
+
+    /**
+     * Get the label a term is first ordered by, which leaves out the instance of a variable and the terms
+     * of a function.
+     * @param term the term
+     * @return the label
+     */
+    private static String label(Term term) {
+        if (term instanceof SimpleVariable || term instanceof Function) {
+            return term.getName();
+        } else {
+            return String.valueOf(term);
+        }
+    }
+
+    /**
+     * Compare two strings, either of which may be null.
+     * @param string the first string
+     * @param other the second string
+     * @return the comparison, with null before any other string
+     */
+    private static int compareStrings(String string, String other) {
+        if (string == null) {
+            return other == null ? 0 : -1;
+        } else if (other == null) {
+            return 1;
+        } else {
+            return string.compareTo(other);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.sort;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.tasknetwork.Task;
+
+/**
+ * Thrown when tasks cannot be sorted because their precedence constraints form a cycle.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class PrecedenceCycle extends PlanNotFound {
+
+	/**
+	 * Tasks that could not be sorted.
+	 */
+	private final Set<Task> tasks;
+
+	/**
+	 * Constructor.
+	 * @param tasks the tasks that could not be sorted, which include every task on a cycle
+	 */
+	public PrecedenceCycle(Set<Task> tasks) {
+		super("Precedence constraints form a cycle among " + tasks.size() + " tasks");
+		this.tasks = Collections.unmodifiableSet(tasks);
+	}
+
+	/**
+	 * Get the tasks that could not be sorted: every task on a cycle, and every task ordered after one.
+	 * @return the tasks
+	 */
+	public final Set<Task> getTasks() {
+		return tasks;
+	}
+
+	/**
+	 * Serial version UID.
+	 */
+	private static final long serialVersionUID = 2931785607411092816L;
+}
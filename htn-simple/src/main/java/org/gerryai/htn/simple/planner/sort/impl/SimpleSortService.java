@@ -18,50 +18,275 @@
 package org.gerryai.htn.simple.planner.sort.impl;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.gerryai.htn.constraint.PrecedenceConstraint;
 import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.sort.PrecedenceCycle;
 import org.gerryai.htn.simple.planner.sort.SortService;
 import org.gerryai.htn.tasknetwork.Task;
-import org.jgrapht.graph.DefaultEdge;
-import org.jgrapht.graph.SimpleDirectedGraph;
-import org.jgrapht.traverse.TopologicalOrderIterator;
 
 /**
  * Simple implementation of the SortService interface.
+ * Tasks are numbered in the order the task set iterates them, and sorted with Kahn's algorithm over arrays
+ * of edges indexed by those numbers. Whenever several tasks are free to go next, the lowest numbered goes
+ * first, so the order is stable: tasks keep their original order unless a constraint says otherwise.
+ * The arrays are kept per thread and reused between calls.
  * @author David Edwards <david@more.fool.me.uk>
  */
 public class SimpleSortService implements SortService {
 
+    /**
+     * Initial capacity of each thread's workspace, in tasks and in edges.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Marks the end of a list of edges.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Workspace for sorting, one per thread so that the service can be shared.
+     */
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
     /**
      * {@inheritDoc}
      */
 	public final List<Task> sortByConstaints(Set<Task> tasks,
             Set<PrecedenceConstraint> constraints) throws PlanNotFound {
 
-        SimpleDirectedGraph<Task, DefaultEdge> taskGraph =
-                new SimpleDirectedGraph<Task, DefaultEdge>(DefaultEdge.class);
-        for (Task task : tasks) {
-            taskGraph.addVertex(task);
+        Workspace workspace = workspaces.get();
+        try {
+            workspace.addTasks(tasks);
+            for (PrecedenceConstraint constraint : constraints) {
+                for (Task precedingTask : constraint.getPrecedingTasks()) {
+                    int from = workspace.getIndex(precedingTask);
+                    for (Task procedingTask : constraint.getProcedingTasks()) {
+                        workspace.addEdge(from, workspace.getIndex(procedingTask));
+                    }
+                }
+            }
+            return workspace.sort();
+        } finally {
+            workspace.clear();
+        }
+    }
+
+    /**
+     * Reusable arrays describing the graph of tasks being sorted.
+     */
+    private static final class Workspace {
+
+        /**
+         * Number of each task.
+         */
+        private final Map<Task, Integer> indexes = new HashMap<Task, Integer>();
+
+        /**
+         * Task with each number.
+         */
+        private Task[] tasks = new Task[INITIAL_CAPACITY];
+
+        /**
+         * Number of edges into each task from tasks not yet sorted.
+         */
+        private int[] inDegrees = new int[INITIAL_CAPACITY];
+
+        /**
+         * First edge out of each task, or NONE.
+         */
+        private int[] firstEdges = new int[INITIAL_CAPACITY];
+
+        /**
+         * Task each edge leads to.
+         */
+        private int[] edgeTargets = new int[INITIAL_CAPACITY];
+
+        /**
+         * Next edge out of the same task as each edge, or NONE.
+         */
+        private int[] nextEdges = new int[INITIAL_CAPACITY];
+
+        /**
+         * Binary min-heap of tasks ready to be sorted.
+         */
+        private int[] ready = new int[INITIAL_CAPACITY];
+
+        /**
+         * Number of tasks.
+         */
+        private int numTasks;
+
+        /**
+         * Number of edges.
+         */
+        private int numEdges;
+
+        /**
+         * Number the tasks to be sorted, in the order they are given.
+         * @param taskSet the tasks
+         */
+        private void addTasks(Set<Task> taskSet) {
+            int size = taskSet.size();
+            if (size > tasks.length) {
+                int capacity = Math.max(size, tasks.length * 2);
+                tasks = new Task[capacity];
+                inDegrees = new int[capacity];
+                firstEdges = new int[capacity];
+                ready = new int[capacity];
+            }
+            for (Task task : taskSet) {
+                indexes.put(task, numTasks);
+                tasks[numTasks] = task;
+                inDegrees[numTasks] = 0;
+                firstEdges[numTasks] = NONE;
+                numTasks++;
+            }
+        }
+
+        /**
+         * Get the number of a task.
+         * @param task the task
+         * @return the number
+         * @throws PlanNotFound if the task is not one of those being sorted
+         */
+        private int getIndex(Task task) throws PlanNotFound {
+            Integer index = indexes.get(task);
+            if (index == null) {
+                throw new PlanNotFound("Precedence constraint refers to a task that is not being sorted");
+            }
+            return index;
+        }
+
+        /**
+         * Add an edge between two tasks.
+         * @param from the number of the task that must come first
+         * @param to the number of the task that must come after it
+         */
+        private void addEdge(int from, int to) {
+            if (numEdges == edgeTargets.length) {
+                int[] newTargets = new int[numEdges * 2];
+                int[] newNext = new int[numEdges * 2];
+                System.arraycopy(edgeTargets, 0, newTargets, 0, numEdges);
+                System.arraycopy(nextEdges, 0, newNext, 0, numEdges);
+                edgeTargets = newTargets;
+                nextEdges = newNext;
+            }
+            edgeTargets[numEdges] = to;
+            nextEdges[numEdges] = firstEdges[from];
+            firstEdges[from] = numEdges;
+            inDegrees[to]++;
+            numEdges++;
+        }
+
+        /**
+         * Sort the tasks.
+         * @return the tasks in order
+         * @throws PrecedenceCycle if the edges form a cycle
+         */
+        private List<Task> sort() throws PrecedenceCycle {
+            int numReady = 0;
+            for (int task = 0; task < numTasks; task++) {
+                if (inDegrees[task] == 0) {
+                    // Tasks are added in increasing order, which already satisfies the heap property
+                    ready[numReady++] = task;
+                }
+            }
+            List<Task> sortedTasks = new ArrayList<Task>(numTasks);
+            while (numReady > 0) {
+                int task = ready[0];
+                numReady--;
+                ready[0] = ready[numReady];
+                siftDown(numReady);
+                sortedTasks.add(tasks[task]);
+                for (int edge = firstEdges[task]; edge != NONE; edge = nextEdges[edge]) {
+                    int target = edgeTargets[edge];
+                    inDegrees[target]--;
+                    if (inDegrees[target] == 0) {
+                        ready[numReady] = target;
+                        siftUp(numReady);
+                        numReady++;
+                    }
+                }
+            }
+            if (sortedTasks.size() < numTasks) {
+                Set<Task> unsorted = new LinkedHashSet<Task>();
+                for (int task = 0; task < numTasks; task++) {
+                    if (inDegrees[task] > 0) {
+                        unsorted.add(tasks[task]);
+                    }
+                }
+                throw new PrecedenceCycle(unsorted);
+            }
+            return sortedTasks;
         }
-        for (PrecedenceConstraint constraint : constraints) {
-            for (Task precedingTask : constraint.getPrecedingTasks()) {
-                for (Task procedingTask : constraint.getProcedingTasks()) {
-                    taskGraph.addEdge(precedingTask, procedingTask);                
+
+        /**
+         * Restore the heap property after adding a task at the end of the heap.
+         * @param position the position the task was added at
+         */
+        private void siftUp(int position) {
+            int task = ready[position];
+            int current = position;
+            while (current > 0) {
+                int parent = (current - 1) / 2;
+                if (ready[parent] <= task) {
+                    break;
                 }
+                ready[current] = ready[parent];
+                current = parent;
             }
+            ready[current] = task;
         }
 
-        TopologicalOrderIterator<Task, DefaultEdge> taskIterator =
-                new TopologicalOrderIterator<Task, DefaultEdge>(taskGraph);
-        List<Task> sortedTasks = new ArrayList<Task>(tasks.size());
-        while (taskIterator.hasNext()) {
-            sortedTasks.add(taskIterator.next());
+        /**
+         * Restore the heap property after replacing the task at the top of the heap.
+         * @param size the number of tasks in the heap
+         */
+        private void siftDown(int size) {
+            if (size == 0) {
+                return;
+            }
+            int task = ready[0];
+            int current = 0;
+            while (true) {
+                int child = 2 * current + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && ready[child + 1] < ready[child]) {
+                    child++;
+                }
+                if (task <= ready[child]) {
+                    break;
+                }
+                ready[current] = ready[child];
+                current = child;
+            }
+            ready[current] = task;
         }
 
-        return sortedTasks;
+        /**
+         * Forget the tasks and edges so that the workspace can be reused.
+         */
+        private void clear() {
+            for (int task = 0; task < numTasks; task++) {
+                tasks[task] = null;
+            }
+            indexes.clear();
+            numTasks = 0;
+            numEdges = 0;
+        }
     }
-
 }
@@ -17,11 +17,16 @@
  */
 package org.gerryai.htn.simple.problem;
 
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.gerryai.htn.domain.Condition;
 import org.gerryai.htn.problem.State;
+import org.gerryai.logic.Predicate;
 import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
 
 /**
  * Interface for immutable implementations of state.
@@ -48,4 +53,12 @@ public interface ImmutableState extends State {
      */
     Set<Sentence> getAssertions();
     
+    /**
+     * Find the assertions matching a pattern that may contain variables, such as on(?x, b).
+     * Matches are found lazily as the iterator is advanced.
+     * @param pattern the pattern to match
+     * @return an iterator over the bindings of the pattern's variables for each matching assertion
+     */
+    Iterator<Map<Variable, Term>> query(Predicate pattern);
+    
 }
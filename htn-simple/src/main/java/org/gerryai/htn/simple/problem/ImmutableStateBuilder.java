@@ -17,6 +17,8 @@
  */
 package org.gerryai.htn.simple.problem;
 
+import java.util.Collection;
+
 import org.gerryai.htn.domain.Effect;
 
 /**
@@ -39,6 +41,15 @@ public interface ImmutableStateBuilder {
      */
     ImmutableStateBuilder tell(Effect effect);
     
+    /**
+     * Apply a set of effects together, as the effects of a single action.
+     * Delete effects are applied before add effects, so an action that both deletes and adds
+     * the same sentence leaves it true.
+     * @param effects the effects to apply
+     * @return an updated builder
+     */
+    ImmutableStateBuilder apply(Collection<Effect> effects);
+    
     /**
      * Build the finished state.
      * @return the state
@@ -17,6 +17,8 @@
  */
 package org.gerryai.htn.simple.problem;
 
+import java.util.Collection;
+
 import org.gerryai.htn.domain.Condition;
 import org.gerryai.htn.domain.Effect;
 import org.gerryai.htn.problem.State;
@@ -43,4 +45,13 @@ public interface StateService<S extends State> {
      * @return an updated state
      */
     S tell(S state, Effect effect);
+    
+    /**
+     * Get an updated state where all the supplied effects have been applied at once.
+     * Delete effects are applied before add effects, and only one new state is built.
+     * @param state the initial state
+     * @param effects the effects to be applied
+     * @return an updated state
+     */
+    S apply(S state, Collection<Effect> effects);
 }
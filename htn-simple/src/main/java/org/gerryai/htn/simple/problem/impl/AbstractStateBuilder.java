@@ -0,0 +1,64 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.Collection;
+
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Sentence;
+
+/**
+ * Base class for state builders, which applies effects in terms of asserting and revoking sentences.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public abstract class AbstractStateBuilder implements ImmutableStateBuilder {
+
+    /**
+     * {@inheritDoc}
+     */
+    public final ImmutableStateBuilder tell(Effect effect) {
+        return this.tell(effect.getSentence());
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every delete is applied before any add, so a predicate that is both deleted and added is left true.
+     */
+    public final ImmutableStateBuilder apply(Collection<Effect> effects) {
+        for (Effect effect : effects) {
+            if (effect.getSentence() instanceof NegatedSentence) {
+                this.tell(effect.getSentence());
+            }
+        }
+        for (Effect effect : effects) {
+            if (!(effect.getSentence() instanceof NegatedSentence)) {
+                this.tell(effect.getSentence());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Assert a sentence, or revoke it if negated.
+     * @param sentence the sentence
+     * @return the updated builder
+     */
+    public abstract ImmutableStateBuilder tell(Sentence sentence);
+}
@@ -0,0 +1,377 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+import com.google.common.base.Objects;
+
+/**
+ * Immutable state over a fixed set of ground predicates, holding one bit per predicate.
+ * Asking about a predicate in the fact index is a single bit test, and applying an action's effects
+ * can be done a word at a time.
+ * Sentences outside the index are kept in a persistent set alongside the bits, so the state still
+ * behaves correctly for facts the grounding pass did not foresee.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class BitsetState implements ImmutableState {
+
+    /**
+     * The numbering of the predicates this state holds as bits.
+     */
+    private final FactIndex index;
+
+    /**
+     * One bit for each predicate in the index, set when the predicate is true.
+     */
+    private final long[] words;
+
+    /**
+     * Sentences that are true but are not in the index.
+     */
+    private final PersistentHashSet<Sentence> others;
+
+    /**
+     * Every assertion this state knows to be true, created when first asked for.
+     */
+    private Set<Sentence> assertions;
+
+    /**
+     * Private constructor taking a builder to build from.
+     * @param builder the builder to build from
+     */
+    private BitsetState(Builder builder) {
+        index = builder.index;
+        words = builder.words;
+        others = builder.others;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean ask(Condition condition) {
+        return ask(condition.getSentence());
+    }
+
+    /**
+     * Check if the underlying sentence is true or false.
+     * @param sentence the sentence to check
+     * @return the truth of the sentence
+     */
+    private boolean ask(Sentence sentence) {
+        if (sentence instanceof NegatedSentence) {
+            return !ask(((NegatedSentence) sentence).getSentence());
+        } else if (sentence instanceof Predicate) {
+            int id = index.getId((Predicate) sentence);
+            if (id == FactIndex.NOT_FOUND) {
+                return others.contains(sentence);
+            } else {
+                return ask(id);
+            }
+        } else {
+            return others.contains(sentence);
+        }
+    }
+
+    /**
+     * Check if the predicate with the given number in the fact index is true.
+     * @param id the number of the predicate
+     * @return true if the predicate is true in this state
+     */
+    public boolean ask(int id) {
+        return (words[FactIndex.wordIndex(id)] & FactIndex.bitMask(id)) != 0;
+    }
+
+    /**
+     * Check if every predicate whose bit is set in the mask is true.
+     * @param mask a bitset over the fact index
+     * @return true if all of the predicates are true in this state
+     */
+    public boolean askAll(long[] mask) {
+        for (int i = 0; i < mask.length; i++) {
+            if ((words[i] & mask[i]) != mask[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if every predicate with one of the given numbers is true.
+     * @param ids the numbers of the predicates in the fact index
+     * @return true if all of the predicates are true in this state
+     */
+    public boolean askAll(int[] ids) {
+        for (int id : ids) {
+            if (!ask(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if every predicate with one of the given numbers is false.
+     * @param ids the numbers of the predicates in the fact index
+     * @return true if none of the predicates are true in this state
+     */
+    public boolean askNone(int[] ids) {
+        for (int id : ids) {
+            if (ask(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the numbering of the predicates this state holds as bits.
+     * @return the fact index
+     */
+    public FactIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ImmutableStateBuilder createCopyBuilder() {
+        return new Builder(index).copy(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<Sentence> getAssertions() {
+        if (assertions == null) {
+            Set<Sentence> sentences = new HashSet<Sentence>(others);
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    sentences.add(index.getFact(i * FactIndex.BITS_PER_WORD + bit));
+                    word &= word - 1;
+                }
+            }
+            assertions = Collections.unmodifiableSet(sentences);
+        }
+        return assertions;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every assertion is scanned, so a query costs time proportional to the size of the state.
+     */
+    public Iterator<Map<Variable, Term>> query(Predicate pattern) {
+        return new PatternMatcher(pattern, getAssertions().iterator());
+    }
+
+    /**
+     * Builder class for BitsetState objects.
+     * @author David Edwards <david@more.fool.me.uk>
+     */
+    public static class Builder extends AbstractStateBuilder {
+
+        /**
+         * The numbering of the predicates held as bits.
+         */
+        private FactIndex index;
+
+        /**
+         * The bits of the state being built.
+         */
+        private long[] words;
+
+        /**
+         * Whether the bits belong to this builder, rather than being shared with a built state.
+         */
+        private boolean owned;
+
+        /**
+         * Sentences that are true but are not in the index.
+         */
+        private PersistentHashSet<Sentence> others;
+
+        /**
+         * Constructor.
+         * @param index the numbering of the predicates to hold as bits
+         */
+        public Builder(FactIndex index) {
+            this.index = index;
+            words = new long[index.getWordCount()];
+            owned = true;
+            others = PersistentHashSet.empty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final ImmutableStateBuilder copy(ImmutableState state) {
+            if (state instanceof BitsetState && ((BitsetState) state).index == index) {
+                words = ((BitsetState) state).words;
+                owned = false;
+                others = ((BitsetState) state).others;
+            } else {
+                words = new long[index.getWordCount()];
+                owned = true;
+                others = PersistentHashSet.empty();
+                for (Sentence sentence : state.getAssertions()) {
+                    tell(sentence);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Apply a set of ground effects given as bitsets over the fact index.
+         * Deletes are applied before adds, so a predicate in both masks is left true.
+         * @param deleteMask the predicates made false
+         * @param addMask the predicates made true
+         * @return the updated builder
+         */
+        public final Builder apply(long[] deleteMask, long[] addMask) {
+            ensureOwned();
+            for (int i = 0; i < words.length; i++) {
+                words[i] = (words[i] & ~deleteMask[i]) | addMask[i];
+            }
+            return this;
+        }
+
+        /**
+         * Apply a set of ground effects given as numbers in the fact index.
+         * Deletes are applied before adds, so a predicate in both is left true.
+         * @param deletes the numbers of the predicates made false
+         * @param adds the numbers of the predicates made true
+         * @return the updated builder
+         */
+        public final Builder apply(int[] deletes, int[] adds) {
+            ensureOwned();
+            for (int id : deletes) {
+                words[FactIndex.wordIndex(id)] &= ~FactIndex.bitMask(id);
+            }
+            for (int id : adds) {
+                words[FactIndex.wordIndex(id)] |= FactIndex.bitMask(id);
+            }
+            return this;
+        }
+
+        /**
+         * Assert a sentence, or revoke it if negated.
+         * @param sentence the sentence
+         * @return the updated builder
+         */
+        public final ImmutableStateBuilder tell(Sentence sentence) {
+            if (sentence instanceof NegatedSentence) {
+                return this.revoke(((NegatedSentence) sentence).getSentence());
+            }
+            int id = getId(sentence);
+            if (id == FactIndex.NOT_FOUND) {
+                others = others.plus(sentence);
+            } else {
+                ensureOwned();
+                words[FactIndex.wordIndex(id)] |= FactIndex.bitMask(id);
+            }
+            return this;
+        }
+
+        /**
+         * Revoke a sentence.
+         * @param sentence the sentence
+         * @return the updated builder
+         */
+        public final ImmutableStateBuilder revoke(Sentence sentence) {
+            int id = getId(sentence);
+            if (id == FactIndex.NOT_FOUND) {
+                others = others.minus(sentence);
+            } else {
+                ensureOwned();
+                words[FactIndex.wordIndex(id)] &= ~FactIndex.bitMask(id);
+            }
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final ImmutableState build() {
+            ImmutableState state = new BitsetState(this);
+            // The state now shares the bits, so any further changes must copy them first
+            owned = false;
+            return state;
+        }
+
+        /**
+         * Get the number of a sentence in the fact index.
+         * @param sentence the sentence
+         * @return the number, or NOT_FOUND if the sentence is not a predicate in the index
+         */
+        private int getId(Sentence sentence) {
+            if (sentence instanceof Predicate) {
+                return index.getId((Predicate) sentence);
+            } else {
+                return FactIndex.NOT_FOUND;
+            }
+        }
+
+        /**
+         * Make sure the bits belong to this builder before changing them.
+         */
+        private void ensureOwned() {
+            if (!owned) {
+                words = words.clone();
+                owned = true;
+            }
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(Arrays.hashCode(words), others);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof BitsetState) {
+            final BitsetState other = (BitsetState) obj;
+            return index == other.index
+                    && Arrays.equals(words, other.words)
+                    && others.equals(other.others);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getAssertions().toString();
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gerryai.logic.Predicate;
+
+/**
+ * Numbering of a fixed set of ground predicates, so that a state over them can be held as a bitset.
+ * Each predicate is given the next free number as it is added, starting from zero.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class FactIndex {
+
+    /**
+     * Number returned for a predicate that is not in the index.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Number of bits in each word of a bitset.
+     */
+    public static final int BITS_PER_WORD = Long.SIZE;
+
+    /**
+     * Shift that converts a fact number to the index of the word holding its bit.
+     */
+    private static final int WORD_SHIFT = 6;
+
+    /**
+     * Numbers of the facts in the index.
+     */
+    private final Map<Predicate, Integer> ids;
+
+    /**
+     * Facts in the index, by number.
+     */
+    private final List<Predicate> facts;
+
+    /**
+     * Private constructor taking a builder to build from.
+     * @param builder the builder to build from
+     */
+    private FactIndex(Builder builder) {
+        ids = new HashMap<Predicate, Integer>(builder.ids);
+        facts = new ArrayList<Predicate>(builder.facts);
+    }
+
+    /**
+     * Get the number of a fact.
+     * @param fact the fact
+     * @return the number of the fact, or NOT_FOUND if it is not in the index
+     */
+    public int getId(Predicate fact) {
+        Integer id = ids.get(fact);
+        if (id == null) {
+            return NOT_FOUND;
+        } else {
+            return id;
+        }
+    }
+
+    /**
+     * Get the fact with a given number.
+     * @param id the number of the fact
+     * @return the fact
+     */
+    public Predicate getFact(int id) {
+        return facts.get(id);
+    }
+
+    /**
+     * Get the number of facts in the index.
+     * @return the number of facts
+     */
+    public int size() {
+        return facts.size();
+    }
+
+    /**
+     * Get the number of words needed for a bitset over every fact in the index.
+     * @return the number of words
+     */
+    public int getWordCount() {
+        return (facts.size() + BITS_PER_WORD - 1) >>> WORD_SHIFT;
+    }
+
+    /**
+     * Get the index of the word holding a fact's bit.
+     * @param id the number of the fact
+     * @return the index of the word
+     */
+    public static int wordIndex(int id) {
+        return id >>> WORD_SHIFT;
+    }
+
+    /**
+     * Get the mask selecting a fact's bit within its word.
+     * @param id the number of the fact
+     * @return the mask
+     */
+    public static long bitMask(int id) {
+        return 1L << (id & (BITS_PER_WORD - 1));
+    }
+
+    /**
+     * Create a bitset with the bits of the given facts set.
+     * Facts that are not in the index are ignored.
+     * @param predicates the facts
+     * @return the bitset
+     */
+    public long[] createMask(Iterable<Predicate> predicates) {
+        long[] mask = new long[getWordCount()];
+        for (Predicate predicate : predicates) {
+            int id = getId(predicate);
+            if (id != NOT_FOUND) {
+                mask[wordIndex(id)] |= bitMask(id);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Builder class for FactIndex objects.
+     * @author David Edwards <david@more.fool.me.uk>
+     */
+    public static class Builder {
+
+        /**
+         * Numbers of the facts added so far.
+         */
+        private Map<Predicate, Integer> ids;
+
+        /**
+         * Facts added so far, by number.
+         */
+        private List<Predicate> facts;
+
+        /**
+         * Constructor.
+         */
+        public Builder() {
+            ids = new HashMap<Predicate, Integer>();
+            facts = new ArrayList<Predicate>();
+        }
+
+        /**
+         * Add a fact to the index, if it is not already there.
+         * @param fact the fact to add
+         * @return the number of the fact
+         */
+        public final int add(Predicate fact) {
+            Integer id = ids.get(fact);
+            if (id == null) {
+                id = facts.size();
+                ids.put(fact, id);
+                facts.add(fact);
+            }
+            return id;
+        }
+
+        /**
+         * Build the finished index.
+         * @return the index
+         */
+        public final FactIndex build() {
+            return new FactIndex(this);
+        }
+    }
+}
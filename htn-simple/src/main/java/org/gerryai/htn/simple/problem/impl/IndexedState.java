@@ -0,0 +1,455 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+import com.google.common.base.Objects;
+
+/**
+ * Immutable state that indexes its facts by predicate name and arity, and within each predicate
+ * by the term at each argument position.
+ * A pattern query such as on(?x, b) only tries the facts whose arguments agree with the pattern's
+ * most selective ground argument, so it costs time proportional to the number of matches rather
+ * than the size of the state.
+ * <p>
+ * All assertions are held in a persistent hash set shared between copies. So are each predicate's
+ * facts, and the facts at each of its argument positions, so changing a fact costs O(log n) for
+ * the assertions and for each position rather than a copy of the predicate's index. The map from
+ * predicates to their facts is shared too, and only copied the first time a derived state changes it.
+ * </p>
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class IndexedState implements ImmutableState {
+
+    /**
+     * All sentences this state knows to be true.
+     */
+    private PersistentHashSet<Sentence> sentences;
+
+    /**
+     * Index of the predicates this state knows to be true, by name and arity.
+     */
+    private Map<PredicateKey, Bucket> buckets;
+
+    /**
+     * Private constructor taking a builder to build from.
+     * @param builder the builder to build from
+     */
+    private IndexedState(Builder builder) {
+        sentences = builder.sentences;
+        buckets = builder.buckets;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean ask(Condition condition) {
+        return ask(condition.getSentence());
+    }
+
+    /**
+     * Check if the underlying sentence is true or false.
+     * @param sentence the sentence to check
+     * @return the truth of the sentence
+     */
+    private boolean ask(Sentence sentence) {
+        if (sentence instanceof NegatedSentence) {
+            return !ask(((NegatedSentence) sentence).getSentence());
+        } else {
+            return sentences.contains(sentence);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ImmutableStateBuilder createCopyBuilder() {
+        return new Builder().copy(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<Sentence> getAssertions() {
+        return sentences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Iterator<Map<Variable, Term>> query(Predicate pattern) {
+        List<Term> terms = pattern.getTerms();
+        Bucket bucket = buckets.get(new PredicateKey(pattern.getName(), terms.size()));
+        if (bucket == null) {
+            return Collections.<Map<Variable, Term>>emptyList().iterator();
+        }
+        // Only try the facts that agree with the pattern's most selective ground argument
+        Set<Predicate> candidates = bucket.facts;
+        for (int i = 0; i < terms.size(); i++) {
+            if (!(terms.get(i) instanceof Variable)) {
+                Set<Predicate> matching = bucket.getMatching(i, terms.get(i));
+                if (matching == null) {
+                    return Collections.<Map<Variable, Term>>emptyList().iterator();
+                } else if (matching.size() < candidates.size()) {
+                    candidates = matching;
+                }
+            }
+        }
+        return new PatternMatcher(pattern, candidates.iterator());
+    }
+
+    /**
+     * Builder class for IndexedState objects.
+     * @author David Edwards <david@more.fool.me.uk>
+     */
+    protected static class Builder extends AbstractStateBuilder {
+
+        /**
+         * All sentences the state being built knows to be true.
+         */
+        private PersistentHashSet<Sentence> sentences;
+
+        /**
+         * Index of the predicates the state being built knows to be true.
+         */
+        private Map<PredicateKey, Bucket> buckets;
+
+        /**
+         * Whether the map of buckets belongs to this builder, rather than being shared with a built state.
+         */
+        private boolean owned;
+
+        /**
+         * Constructor.
+         */
+        protected Builder() {
+            sentences = PersistentHashSet.empty();
+            buckets = new HashMap<PredicateKey, Bucket>();
+            owned = true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final ImmutableStateBuilder copy(ImmutableState state) {
+            if (state instanceof IndexedState) {
+                sentences = ((IndexedState) state).sentences;
+                buckets = ((IndexedState) state).buckets;
+                owned = false;
+            } else {
+                sentences = PersistentHashSet.empty();
+                buckets = new HashMap<PredicateKey, Bucket>();
+                owned = true;
+                for (Sentence sentence : state.getAssertions()) {
+                    tell(sentence);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Assert a sentence, or revoke it if negated.
+         * @param sentence the sentence
+         * @return the updated builder
+         */
+        public final ImmutableStateBuilder tell(Sentence sentence) {
+            if (sentence instanceof NegatedSentence) {
+                return this.revoke(((NegatedSentence) sentence).getSentence());
+            } else if (!sentences.contains(sentence)) {
+                sentences = sentences.plus(sentence);
+                if (sentence instanceof Predicate) {
+                    Predicate predicate = (Predicate) sentence;
+                    PredicateKey key = new PredicateKey(predicate.getName(), predicate.getTerms().size());
+                    Bucket bucket = buckets.get(key);
+                    if (bucket == null) {
+                        bucket = new Bucket(key.arity);
+                    }
+                    ensureOwned();
+                    buckets.put(key, bucket.plus(predicate));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Revoke a sentence.
+         * @param sentence the sentence
+         * @return the updated builder
+         */
+        public final ImmutableStateBuilder revoke(Sentence sentence) {
+            if (sentences.contains(sentence)) {
+                sentences = sentences.minus(sentence);
+                if (sentence instanceof Predicate) {
+                    Predicate predicate = (Predicate) sentence;
+                    PredicateKey key = new PredicateKey(predicate.getName(), predicate.getTerms().size());
+                    Bucket bucket = buckets.get(key).minus(predicate);
+                    ensureOwned();
+                    if (bucket.facts.isEmpty()) {
+                        buckets.remove(key);
+                    } else {
+                        buckets.put(key, bucket);
+                    }
+                }
+            }
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final ImmutableState build() {
+            ImmutableState state = new IndexedState(this);
+            // The state now shares the map of buckets, so further changes must be made to a copy
+            owned = false;
+            return state;
+        }
+
+        /**
+         * Make sure the map of buckets belongs to this builder before changing it.
+         */
+        private void ensureOwned() {
+            if (!owned) {
+                buckets = new HashMap<PredicateKey, Bucket>(buckets);
+                owned = true;
+            }
+        }
+    }
+
+    /**
+     * The facts for a single predicate name and arity, indexed by the term at each argument position.
+     * Buckets are immutable, and a changed bucket shares all but the changed paths with the original.
+     */
+    private static final class Bucket {
+
+        /**
+         * All facts in the bucket.
+         */
+        private final PersistentHashSet<Predicate> facts;
+
+        /**
+         * For each argument position, the facts grouped by the term at that position.
+         */
+        private final List<PersistentHashSet<Posting>> positions;
+
+        /**
+         * Constructor for an empty bucket.
+         * @param arity the arity of the predicate
+         */
+        private Bucket(int arity) {
+            facts = PersistentHashSet.empty();
+            positions = new ArrayList<PersistentHashSet<Posting>>(arity);
+            for (int i = 0; i < arity; i++) {
+                positions.add(PersistentHashSet.<Posting>empty());
+            }
+        }
+
+        /**
+         * Constructor for a changed bucket.
+         * @param facts all facts in the bucket
+         * @param positions the facts at each argument position
+         */
+        private Bucket(PersistentHashSet<Predicate> facts, List<PersistentHashSet<Posting>> positions) {
+            this.facts = facts;
+            this.positions = positions;
+        }
+
+        /**
+         * Get the facts with a given term at an argument position.
+         * @param position the argument position
+         * @param term the term
+         * @return the facts, or null if there are none
+         */
+        private Set<Predicate> getMatching(int position, Term term) {
+            Posting posting = positions.get(position).get(new Posting(term, null));
+            if (posting == null) {
+                return null;
+            }
+            return posting.facts;
+        }
+
+        /**
+         * Get a bucket holding every fact of this one plus the given fact.
+         * @param fact the fact
+         * @return the new bucket, or this bucket if it already holds the fact
+         */
+        private Bucket plus(Predicate fact) {
+            if (facts.contains(fact)) {
+                return this;
+            }
+            List<Term> terms = fact.getTerms();
+            List<PersistentHashSet<Posting>> newPositions
+                    = new ArrayList<PersistentHashSet<Posting>>(positions);
+            for (int i = 0; i < terms.size(); i++) {
+                PersistentHashSet<Posting> position = positions.get(i);
+                Posting posting = position.get(new Posting(terms.get(i), null));
+                PersistentHashSet<Predicate> matching;
+                if (posting == null) {
+                    matching = PersistentHashSet.empty();
+                } else {
+                    matching = posting.facts;
+                    position = position.minus(posting);
+                }
+                newPositions.set(i, position.plus(new Posting(terms.get(i), matching.plus(fact))));
+            }
+            return new Bucket(facts.plus(fact), newPositions);
+        }
+
+        /**
+         * Get a bucket holding every fact of this one except the given fact.
+         * @param fact the fact
+         * @return the new bucket, or this bucket if it does not hold the fact
+         */
+        private Bucket minus(Predicate fact) {
+            if (!facts.contains(fact)) {
+                return this;
+            }
+            List<Term> terms = fact.getTerms();
+            List<PersistentHashSet<Posting>> newPositions
+                    = new ArrayList<PersistentHashSet<Posting>>(positions);
+            for (int i = 0; i < terms.size(); i++) {
+                PersistentHashSet<Posting> position = positions.get(i);
+                Posting posting = position.get(new Posting(terms.get(i), null));
+                PersistentHashSet<Predicate> matching = posting.facts.minus(fact);
+                position = position.minus(posting);
+                if (!matching.isEmpty()) {
+                    position = position.plus(new Posting(terms.get(i), matching));
+                }
+                newPositions.set(i, position);
+            }
+            return new Bucket(facts.minus(fact), newPositions);
+        }
+    }
+
+    /**
+     * The facts with a given term at one argument position.
+     * Postings are equal when their terms are, so a position's postings can be looked up by term.
+     */
+    private static final class Posting {
+
+        /**
+         * The term at the argument position.
+         */
+        private final Term term;
+
+        /**
+         * The facts with the term at the position.
+         */
+        private final PersistentHashSet<Predicate> facts;
+
+        /**
+         * Constructor.
+         * @param term the term at the argument position
+         * @param facts the facts with the term at the position, or null for a posting used to look one up
+         */
+        private Posting(Term term, PersistentHashSet<Predicate> facts) {
+            this.term = term;
+            this.facts = facts;
+        }
+
+        @Override
+        public int hashCode() {
+            return term.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Posting) {
+                return term.equals(((Posting) obj).term);
+            } else {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Key identifying a predicate by its name and arity.
+     */
+    private static final class PredicateKey {
+
+        /**
+         * The name of the predicate.
+         */
+        private final String name;
+
+        /**
+         * The number of arguments of the predicate.
+         */
+        private final int arity;
+
+        /**
+         * Constructor.
+         * @param name the name of the predicate
+         * @param arity the number of arguments of the predicate
+         */
+        private PredicateKey(String name, int arity) {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(name, arity);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof PredicateKey) {
+                final PredicateKey other = (PredicateKey) obj;
+                return arity == other.arity && name.equals(other.name);
+            } else {
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return sentences.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof IndexedState) {
+            final IndexedState other = (IndexedState) obj;
+            return sentences.equals(other.sentences);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sentences.toString();
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+/**
+ * Lazily matches a predicate pattern against candidate facts, yielding the bindings of the
+ * pattern's variables for each fact that matches.
+ * A variable occurring more than once in the pattern must be bound to the same term each time.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+final class PatternMatcher implements Iterator<Map<Variable, Term>> {
+
+    /**
+     * The pattern to match.
+     */
+    private final Predicate pattern;
+
+    /**
+     * The candidate facts still to be tried.
+     */
+    private final Iterator<?> candidates;
+
+    /**
+     * The bindings for the next match, or null if it has not been found yet.
+     */
+    private Map<Variable, Term> next;
+
+    /**
+     * Constructor.
+     * @param pattern the pattern to match
+     * @param candidates the candidate facts, any of which that are not predicates are skipped
+     */
+    PatternMatcher(Predicate pattern, Iterator<?> candidates) {
+        this.pattern = pattern;
+        this.candidates = candidates;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean hasNext() {
+        while (next == null && candidates.hasNext()) {
+            Object candidate = candidates.next();
+            if (candidate instanceof Predicate) {
+                next = match(pattern, (Predicate) candidate);
+            }
+        }
+        return next != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Map<Variable, Term> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<Variable, Term> bindings = next;
+        next = null;
+        return bindings;
+    }
+
+    /**
+     * Not supported, as states are immutable.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Match a pattern against a single fact.
+     * @param pattern the pattern
+     * @param fact the fact
+     * @return the bindings of the pattern's variables, or null if the fact does not match
+     */
+    static Map<Variable, Term> match(Predicate pattern, Predicate fact) {
+        List<Term> patternTerms = pattern.getTerms();
+        List<Term> factTerms = fact.getTerms();
+        if (!pattern.getName().equals(fact.getName()) || patternTerms.size() != factTerms.size()) {
+            return null;
+        }
+        Map<Variable, Term> bindings = new HashMap<Variable, Term>();
+        for (int i = 0; i < patternTerms.size(); i++) {
+            Term patternTerm = patternTerms.get(i);
+            Term factTerm = factTerms.get(i);
+            if (patternTerm instanceof Variable) {
+                Term bound = bindings.get(patternTerm);
+                if (bound == null) {
+                    bindings.put((Variable) patternTerm, factTerm);
+                } else if (!bound.equals(factTerm)) {
+                    return null;
+                }
+            } else if (!patternTerm.equals(factTerm)) {
+                return null;
+            }
+        }
+        return bindings;
+    }
+}
@@ -0,0 +1,568 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set backed by a hash array mapped trie.
+ * Adding or removing an element copies only the O(log n) nodes on the path to it and
+ * returns a new set that shares every other node with this one, so successive versions
+ * of a large set are cheap to make and to keep.
+ * <p>
+ * The set cannot be modified through the {@link java.util.Set} interface; use
+ * {@link #plus(Object)} and {@link #minus(Object)} instead. Elements must not be null.
+ * @param <E> the type of element held
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+    /**
+     * Number of hash bits consumed at each level of the trie.
+     */
+    private static final int BITS = 5;
+
+    /**
+     * Mask for the hash bits used at a single level.
+     */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * The empty set.
+     */
+    private static final PersistentHashSet<Object> EMPTY =
+            new PersistentHashSet<Object>(null, 0, 0);
+
+    /**
+     * Root of the trie, or null if the set is empty.
+     */
+    private final Node root;
+
+    /**
+     * Number of elements in the set.
+     */
+    private final int size;
+
+    /**
+     * Sum of the hash codes of the elements, as required of {@link java.util.Set#hashCode()}.
+     */
+    private final int hash;
+
+    /**
+     * Constructor.
+     * @param root the root node
+     * @param size the number of elements
+     * @param hash the sum of the element hash codes
+     */
+    private PersistentHashSet(Node root, int size, int hash) {
+        this.root = root;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * Get the empty set.
+     * @param <E> the type of element held
+     * @return the empty set
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentHashSet<E> empty() {
+        return (PersistentHashSet<E>) EMPTY;
+    }
+
+    /**
+     * Get a set containing every element of this one plus the given element.
+     * @param element the element to add
+     * @return the new set, or this set if it already contains the element
+     */
+    public PersistentHashSet<E> plus(E element) {
+        int elementHash = element.hashCode();
+        Node newRoot;
+        if (root == null) {
+            newRoot = new BitmapNode(bit(elementHash, 0), new Object[] {element});
+        } else {
+            newRoot = root.plus(element, elementHash, 0);
+            if (newRoot == root) {
+                return this;
+            }
+        }
+        return new PersistentHashSet<E>(newRoot, size + 1, hash + elementHash);
+    }
+
+    /**
+     * Get a set containing every element of this one except the given element.
+     * @param element the element to remove
+     * @return the new set, or this set if it does not contain the element
+     */
+    public PersistentHashSet<E> minus(Object element) {
+        if (root == null) {
+            return this;
+        }
+        int elementHash = element.hashCode();
+        Node newRoot = root.minus(element, elementHash, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashSet<E>(newRoot, size - 1, hash - elementHash);
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return get(element) != null;
+    }
+
+    /**
+     * Get the element of this set equal to the given one.
+     * Elements that are equal without being identical, such as entries compared by key alone, can so be
+     * looked up by a stand-in for them.
+     * @param element the element to look for
+     * @return the element held, or null if this set holds no element equal to it
+     */
+    @SuppressWarnings("unchecked")
+    public E get(Object element) {
+        if (root == null || element == null) {
+            return null;
+        }
+        return (E) root.get(element, element.hashCode(), 0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        } else if (obj instanceof PersistentHashSet) {
+            final PersistentHashSet<?> other = (PersistentHashSet<?>) obj;
+            return size == other.size && hash == other.hash && containsAll(other);
+        } else {
+            return super.equals(obj);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new TrieIterator<E>(root);
+    }
+
+    /**
+     * Get the bit that selects an element's slot at the given level.
+     * @param elementHash the hash of the element
+     * @param shift the number of hash bits already consumed
+     * @return the bit for the slot
+     */
+    private static int bit(int elementHash, int shift) {
+        return 1 << ((elementHash >>> shift) & MASK);
+    }
+
+    /**
+     * Build a node holding two distinct elements.
+     * @param a the first element
+     * @param aHash the hash of the first element
+     * @param b the second element
+     * @param bHash the hash of the second element
+     * @param shift the number of hash bits already consumed
+     * @return the node
+     */
+    private static Node pair(Object a, int aHash, Object b, int bHash, int shift) {
+        if (aHash == bHash) {
+            return new CollisionNode(aHash, new Object[] {a, b});
+        }
+        int aIndex = (aHash >>> shift) & MASK;
+        int bIndex = (bHash >>> shift) & MASK;
+        int aBit = 1 << aIndex;
+        int bBit = 1 << bIndex;
+        if (aIndex == bIndex) {
+            return new BitmapNode(aBit, new Object[] {pair(a, aHash, b, bHash, shift + BITS)});
+        } else if (aIndex < bIndex) {
+            return new BitmapNode(aBit | bBit, new Object[] {a, b});
+        } else {
+            return new BitmapNode(aBit | bBit, new Object[] {b, a});
+        }
+    }
+
+    /**
+     * A node in the trie.
+     */
+    private abstract static class Node {
+
+        /**
+         * Find the element of the subtree rooted here equal to the given one.
+         * @param element the element
+         * @param elementHash its hash
+         * @param shift the number of hash bits already consumed
+         * @return the element held, or null if none is present
+         */
+        abstract Object get(Object element, int elementHash, int shift);
+
+        /**
+         * Add an element to the subtree rooted here.
+         * @param element the element
+         * @param elementHash its hash
+         * @param shift the number of hash bits already consumed
+         * @return the new node, or this node if the element was already present
+         */
+        abstract Node plus(Object element, int elementHash, int shift);
+
+        /**
+         * Remove an element from the subtree rooted here.
+         * @param element the element
+         * @param elementHash its hash
+         * @param shift the number of hash bits already consumed
+         * @return the new node, this node if the element was absent, or null if the subtree is now empty
+         */
+        abstract Node minus(Object element, int elementHash, int shift);
+
+        /**
+         * Get the slots of this node; each holds either an element or a child node.
+         * @return the slots
+         */
+        abstract Object[] slots();
+    }
+
+    /**
+     * Node with up to 32 slots, present slots being marked in a bitmap.
+     */
+    private static final class BitmapNode extends Node {
+
+        /**
+         * Which of the 32 possible slots are present.
+         */
+        private final int bitmap;
+
+        /**
+         * The present slots, in bit order.
+         */
+        private final Object[] slots;
+
+        /**
+         * Constructor.
+         * @param bitmap the bitmap of present slots
+         * @param slots the present slots
+         */
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        /**
+         * Get the position in the slot array of the slot for a bit.
+         * @param bit the bit
+         * @return the position
+         */
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        Object get(Object element, int elementHash, int shift) {
+            int bit = bit(elementHash, shift);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).get(element, elementHash, shift + BITS);
+            } else if (slot.equals(element)) {
+                return slot;
+            }
+            return null;
+        }
+
+        @Override
+        Node plus(Object element, int elementHash, int shift) {
+            int bit = bit(elementHash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newSlots = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, newSlots, 0, index);
+                newSlots[index] = element;
+                System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+                return new BitmapNode(bitmap | bit, newSlots);
+            }
+            Object slot = slots[index];
+            Object newSlot;
+            if (slot instanceof Node) {
+                newSlot = ((Node) slot).plus(element, elementHash, shift + BITS);
+                if (newSlot == slot) {
+                    return this;
+                }
+            } else if (slot.equals(element)) {
+                return this;
+            } else {
+                newSlot = pair(slot, slot.hashCode(), element, elementHash, shift + BITS);
+            }
+            return replace(index, newSlot);
+        }
+
+        @Override
+        Node minus(Object element, int elementHash, int shift) {
+            int bit = bit(elementHash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node newChild = child.minus(element, elementHash, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                } else if (newChild == null) {
+                    return remove(index, bit);
+                }
+                Object[] childSlots = newChild.slots();
+                if (childSlots.length == 1 && !(childSlots[0] instanceof Node)) {
+                    // Pull a lone element back up into this node
+                    return replace(index, childSlots[0]);
+                }
+                return replace(index, newChild);
+            } else if (slot.equals(element)) {
+                return remove(index, bit);
+            }
+            return this;
+        }
+
+        @Override
+        Object[] slots() {
+            return slots;
+        }
+
+        /**
+         * Copy this node with one slot replaced.
+         * @param index the position of the slot
+         * @param slot the new slot
+         * @return the new node
+         */
+        private Node replace(int index, Object slot) {
+            Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new BitmapNode(bitmap, newSlots);
+        }
+
+        /**
+         * Copy this node with one slot removed.
+         * @param index the position of the slot
+         * @param bit the bit for the slot
+         * @return the new node, or null if no slots remain
+         */
+        private Node remove(int index, int bit) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, newSlots.length - index);
+            return new BitmapNode(bitmap & ~bit, newSlots);
+        }
+    }
+
+    /**
+     * Node holding elements whose hashes are identical.
+     */
+    private static final class CollisionNode extends Node {
+
+        /**
+         * The hash shared by every element.
+         */
+        private final int collisionHash;
+
+        /**
+         * The elements.
+         */
+        private final Object[] elements;
+
+        /**
+         * Constructor.
+         * @param collisionHash the shared hash
+         * @param elements the elements
+         */
+        CollisionNode(int collisionHash, Object[] elements) {
+            this.collisionHash = collisionHash;
+            this.elements = elements;
+        }
+
+        /**
+         * Find an element.
+         * @param element the element
+         * @return its position, or -1 if absent
+         */
+        private int indexOf(Object element) {
+            for (int i = 0; i < elements.length; i++) {
+                if (elements[i].equals(element)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object get(Object element, int elementHash, int shift) {
+            if (elementHash != collisionHash) {
+                return null;
+            }
+            int index = indexOf(element);
+            if (index < 0) {
+                return null;
+            }
+            return elements[index];
+        }
+
+        @Override
+        Node plus(Object element, int elementHash, int shift) {
+            if (elementHash != collisionHash) {
+                // Push this node down a level beneath a bitmap node, then add alongside it
+                return new BitmapNode(bit(collisionHash, shift), new Object[] {this})
+                        .plus(element, elementHash, shift);
+            } else if (indexOf(element) >= 0) {
+                return this;
+            }
+            Object[] newElements = new Object[elements.length + 1];
+            System.arraycopy(elements, 0, newElements, 0, elements.length);
+            newElements[elements.length] = element;
+            return new CollisionNode(collisionHash, newElements);
+        }
+
+        @Override
+        Node minus(Object element, int elementHash, int shift) {
+            if (elementHash != collisionHash) {
+                return this;
+            }
+            int index = indexOf(element);
+            if (index < 0) {
+                return this;
+            } else if (elements.length == 1) {
+                return null;
+            }
+            Object[] newElements = new Object[elements.length - 1];
+            System.arraycopy(elements, 0, newElements, 0, index);
+            System.arraycopy(elements, index + 1, newElements, index, newElements.length - index);
+            return new CollisionNode(collisionHash, newElements);
+        }
+
+        @Override
+        Object[] slots() {
+            return elements;
+        }
+    }
+
+    /**
+     * Depth-first iterator over the elements of a trie.
+     * @param <E> the type of element held
+     */
+    private static final class TrieIterator<E> implements Iterator<E> {
+
+        /**
+         * Maximum depth of the trie: enough levels to consume all 32 hash bits, plus a collision node.
+         */
+        private static final int MAX_DEPTH = 8;
+
+        /**
+         * Slot arrays of the nodes on the current path.
+         */
+        private final Object[][] stack = new Object[MAX_DEPTH][];
+
+        /**
+         * Position within each slot array on the current path.
+         */
+        private final int[] positions = new int[MAX_DEPTH];
+
+        /**
+         * Depth of the current node, or -1 when iteration is complete.
+         */
+        private int depth;
+
+        /**
+         * The next element to return, or null if there are no more.
+         */
+        private Object next;
+
+        /**
+         * Constructor.
+         * @param root the root of the trie, or null if empty
+         */
+        TrieIterator(Node root) {
+            if (root == null) {
+                depth = -1;
+            } else {
+                stack[0] = root.slots();
+                advance();
+            }
+        }
+
+        /**
+         * Move on to the next element.
+         */
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                Object[] slots = stack[depth];
+                if (positions[depth] == slots.length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = slots[positions[depth]++];
+                if (slot instanceof Node) {
+                    depth++;
+                    stack[depth] = ((Node) slot).slots();
+                    positions[depth] = 0;
+                } else {
+                    next = slot;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            E element = (E) next;
+            advance();
+            return element;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public void remove() {
+            throw new UnsupportedOperationException("Persistent sets cannot be modified");
+        }
+    }
+}
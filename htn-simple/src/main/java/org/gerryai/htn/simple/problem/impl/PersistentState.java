@@ -0,0 +1,180 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+/**
+ * Immutable state whose assertions are held in a persistent hash set.
+ * A state built by telling a copy of another shares all but O(log n) of its structure with
+ * the original, so the planner can make a new state for every effect without copying the world.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class PersistentState implements ImmutableState {
+
+    /**
+     * All sentences this state knows to be true.
+     */
+    private PersistentHashSet<Sentence> sentences;
+
+    /**
+     * Private constructor taking a builder to build from.
+     * @param builder the builder to build from
+     */
+    private PersistentState(Builder builder) {
+        sentences = builder.sentences;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean ask(Condition condition) {
+        return ask(condition.getSentence());
+    }
+
+    /**
+     * Check if the underlying sentence is true or false.
+     * @param sentence the sentence to check
+     * @return the truth of the sentence
+     */
+    private boolean ask(Sentence sentence) {
+        if (sentence instanceof NegatedSentence) {
+            return !ask(((NegatedSentence) sentence).getSentence());
+        } else {
+            return sentences.contains(sentence);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public ImmutableStateBuilder createCopyBuilder() {
+        return new Builder().copy(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Set<Sentence> getAssertions() {
+        return sentences;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Every assertion is scanned, so a query costs time proportional to the size of the state.
+     */
+    public Iterator<Map<Variable, Term>> query(Predicate pattern) {
+        return new PatternMatcher(pattern, sentences.iterator());
+    }
+
+    /**
+     * Builder class for PersistentState objects.
+     * @author David Edwards <david@more.fool.me.uk>
+     */
+    protected static class Builder extends AbstractStateBuilder {
+
+        /**
+         * All sentences the state being built knows to be true.
+         */
+        private PersistentHashSet<Sentence> sentences;
+
+        /**
+         * Constructor.
+         */
+        protected Builder() {
+            sentences = PersistentHashSet.empty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final ImmutableStateBuilder copy(ImmutableState state) {
+            if (state instanceof PersistentState) {
+                sentences = ((PersistentState) state).sentences;
+            } else {
+                sentences = PersistentHashSet.empty();
+                for (Sentence sentence : state.getAssertions()) {
+                    sentences = sentences.plus(sentence);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Assert a sentence, or revoke it if negated.
+         * @param sentence the sentence
+         * @return the updated builder
+         */
+        public final ImmutableStateBuilder tell(Sentence sentence) {
+            if (sentence instanceof NegatedSentence) {
+                return this.revoke(((NegatedSentence) sentence).getSentence());
+            } else {
+                sentences = sentences.plus(sentence);
+            }
+            return this;
+        }
+
+        /**
+         * Revoke a sentence.
+         * @param sentence the sentence
+         * @return the updated builder
+         */
+        public final ImmutableStateBuilder revoke(Sentence sentence) {
+            sentences = sentences.minus(sentence);
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final ImmutableState build() {
+            return new PersistentState(this);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return sentences.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof PersistentState) {
+            final PersistentState other = (PersistentState) obj;
+            return sentences.equals(other.sentences);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sentences.toString();
+    }
+}
@@ -19,14 +19,18 @@ package org.gerryai.htn.simple.problem.impl;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.gerryai.htn.domain.Condition;
-import org.gerryai.htn.domain.Effect;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
 import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
 import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
 
 /**
  * Implementation of an immutable state representation.
@@ -81,11 +85,19 @@ public final class SimpleState implements ImmutableState {
         return Collections.unmodifiableSet(sentences);
     }
 
+    /**
+     * {@inheritDoc}
+     * Every assertion is scanned, so a query costs time proportional to the size of the state.
+     */
+    public Iterator<Map<Variable, Term>> query(Predicate pattern) {
+        return new PatternMatcher(pattern, sentences.iterator());
+    }
+
     /**
      * Builder class for SimpleState objects.
      * @author David Edwards <david@more.fool.me.uk>
      */
-    protected static class Builder implements ImmutableStateBuilder {
+    protected static class Builder extends AbstractStateBuilder {
 
         /**
          * Map of all functions this state knows about, and whether they are true.
@@ -107,13 +119,6 @@ public final class SimpleState implements ImmutableState {
             return this;
         }
  
-        /**
-         * {@inheritDoc}
-         */
-        public final ImmutableStateBuilder tell(Effect effect) {
-            return this.tell(effect.getSentence());
-        }
- 
         /**
          * {@inheritDoc}
          */
@@ -17,23 +17,90 @@
  */
 package org.gerryai.htn.simple.problem.impl;
 
+import java.util.Collection;
+
 import org.gerryai.htn.domain.Condition;
 import org.gerryai.htn.domain.Effect;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
 import org.gerryai.htn.simple.problem.ImmutableStateService;
 
+import com.google.common.base.Supplier;
+
 /**
  * Implementation of a state service that can handle immutable objects.
+ * The kind of state the service works with is chosen by the builders it is given; every state it
+ * returns is built by one of them, so a state of another kind is converted the first time it is changed.
  * @author David Edwards <david@more.fool.me.uk>
  */
 public class SimpleStateService implements ImmutableStateService {
 
+    /**
+     * Source of builders for the states this service works with.
+     */
+    private Supplier<? extends ImmutableStateBuilder> builders;
+
+    /**
+     * Constructor for a service whose states hold their sentences in a hash set.
+     */
+    public SimpleStateService() {
+        this(new Supplier<ImmutableStateBuilder>() {
+            public ImmutableStateBuilder get() {
+                return new SimpleState.Builder();
+            }
+        });
+    }
+
+    /**
+     * Constructor taking the source of builders for the states the service works with.
+     * @param builders supplies a new, empty builder each time it is called
+     */
+    public SimpleStateService(Supplier<? extends ImmutableStateBuilder> builders) {
+        this.builders = builders;
+    }
+
+    /**
+     * Create a service whose states share structure with the states they were made from.
+     * @return the state service
+     */
+    public static SimpleStateService persistent() {
+        return new SimpleStateService(new Supplier<ImmutableStateBuilder>() {
+            public ImmutableStateBuilder get() {
+                return new PersistentState.Builder();
+            }
+        });
+    }
+
+    /**
+     * Create a service whose states index their facts by predicate, for fast pattern queries.
+     * @return the state service
+     */
+    public static SimpleStateService indexed() {
+        return new SimpleStateService(new Supplier<ImmutableStateBuilder>() {
+            public ImmutableStateBuilder get() {
+                return new IndexedState.Builder();
+            }
+        });
+    }
+
+    /**
+     * Create a service whose states hold the ground predicates of a fact index as bits.
+     * @param index the numbering of the predicates to hold as bits
+     * @return the state service
+     */
+    public static SimpleStateService bitset(final FactIndex index) {
+        return new SimpleStateService(new Supplier<ImmutableStateBuilder>() {
+            public ImmutableStateBuilder get() {
+                return new BitsetState.Builder(index);
+            }
+        });
+    }
+
     /**
      * {@inheritDoc}
      */
     public final ImmutableStateBuilder createStateBuilder() {
-        return new SimpleState.Builder();
+        return builders.get();
     }
     
     /**
@@ -47,9 +114,20 @@ public class SimpleStateService implements ImmutableStateService {
      * {@inheritDoc}
      */
     public final ImmutableState tell(ImmutableState state, Effect effect) {
-        return state.createCopyBuilder()
+        return createStateBuilder()
+                .copy(state)
                 .tell(effect)
                 .build();
     }
-     
+
+    /**
+     * {@inheritDoc}
+     */
+    public final ImmutableState apply(ImmutableState state, Collection<Effect> effects) {
+        return createStateBuilder()
+                .copy(state)
+                .apply(effects)
+                .build();
+    }
+
 }
@@ -54,6 +54,11 @@ public class SimpleTask implements Task {
      */
     private LogicFactory logicFactory;
     
+    /**
+     * Cached hash code, or zero if not yet calculated.
+     */
+    private int hash;
+    
 	/**
 	 * Constructor for a simple task.
 	 * @param builder the builder to build the task
@@ -65,6 +70,18 @@ public class SimpleTask implements Task {
 		this.logicFactory = builder.getLogicFactory();
 	}
 	
+	/**
+	 * Constructor for a copy of a task with new arguments, which the copy takes ownership of.
+	 * @param task the task to copy
+	 * @param arguments the arguments of the copy
+	 */
+	SimpleTask(SimpleTask task, List<Term> arguments) {
+		this.name = task.name;
+		this.arguments = arguments;
+		this.isPrimitive = task.isPrimitive;
+		this.logicFactory = task.logicFactory;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -90,22 +107,39 @@ public class SimpleTask implements Task {
      * {@inheritDoc}
      */
 	public final Task applyToCopy(Map<Term, Term> substitution) {
+		if (substitution.isEmpty()) {
+			return this;
+		}
+		List<Term> newArguments = logicFactory.apply(arguments, substitution);
+		if (newArguments.equals(arguments)) {
+			// The substitution does not touch this task, so it can stand in for its own copy
+			return this;
+		}
         return new Builder(logicFactory)
-	        .copy(this)
-	        .apply(substitution)
+	        .setName(name)
+	        .addArguments(newArguments)
+	        .setIsPrimitive(isPrimitive)
 	        .build();
 	}
 	
 	@Override
 	public final int hashCode() {
-		return Objects.hashCode(name, arguments);
+		int h = hash;
+		if (h == 0) {
+			h = Objects.hashCode(name, arguments);
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
 	public final boolean equals(Object obj) {
-		if (obj instanceof SimpleTask) {
+		if (this == obj) {
+			return true;
+		} else if (obj instanceof SimpleTask) {
 	        final SimpleTask other = (SimpleTask) obj;
-	        return Objects.equal(name, other.name)
+	        return hashCode() == other.hashCode()
+	            && Objects.equal(name, other.name)
 	            && Objects.equal(arguments, other.arguments);
 	    } else {
 	        return false;
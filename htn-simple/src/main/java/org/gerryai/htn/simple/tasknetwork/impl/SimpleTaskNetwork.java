@@ -17,24 +17,35 @@
  */
 package org.gerryai.htn.simple.tasknetwork.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.gerryai.htn.constraint.AfterConstraint;
 import org.gerryai.htn.constraint.BeforeConstraint;
 import org.gerryai.htn.constraint.BetweenConstraint;
+import org.gerryai.htn.constraint.Constraint;
 import org.gerryai.htn.constraint.PrecedenceConstraint;
 import org.gerryai.htn.simple.constraint.validation.ConstraintValidator;
 import org.gerryai.htn.simple.constraint.validation.ConstraintValidatorFactory;
+import org.gerryai.htn.simple.problem.impl.PersistentHashSet;
 import org.gerryai.htn.simple.tasknetwork.TaskNetworkBuilder;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
 import org.gerryai.htn.tasknetwork.TaskNetwork;
 import org.gerryai.logic.Term;
 
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+
 /**
  * Simple immutable implementation of a task network.
+ * Tasks and constraints are held in persistent sets, so applying a substitution or replacing a task
+ * shares everything it does not change with the original network.
  * @author David Edwards <david@more.fool.me.uk>
  */
 public class SimpleTaskNetwork implements TaskNetwork {
@@ -47,27 +58,27 @@ public class SimpleTaskNetwork implements TaskNetwork {
 	/**
 	 * Set of tasks to be solved in this network.
 	 */
-	private Set<Task> tasks;
+	private PersistentHashSet<Task> tasks;
 	
 	/**
 	 * Set of before constraints to be met.
 	 */
-	private Set<BeforeConstraint> beforeConstraints;
+	private PersistentHashSet<BeforeConstraint> beforeConstraints;
 
 	/**
 	 * Set of after constraints to be met.
 	 */
-	private Set<AfterConstraint> afterConstraints;
+	private PersistentHashSet<AfterConstraint> afterConstraints;
 
 	/**
 	 * Set of between constraints to be met.
 	 */
-	private Set<BetweenConstraint> betweenConstraints;
+	private PersistentHashSet<BetweenConstraint> betweenConstraints;
 
 	/**
 	 * Set of precedence constraints to be met.
 	 */
-	private Set<PrecedenceConstraint> precedenceConstraints;
+	private PersistentHashSet<PrecedenceConstraint> precedenceConstraints;
 	
 	/**
 	 * Constructor for a simple task.
@@ -75,11 +86,33 @@ public class SimpleTaskNetwork implements TaskNetwork {
 	 */
 	protected SimpleTaskNetwork(Builder builder) {
 		this.constraintValidatorFactory = builder.constraintValidatorFactory;
-		this.tasks = builder.constraintValidator.getTasks();
-		this.beforeConstraints = builder.constraintValidator.getBeforeConstraints();
-		this.afterConstraints = builder.constraintValidator.getAfterConstraints();
-		this.betweenConstraints = builder.constraintValidator.getBetweenConstraints();
-		this.precedenceConstraints = builder.constraintValidator.getPrecedenceConstraints();
+		this.tasks = persist(builder.constraintValidator.getTasks());
+		this.beforeConstraints = persist(builder.constraintValidator.getBeforeConstraints());
+		this.afterConstraints = persist(builder.constraintValidator.getAfterConstraints());
+		this.betweenConstraints = persist(builder.constraintValidator.getBetweenConstraints());
+		this.precedenceConstraints = persist(builder.constraintValidator.getPrecedenceConstraints());
+	}
+	
+	/**
+	 * Constructor for a task network derived from another, sharing its factory.
+	 * @param original the network this one was derived from
+	 * @param tasks the tasks
+	 * @param beforeConstraints the before constraints
+	 * @param afterConstraints the after constraints
+	 * @param betweenConstraints the between constraints
+	 * @param precedenceConstraints the precedence constraints
+	 */
+	SimpleTaskNetwork(SimpleTaskNetwork original, PersistentHashSet<Task> tasks,
+			PersistentHashSet<BeforeConstraint> beforeConstraints,
+			PersistentHashSet<AfterConstraint> afterConstraints,
+			PersistentHashSet<BetweenConstraint> betweenConstraints,
+			PersistentHashSet<PrecedenceConstraint> precedenceConstraints) {
+		this.constraintValidatorFactory = original.constraintValidatorFactory;
+		this.tasks = tasks;
+		this.beforeConstraints = beforeConstraints;
+		this.afterConstraints = afterConstraints;
+		this.betweenConstraints = betweenConstraints;
+		this.precedenceConstraints = precedenceConstraints;
 	}
 	
 	@Override
@@ -121,18 +154,164 @@ public class SimpleTaskNetwork implements TaskNetwork {
 	
 	@Override
     public final TaskNetwork apply(Map<Term, Term> substitution) throws InvalidConstraint {
-        return new Builder(constraintValidatorFactory, this)
-            .apply(substitution)
-            .build();
+		if (substitution.isEmpty()) {
+			return this;
+		}
+		
+		// Find the tasks the substitution changes, which precedence constraints follow
+		Multimap<Task, Task> taskMap = HashMultimap.create();
+		Set<Task> oldTasks = new HashSet<Task>();
+		Set<Task> newTasks = new HashSet<Task>();
+		boolean merged = false;
+		for (Task task : tasks) {
+			Task newTask = task.applyToCopy(substitution);
+			if (newTask != task && !newTask.equals(task)) {
+				taskMap.put(task, newTask);
+				oldTasks.add(task);
+				if (!newTasks.add(newTask)) {
+					merged = true;
+				}
+			}
+		}
+		for (Task newTask : newTasks) {
+			if (tasks.contains(newTask) && !oldTasks.contains(newTask)) {
+				merged = true;
+			}
+		}
+		if (merged) {
+			// Tasks made equal become one, which may leave it constrained against itself, so rebuild and
+			// validate every constraint
+			return new Builder(constraintValidatorFactory)
+					.addAll(new Builder(constraintValidatorFactory, this).apply(substitution).build())
+					.build();
+		}
+		
+		PersistentHashSet<BeforeConstraint> newBeforeConstraints = apply(beforeConstraints, substitution);
+		PersistentHashSet<AfterConstraint> newAfterConstraints = apply(afterConstraints, substitution);
+		PersistentHashSet<BetweenConstraint> newBetweenConstraints = apply(betweenConstraints, substitution);
+		if (taskMap.isEmpty()
+				&& newBeforeConstraints == beforeConstraints
+				&& newAfterConstraints == afterConstraints
+				&& newBetweenConstraints == betweenConstraints) {
+			// Nothing in this network mentions the substitution
+			return this;
+		}
+		return new SimpleTaskNetwork(this, swap(tasks, oldTasks, newTasks),
+				newBeforeConstraints, newAfterConstraints, newBetweenConstraints,
+				replace(precedenceConstraints, Collections.<PrecedenceConstraint>emptySet(), taskMap));
     }
 
 	@Override
     public final TaskNetwork replace(Task task, TaskNetwork taskNetwork) throws InvalidConstraint {
-        return new Builder(constraintValidatorFactory, this)
-            .replace(task, taskNetwork)
-            .build();
+		if (!tasks.contains(task) || containsAny(taskNetwork.getTasks())) {
+			// The new tasks may close a cycle with those already here, so rebuild and validate
+			return new Builder(constraintValidatorFactory, this)
+					.replace(task, taskNetwork)
+					.build();
+		}
+		
+		// The new tasks inherit the orderings of the one they replace, so no cycle can be introduced
+		Multimap<Task, Task> taskMap = HashMultimap.create();
+		taskMap.putAll(task, taskNetwork.getTasks());
+		return new SimpleTaskNetwork(this,
+				swap(tasks, Collections.singleton(task), taskNetwork.getTasks()),
+				replace(beforeConstraints, taskNetwork.getBeforeConstraints(), taskMap),
+				replace(afterConstraints, taskNetwork.getAfterConstraints(), taskMap),
+				replace(betweenConstraints, taskNetwork.getBetweenConstraints(), taskMap),
+				replace(precedenceConstraints, taskNetwork.getPrecedenceConstraints(), taskMap));
     }
 	
+	/**
+	 * Check whether any of the given tasks are already in this network.
+	 * @param candidates the tasks to check
+	 * @return true if at least one of the tasks is in this network
+	 */
+	private boolean containsAny(Set<Task> candidates) {
+		for (Task candidate : candidates) {
+			if (tasks.contains(candidate)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Apply a substitution to a set of constraints, keeping those it does not change.
+	 * @param constraints the constraints
+	 * @param substitution the substitution to apply
+	 * @param <T> type of constraint being processed
+	 * @return the updated constraints, or the original set if none changed
+	 */
+	private static <T extends Constraint<T>> PersistentHashSet<T> apply(PersistentHashSet<T> constraints,
+			Map<Term, Term> substitution) {
+		List<T> oldConstraints = new ArrayList<T>();
+		List<T> newConstraints = new ArrayList<T>();
+		for (T constraint : constraints) {
+			T newConstraint = constraint.apply(substitution);
+			if (newConstraint != constraint && !newConstraint.equals(constraint)) {
+				oldConstraints.add(constraint);
+				newConstraints.add(newConstraint);
+			}
+		}
+		return swap(constraints, oldConstraints, newConstraints);
+	}
+	
+	/**
+	 * Replace tasks within a set of constraints and add further constraints, keeping those that do not
+	 * mention any replaced task.
+	 * @param constraints the constraints
+	 * @param additions further constraints to add
+	 * @param taskMap map of tasks to the sets of tasks to replace them with
+	 * @param <T> type of constraint being processed
+	 * @return the updated constraints, or the original set if none changed
+	 */
+	private static <T extends Constraint<T>> PersistentHashSet<T> replace(PersistentHashSet<T> constraints,
+			Set<T> additions, Multimap<Task, Task> taskMap) {
+		List<T> oldConstraints = new ArrayList<T>();
+		List<T> newConstraints = new ArrayList<T>(additions);
+		if (!taskMap.isEmpty()) {
+			for (T constraint : constraints) {
+				T newConstraint = constraint.replace(taskMap);
+				if (newConstraint != constraint) {
+					oldConstraints.add(constraint);
+					newConstraints.add(newConstraint);
+				}
+			}
+		}
+		return swap(constraints, oldConstraints, newConstraints);
+	}
+	
+	/**
+	 * Remove some elements from a persistent set and then add others.
+	 * Every removal is made before any addition, so an added element equal to a removed one is kept.
+	 * @param elements the original set
+	 * @param removals elements to remove
+	 * @param additions elements to add
+	 * @param <E> type of element
+	 * @return the updated set, which is the original if nothing was removed or added
+	 */
+	private static <E> PersistentHashSet<E> swap(PersistentHashSet<E> elements,
+			Collection<? extends E> removals, Collection<? extends E> additions) {
+		PersistentHashSet<E> updated = elements;
+		for (E removal : removals) {
+			updated = updated.minus(removal);
+		}
+		for (E addition : additions) {
+			updated = updated.plus(addition);
+		}
+		return updated;
+	}
+	
+	/**
+	 * Copy a set into a persistent set.
+	 * @param elements the elements to copy
+	 * @param <E> type of element
+	 * @return the persistent set
+	 */
+	private static <E> PersistentHashSet<E> persist(Set<E> elements) {
+		return swap(PersistentHashSet.<E>empty(), Collections.<E>emptySet(), elements);
+	}
+	
 	/**
 	 * Builder for simple task networks.
 	 * @author David Edwards <david@more.fool.me.uk>
@@ -169,6 +348,22 @@ public class SimpleTaskNetwork implements TaskNetwork {
         	this.constraintValidatorFactory = constraintValidatorFactory;
         	constraintValidator = constraintValidatorFactory.create();
         	
+        	if (taskNetwork instanceof SimpleTaskNetwork) {
+        		// Simple task networks only skip validation where no constraint can have become invalid,
+        		// as when a substitution leaves every task distinct
+        		constraintValidator.copy(taskNetwork);
+        	} else {
+        		addAll(taskNetwork);
+        	}
+        }
+        
+        /**
+         * Add and validate every task and constraint of a task network.
+         * @param taskNetwork the task network to add
+         * @return the updated builder
+         * @throws InvalidConstraint if any of the network's constraints is invalid
+         */
+        private Builder addAll(TaskNetwork taskNetwork) throws InvalidConstraint {
         	for (Task task : taskNetwork.getTasks()) {
         		constraintValidator.add(task);
         	}
@@ -184,6 +379,7 @@ public class SimpleTaskNetwork implements TaskNetwork {
         	for (PrecedenceConstraint constraint : taskNetwork.getPrecedenceConstraints()) {
         		constraintValidator.add(constraint);
         	}
+        	return this;
         }
 
 		/**
@@ -0,0 +1,376 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.tasknetwork.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.constraint.Constraint;
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.simple.constraint.impl.SimplePrecedenceConstraint;
+import org.gerryai.htn.simple.problem.impl.PersistentHashSet;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+
+/**
+ * A task network compiled for repeated instantiation, such as the task network of a method.
+ * Each distinct variable among the tasks' arguments is given a slot, and each argument records the slot it
+ * reads from, so instantiating the network for a substitution fills one array of slot values and then
+ * builds each task straight from it. Precedence constraints record the tasks they order by position, and
+ * tasks with no variables are shared between instances.
+ * Networks that are not built from simple tasks and constraints are not compiled, and are instantiated by
+ * applying the substitution to them as usual.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public final class TaskNetworkTemplate {
+
+    /**
+     * Slot recorded for an argument that is ground, and so is used as it is.
+     */
+    private static final int GROUND = -1;
+
+    /**
+     * Slot recorded for an argument that is not ground but is not a variable, so has the substitution
+     * applied to it.
+     */
+    private static final int APPLY = -2;
+
+    /**
+     * The task network the template was compiled from.
+     */
+    private final TaskNetwork taskNetwork;
+
+    /**
+     * The same task network, or null if it could not be compiled.
+     */
+    private final SimpleTaskNetwork simpleTaskNetwork;
+
+    /**
+     * The variable held in each slot.
+     */
+    private final Term[] variables;
+
+    /**
+     * The tasks of the network.
+     */
+    private final SimpleTask[] tasks;
+
+    /**
+     * The arguments of each task.
+     */
+    private final Term[][] arguments;
+
+    /**
+     * For each argument of each task, the slot it reads from, or GROUND or APPLY.
+     */
+    private final int[][] slots;
+
+    /**
+     * Whether each task has only ground arguments, and so can be shared.
+     */
+    private final boolean[] ground;
+
+    /**
+     * For each precedence constraint, the positions of its preceding tasks.
+     */
+    private final int[][] precedingTasks;
+
+    /**
+     * For each precedence constraint, the positions of its proceeding tasks.
+     */
+    private final int[][] proceedingTasks;
+
+    /**
+     * Whether any argument or constraint must have the substitution applied to it.
+     */
+    private final boolean applies;
+
+    /**
+     * Constructor for a template that could not be compiled.
+     * @param taskNetwork the task network
+     */
+    private TaskNetworkTemplate(TaskNetwork taskNetwork) {
+        this.taskNetwork = taskNetwork;
+        simpleTaskNetwork = null;
+        variables = null;
+        tasks = null;
+        arguments = null;
+        slots = null;
+        ground = null;
+        precedingTasks = null;
+        proceedingTasks = null;
+        applies = true;
+    }
+
+    /**
+     * Constructor compiling a simple task network whose tasks and precedence constraints are all simple.
+     * @param taskNetwork the task network
+     */
+    private TaskNetworkTemplate(SimpleTaskNetwork taskNetwork) {
+        this.taskNetwork = taskNetwork;
+        simpleTaskNetwork = taskNetwork;
+
+        int numTasks = taskNetwork.getTasks().size();
+        tasks = new SimpleTask[numTasks];
+        arguments = new Term[numTasks][];
+        slots = new int[numTasks][];
+        ground = new boolean[numTasks];
+        Map<Task, Integer> positions = new HashMap<Task, Integer>();
+        Map<Term, Integer> slotsByVariable = new HashMap<Term, Integer>();
+        List<Term> slotVariables = new ArrayList<Term>();
+        boolean anyApplied = false;
+
+        int position = 0;
+        for (Task task : taskNetwork.getTasks()) {
+            tasks[position] = (SimpleTask) task;
+            positions.put(task, position);
+            arguments[position] = task.getArguments().toArray(new Term[task.getArguments().size()]);
+            slots[position] = new int[arguments[position].length];
+            ground[position] = true;
+            for (int i = 0; i < arguments[position].length; i++) {
+                Term argument = arguments[position][i];
+                if (argument instanceof Variable) {
+                    Integer slot = slotsByVariable.get(argument);
+                    if (slot == null) {
+                        slot = slotVariables.size();
+                        slotsByVariable.put(argument, slot);
+                        slotVariables.add(argument);
+                    }
+                    slots[position][i] = slot;
+                    ground[position] = false;
+                } else if (argument.isGround()) {
+                    slots[position][i] = GROUND;
+                } else {
+                    slots[position][i] = APPLY;
+                    ground[position] = false;
+                    anyApplied = true;
+                }
+            }
+            position++;
+        }
+        variables = slotVariables.toArray(new Term[slotVariables.size()]);
+
+        int numConstraints = taskNetwork.getPrecedenceConstraints().size();
+        precedingTasks = new int[numConstraints][];
+        proceedingTasks = new int[numConstraints][];
+        int constraint = 0;
+        for (PrecedenceConstraint precedenceConstraint : taskNetwork.getPrecedenceConstraints()) {
+            precedingTasks[constraint] = getPositions(precedenceConstraint.getPrecedingTasks(), positions);
+            proceedingTasks[constraint] = getPositions(precedenceConstraint.getProcedingTasks(), positions);
+            constraint++;
+        }
+
+        applies = anyApplied
+                || !taskNetwork.getBeforeConstraints().isEmpty()
+                || !taskNetwork.getAfterConstraints().isEmpty()
+                || !taskNetwork.getBetweenConstraints().isEmpty();
+    }
+
+    /**
+     * Compile a task network into a template.
+     * @param taskNetwork the task network
+     * @return the template
+     */
+    public static TaskNetworkTemplate compile(TaskNetwork taskNetwork) {
+        if (isCompilable(taskNetwork)) {
+            return new TaskNetworkTemplate((SimpleTaskNetwork) taskNetwork);
+        } else {
+            return new TaskNetworkTemplate(taskNetwork);
+        }
+    }
+
+    /**
+     * Get the task network the template was compiled from.
+     * @return the task network
+     */
+    public TaskNetwork getTaskNetwork() {
+        return taskNetwork;
+    }
+
+    /**
+     * Check whether the template was compiled, rather than applying substitutions to its task network.
+     * @return true if the template was compiled
+     */
+    public boolean isCompiled() {
+        return simpleTaskNetwork != null;
+    }
+
+    /**
+     * Get the variables held in each slot, in slot order.
+     * @return the variables, which are empty if the template was not compiled
+     */
+    public List<Term> getVariables() {
+        if (isCompiled()) {
+            return Arrays.asList(variables.clone());
+        } else {
+            return new ArrayList<Term>();
+        }
+    }
+
+    /**
+     * Create an instance of the task network with a substitution applied.
+     * @param substitution the substitution to apply
+     * @return the instance, which is the original task network if the substitution changes nothing in it
+     * @throws InvalidConstraint if the substitution makes a constraint invalid
+     */
+    public TaskNetwork instantiate(Map<Term, Term> substitution) throws InvalidConstraint {
+        if (!isCompiled()) {
+            return taskNetwork.apply(substitution);
+        }
+
+        // Fill the slots, noting whether any variable is bound at all
+        Term[] values = new Term[variables.length];
+        boolean bound = false;
+        for (int slot = 0; slot < variables.length; slot++) {
+            Term value = substitution.get(variables[slot]);
+            if (value == null) {
+                values[slot] = variables[slot];
+            } else {
+                values[slot] = value;
+                bound = true;
+            }
+        }
+        if (!bound && !applies) {
+            return simpleTaskNetwork;
+        }
+
+        Task[] instances = new Task[tasks.length];
+        PersistentHashSet<Task> newTasks = PersistentHashSet.empty();
+        for (int position = 0; position < tasks.length; position++) {
+            if (ground[position]) {
+                instances[position] = tasks[position];
+            } else {
+                instances[position] = instantiate(position, values, substitution);
+            }
+            newTasks = newTasks.plus(instances[position]);
+        }
+
+        PersistentHashSet<PrecedenceConstraint> newPrecedenceConstraints = PersistentHashSet.empty();
+        for (int constraint = 0; constraint < precedingTasks.length; constraint++) {
+            newPrecedenceConstraints = newPrecedenceConstraints.plus(new SimplePrecedenceConstraint.Builder()
+                    .setPrecedingTasks(getTasks(precedingTasks[constraint], instances))
+                    .setProcedingTasks(getTasks(proceedingTasks[constraint], instances))
+                    .build());
+        }
+
+        return new SimpleTaskNetwork(simpleTaskNetwork, newTasks,
+                apply(simpleTaskNetwork.getBeforeConstraints(), substitution),
+                apply(simpleTaskNetwork.getAfterConstraints(), substitution),
+                apply(simpleTaskNetwork.getBetweenConstraints(), substitution),
+                newPrecedenceConstraints);
+    }
+
+    /**
+     * Create an instance of one task from the slot values.
+     * @param position the position of the task
+     * @param values the value of each slot
+     * @param substitution the substitution, for arguments that are not simple variables
+     * @return the task instance
+     */
+    private Task instantiate(int position, Term[] values, Map<Term, Term> substitution) {
+        Term[] taskArguments = arguments[position];
+        int[] taskSlots = slots[position];
+        Term[] newArguments = new Term[taskArguments.length];
+        for (int i = 0; i < taskArguments.length; i++) {
+            int slot = taskSlots[i];
+            if (slot >= 0) {
+                newArguments[i] = values[slot];
+            } else if (slot == GROUND) {
+                newArguments[i] = taskArguments[i];
+            } else {
+                newArguments[i] = taskArguments[i].applyToCopy(substitution);
+            }
+        }
+        return new SimpleTask(tasks[position], Arrays.asList(newArguments));
+    }
+
+    /**
+     * Check whether a task network can be compiled.
+     * @param taskNetwork the task network
+     * @return true if the network, its tasks and its precedence constraints are all simple
+     */
+    private static boolean isCompilable(TaskNetwork taskNetwork) {
+        if (!(taskNetwork instanceof SimpleTaskNetwork)) {
+            return false;
+        }
+        for (Task task : taskNetwork.getTasks()) {
+            if (!(task instanceof SimpleTask)) {
+                return false;
+            }
+        }
+        for (PrecedenceConstraint constraint : taskNetwork.getPrecedenceConstraints()) {
+            if (!(constraint instanceof SimplePrecedenceConstraint)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the positions of some tasks.
+     * @param constraintTasks the tasks
+     * @param positions the position of every task in the network
+     * @return the positions
+     */
+    private static int[] getPositions(Set<Task> constraintTasks, Map<Task, Integer> positions) {
+        int[] result = new int[constraintTasks.size()];
+        int i = 0;
+        for (Task task : constraintTasks) {
+            result[i++] = positions.get(task);
+        }
+        return result;
+    }
+
+    /**
+     * Get the task instances at some positions.
+     * @param positions the positions
+     * @param instances the task instance at each position
+     * @return the task instances
+     */
+    private static Set<Task> getTasks(int[] positions, Task[] instances) {
+        Set<Task> result = new HashSet<Task>(positions.length * 2);
+        for (int position : positions) {
+            result.add(instances[position]);
+        }
+        return result;
+    }
+
+    /**
+     * Apply a substitution to each of a set of constraints.
+     * @param constraints the constraints
+     * @param substitution the substitution
+     * @param <T> the type of constraint
+     * @return the constraints with the substitution applied
+     */
+    private static <T extends Constraint<T>> PersistentHashSet<T> apply(Set<T> constraints,
+            Map<Term, Term> substitution) {
+        PersistentHashSet<T> result = PersistentHashSet.empty();
+        for (T constraint : constraints) {
+            result = result.plus(constraint.apply(substitution));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the SubstitutableTerms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.aima.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class AIMAConverterImplTest {
+
+	/**
+	 * Test that renamed instances of a variable survive conversion to AIMA terms and back, and stay distinct.
+	 */
+	@Test
+	public final void testConvertKeepsInstances() {
+		AIMAConverterImpl converter = new AIMAConverterImpl();
+		SimpleVariable variable = new SimpleVariable("?x");
+		Term original = variable;
+		Term first = variable.rename(1L);
+		Term second = variable.rename(2L);
+
+		aima.core.logic.fol.parsing.ast.Term aimaOriginal = converter.convert(original);
+		aima.core.logic.fol.parsing.ast.Term aimaFirst = converter.convert(first);
+		aima.core.logic.fol.parsing.ast.Term aimaSecond = converter.convert(second);
+
+		assertFalse(aimaFirst.equals(aimaSecond));
+		assertFalse(aimaOriginal.equals(aimaFirst));
+		assertEquals(original, converter.convert(aimaOriginal));
+		assertEquals(first, converter.convert(aimaFirst));
+		assertEquals(second, converter.convert(aimaSecond));
+	}
+
+}
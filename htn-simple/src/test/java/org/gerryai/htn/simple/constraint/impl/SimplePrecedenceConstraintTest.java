@@ -18,6 +18,7 @@
 package org.gerryai.htn.simple.constraint.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -134,4 +135,19 @@ public class SimplePrecedenceConstraintTest {
         assertEquals(mockNewPrecedingTasks, constraint.getPrecedingTasks());
         assertEquals(mockNewProcedingTasks, constraint.getProcedingTasks());
     }
+
+    /**
+     * Test that replacing tasks the constraint does not mention returns the same constraint.
+     */
+    @Test
+    public final void testReplaceUnmentionedTask() {
+        Task mockPrecedingTask = mock(Task.class);
+        Task mockProceedingTask = mock(Task.class);
+        PrecedenceConstraint constraint = new SimpleConstraintFactory()
+                .createPrecedenceConstraint(mockPrecedingTask, mockProceedingTask);
+        Multimap<Task, Task> taskMap = HashMultimap.create();
+        taskMap.put(mock(Task.class), mock(Task.class));
+
+        assertSame(constraint, constraint.replace(taskMap));
+    }
 }
@@ -0,0 +1,130 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.constraint.validation.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.gerryai.htn.tasknetwork.Task;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for PrecedenceOrder.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class PrecedenceOrderTest {
+
+    /**
+     * Tasks to order.
+     */
+    private Task[] mockTasks;
+
+    /**
+     * The order under test.
+     */
+    private PrecedenceOrder order;
+
+    /**
+     * Add a number of tasks to an empty order.
+     */
+    @Before
+    public final void setUp() {
+        final int numTasks = 5;
+        mockTasks = new Task[numTasks];
+        order = new PrecedenceOrder();
+        for (int i = 0; i < numTasks; i++) {
+            mockTasks[i] = mock(Task.class);
+            order.add(mockTasks[i]);
+        }
+    }
+
+    /**
+     * Test that orderings against the order tasks were added in move tasks to keep the order topological.
+     */
+    @Test
+    public final void testReorder() {
+        assertTrue(order.add(mockTasks[4], mockTasks[2]));
+        assertTrue(order.add(mockTasks[2], mockTasks[0]));
+        assertTrue(order.add(mockTasks[3], mockTasks[4]));
+
+        assertTrue(order.getPosition(mockTasks[3]) < order.getPosition(mockTasks[4]));
+        assertTrue(order.getPosition(mockTasks[4]) < order.getPosition(mockTasks[2]));
+        assertTrue(order.getPosition(mockTasks[2]) < order.getPosition(mockTasks[0]));
+    }
+
+    /**
+     * Test that an ordering closing a cycle is rejected and leaves the order unchanged.
+     */
+    @Test
+    public final void testCycle() {
+        assertTrue(order.add(mockTasks[0], mockTasks[1]));
+        assertTrue(order.add(mockTasks[1], mockTasks[2]));
+
+        assertTrue(order.wouldCycle(mockTasks[2], mockTasks[0]));
+        assertFalse(order.add(mockTasks[2], mockTasks[0]));
+        assertFalse(order.add(mockTasks[1], mockTasks[1]));
+        assertTrue(order.getSuccessors(mockTasks[2]).isEmpty());
+        assertFalse(order.wouldCycle(mockTasks[0], mockTasks[2]));
+    }
+
+    /**
+     * Test that a cycle is found through a chain of diamonds, which a search without a visited set
+     * would explore exponentially.
+     */
+    @Test
+    public final void testDiamondCycle() {
+        final int numDiamonds = 40;
+        PrecedenceOrder diamonds = new PrecedenceOrder();
+        Task first = mock(Task.class);
+        diamonds.add(first);
+        Task last = first;
+        for (int i = 0; i < numDiamonds; i++) {
+            Task left = mock(Task.class);
+            Task right = mock(Task.class);
+            Task join = mock(Task.class);
+            diamonds.add(join);
+            diamonds.add(right);
+            diamonds.add(left);
+            assertTrue(diamonds.add(last, left));
+            assertTrue(diamonds.add(last, right));
+            assertTrue(diamonds.add(left, join));
+            assertTrue(diamonds.add(right, join));
+            last = join;
+        }
+
+        assertTrue(diamonds.wouldCycle(last, first));
+        assertFalse(diamonds.wouldCycle(first, last));
+    }
+
+    /**
+     * Test that removing a task removes its orderings.
+     */
+    @Test
+    public final void testRemove() {
+        assertTrue(order.add(mockTasks[0], mockTasks[1]));
+        assertTrue(order.add(mockTasks[1], mockTasks[2]));
+
+        order.remove(mockTasks[1]);
+
+        assertTrue(order.getSuccessors(mockTasks[0]).isEmpty());
+        assertTrue(order.getPredecessors(mockTasks[2]).isEmpty());
+        assertTrue(order.add(mockTasks[2], mockTasks[0]));
+    }
+}
@@ -1,9 +1,13 @@
 package org.gerryai.htn.simple.constraint.validation.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashSet;
@@ -16,6 +20,7 @@ import org.gerryai.htn.constraint.BetweenConstraint;
 import org.gerryai.htn.constraint.PrecedenceConstraint;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
 import org.gerryai.logic.Term;
 import org.junit.Test;
 
@@ -978,6 +983,120 @@ public class SimpleConstraintValidatorTest {
         assertEquals(mockUpdatedPrecedenceConstraints, validator.getPrecedenceConstraints());
 	}
 	
+	/**
+	 * Test that a cycle closed through an ordering implied by two earlier constraints is rejected.
+	 * @throws InvalidConstraint if test passes
+	 */
+	@Test(expected = InvalidConstraint.class)
+	public final void testValidatePrecedenceTransitiveCycle() throws InvalidConstraint {
+
+		Task mockTaskA = mock(Task.class);
+		Task mockTaskB = mock(Task.class);
+		Task mockTaskC = mock(Task.class);
+
+		SimpleConstraintValidator validator = new SimpleConstraintValidator();
+		validator.add(mockTaskA);
+		validator.add(mockTaskB);
+		validator.add(mockTaskC);
+		validator.add(mockPrecedence(mockTaskA, mockTaskB));
+		validator.add(mockPrecedence(mockTaskB, mockTaskC));
+		validator.add(mockPrecedence(mockTaskA, mockTaskC));
+
+		validator.add(mockPrecedence(mockTaskC, mockTaskA));
+	}
+
+	/**
+	 * Test that copying a valid network adopts its constraints as they are, without validating them,
+	 * but that constraints added afterwards are still checked for cycles against them.
+	 * @throws InvalidConstraint if test passes
+	 */
+	@Test(expected = InvalidConstraint.class)
+	public final void testCopy() throws InvalidConstraint {
+
+		Task mockTaskA = mock(Task.class);
+		Task mockTaskB = mock(Task.class);
+		Set<Task> mockTasks = new HashSet<Task>();
+		mockTasks.add(mockTaskA);
+		mockTasks.add(mockTaskB);
+		PrecedenceConstraint mockConstraint = mockPrecedence(mockTaskA, mockTaskB);
+		Set<PrecedenceConstraint> mockConstraints = new HashSet<PrecedenceConstraint>();
+		mockConstraints.add(mockConstraint);
+
+		TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+		when(mockTaskNetwork.getTasks()).thenReturn(mockTasks);
+		when(mockTaskNetwork.getPrecedenceConstraints()).thenReturn(mockConstraints);
+
+		SimpleConstraintValidator validator = new SimpleConstraintValidator();
+		validator.copy(mockTaskNetwork);
+
+		assertEquals(mockTasks, validator.getTasks());
+		assertEquals(mockConstraints, validator.getPrecedenceConstraints());
+		verify(mockConstraint, never()).getPrecedingTasks();
+
+		validator.add(mockPrecedence(mockTaskB, mockTaskA));
+	}
+
+	/**
+	 * Test that the order is kept through a replace, so a constraint closing a cycle through the new tasks
+	 * is rejected.
+	 * @throws InvalidConstraint if test passes
+	 */
+	@SuppressWarnings("unchecked")
+	@Test(expected = InvalidConstraint.class)
+	public final void testReplaceKeepsOrder() throws InvalidConstraint {
+
+		Task mockTaskA = mock(Task.class);
+		Task mockTaskB = mock(Task.class);
+		Task mockTaskC = mock(Task.class);
+		Task mockTaskD = mock(Task.class);
+		Task mockTaskE = mock(Task.class);
+
+		SimpleConstraintValidator validator = new SimpleConstraintValidator();
+		validator.add(mockTaskA);
+		validator.add(mockTaskB);
+		validator.add(mockTaskC);
+		PrecedenceConstraint mockConstraintAB = mockPrecedence(mockTaskA, mockTaskB);
+		PrecedenceConstraint mockConstraintBC = mockPrecedence(mockTaskB, mockTaskC);
+		PrecedenceConstraint mockConstraintAD = mockPrecedence(mockTaskA, mockTaskD);
+		PrecedenceConstraint mockConstraintEC = mockPrecedence(mockTaskE, mockTaskC);
+		when(mockConstraintAB.replace(any(Multimap.class))).thenReturn(mockConstraintAD);
+		when(mockConstraintBC.replace(any(Multimap.class))).thenReturn(mockConstraintEC);
+		validator.add(mockConstraintAB);
+		validator.add(mockConstraintBC);
+
+		Set<Task> mockNewTasks = new HashSet<Task>();
+		mockNewTasks.add(mockTaskD);
+		mockNewTasks.add(mockTaskE);
+		Set<PrecedenceConstraint> mockNewConstraints = new HashSet<PrecedenceConstraint>();
+		mockNewConstraints.add(mockPrecedence(mockTaskD, mockTaskE));
+		TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+		when(mockTaskNetwork.getTasks()).thenReturn(mockNewTasks);
+		when(mockTaskNetwork.getPrecedenceConstraints()).thenReturn(mockNewConstraints);
+
+		validator.replace(mockTaskB, mockTaskNetwork);
+
+		assertTrue(validator.getTasks().contains(mockTaskD));
+		assertFalse(validator.getTasks().contains(mockTaskB));
+		validator.add(mockPrecedence(mockTaskE, mockTaskD));
+	}
+
+	/**
+	 * Create a mock precedence constraint between two tasks.
+	 * @param precedingTask the task that must come first
+	 * @param procedingTask the task that must come after
+	 * @return the mock constraint
+	 */
+	private PrecedenceConstraint mockPrecedence(Task precedingTask, Task procedingTask) {
+		Set<Task> mockPrecedingTasks = new HashSet<Task>();
+		mockPrecedingTasks.add(precedingTask);
+		Set<Task> mockProcedingTasks = new HashSet<Task>();
+		mockProcedingTasks.add(procedingTask);
+		PrecedenceConstraint mockConstraint = mock(PrecedenceConstraint.class);
+		when(mockConstraint.getPrecedingTasks()).thenReturn(mockPrecedingTasks);
+		when(mockConstraint.getProcedingTasks()).thenReturn(mockProcedingTasks);
+		return mockConstraint;
+	}
+
 	/**
 	 * Test replace.
 	 * @throws InvalidConstraint only if test fails
@@ -19,10 +19,16 @@ package org.gerryai.htn.simple.decomposition.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -103,4 +109,74 @@ public class SimpleDecompositionServiceTest {
     	assertTrue(decomposedTaskNetwork.getTasks().contains(mockTaskB));
     	assertTrue(decomposedTaskNetwork.getTasks().contains(mockTaskC));
     }
+
+    /**
+     * Test that scoped decomposition leaves the rest of the network alone when the decomposed task has no
+     * bound variables.
+     * @throws InvalidConstraint only if test fails
+     */
+    @Test
+    public final void testDecomposeScopedGroundTask() throws InvalidConstraint {
+
+    	SimpleDecompositionService decompositionService = new SimpleDecompositionService(true);
+    	
+    	Term mockConstant = mock(Term.class);
+    	Term mockMethodVariable = mock(Term.class);
+    	Task mockTask = mock(Task.class);
+    	when(mockTask.getArguments()).thenReturn(Collections.singletonList(mockConstant));
+    	Map<Term, Term> substitution = new HashMap<Term, Term>();
+    	substitution.put(mockMethodVariable, mockConstant);
+    	
+    	TaskNetwork mockMethodSubTasks = mock(TaskNetwork.class);
+    	TaskNetwork mockUnifiedMethodSubTasks = mock(TaskNetwork.class);
+    	when(mockMethodSubTasks.apply(substitution)).thenReturn(mockUnifiedMethodSubTasks);
+    	Method mockMethod = mock(Method.class);
+    	when(mockMethod.getTaskNetwork()).thenReturn(mockMethodSubTasks);
+    	
+    	TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+    	TaskNetwork mockDecomposedTaskNetwork = mock(TaskNetwork.class);
+    	when(mockTaskNetwork.replace(mockTask, mockUnifiedMethodSubTasks)).thenReturn(mockDecomposedTaskNetwork);
+    	
+    	assertSame(mockDecomposedTaskNetwork,
+    			decompositionService.decompose(substitution, mockTaskNetwork, mockTask, mockMethod));
+    	verify(mockTaskNetwork, never()).apply(anyMapOf(Term.class, Term.class));
+    	verify(mockDecomposedTaskNetwork, never()).apply(anyMapOf(Term.class, Term.class));
+    }
+    
+    /**
+     * Test that scoped decomposition applies only the bindings of the decomposed task's variables to the
+     * rest of the network.
+     * @throws InvalidConstraint only if test fails
+     */
+    @Test
+    public final void testDecomposeScopedTaskVariables() throws InvalidConstraint {
+
+    	SimpleDecompositionService decompositionService = new SimpleDecompositionService(true);
+    	
+    	Term mockConstant = mock(Term.class);
+    	Term mockTaskVariable = mock(Term.class);
+    	Term mockMethodVariable = mock(Term.class);
+    	Task mockTask = mock(Task.class);
+    	when(mockTask.getArguments()).thenReturn(Collections.singletonList(mockTaskVariable));
+    	Map<Term, Term> substitution = new HashMap<Term, Term>();
+    	substitution.put(mockTaskVariable, mockConstant);
+    	substitution.put(mockMethodVariable, mockConstant);
+    	
+    	TaskNetwork mockMethodSubTasks = mock(TaskNetwork.class);
+    	TaskNetwork mockUnifiedMethodSubTasks = mock(TaskNetwork.class);
+    	when(mockMethodSubTasks.apply(substitution)).thenReturn(mockUnifiedMethodSubTasks);
+    	Method mockMethod = mock(Method.class);
+    	when(mockMethod.getTaskNetwork()).thenReturn(mockMethodSubTasks);
+    	
+    	Map<Term, Term> taskSubstitution = new HashMap<Term, Term>();
+    	taskSubstitution.put(mockTaskVariable, mockConstant);
+    	TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+    	TaskNetwork mockReplacedTaskNetwork = mock(TaskNetwork.class);
+    	TaskNetwork mockDecomposedTaskNetwork = mock(TaskNetwork.class);
+    	when(mockTaskNetwork.replace(mockTask, mockUnifiedMethodSubTasks)).thenReturn(mockReplacedTaskNetwork);
+    	when(mockReplacedTaskNetwork.apply(taskSubstitution)).thenReturn(mockDecomposedTaskNetwork);
+    	
+    	assertSame(mockDecomposedTaskNetwork,
+    			decompositionService.decompose(substitution, mockTaskNetwork, mockTask, mockMethod));
+    }
 }
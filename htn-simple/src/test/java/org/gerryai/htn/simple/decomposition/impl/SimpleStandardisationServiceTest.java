@@ -0,0 +1,198 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.decomposition.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+/**
+ * Unit tests for SimpleStandardisationService.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SimpleStandardisationServiceTest {
+
+    /**
+     * Logic factory for creating terms.
+     */
+    private SimpleLogicFactory logicFactory;
+
+    /**
+     * Variable in the method's task.
+     */
+    private Term variableX;
+
+    /**
+     * Variable only in the method's subtasks.
+     */
+    private Term variableY;
+
+    /**
+     * Method with task over ?x, decomposing into a subtask over ?x and ?y.
+     */
+    private Method mockMethod;
+
+    /**
+     * Set up the method.
+     */
+    @Before
+    public final void setUp() {
+        logicFactory = new SimpleLogicFactory();
+        variableX = logicFactory.createVariable("?x");
+        variableY = logicFactory.createVariable("?y");
+
+        Task mockMethodTask = mock(Task.class);
+        when(mockMethodTask.getArguments()).thenReturn(Collections.singletonList(variableX));
+        List<Term> subTaskArguments = new ArrayList<Term>();
+        subTaskArguments.add(variableX);
+        subTaskArguments.add(variableY);
+        Task mockSubTask = mock(Task.class);
+        when(mockSubTask.getArguments()).thenReturn(subTaskArguments);
+        Set<Task> subTasks = new HashSet<Task>();
+        subTasks.add(mockSubTask);
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(subTasks);
+
+        mockMethod = mock(Method.class);
+        when(mockMethod.getTask()).thenReturn(mockMethodTask);
+        when(mockMethod.getTaskNetwork()).thenReturn(mockTaskNetwork);
+    }
+
+    /**
+     * Test that a unifier binding every variable of the method is returned unchanged.
+     */
+    @Test
+    public final void testStandardiseAllBound() {
+        Map<Term, Term> unifier = new HashMap<Term, Term>();
+        unifier.put(variableX, logicFactory.createConstant("a"));
+        unifier.put(variableY, logicFactory.createConstant("b"));
+
+        assertSame(unifier, new SimpleStandardisationService().standardise(mockMethod, unifier));
+    }
+
+    /**
+     * Test that unbound variables are renamed apart from the originals and from each other application.
+     */
+    @Test
+    public final void testStandardiseRenamesUnbound() {
+        SimpleStandardisationService service = new SimpleStandardisationService();
+        Map<Term, Term> unifier = new HashMap<Term, Term>();
+        unifier.put(variableX, logicFactory.createConstant("a"));
+
+        Map<Term, Term> first = service.standardise(mockMethod, unifier);
+        Map<Term, Term> second = service.standardise(mockMethod, unifier);
+
+        assertEquals(2, first.size());
+        assertEquals(logicFactory.createConstant("a"), first.get(variableX));
+        Term renamedY = first.get(variableY);
+        assertTrue(renamedY instanceof SimpleVariable);
+        assertEquals("?y", renamedY.getName());
+        assertFalse(variableY.equals(renamedY));
+        assertFalse(renamedY.equals(second.get(variableY)));
+    }
+
+    /**
+     * Test that a binding from a task variable to a method variable follows the method variable's renaming.
+     */
+    @Test
+    public final void testStandardiseFollowsBindingsToRenamed() {
+        Term taskVariable = logicFactory.createVariable("?z");
+        Map<Term, Term> unifier = new HashMap<Term, Term>();
+        unifier.put(taskVariable, variableX);
+
+        Map<Term, Term> standardised = new SimpleStandardisationService().standardise(mockMethod, unifier);
+
+        assertEquals(standardised.get(variableX), standardised.get(taskVariable));
+        assertFalse(variableX.equals(standardised.get(taskVariable)));
+    }
+
+    /**
+     * Test that a problem's variables are renamed apart, so that a method variable sharing a name with one
+     * is still renamed rather than merged with the variable bound to the problem's.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public final void testStandardiseProblemApartFromMethod() throws InvalidConstraint {
+        SimpleStandardisationService service = new SimpleStandardisationService();
+
+        // The problem's task is over a variable also called ?y
+        Task mockProblemTask = mock(Task.class);
+        when(mockProblemTask.getArguments()).thenReturn(Collections.singletonList(variableY));
+        TaskNetwork mockProblemNetwork = mock(TaskNetwork.class);
+        when(mockProblemNetwork.getTasks()).thenReturn(Collections.singleton(mockProblemTask));
+        TaskNetwork mockStandardisedNetwork = mock(TaskNetwork.class);
+        ArgumentCaptor<Map> renaming = ArgumentCaptor.forClass(Map.class);
+        when(mockProblemNetwork.apply(renaming.capture())).thenReturn(mockStandardisedNetwork);
+
+        assertSame(mockStandardisedNetwork, service.standardise(mockProblemNetwork));
+        verify(mockProblemNetwork).apply(renaming.getValue());
+        Term problemY = (Term) renaming.getValue().get(variableY);
+        assertEquals("?y", problemY.getName());
+        assertFalse(variableY.equals(problemY));
+
+        // Unifying the problem's task with the method's binds the problem's ?y to the method's ?x
+        Map<Term, Term> unifier = new HashMap<Term, Term>();
+        unifier.put(problemY, variableX);
+
+        Map<Term, Term> standardised = service.standardise(mockMethod, unifier);
+
+        assertEquals(standardised.get(variableX), standardised.get(problemY));
+        assertFalse(variableX.equals(standardised.get(variableX)));
+        assertFalse(variableY.equals(standardised.get(variableY)));
+        assertFalse(standardised.get(variableX).equals(standardised.get(variableY)));
+    }
+
+    /**
+     * Test that a problem's task network without variables is left as it is.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testStandardiseGroundProblem() throws InvalidConstraint {
+        Task mockProblemTask = mock(Task.class);
+        when(mockProblemTask.getArguments()).thenReturn(
+                Collections.singletonList((Term) logicFactory.createConstant("a")));
+        TaskNetwork mockProblemNetwork = mock(TaskNetwork.class);
+        when(mockProblemNetwork.getTasks()).thenReturn(Collections.singleton(mockProblemTask));
+
+        assertSame(mockProblemNetwork, new SimpleStandardisationService().standardise(mockProblemNetwork));
+    }
+}
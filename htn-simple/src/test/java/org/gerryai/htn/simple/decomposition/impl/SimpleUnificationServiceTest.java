@@ -0,0 +1,193 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.decomposition.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.decomposition.UnifierNotFound;
+import org.gerryai.htn.simple.logic.LogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * Unit tests for SimpleUnificationService.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SimpleUnificationServiceTest {
+
+    /**
+     * Logic factory for creating terms.
+     */
+    private LogicFactory logicFactory = new SimpleLogicFactory();
+
+    /**
+     * Test that a ground task binds the variables of the method's task.
+     * @throws UnifierNotFound only if the test fails
+     */
+    @Test
+    public final void testFindUnifier() throws UnifierNotFound {
+        Task task = mockTask("swap", logicFactory.createConstant("kiwi"), logicFactory.createConstant("banjo"));
+        Method method = mockMethod("swap", logicFactory.createVariable("x"), logicFactory.createVariable("y"));
+
+        Map<Term, Term> unifier = new SimpleUnificationService().findUnifier(task, method);
+
+        assertEquals(2, unifier.size());
+        assertEquals(logicFactory.createConstant("kiwi"), unifier.get(logicFactory.createVariable("x")));
+        assertEquals(logicFactory.createConstant("banjo"), unifier.get(logicFactory.createVariable("y")));
+    }
+
+    /**
+     * Test that identical ground tasks give an empty unifier.
+     * @throws UnifierNotFound only if the test fails
+     */
+    @Test
+    public final void testFindUnifierGround() throws UnifierNotFound {
+        Task task = mockTask("have", logicFactory.createConstant("kiwi"));
+        Method method = mockMethod("have", logicFactory.createConstant("kiwi"));
+
+        assertTrue(new SimpleUnificationService().findUnifier(task, method).isEmpty());
+    }
+
+    /**
+     * Test that tasks with different names do not unify.
+     * @throws UnifierNotFound if the test passes
+     */
+    @Test(expected = UnifierNotFound.class)
+    public final void testNameMismatch() throws UnifierNotFound {
+        Task task = mockTask("swap", logicFactory.createConstant("kiwi"));
+        Method method = mockMethod("have", logicFactory.createVariable("x"));
+
+        new SimpleUnificationService().findUnifier(task, method);
+    }
+
+    /**
+     * Test that tasks with different numbers of arguments do not unify.
+     * @throws UnifierNotFound if the test passes
+     */
+    @Test(expected = UnifierNotFound.class)
+    public final void testArityMismatch() throws UnifierNotFound {
+        Task task = mockTask("swap", logicFactory.createConstant("kiwi"));
+        Method method = mockMethod("swap", logicFactory.createVariable("x"), logicFactory.createVariable("y"));
+
+        new SimpleUnificationService().findUnifier(task, method);
+    }
+
+    /**
+     * Test that a variable cannot be bound to two different constants.
+     * @throws UnifierNotFound if the test passes
+     */
+    @Test(expected = UnifierNotFound.class)
+    public final void testConflictingBindings() throws UnifierNotFound {
+        Task task = mockTask("swap", logicFactory.createConstant("kiwi"), logicFactory.createConstant("banjo"));
+        Method method = mockMethod("swap", logicFactory.createVariable("x"), logicFactory.createVariable("x"));
+
+        new SimpleUnificationService().findUnifier(task, method);
+    }
+
+    /**
+     * Test that a failed unification leaves nothing behind for the next one.
+     * @throws UnifierNotFound only if the test fails
+     */
+    @Test
+    public final void testTrailClearedAfterFailure() throws UnifierNotFound {
+        SimpleUnificationService service = new SimpleUnificationService();
+        Task task = mockTask("swap", logicFactory.createConstant("kiwi"), logicFactory.createConstant("banjo"));
+        Method method = mockMethod("swap", logicFactory.createVariable("x"), logicFactory.createVariable("x"));
+        try {
+            service.findUnifier(task, method);
+        } catch (UnifierNotFound e) {
+            // Expected
+        }
+
+        Task otherTask = mockTask("have", logicFactory.createConstant("banjo"));
+        Method otherMethod = mockMethod("have", logicFactory.createVariable("x"));
+        Map<Term, Term> unifier = service.findUnifier(otherTask, otherMethod);
+
+        assertEquals(1, unifier.size());
+        assertEquals(logicFactory.createConstant("banjo"), unifier.get(logicFactory.createVariable("x")));
+    }
+
+    /**
+     * Test that function terms are unified structurally and their values fully resolved.
+     * @throws UnifierNotFound only if the test fails
+     */
+    @Test
+    public final void testFunctions() throws UnifierNotFound {
+        Term kiwi = logicFactory.createConstant("kiwi");
+        Term x = logicFactory.createVariable("x");
+        Term y = logicFactory.createVariable("y");
+        Task task = mockTask("give", logicFactory.createFunction("box", x), kiwi);
+        Method method = mockMethod("give", y, x);
+
+        Map<Term, Term> unifier = new SimpleUnificationService().findUnifier(task, method);
+
+        assertEquals(kiwi, unifier.get(x));
+        assertEquals(logicFactory.createFunction("box", kiwi), unifier.get(y));
+    }
+
+    /**
+     * Test that a variable cannot be unified with a function containing it.
+     * @throws UnifierNotFound if the test passes
+     */
+    @Test(expected = UnifierNotFound.class)
+    public final void testOccursCheck() throws UnifierNotFound {
+        Term x = logicFactory.createVariable("x");
+        Task task = mockTask("give", logicFactory.createFunction("box", x));
+        Method method = mockMethod("give", x);
+
+        new SimpleUnificationService().findUnifier(task, method);
+    }
+
+    /**
+     * Create a mock task.
+     * @param name the name of the task
+     * @param arguments the arguments of the task
+     * @return the mock task
+     */
+    private Task mockTask(String name, Term... arguments) {
+        List<Term> argumentList = new ArrayList<Term>(Arrays.asList(arguments));
+        Task mockTask = mock(Task.class);
+        when(mockTask.getName()).thenReturn(name);
+        when(mockTask.getArguments()).thenReturn(argumentList);
+        return mockTask;
+    }
+
+    /**
+     * Create a mock method for a task.
+     * @param name the name of the task
+     * @param arguments the arguments of the task
+     * @return the mock method
+     */
+    private Method mockMethod(String name, Term... arguments) {
+        Task mockTask = mockTask(name, arguments);
+        Method mockMethod = mock(Method.class);
+        when(mockMethod.getTask()).thenReturn(mockTask);
+        return mockMethod;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.domain.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Domain;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.domain.Operator;
+import org.gerryai.htn.simple.domain.ImmutableDomainBuilderFactory;
+import org.gerryai.htn.simple.logic.LogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.simple.plan.impl.GroundAction;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.impl.FactIndex;
+import org.gerryai.htn.simple.problem.impl.SimpleStateService;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Constant;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for DomainGrounder.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class DomainGrounderTest {
+
+    /**
+     * Factory for creating logical sentences.
+     */
+    private LogicFactory logicFactory;
+
+    /**
+     * Factory for creating domain objects.
+     */
+    private ImmutableDomainBuilderFactory domainBuilderFactory;
+
+    /**
+     * A constant that starts on the table.
+     */
+    private Constant a;
+
+    /**
+     * A constant that is never on the table.
+     */
+    private Constant b;
+
+    /**
+     * The ground domain.
+     */
+    private GroundDomain groundDomain;
+
+    /**
+     * Ground a domain in which pickup(?x) needs ontable(?x) and gives holding(?x), and stack(?x) needs
+     * holding(?x) and gives stacked(?x), against a state in which only a is on the table.
+     */
+    @Before
+    public final void setUp() {
+        logicFactory = new SimpleLogicFactory();
+        domainBuilderFactory = new SimpleDomainBuilderFactory();
+        a = logicFactory.createConstant("a");
+        b = logicFactory.createConstant("b");
+        Variable x = logicFactory.createVariable("x");
+
+        Set<Operator> operators = new HashSet<Operator>();
+        operators.add(createOperator("pickup", x, "ontable", "holding"));
+        operators.add(createOperator("stack", x, "holding", "stacked"));
+        Domain mockDomain = mock(Domain.class);
+        when(mockDomain.getOperators()).thenReturn(operators);
+        when(mockDomain.getMethods()).thenReturn(new HashSet<Method>());
+
+        Set<Task> tasks = new HashSet<Task>();
+        tasks.add(createTask("pickup", b));
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+
+        ImmutableState state = new SimpleStateService().createStateBuilder()
+                .tell(domainBuilderFactory.createEffectBuilder()
+                        .setSentence(logicFactory.createPredicate("ontable", a))
+                        .build())
+                .build();
+
+        ImmutableProblem mockProblem = mock(ImmutableProblem.class);
+        when(mockProblem.getState()).thenReturn(state);
+        when(mockProblem.getTaskNetwork()).thenReturn(mockTaskNetwork);
+        when(mockProblem.getDomain()).thenReturn(mockDomain);
+
+        groundDomain = new DomainGrounder().ground(mockProblem);
+    }
+
+    /**
+     * Test that only reachable instances are kept, including those reached through other instances.
+     */
+    @Test
+    public final void testReachableInstances() {
+        assertEquals(2, groundDomain.size());
+        assertNotNull(groundDomain.getAction(createTask("pickup", a)));
+        assertNotNull(groundDomain.getAction(createTask("stack", a)));
+        assertNull(groundDomain.getAction(createTask("pickup", b)));
+        assertNull(groundDomain.getAction(createTask("stack", b)));
+    }
+
+    /**
+     * Test that ground actions carry their bindings and the numbers of their facts.
+     */
+    @Test
+    public final void testFactIds() {
+        FactIndex index = groundDomain.getIndex();
+        GroundAction pickup = groundDomain.getAction(createTask("pickup", a));
+
+        assertEquals(a, pickup.getBindings().get(logicFactory.createVariable("x")));
+        assertTrue(pickup.isIndexed());
+        assertArrayEquals(new int[] {index.getId(logicFactory.createPredicate("ontable", a))},
+                pickup.getPositivePreconditions());
+        assertArrayEquals(new int[] {index.getId(logicFactory.createPredicate("holding", a))},
+                pickup.getAdds());
+        assertEquals(FactIndex.NOT_FOUND, index.getId(logicFactory.createPredicate("holding", b)));
+    }
+
+    /**
+     * Create an operator with a single argument, precondition and effect.
+     * @param name the name of the operator
+     * @param argument the argument
+     * @param precondition the name of the precondition predicate
+     * @param effect the name of the effect predicate
+     * @return the operator
+     */
+    private Operator createOperator(String name, Variable argument, String precondition, String effect) {
+        return domainBuilderFactory.createOperatorBuilder()
+                .setName(name)
+                .addArgument(argument)
+                .addPrecondition(domainBuilderFactory.createConditionBuilder()
+                        .setSentence(logicFactory.createPredicate(precondition, argument))
+                        .build())
+                .addEffect(domainBuilderFactory.createEffectBuilder()
+                        .setSentence(logicFactory.createPredicate(effect, argument))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Create a mock task with a single argument.
+     * @param name the name of the task
+     * @param argument the argument
+     * @return the task
+     */
+    private Task createTask(String name, Term argument) {
+        List<Term> arguments = new ArrayList<Term>();
+        arguments.add(argument);
+        Task mockTask = mock(Task.class);
+        when(mockTask.getName()).thenReturn(name);
+        when(mockTask.getArguments()).thenReturn(arguments);
+        return mockTask;
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.domain.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Mockito.mock;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.logic.Sentence;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class SimpleConditionTest {
+
+    /**
+     * Test that conditions built separately are equal if their sentences are.
+     */
+    @Test
+    public final void testEquals() {
+        Sentence mockSentenceA = mock(Sentence.class);
+        Sentence mockSentenceB = mock(Sentence.class);
+
+        Condition condition = new SimpleCondition.Builder()
+                .setSentence(mockSentenceA)
+                .build();
+        Condition sameCondition = new SimpleCondition.Builder()
+                .setSentence(mockSentenceA)
+                .build();
+        Condition otherCondition = new SimpleCondition.Builder()
+                .setSentence(mockSentenceB)
+                .build();
+
+        assertEquals(condition, sameCondition);
+        assertEquals(condition.hashCode(), sameCondition.hashCode());
+        assertFalse(condition.equals(otherCondition));
+    }
+
+}
@@ -0,0 +1,146 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.domain.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.domain.Operator;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * Unit tests for SimpleDomainIndex.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SimpleDomainIndexTest {
+
+    /**
+     * Test that operators are found by name.
+     */
+    @Test
+    public final void testGetOperator() {
+        Operator mockOperatorA = mock(Operator.class);
+        when(mockOperatorA.getName()).thenReturn("operatorA");
+        Operator mockOperatorB = mock(Operator.class);
+        when(mockOperatorB.getName()).thenReturn("operatorB");
+        Set<Operator> operators = new LinkedHashSet<Operator>();
+        operators.add(mockOperatorA);
+        operators.add(mockOperatorB);
+
+        SimpleDomainIndex index = new SimpleDomainIndex(operators, new LinkedHashSet<Method>());
+
+        assertEquals(mockOperatorA, index.getOperator("operatorA"));
+        assertEquals(mockOperatorB, index.getOperator("operatorB"));
+        assertNull(index.getOperator("operatorC"));
+    }
+
+    /**
+     * Test that methods are only found for tasks with a matching arity.
+     */
+    @Test
+    public final void testGetMethodsByArity() {
+        Task mockUnaryTask = mockTask("task", 1);
+        Task mockBinaryTask = mockTask("task", 2);
+        Method mockUnaryMethod = mock(Method.class);
+        when(mockUnaryMethod.getTask()).thenReturn(mockUnaryTask);
+        Method mockBinaryMethod = mock(Method.class);
+        when(mockBinaryMethod.getTask()).thenReturn(mockBinaryTask);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockUnaryMethod);
+        methods.add(mockBinaryMethod);
+
+        SimpleDomainIndex index = new SimpleDomainIndex(new LinkedHashSet<Operator>(), methods);
+
+        assertEquals(1, index.getMethods(mockTask("task", 1)).size());
+        assertTrue(index.getMethods(mockTask("task", 1)).contains(mockUnaryMethod));
+        assertEquals(1, index.getMethods(mockTask("task", 2)).size());
+        assertTrue(index.getMethods(mockTask("task", 2)).contains(mockBinaryMethod));
+        assertTrue(index.getMethods(mockTask("task", 3)).isEmpty());
+    }
+
+    /**
+     * Test that methods are returned in the order they were given, from a shared set.
+     */
+    @Test
+    public final void testGetMethodsOrderedAndShared() {
+        Task mockTask = mockTask("task", 0);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        List<Method> expected = new ArrayList<Method>();
+        for (int i = 0; i < 10; i++) {
+            Method mockMethod = mock(Method.class);
+            when(mockMethod.getTask()).thenReturn(mockTask);
+            methods.add(mockMethod);
+            expected.add(mockMethod);
+        }
+
+        SimpleDomainIndex index = new SimpleDomainIndex(new LinkedHashSet<Operator>(), methods);
+
+        Set<Method> found = index.getMethods(mockTask("task", 0));
+        assertSame(found, index.getMethods(mockTask));
+        Iterator<Method> iterator = found.iterator();
+        for (Method method : expected) {
+            assertSame(method, iterator.next());
+        }
+    }
+
+    /**
+     * Test that the methods returned cannot be modified.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testGetMethodsUnmodifiable() {
+        Task mockTask = mockTask("task", 0);
+        Method mockMethod = mock(Method.class);
+        when(mockMethod.getTask()).thenReturn(mockTask);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+
+        SimpleDomainIndex index = new SimpleDomainIndex(new LinkedHashSet<Operator>(), methods);
+
+        index.getMethods(mockTask).clear();
+    }
+
+    /**
+     * Create a mock task with the given name and number of arguments.
+     * @param name the name of the task
+     * @param arity the number of arguments
+     * @return the mock task
+     */
+    private Task mockTask(String name, int arity) {
+        List<Term> arguments = new ArrayList<Term>();
+        for (int i = 0; i < arity; i++) {
+            arguments.add(mock(Term.class));
+        }
+        Task mockTask = mock(Task.class);
+        when(mockTask.getName()).thenReturn(name);
+        when(mockTask.getArguments()).thenReturn(arguments);
+        return mockTask;
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.logic.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * Unit tests for InterningLogicFactory.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class InterningLogicFactoryTest {
+
+    /**
+     * Test that constants with the same name are shared and given a symbol ID.
+     */
+    @Test
+    public final void testCreateConstant() {
+        InterningLogicFactory factory = new InterningLogicFactory();
+
+        SimpleConstant constant = (SimpleConstant) factory.createConstant(new String("kiwi"));
+
+        assertSame(constant, factory.createConstant(new String("kiwi")));
+        assertEquals(factory.getSymbolTable().getId("kiwi"), constant.getId());
+    }
+
+    /**
+     * Test that variables with the same name are shared, but are distinct from constants.
+     */
+    @Test
+    public final void testCreateVariable() {
+        InterningLogicFactory factory = new InterningLogicFactory();
+
+        SimpleVariable variable = (SimpleVariable) factory.createVariable("x");
+
+        assertSame(variable, factory.createVariable("x"));
+        assertNotSame(variable, factory.createConstant("x"));
+        assertEquals(factory.getSymbolTable().getId("x"), variable.getId());
+    }
+
+    /**
+     * Test that interned predicates are equal to those built without interning.
+     */
+    @Test
+    public final void testCreatePredicate() {
+        InterningLogicFactory factory = new InterningLogicFactory();
+        SimpleLogicFactory simpleFactory = new SimpleLogicFactory();
+
+        List<Term> terms = new ArrayList<Term>();
+        terms.add(factory.createConstant("kiwi"));
+        Predicate predicate = factory.createPredicate(new String("have"), terms);
+
+        List<Term> simpleTerms = new ArrayList<Term>();
+        simpleTerms.add(simpleFactory.createConstant("kiwi"));
+        Predicate simplePredicate = simpleFactory.createPredicate("have", simpleTerms);
+
+        assertSame(factory.getSymbolTable().intern("have"), predicate.getName());
+        assertEquals(simplePredicate, predicate);
+        assertEquals(predicate, simplePredicate);
+        assertEquals(simplePredicate.hashCode(), predicate.hashCode());
+    }
+
+    /**
+     * Test that predicates built by the sentence builder have interned names.
+     */
+    @Test
+    public final void testSentenceBuilder() {
+        InterningLogicFactory factory = new InterningLogicFactory();
+
+        Predicate predicate = factory.sentenceBuilder()
+                .predicate(new String("have"))
+                .build();
+
+        assertSame(factory.getSymbolTable().intern("have"), predicate.getName());
+    }
+}
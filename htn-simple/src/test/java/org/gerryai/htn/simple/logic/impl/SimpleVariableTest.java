@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -121,4 +122,47 @@ public class SimpleVariableTest {
         assertTrue(variableA.equals(variableB));
     }
 
+    /**
+     * Test that renamed instances keep the name but are distinct from the original and each other.
+     */
+    @Test
+    public final void testRename() {
+        SimpleVariable variable = new SimpleVariable("?x");
+        SimpleVariable first = variable.rename(1L);
+        SimpleVariable second = variable.rename(2L);
+
+        assertEquals("?x", first.getName());
+        assertEquals(first, variable.rename(1L));
+        assertEquals(first.hashCode(), variable.rename(1L).hashCode());
+        assertFalse(variable.equals(first));
+        assertFalse(first.equals(variable));
+        assertFalse(first.equals(second));
+    }
+
+    /**
+     * Test that copying a renamed variable through the builder keeps its instance.
+     */
+    @Test
+    public final void testBuilderCopyKeepsInstance() {
+        SimpleVariable renamed = new SimpleVariable("?x", 3).rename(7L);
+
+        SimpleVariable copy = new SimpleVariable.Builder()
+                .copy(renamed)
+                .build();
+
+        assertEquals(renamed, copy);
+        assertEquals(7L, copy.getInstance());
+        assertEquals(3, copy.getId());
+    }
+
+    /**
+     * Test that a variable is only equal to other simple variables, so that equality stays symmetric.
+     */
+    @Test
+    public final void testNotEqualToOtherVariables() {
+        Variable mockVariable = mock(Variable.class);
+        when(mockVariable.getName()).thenReturn("?x");
+
+        assertFalse(new SimpleVariable("?x").equals(mockVariable));
+    }
 }
@@ -0,0 +1,57 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.logic.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for SymbolTable.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SymbolTableTest {
+
+    /**
+     * Test that IDs are dense and stable.
+     */
+    @Test
+    public final void testGetId() {
+        SymbolTable table = new SymbolTable();
+
+        assertEquals(0, table.getId("a"));
+        assertEquals(1, table.getId("b"));
+        assertEquals(0, table.getId("a"));
+        assertEquals(2, table.size());
+        assertEquals("b", table.getName(1));
+    }
+
+    /**
+     * Test that equal names are interned to the same instance.
+     */
+    @Test
+    public final void testIntern() {
+        SymbolTable table = new SymbolTable();
+        String first = new String("symbol");
+        String second = new String("symbol");
+
+        assertSame(first, table.intern(first));
+        assertSame(first, table.intern(second));
+    }
+}
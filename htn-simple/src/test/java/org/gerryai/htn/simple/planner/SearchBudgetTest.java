@@ -0,0 +1,95 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for SearchBudget.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SearchBudgetTest {
+
+    /**
+     * Test that expansions are refused once the limit is reached, and stay refused.
+     */
+    @Test
+    public final void testExpansionLimit() {
+        final long maxExpansions = 3;
+        SearchBudget budget = new SearchBudget(SearchBudget.UNBOUNDED, TimeUnit.NANOSECONDS, maxExpansions);
+
+        for (int i = 0; i < maxExpansions; i++) {
+            assertTrue(budget.tryExpand());
+        }
+        assertFalse(budget.isExhausted());
+        assertFalse(budget.tryExpand());
+        assertFalse(budget.tryExpand());
+        assertTrue(budget.isExhausted());
+        assertFalse(budget.isDeadlineReached());
+        assertEquals(maxExpansions, budget.getExpansions());
+    }
+
+    /**
+     * Test that expansions are refused once the deadline has passed.
+     */
+    @Test
+    public final void testDeadline() {
+        SearchBudget budget = new SearchBudget(0, TimeUnit.NANOSECONDS, SearchBudget.UNBOUNDED);
+
+        assertFalse(budget.tryExpand());
+        assertTrue(budget.isExhausted());
+        assertTrue(budget.isDeadlineReached());
+    }
+
+    /**
+     * Test that a used up budget is reported as a timeout.
+     */
+    @Test
+    public final void testExpand() {
+        SearchBudget budget = new SearchBudget(SearchBudget.UNBOUNDED, TimeUnit.NANOSECONDS, 0);
+
+        try {
+            budget.expand();
+        } catch (PlanningTimeout e) {
+            assertFalse(e.isDeadlineReached());
+            assertEquals(0, e.getExpansions());
+            return;
+        }
+        throw new AssertionError("Timeout not reported");
+    }
+
+    /**
+     * Test that an unlimited budget is never used up.
+     */
+    @Test
+    public final void testUnlimited() {
+        final int expansions = 1000;
+        SearchBudget budget = SearchBudget.unlimited();
+
+        for (int i = 0; i < expansions; i++) {
+            assertTrue(budget.tryExpand());
+        }
+        assertEquals(expansions, budget.getExpansions());
+    }
+}
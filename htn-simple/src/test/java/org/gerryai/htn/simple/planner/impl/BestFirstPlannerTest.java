@@ -0,0 +1,322 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anySetOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.planner.SearchHeuristic;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.tasknetwork.ImmutableTaskNetwork;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class BestFirstPlannerTest {
+
+    /**
+     * Test that an empty problem results in an empty plan.
+     * @throws PlanNotFound only if the test is broken
+     */
+    @Test
+    public final void testEmptyProblem() throws PlanNotFound {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        Plan mockPlan = mock(Plan.class);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.createPlan(new ArrayList<Action>())).thenReturn(mockPlan);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper,
+                new RemainingTaskHeuristic());
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+    }
+
+    /**
+     * Test that the planner expands the method the heuristic prefers, and never expands the other.
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testHeuristicGuidesSearch() throws PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        Task mockTaskB = mockTask(false);
+        Task mockTaskC = mockTask(true);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockTaskA);
+        ImmutableTaskNetwork mockDeepNetwork = mockTaskNetwork(mockTaskB);
+        ImmutableTaskNetwork mockShallowNetwork = mockTaskNetwork(mockTaskC);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        Action mockAction = mock(Action.class);
+        Plan mockPlan = mock(Plan.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA)).thenReturn(mockDeepNetwork);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB)).thenReturn(mockShallowNetwork);
+        when(mockPlannerHelper.createAction(mockTaskC)).thenReturn(mockAction);
+        when(mockPlannerHelper.apply(mockState, mockAction)).thenReturn(mockState);
+        when(mockPlannerHelper.createPlan(Collections.singletonList(mockAction))).thenReturn(mockPlan);
+
+        SearchHeuristic mockHeuristic = mock(SearchHeuristic.class);
+        final int deepEstimate = 10;
+        when(mockHeuristic.estimate(any(ImmutableState.class), eq(mockDeepNetwork), anySetOf(Task.class)))
+                .thenReturn(deepEstimate);
+
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper, mockHeuristic);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+        verify(mockDomainHelper, never()).getMethodsByTask(mockTaskB);
+    }
+
+    /**
+     * Test that when two unordered non-primitive tasks are ready, the second is decomposed even though
+     * the first cannot be.
+     * @throws PlanNotFound only if the test fails
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testBranchesOverReadyTasks() throws PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        Task mockTaskB = mockTask(false);
+        Task mockTaskC = mockTask(true);
+        Set<Task> tasks = new LinkedHashSet<Task>();
+        tasks.add(mockTaskA);
+        tasks.add(mockTaskB);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+        ImmutableTaskNetwork mockDecomposedNetwork = mockTaskNetwork(mockTaskC);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(Collections.singleton(mockMethodA));
+        when(mockDomainHelper.getMethodsByTask(mockTaskB)).thenReturn(Collections.singleton(mockMethodB));
+
+        Action mockAction = mock(Action.class);
+        Plan mockPlan = mock(Plan.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA))
+                .thenThrow(new DecompositionNotFound());
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskB, mockMethodB)).thenReturn(mockDecomposedNetwork);
+        when(mockPlannerHelper.createAction(mockTaskC)).thenReturn(mockAction);
+        when(mockPlannerHelper.apply(mockState, mockAction)).thenReturn(mockState);
+        when(mockPlannerHelper.createPlan(Collections.singletonList(mockAction))).thenReturn(mockPlan);
+
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper,
+                mock(SearchHeuristic.class));
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+    }
+
+    /**
+     * Test that a node the heuristic marks as unsolvable is never expanded.
+     * @throws PlanNotFound if the test passes
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testUnsolvableEstimate() throws PlanNotFound {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockTaskA);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        SearchHeuristic mockHeuristic = mock(SearchHeuristic.class);
+        when(mockHeuristic.estimate(any(ImmutableState.class), eq(mockTaskNetwork), anySetOf(Task.class)))
+                .thenReturn(SearchHeuristic.UNSOLVABLE);
+
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper, mockHeuristic);
+
+        try {
+            planner.findPlan(mockState, mockTaskNetwork);
+        } finally {
+            verify(mockDomainHelper, never()).getMethodsByTask(mockTaskA);
+        }
+    }
+
+    /**
+     * Test that a non-primitive task whose methods all fail throws an exception.
+     * @throws PlanNotFound if the test passes
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testOneUndecomposableNonPrimitiveTask()
+            throws PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockTaskA);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA))
+                .thenThrow(new DecompositionNotFound());
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB))
+                .thenThrow(new InvalidConstraint());
+
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper,
+                new RemainingTaskHeuristic());
+
+        planner.findPlan(mockState, mockTaskNetwork);
+    }
+
+    /**
+     * Test that the budget is charged once for each method applied, so the search gives up
+     * with a timeout once its expansions are used up.
+     * @throws PlanNotFound only if the test fails
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testExpansionLimit() throws PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockTaskA);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        // Both methods decompose the task into itself, so the search never ends on its own
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA)).thenReturn(mockTaskNetwork);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB)).thenReturn(mockTaskNetwork);
+
+        final long maxExpansions = 100;
+        SearchBudget budget = new SearchBudget(SearchBudget.UNBOUNDED, TimeUnit.NANOSECONDS, maxExpansions);
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper,
+                new RemainingTaskHeuristic());
+
+        try {
+            planner.findPlan(mockState, mockTaskNetwork, budget);
+            fail("Expected the budget to be used up");
+        } catch (PlanningTimeout e) {
+            assertEquals(maxExpansions, budget.getExpansions());
+            verify(mockPlannerHelper, times((int) maxExpansions))
+                    .decompose(eq(mockTaskNetwork), eq(mockTaskA), any(Method.class));
+        }
+    }
+
+    /**
+     * Test that the search gives up with a timeout once its search budget is used up.
+     * @throws PlanNotFound if the test passes
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test(expected = PlanningTimeout.class)
+    public final void testBudgetUsedUp() throws PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockTaskA);
+
+        Method mockMethod = mock(Method.class);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(Collections.singleton(mockMethod));
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethod)).thenReturn(mockTaskNetwork);
+
+        BestFirstPlanner planner = new BestFirstPlanner(mockDomainHelper, mockPlannerHelper,
+                new RemainingTaskHeuristic());
+
+        planner.findPlan(mockState, mockTaskNetwork,
+                new SearchBudget(0, TimeUnit.NANOSECONDS, SearchBudget.UNBOUNDED));
+    }
+
+    /**
+     * Create a mock task.
+     * @param primitive whether the task is primitive
+     * @return the task
+     */
+    private Task mockTask(boolean primitive) {
+        Task task = mock(Task.class);
+        when(task.isPrimitive()).thenReturn(primitive);
+        return task;
+    }
+
+    /**
+     * Create a mock task network holding a single task.
+     * @param task the task
+     * @return the task network
+     */
+    private ImmutableTaskNetwork mockTaskNetwork(Task task) {
+        Set<Task> tasks = new HashSet<Task>();
+        tasks.add(task);
+        ImmutableTaskNetwork taskNetwork = mock(ImmutableTaskNetwork.class);
+        when(taskNetwork.getTasks()).thenReturn(tasks);
+        return taskNetwork;
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Domain;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.SearchHeuristic;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class DecompositionDepthHeuristicTest {
+
+    /**
+     * Primitive task.
+     */
+    private Task mockPrimitiveTask;
+
+    /**
+     * Non-primitive task with a recursive method and a method straight to a primitive task.
+     */
+    private Task mockTaskA;
+
+    /**
+     * Non-primitive task whose only method decomposes it into task A.
+     */
+    private Task mockTaskB;
+
+    /**
+     * Non-primitive task whose only method decomposes it into itself.
+     */
+    private Task mockTaskC;
+
+    /**
+     * Helper for the domain holding the methods.
+     */
+    private ImmutableDomainHelper mockDomainHelper;
+
+    /**
+     * Set up the domain.
+     */
+    @Before
+    public final void setUp() {
+        mockPrimitiveTask = mockTask(true);
+        mockTaskA = mockTask(false);
+        mockTaskB = mockTask(false);
+        mockTaskC = mockTask(false);
+
+        Method mockRecursiveMethodA = mockMethod(mockTaskA, mockPrimitiveTask);
+        Method mockMethodA = mockMethod(mockPrimitiveTask);
+        Method mockMethodB = mockMethod(mockTaskA, mockPrimitiveTask);
+        Method mockMethodC = mockMethod(mockTaskC);
+
+        Set<Method> methods = new HashSet<Method>();
+        methods.add(mockRecursiveMethodA);
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        methods.add(mockMethodC);
+        Domain mockDomain = mock(Domain.class);
+        when(mockDomain.getMethods()).thenReturn(methods);
+
+        Set<Method> methodsA = new HashSet<Method>();
+        methodsA.add(mockRecursiveMethodA);
+        methodsA.add(mockMethodA);
+        mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getDomain()).thenReturn(mockDomain);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methodsA);
+        when(mockDomainHelper.getMethodsByTask(mockTaskB)).thenReturn(Collections.singleton(mockMethodB));
+        when(mockDomainHelper.getMethodsByTask(mockTaskC)).thenReturn(Collections.singleton(mockMethodC));
+    }
+
+    /**
+     * Test that unapplied tasks are estimated by their minimum depth of decomposition.
+     */
+    @Test
+    public final void testEstimate() {
+        final int expected = 4;
+        Set<Task> tasks = new HashSet<Task>();
+        tasks.add(mockPrimitiveTask);
+        tasks.add(mockTaskA);
+        tasks.add(mockTaskB);
+
+        SearchHeuristic heuristic = new DecompositionDepthHeuristic(mockDomainHelper);
+
+        assertEquals(expected, heuristic.estimate(mock(ImmutableState.class), mockTaskNetwork(tasks),
+                Collections.<Task>emptySet()));
+        assertEquals(expected - 1, heuristic.estimate(mock(ImmutableState.class), mockTaskNetwork(tasks),
+                Collections.singleton(mockPrimitiveTask)));
+    }
+
+    /**
+     * Test that a task that can never be reduced to primitive tasks is unsolvable.
+     */
+    @Test
+    public final void testEstimateUnsolvable() {
+        Set<Task> tasks = new HashSet<Task>();
+        tasks.add(mockTaskA);
+        tasks.add(mockTaskC);
+
+        SearchHeuristic heuristic = new DecompositionDepthHeuristic(mockDomainHelper);
+
+        assertEquals(SearchHeuristic.UNSOLVABLE, heuristic.estimate(mock(ImmutableState.class),
+                mockTaskNetwork(tasks), Collections.<Task>emptySet()));
+    }
+
+    /**
+     * Create a mock task.
+     * @param primitive whether the task is primitive
+     * @return the task
+     */
+    private Task mockTask(boolean primitive) {
+        Task task = mock(Task.class);
+        when(task.isPrimitive()).thenReturn(primitive);
+        return task;
+    }
+
+    /**
+     * Create a mock method that decomposes into the given subtasks.
+     * @param subtasks the subtasks
+     * @return the method
+     */
+    private Method mockMethod(Task... subtasks) {
+        Set<Task> tasks = new HashSet<Task>();
+        Collections.addAll(tasks, subtasks);
+        TaskNetwork taskNetwork = mockTaskNetwork(tasks);
+        Method method = mock(Method.class);
+        when(method.getTaskNetwork()).thenReturn(taskNetwork);
+        return method;
+    }
+
+    /**
+     * Create a mock task network holding the given tasks.
+     * @param tasks the tasks
+     * @return the task network
+     */
+    private TaskNetwork mockTaskNetwork(Set<Task> tasks) {
+        TaskNetwork taskNetwork = mock(TaskNetwork.class);
+        when(taskNetwork.getTasks()).thenReturn(tasks);
+        return taskNetwork;
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlanningService;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableProblem;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class ExecutorPlanningServiceTest {
+
+    /**
+     * Test that a problem solved in the background completes with the plan found.
+     * @throws Exception only if the test fails
+     */
+    @Test
+    public final void testSolveAsync() throws Exception {
+        ImmutableProblem mockProblem = mock(ImmutableProblem.class);
+        Plan mockPlan = mock(Plan.class);
+        ImmutablePlanningService mockPlanningService = mock(ImmutablePlanningService.class);
+        when(mockPlanningService.solve(eq(mockProblem), any(SearchBudget.class))).thenReturn(mockPlan);
+
+        QueueingExecutor executor = new QueueingExecutor();
+        ExecutorPlanningService service = new ExecutorPlanningService(mockPlanningService, executor);
+        CompletableFuture<Plan> future = service.solveAsync(mockProblem);
+
+        assertFalse(future.isDone());
+        executor.runAll();
+        assertEquals(mockPlan, future.get());
+    }
+
+    /**
+     * Test that a problem with no plan completes with the reason.
+     * @throws Exception only if the test fails
+     */
+    @Test
+    public final void testSolveAsyncPlanNotFound() throws Exception {
+        ImmutableProblem mockProblem = mock(ImmutableProblem.class);
+        ImmutablePlanningService mockPlanningService = mock(ImmutablePlanningService.class);
+        when(mockPlanningService.solve(eq(mockProblem), any(SearchBudget.class))).thenThrow(new PlanNotFound());
+
+        QueueingExecutor executor = new QueueingExecutor();
+        ExecutorPlanningService service = new ExecutorPlanningService(mockPlanningService, executor);
+        CompletableFuture<Plan> future = service.solveAsync(mockProblem);
+        executor.runAll();
+
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof PlanNotFound);
+            return;
+        }
+        throw new AssertionError("Failure not reported");
+    }
+
+    /**
+     * Test that problems beyond the bound are rejected, and accepted again once there is room.
+     * @throws Exception only if the test fails
+     */
+    @Test
+    public final void testSolveAsyncRejectedWhenFull() throws Exception {
+        ImmutableProblem mockProblem = mock(ImmutableProblem.class);
+        ImmutablePlanningService mockPlanningService = mock(ImmutablePlanningService.class);
+
+        QueueingExecutor executor = new QueueingExecutor();
+        ExecutorPlanningService service = new ExecutorPlanningService(mockPlanningService, executor, 1);
+        CompletableFuture<Plan> first = service.solveAsync(mockProblem);
+        CompletableFuture<Plan> second = service.solveAsync(mockProblem);
+
+        assertFalse(first.isDone());
+        assertTrue(second.isCompletedExceptionally());
+        try {
+            second.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        executor.runAll();
+        assertTrue(first.isDone());
+        assertFalse(service.solveAsync(mockProblem).isDone());
+    }
+
+    /**
+     * Test that a batch of problems is solved on a pool, with each result in the order given.
+     * @throws Exception only if the test fails
+     */
+    @Test
+    public final void testSolveAll() throws Exception {
+        final int numProblems = 20;
+        final int numThreads = 4;
+        final int maxPending = 3;
+        ImmutablePlanningService mockPlanningService = mock(ImmutablePlanningService.class);
+        List<ImmutableProblem> problems = new ArrayList<ImmutableProblem>();
+        List<Plan> plans = new ArrayList<Plan>();
+        for (int i = 0; i < numProblems; i++) {
+            ImmutableProblem mockProblem = mock(ImmutableProblem.class);
+            Plan mockPlan = mock(Plan.class);
+            when(mockPlanningService.solve(eq(mockProblem), any(SearchBudget.class))).thenReturn(mockPlan);
+            problems.add(mockProblem);
+            plans.add(mockPlan);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            ExecutorPlanningService service = new ExecutorPlanningService(mockPlanningService, pool, maxPending);
+            List<CompletableFuture<Plan>> futures = service.solveAll(problems);
+
+            assertEquals(numProblems, futures.size());
+            for (int i = 0; i < numProblems; i++) {
+                assertTrue(futures.get(i).isDone());
+                assertEquals(plans.get(i), futures.get(i).get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Executor that holds tasks until told to run them.
+     */
+    private static final class QueueingExecutor implements Executor {
+
+        /**
+         * Tasks not yet run.
+         */
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        /**
+         * {@inheritDoc}
+         */
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        /**
+         * Run every task held so far.
+         */
+        private void runAll() {
+            List<Runnable> toRun = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : toRun) {
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.gerryai.htn.simple.domain.ImmutableDomain;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class ForkJoinPlannerFactoryTest {
+
+    /**
+     * Test that the factory can create a fork-join planner.
+     */
+    @Test
+    public final void testCreate() {
+
+        ImmutableStateService mockStateService = mock(ImmutableStateService.class);
+        ForkJoinPlannerFactory factory = new ForkJoinPlannerFactory(mockStateService);
+
+        ImmutableDomain mockDomain = mock(ImmutableDomain.class);
+
+        assertTrue(factory.create(mockDomain) instanceof ForkJoinPlanner);
+    }
+
+    /**
+     * Test that the factory searches with a pool supplied by the caller, and leaves it running.
+     */
+    @Test
+    public final void testCreateWithPool() {
+
+        ImmutableStateService mockStateService = mock(ImmutableStateService.class);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ForkJoinPlannerFactory factory = new ForkJoinPlannerFactory(mockStateService, pool,
+                ForkJoinPlanner.DEFAULT_FORK_DEPTH, true);
+
+        ImmutableDomain mockDomain = mock(ImmutableDomain.class);
+
+        try {
+            assertTrue(factory.create(mockDomain) instanceof ForkJoinPlanner);
+            assertFalse(pool.isShutdown());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.tasknetwork.ImmutableTaskNetwork;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class ForkJoinPlannerTest {
+
+    /**
+     * Number of threads to test with.
+     */
+    private static final int PARALLELISM = 4;
+
+    /**
+     * Test that an empty problem results in an empty plan.
+     * @throws PlanNotFound only if the test is broken
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     */
+    @Test
+    public final void testEmptyProblem() throws PlanNotFound, NonPrimitiveTaskNotFound {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlan.getActions()).thenReturn(new ArrayList<Action>());
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenReturn(mockPlan);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+
+        ForkJoinPlanner planner = new ForkJoinPlanner(mockDomainHelper, mockPlannerHelper,
+                new ForkJoinPool(PARALLELISM), ForkJoinPlanner.DEFAULT_FORK_DEPTH, false);
+
+        assertTrue(planner.findPlan(mockState, mockTaskNetwork).getActions().isEmpty());
+    }
+
+    /**
+     * Test that a non-primitive task whose methods all fail throws an exception.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound if the test passes
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testOneUndecomposableNonPrimitiveTask()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA))
+                .thenThrow(new DecompositionNotFound());
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB))
+                .thenThrow(new InvalidConstraint());
+
+        ForkJoinPlanner planner = new ForkJoinPlanner(mockDomainHelper, mockPlannerHelper,
+                new ForkJoinPool(PARALLELISM), ForkJoinPlanner.DEFAULT_FORK_DEPTH, false);
+
+        planner.findPlan(mockState, mockTaskNetwork);
+    }
+
+    /**
+     * Test that the plan from the only successful method is found.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testOneSuccessfulMethod()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutableTaskNetwork mockFailingNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutableTaskNetwork mockSucceedingNetwork = mock(ImmutableTaskNetwork.class);
+        Plan mockPlan = mock(Plan.class);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA)).thenReturn(mockFailingNetwork);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB)).thenReturn(mockSucceedingNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockFailingNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.getNonPrimitiveTask(mockSucceedingNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockFailingNetwork)).thenThrow(new PlanNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockSucceedingNetwork)).thenReturn(mockPlan);
+
+        ForkJoinPlanner planner = new ForkJoinPlanner(mockDomainHelper, mockPlannerHelper,
+                new ForkJoinPool(PARALLELISM), ForkJoinPlanner.DEFAULT_FORK_DEPTH, false);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+    }
+
+    /**
+     * Test that deterministic mode returns the plan from the first method when several succeed.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testDeterministic()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        final int methodCount = 8;
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+
+        // Every method succeeds, each with its own plan
+        Set<Method> methods = new LinkedHashSet<Method>();
+        List<Plan> plans = new ArrayList<Plan>();
+        for (int i = 0; i < methodCount; i++) {
+            Method mockMethod = mock(Method.class);
+            ImmutableTaskNetwork mockDecomposedNetwork = mock(ImmutableTaskNetwork.class);
+            Plan mockPlan = mock(Plan.class);
+            methods.add(mockMethod);
+            plans.add(mockPlan);
+            when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethod))
+                    .thenReturn(mockDecomposedNetwork);
+            when(mockPlannerHelper.getNonPrimitiveTask(mockDecomposedNetwork))
+                    .thenThrow(new NonPrimitiveTaskNotFound());
+            when(mockPlannerHelper.findPlanForPrimitive(mockState, mockDecomposedNetwork)).thenReturn(mockPlan);
+        }
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        ForkJoinPlanner planner = new ForkJoinPlanner(mockDomainHelper, mockPlannerHelper,
+                new ForkJoinPool(PARALLELISM), ForkJoinPlanner.DEFAULT_FORK_DEPTH, true);
+
+        assertEquals(plans.get(0), planner.findPlan(mockState, mockTaskNetwork));
+    }
+
+    /**
+     * Test that branches below the fork depth are searched sequentially.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testBelowForkDepth()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTask = mock(Task.class);
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTask)).thenReturn(methods);
+
+        // A chain of three decompositions ending in a primitive network
+        List<ImmutableTaskNetwork> networks = new ArrayList<ImmutableTaskNetwork>();
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        for (int i = 0; i < 4; i++) {
+            networks.add(mock(ImmutableTaskNetwork.class));
+        }
+        for (int i = 0; i < 3; i++) {
+            when(mockPlannerHelper.getNonPrimitiveTask(networks.get(i))).thenReturn(mockTask);
+            when(mockPlannerHelper.decompose(networks.get(i), mockTask, mockMethod)).thenReturn(networks.get(i + 1));
+        }
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlannerHelper.getNonPrimitiveTask(networks.get(3))).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, networks.get(3))).thenReturn(mockPlan);
+
+        ForkJoinPlanner planner = new ForkJoinPlanner(mockDomainHelper, mockPlannerHelper,
+                new ForkJoinPool(PARALLELISM), 1, false);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, networks.get(0)));
+    }
+
+    /**
+     * Test that the search gives up with a timeout once its budget of expansions is used up,
+     * having charged the budget once for each method applied.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test fails
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testBudgetUsedUp()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+
+        Method mockMethod = mock(Method.class);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(Collections.singleton(mockMethod));
+
+        // The method decomposes the task into itself, so the search never ends on its own
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethod)).thenReturn(mockTaskNetwork);
+
+        final long maxExpansions = 100;
+        SearchBudget budget = new SearchBudget(SearchBudget.UNBOUNDED, TimeUnit.NANOSECONDS, maxExpansions);
+        ForkJoinPlanner planner = new ForkJoinPlanner(mockDomainHelper, mockPlannerHelper,
+                new ForkJoinPool(PARALLELISM), ForkJoinPlanner.DEFAULT_FORK_DEPTH, false);
+
+        try {
+            planner.findPlan(mockState, mockTaskNetwork, budget);
+            fail("Expected the budget to be used up");
+        } catch (PlanningTimeout e) {
+            assertEquals(maxExpansions, budget.getExpansions());
+            verify(mockPlannerHelper, times((int) maxExpansions)).decompose(mockTaskNetwork, mockTaskA, mockMethod);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.gerryai.htn.simple.domain.ImmutableDomain;
+import org.gerryai.htn.simple.problem.ImmutableStateService;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class IterativeDeepeningPlannerFactoryTest {
+
+    /**
+     * Test that the factory can create an iterative-deepening planner.
+     */
+    @Test
+    public final void testCreate() {
+
+        ImmutableStateService mockStateService = mock(ImmutableStateService.class);
+        IterativeDeepeningPlannerFactory factory = new IterativeDeepeningPlannerFactory(mockStateService);
+
+        ImmutableDomain mockDomain = mock(ImmutableDomain.class);
+
+        assertTrue(factory.create(mockDomain) instanceof IterativeDeepeningPlanner);
+    }
+
+    /**
+     * Test that the factory can create an interleaved iterative-deepening planner.
+     */
+    @Test
+    public final void testCreateInterleaved() {
+
+        ImmutableStateService mockStateService = mock(ImmutableStateService.class);
+        IterativeDeepeningPlannerFactory factory = new IterativeDeepeningPlannerFactory(mockStateService, true);
+
+        ImmutableDomain mockDomain = mock(ImmutableDomain.class);
+
+        assertTrue(factory.create(mockDomain) instanceof IterativeDeepeningPlanner);
+    }
+
+}
@@ -0,0 +1,628 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.plan.Plan;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.tasknetwork.ImmutableTaskNetwork;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class IterativeDeepeningPlannerTest {
+
+    /**
+     * Test that an empty problem results in an empty plan.
+     * @throws PlanNotFound only if the test is broken
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     */
+    @Test
+    public final void testEmptyProblem() throws PlanNotFound, NonPrimitiveTaskNotFound {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlan.getActions()).thenReturn(new ArrayList<Action>());
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenReturn(mockPlan);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper);
+
+        assertTrue(planner.findPlan(mockState, mockTaskNetwork).getActions().isEmpty());
+    }
+
+    /**
+     * Test that a primitive task that cannot be achieved throws an exception.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound if the test passes
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testOneUnactionablePrimitiveTask() throws NonPrimitiveTaskNotFound, PlanNotFound {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenThrow(new PlanNotFound());
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper);
+
+        planner.findPlan(mockState, mockTaskNetwork);
+    }
+
+    /**
+     * Test that a non-primitive task whose methods all fail throws an exception.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound if the test passes
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testOneUndecomposableNonPrimitiveTask()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA))
+                .thenThrow(new DecompositionNotFound());
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB))
+                .thenThrow(new InvalidConstraint());
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper);
+
+        planner.findPlan(mockState, mockTaskNetwork);
+    }
+
+    /**
+     * Test that the planner backtracks to a second method when the first leads to an unsolvable network.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testBacktracking()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutableTaskNetwork mockFailingNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutableTaskNetwork mockSucceedingNetwork = mock(ImmutableTaskNetwork.class);
+
+        Plan mockPlan = mock(Plan.class);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethodA);
+        methods.add(mockMethodB);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA)).thenReturn(mockFailingNetwork);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodB)).thenReturn(mockSucceedingNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockFailingNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.getNonPrimitiveTask(mockSucceedingNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockFailingNetwork)).thenThrow(new PlanNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockSucceedingNetwork)).thenReturn(mockPlan);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+    }
+
+    /**
+     * Test that a plan deeper than the initial depth limit is found by deepening the search.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testDeepening()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTask = mock(Task.class);
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTask)).thenReturn(methods);
+
+        // A chain of three decompositions ending in a primitive network
+        List<ImmutableTaskNetwork> networks = new ArrayList<ImmutableTaskNetwork>();
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        for (int i = 0; i < 4; i++) {
+            networks.add(mock(ImmutableTaskNetwork.class));
+        }
+        for (int i = 0; i < 3; i++) {
+            when(mockPlannerHelper.getNonPrimitiveTask(networks.get(i))).thenReturn(mockTask);
+            when(mockPlannerHelper.decompose(networks.get(i), mockTask, mockMethod)).thenReturn(networks.get(i + 1));
+        }
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlannerHelper.getNonPrimitiveTask(networks.get(3))).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, networks.get(3))).thenReturn(mockPlan);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                1, 1, Integer.MAX_VALUE);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, networks.get(0)));
+    }
+
+    /**
+     * Test that no plan is found when it lies beyond the maximum depth limit.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound if the test passes
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testMaxDepthLimit()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTask = mock(Task.class);
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTask)).thenReturn(methods);
+
+        // The network always decomposes into itself, so the search never bottoms out
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTask);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTask, mockMethod)).thenReturn(mockTaskNetwork);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                2, 2, 10);
+
+        planner.findPlan(mockState, mockTaskNetwork);
+    }
+
+    /**
+     * Test that a very deep decomposition does not exhaust the thread's stack.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testDeepDecomposition()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        final int depth = 100000;
+        ImmutableState mockState = mock(ImmutableState.class);
+        final Task mockTask = mock(Task.class);
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTask)).thenReturn(methods);
+
+        // The network decomposes into itself until the required depth has been reached
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        final int[] decompositions = new int[1];
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTask, mockMethod)).thenAnswer(new Answer<TaskNetwork>() {
+            public TaskNetwork answer(InvocationOnMock invocation) {
+                decompositions[0]++;
+                return (TaskNetwork) invocation.getArguments()[0];
+            }
+        });
+        when(mockPlannerHelper.getNonPrimitiveTask(any(TaskNetwork.class))).thenAnswer(new Answer<Task>() {
+            public Task answer(InvocationOnMock invocation) throws NonPrimitiveTaskNotFound {
+                if (decompositions[0] >= depth) {
+                    throw new NonPrimitiveTaskNotFound();
+                }
+                return mockTask;
+            }
+        });
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenReturn(mockPlan);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                depth, 1, depth);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+        assertEquals(depth, decompositions[0]);
+    }
+
+    /**
+     * Test that a transposition table answers a repeated problem without decomposing it again.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testTranspositionTableReusesPlan()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTask = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        ImmutableTaskNetwork mockDecomposedNetwork = mock(ImmutableTaskNetwork.class);
+
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTask)).thenReturn(methods);
+
+        List<Action> actions = new ArrayList<Action>();
+        actions.add(mock(Action.class));
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlan.getActions()).thenReturn(actions);
+        Plan mockCachedPlan = mock(Plan.class);
+
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTask);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTask, mockMethod)).thenReturn(mockDecomposedNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockDecomposedNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockDecomposedNetwork)).thenReturn(mockPlan);
+        when(mockPlannerHelper.createPlan(actions)).thenReturn(mockCachedPlan);
+
+        TranspositionTable table = new TranspositionTable();
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                1, 1, Integer.MAX_VALUE, false, table);
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+        assertEquals(mockCachedPlan, planner.findPlan(mockState, mockTaskNetwork));
+        verify(mockPlannerHelper, times(1)).decompose(mockTaskNetwork, mockTask, mockMethod);
+        assertEquals(1, table.getHits());
+    }
+
+    /**
+     * Test that a transposition table prunes a subtree already known to fail when the search is deepened.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testTranspositionTablePrunesFailure()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTask = mock(Task.class);
+        Task mockFailingTask = mock(Task.class);
+        Method mockFailingMethod = mock(Method.class);
+        Method mockDeepMethod = mock(Method.class);
+        Method mockLeafMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockFailingMethod);
+        methods.add(mockDeepMethod);
+        Set<Method> failingMethods = new LinkedHashSet<Method>();
+        failingMethods.add(mockLeafMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTask)).thenReturn(methods);
+        when(mockDomainHelper.getMethodsByTask(mockFailingTask)).thenReturn(failingMethods);
+
+        // The first method leads to a subtree that fails outright; the second to a plan three levels down
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockTask, mock(Task.class));
+        ImmutableTaskNetwork mockFailingNetwork = mockTaskNetwork(mockFailingTask, mock(Task.class));
+        ImmutableTaskNetwork mockLeafNetwork = mockTaskNetwork(mock(Task.class), mock(Task.class));
+        ImmutableTaskNetwork mockDeepNetwork = mockTaskNetwork(mockTask, mock(Task.class));
+        ImmutableTaskNetwork mockMiddleNetwork = mockTaskNetwork(mock(Task.class), mock(Task.class));
+        ImmutableTaskNetwork mockSolvedNetwork = mockTaskNetwork(mock(Task.class), mock(Task.class));
+        Set<Method> deepMethods = new LinkedHashSet<Method>();
+        deepMethods.add(mockLeafMethod);
+
+        Plan mockPlan = mock(Plan.class);
+        when(mockPlan.getActions()).thenReturn(new ArrayList<Action>());
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTask);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTask, mockFailingMethod)).thenReturn(mockFailingNetwork);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTask, mockDeepMethod)).thenReturn(mockDeepNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockFailingNetwork)).thenReturn(mockFailingTask);
+        when(mockPlannerHelper.decompose(mockFailingNetwork, mockFailingTask, mockLeafMethod))
+                .thenReturn(mockLeafNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockLeafNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockLeafNetwork)).thenThrow(new PlanNotFound());
+        Task mockDeepTask = mock(Task.class);
+        when(mockDomainHelper.getMethodsByTask(mockDeepTask)).thenReturn(deepMethods);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockDeepNetwork)).thenReturn(mockDeepTask);
+        when(mockPlannerHelper.decompose(mockDeepNetwork, mockDeepTask, mockLeafMethod)).thenReturn(mockMiddleNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockMiddleNetwork)).thenReturn(mockDeepTask);
+        when(mockPlannerHelper.decompose(mockMiddleNetwork, mockDeepTask, mockLeafMethod))
+                .thenReturn(mockSolvedNetwork);
+        when(mockPlannerHelper.getNonPrimitiveTask(mockSolvedNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
+        when(mockPlannerHelper.findPlanForPrimitive(mockState, mockSolvedNetwork)).thenReturn(mockPlan);
+
+        // The first search explores the failing subtree fully but is cut off below the second method
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                2, 1, Integer.MAX_VALUE, false, new TranspositionTable());
+
+        assertEquals(mockPlan, planner.findPlan(mockState, mockTaskNetwork));
+        verify(mockPlannerHelper, times(1)).decompose(mockFailingNetwork, mockFailingTask, mockLeafMethod);
+    }
+
+    /**
+     * Test that in interleaved mode a primitive task whose preconditions fail prunes the branch
+     * before any later non-primitive task is decomposed.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound if the test passes
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testInterleavedPrunesFailingPrimitive()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockPrimitiveTask = mockTask(true);
+        Task mockNonPrimitiveTask = mockTask(false);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockPrimitiveTask, mockNonPrimitiveTask);
+
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockNonPrimitiveTask)).thenReturn(methods);
+
+        Action mockAction = mock(Action.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.createAction(mockPrimitiveTask)).thenReturn(mockAction);
+        when(mockPlannerHelper.apply(mockState, mockAction)).thenThrow(new PlanNotFound());
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                1, 1, Integer.MAX_VALUE, true);
+
+        try {
+            planner.findPlan(mockState, mockTaskNetwork);
+        } finally {
+            verify(mockPlannerHelper, never()).decompose(any(TaskNetwork.class), any(Task.class), any(Method.class));
+        }
+    }
+
+    /**
+     * Test that in interleaved mode primitive tasks are applied in order as they become ready,
+     * threading the state from one to the next.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test is broken
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testInterleavedAppliesPrimitivesInOrder()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockInitialState = mock(ImmutableState.class);
+        ImmutableState mockMiddleState = mock(ImmutableState.class);
+        ImmutableState mockFinalState = mock(ImmutableState.class);
+        Task mockNonPrimitiveTask = mockTask(false);
+        Task mockFirstTask = mockTask(true);
+        Task mockSecondTask = mockTask(true);
+        ImmutableTaskNetwork mockTaskNetwork = mockTaskNetwork(mockNonPrimitiveTask, mockSecondTask);
+        ImmutableTaskNetwork mockDecomposedNetwork = mockTaskNetwork(mockFirstTask, mockSecondTask);
+
+        Method mockMethod = mock(Method.class);
+        Set<Method> methods = new LinkedHashSet<Method>();
+        methods.add(mockMethod);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockNonPrimitiveTask)).thenReturn(methods);
+
+        Action mockFirstAction = mock(Action.class);
+        Action mockSecondAction = mock(Action.class);
+        Plan mockPlan = mock(Plan.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockNonPrimitiveTask, mockMethod))
+                .thenReturn(mockDecomposedNetwork);
+        when(mockPlannerHelper.createAction(mockFirstTask)).thenReturn(mockFirstAction);
+        when(mockPlannerHelper.createAction(mockSecondTask)).thenReturn(mockSecondAction);
+        when(mockPlannerHelper.apply(mockInitialState, mockFirstAction)).thenReturn(mockMiddleState);
+        when(mockPlannerHelper.apply(mockMiddleState, mockSecondAction)).thenReturn(mockFinalState);
+        when(mockPlannerHelper.createPlan(Arrays.asList(mockFirstAction, mockSecondAction))).thenReturn(mockPlan);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                1, 1, Integer.MAX_VALUE, true);
+
+        assertEquals(mockPlan, planner.findPlan(mockInitialState, mockTaskNetwork));
+        verify(mockPlannerHelper, never()).findPlanForPrimitive(any(ImmutableState.class), any(TaskNetwork.class));
+    }
+
+    /**
+     * Test that in interleaved mode, when decomposing the first of two unordered non-primitive tasks
+     * leads nowhere, the search goes on to decompose the second one first.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test fails
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testInterleavedBranchesOverReadyTasks()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockInitialState = mock(ImmutableState.class);
+        ImmutableState mockMiddleState = mock(ImmutableState.class);
+        ImmutableState mockFinalState = mock(ImmutableState.class);
+        Task mockTaskA = mockTask(false);
+        Task mockTaskB = mockTask(false);
+        Task mockPrimitiveTaskA = mockTask(true);
+        Task mockPrimitiveTaskB = mockTask(true);
+
+        // A and B are unordered, and A's action can only be applied once B's has been
+        Set<Task> tasks = new LinkedHashSet<Task>();
+        tasks.add(mockTaskA);
+        tasks.add(mockTaskB);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+        when(mockTaskNetwork.getPrecedenceConstraints()).thenReturn(Collections.<PrecedenceConstraint>emptySet());
+        ImmutableTaskNetwork mockNetworkA = mockTaskNetwork(mockPrimitiveTaskA, mockTaskB);
+        ImmutableTaskNetwork mockNetworkB = mockTaskNetwork(mockPrimitiveTaskB, mockTaskA);
+        ImmutableTaskNetwork mockNetworkBA = mockTaskNetwork(mockPrimitiveTaskB, mockPrimitiveTaskA);
+
+        Method mockMethodA = mock(Method.class);
+        Method mockMethodB = mock(Method.class);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(Collections.singleton(mockMethodA));
+        when(mockDomainHelper.getMethodsByTask(mockTaskB)).thenReturn(Collections.singleton(mockMethodB));
+
+        Action mockActionA = mock(Action.class);
+        Action mockActionB = mock(Action.class);
+        Plan mockPlan = mock(Plan.class);
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA)).thenReturn(mockNetworkA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskB, mockMethodB)).thenReturn(mockNetworkB);
+        when(mockPlannerHelper.decompose(mockNetworkB, mockTaskA, mockMethodA)).thenReturn(mockNetworkBA);
+        when(mockPlannerHelper.createAction(mockPrimitiveTaskA)).thenReturn(mockActionA);
+        when(mockPlannerHelper.createAction(mockPrimitiveTaskB)).thenReturn(mockActionB);
+        when(mockPlannerHelper.apply(mockInitialState, mockActionA)).thenThrow(new PlanNotFound());
+        when(mockPlannerHelper.apply(mockInitialState, mockActionB)).thenReturn(mockMiddleState);
+        when(mockPlannerHelper.apply(mockMiddleState, mockActionA)).thenReturn(mockFinalState);
+        when(mockPlannerHelper.createPlan(Arrays.asList(mockActionB, mockActionA))).thenReturn(mockPlan);
+
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper,
+                2, 1, Integer.MAX_VALUE, true);
+
+        assertEquals(mockPlan, planner.findPlan(mockInitialState, mockTaskNetwork));
+        verify(mockPlannerHelper, times(1)).decompose(mockTaskNetwork, mockTaskA, mockMethodA);
+    }
+
+    /**
+     * Create a mock task.
+     * @param primitive whether the task is primitive
+     * @return the mock task
+     */
+    private Task mockTask(boolean primitive) {
+        Task mockTask = mock(Task.class);
+        when(mockTask.isPrimitive()).thenReturn(primitive);
+        return mockTask;
+    }
+
+    /**
+     * Create a mock task network of two tasks, the first of which must precede the second.
+     * @param first the first task
+     * @param second the second task
+     * @return the mock task network
+     */
+    private ImmutableTaskNetwork mockTaskNetwork(Task first, Task second) {
+        Set<Task> tasks = new LinkedHashSet<Task>();
+        tasks.add(first);
+        tasks.add(second);
+        Set<Task> precedingTasks = new HashSet<Task>();
+        precedingTasks.add(first);
+        Set<Task> procedingTasks = new HashSet<Task>();
+        procedingTasks.add(second);
+        PrecedenceConstraint mockConstraint = mock(PrecedenceConstraint.class);
+        when(mockConstraint.getPrecedingTasks()).thenReturn(precedingTasks);
+        when(mockConstraint.getProcedingTasks()).thenReturn(procedingTasks);
+        Set<PrecedenceConstraint> constraints = new HashSet<PrecedenceConstraint>();
+        constraints.add(mockConstraint);
+
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+        when(mockTaskNetwork.getPrecedenceConstraints()).thenReturn(constraints);
+        return mockTaskNetwork;
+    }
+
+    /**
+     * Test that the search gives up with a timeout once its budget of expansions is used up,
+     * having charged the budget once for each method applied.
+     * @throws NonPrimitiveTaskNotFound only if the test is broken
+     * @throws PlanNotFound only if the test fails
+     * @throws DecompositionNotFound only if the test is broken
+     * @throws InvalidConstraint only if the test is broken
+     */
+    @Test
+    public final void testBudgetUsedUp()
+            throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Task mockTaskA = mock(Task.class);
+        ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+
+        Method mockMethod = mock(Method.class);
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(Collections.singleton(mockMethod));
+
+        // The method decomposes the task into itself, so the search never ends on its own
+        ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+        when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+        when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethod)).thenReturn(mockTaskNetwork);
+
+        final long maxExpansions = 100;
+        SearchBudget budget = new SearchBudget(SearchBudget.UNBOUNDED, TimeUnit.NANOSECONDS, maxExpansions);
+        IterativeDeepeningPlanner planner = new IterativeDeepeningPlanner(mockDomainHelper, mockPlannerHelper);
+
+        try {
+            planner.findPlan(mockState, mockTaskNetwork, budget);
+            fail("Expected the budget to be used up");
+        } catch (PlanningTimeout e) {
+            assertEquals(maxExpansions, budget.getExpansions());
+            verify(mockPlannerHelper, times((int) maxExpansions)).decompose(mockTaskNetwork, mockTaskA, mockMethod);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Mock planner helpers for the planner tests.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+final class PlannerHelperMocks {
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private PlannerHelperMocks() {
+    }
+
+    /**
+     * Create a mock planner helper that leaves the problem's task network as it is when standardising it,
+     * and leaves ready tasks in the order they are found.
+     * @return the mock planner helper
+     * @throws PlanNotFound never
+     */
+    static ImmutablePlannerHelper create() throws PlanNotFound {
+        ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+        when(mockPlannerHelper.standardise(any(TaskNetwork.class))).thenAnswer(new Answer<TaskNetwork>() {
+            public TaskNetwork answer(InvocationOnMock invocation) {
+                return (TaskNetwork) invocation.getArguments()[0];
+            }
+        });
+        when(mockPlannerHelper.orderTasks(any(TaskNetwork.class), anyListOf(Task.class))).thenAnswer(
+                new Answer<List<Task>>() {
+            @SuppressWarnings("unchecked")
+            public List<Task> answer(InvocationOnMock invocation) {
+                return (List<Task>) invocation.getArguments()[1];
+            }
+        });
+        return mockPlannerHelper;
+    }
+}
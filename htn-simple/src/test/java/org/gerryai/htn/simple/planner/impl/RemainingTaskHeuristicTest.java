@@ -0,0 +1,57 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class RemainingTaskHeuristicTest {
+
+    /**
+     * Test that only tasks not yet applied are counted.
+     */
+    @Test
+    public final void testEstimate() {
+        Task mockTaskA = mock(Task.class);
+        Task mockTaskB = mock(Task.class);
+        Task mockTaskC = mock(Task.class);
+        Set<Task> tasks = new HashSet<Task>();
+        tasks.add(mockTaskA);
+        tasks.add(mockTaskB);
+        tasks.add(mockTaskC);
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+
+        assertEquals(2, new RemainingTaskHeuristic().estimate(mock(ImmutableState.class), mockTaskNetwork,
+                Collections.singleton(mockTaskB)));
+    }
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -34,6 +35,7 @@ import java.util.Set;
 
 import org.gerryai.htn.constraint.PrecedenceConstraint;
 import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Effect;
 import org.gerryai.htn.domain.Operator;
 import org.gerryai.htn.plan.Action;
 import org.gerryai.htn.plan.Plan;
@@ -44,17 +46,24 @@ import org.gerryai.htn.simple.decomposition.UnificationService;
 import org.gerryai.htn.simple.decomposition.UnifierNotFound;
 import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
 import org.gerryai.htn.simple.domain.ImmutableMethod;
+import org.gerryai.htn.simple.logic.LogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
 import org.gerryai.htn.simple.plan.ActionFactory;
 import org.gerryai.htn.simple.plan.PlanBuilder;
 import org.gerryai.htn.simple.plan.PlanBuilderFactory;
+import org.gerryai.htn.simple.plan.impl.GroundAction;
 import org.gerryai.htn.simple.planner.DecompositionNotFound;
+import org.gerryai.htn.simple.planner.select.TaskSelector;
 import org.gerryai.htn.simple.planner.sort.SortService;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.simple.problem.ImmutableStateService;
+import org.gerryai.htn.simple.problem.impl.BitsetState;
+import org.gerryai.htn.simple.problem.impl.FactIndex;
 import org.gerryai.htn.simple.tasknetwork.ImmutableTaskNetwork;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
 import org.gerryai.logic.Constant;
+import org.gerryai.logic.Predicate;
 import org.gerryai.logic.Term;
 import org.gerryai.logic.Variable;
 import org.junit.Before;
@@ -153,6 +162,48 @@ public class SimplePlannerHelperTest {
 		
 	}
 	
+	/**
+	 * Test that finding a non-primitive task is left to the task selector.
+	 * @throws NonPrimitiveTaskNotFound only if the test fails
+	 */
+	@Test
+	public final void testGetNonPrimitiveTaskUsesSelector() throws NonPrimitiveTaskNotFound {
+		
+		ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+		Task mockTask = mock(Task.class);
+		TaskSelector mockTaskSelector = mock(TaskSelector.class);
+		when(mockTaskSelector.select(mockTaskNetwork)).thenReturn(mockTask);
+		
+		SimplePlannerHelper plannerHelper = new SimplePlannerHelper(mockActionFactory,
+				mockPlanBuilderFactory, mockDecompositionService, mockUnificationService,
+				mockSortService, mockStateService, mockDomainHelper, mockTaskSelector);
+		
+		assertEquals(mockTask, plannerHelper.getNonPrimitiveTask(mockTaskNetwork));
+	}
+	
+	/**
+	 * Test that ordering ready tasks is left to the task selector.
+	 */
+	@Test
+	public final void testOrderTasksUsesSelector() {
+		
+		ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(mock(Task.class));
+		tasks.add(mock(Task.class));
+		List<Task> ordered = new ArrayList<Task>();
+		ordered.add(tasks.get(1));
+		ordered.add(tasks.get(0));
+		TaskSelector mockTaskSelector = mock(TaskSelector.class);
+		when(mockTaskSelector.order(mockTaskNetwork, tasks)).thenReturn(ordered);
+		
+		SimplePlannerHelper plannerHelper = new SimplePlannerHelper(mockActionFactory,
+				mockPlanBuilderFactory, mockDecompositionService, mockUnificationService,
+				mockSortService, mockStateService, mockDomainHelper, mockTaskSelector);
+		
+		assertEquals(ordered, plannerHelper.orderTasks(mockTaskNetwork, tasks));
+	}
+	
 	/**
 	 * Test finding a plan for an empty task network.
 	 * @throws PlanNotFound only if test fails
@@ -261,6 +312,157 @@ public class SimplePlannerHelperTest {
         plannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork);
     }
     
+    /**
+     * Test that all the grounded effects of an action are applied to the state in one go.
+     * @throws PlanNotFound only if the test fails
+     * @throws TaskNotActionable only if the test fails
+     */
+    @Test
+    public final void testFindPlanForPrimitiveAppliesEffectsTogether() throws PlanNotFound, TaskNotActionable {
+
+        List<Action> mockActions = setupPlanBuilderFactory(1);
+        ImmutableTaskNetwork mockTaskNetwork = setupTaskNetwork(mockActions);
+        ImmutableState mockState = mock(ImmutableState.class);
+
+        Map<Variable, Constant> mockBindings = new HashMap<Variable, Constant>();
+        when(mockActions.get(0).getBindings()).thenReturn(mockBindings);
+        Effect mockEffectA = mock(Effect.class);
+        Effect mockEffectB = mock(Effect.class);
+        Set<Effect> mockEffects = new HashSet<Effect>();
+        mockEffects.add(mockEffectA);
+        mockEffects.add(mockEffectB);
+        when(mockActions.get(0).getOperator().getEffects()).thenReturn(mockEffects);
+        Effect mockGroundEffectA = mock(Effect.class);
+        Effect mockGroundEffectB = mock(Effect.class);
+        when(mockDomainHelper.getGroundedEffect(mockEffectA, mockBindings)).thenReturn(mockGroundEffectA);
+        when(mockDomainHelper.getGroundedEffect(mockEffectB, mockBindings)).thenReturn(mockGroundEffectB);
+        final List<Effect> appliedEffects = new ArrayList<Effect>();
+        when(mockStateService.apply(any(ImmutableState.class), any(List.class))).thenAnswer(new Answer<ImmutableState>() {
+            public ImmutableState answer(InvocationOnMock invocation) {
+                for (Object effect : (List<?>) invocation.getArguments()[1]) {
+                    appliedEffects.add((Effect) effect);
+                }
+                return (ImmutableState) invocation.getArguments()[0];
+            }
+        });
+
+        SimplePlannerHelper plannerHelper = createHelper();
+        plannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork);
+
+        verify(mockStateService, times(1)).apply(any(ImmutableState.class), any(List.class));
+        verify(mockStateService, never()).tell(any(ImmutableState.class), any(Effect.class));
+        assertEquals(2, appliedEffects.size());
+        assertTrue(appliedEffects.contains(mockGroundEffectA));
+        assertTrue(appliedEffects.contains(mockGroundEffectB));
+    }
+
+    /**
+     * Test that applying an action whose preconditions do not hold fails without changing the state.
+     * @throws PlanNotFound if the test passes
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testApplyFailsPreconditions() throws PlanNotFound {
+
+        List<Action> mockActions = createMockActions(1);
+        ImmutableState mockState = mock(ImmutableState.class);
+        Condition mockGroundCondition = linkCondition(mockActions.get(0));
+        when(mockStateService.ask(mockState, mockGroundCondition)).thenReturn(false);
+
+        SimplePlannerHelper plannerHelper = createHelper();
+
+        try {
+            plannerHelper.apply(mockState, mockActions.get(0));
+        } finally {
+            verify(mockStateService, never()).apply(any(ImmutableState.class), any(List.class));
+        }
+    }
+
+    /**
+     * Test that a ground action is applied to a bitset state over its fact index without grounding anything.
+     * @throws PlanNotFound only if the test fails
+     */
+    @Test
+    public final void testApplyGroundActionToBitsetState() throws PlanNotFound {
+
+        LogicFactory logicFactory = new SimpleLogicFactory();
+        Predicate holding = logicFactory.createPredicate("holding", logicFactory.createConstant("a"));
+        Predicate clear = logicFactory.createPredicate("clear", logicFactory.createConstant("a"));
+        FactIndex.Builder indexBuilder = new FactIndex.Builder();
+        indexBuilder.add(holding);
+        indexBuilder.add(clear);
+        FactIndex index = indexBuilder.build();
+
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(holding);
+        Effect mockEffect = mock(Effect.class);
+        when(mockEffect.getSentence()).thenReturn(clear);
+        List<Condition> conditions = new ArrayList<Condition>();
+        conditions.add(mockCondition);
+        List<Effect> effects = new ArrayList<Effect>();
+        effects.add(mockEffect);
+        GroundAction action = new GroundAction.Builder()
+                .setOperator(mock(Operator.class))
+                .setConditions(conditions)
+                .setEffects(effects)
+                .setIndex(index)
+                .build();
+
+        Effect mockInitialEffect = mock(Effect.class);
+        when(mockInitialEffect.getSentence()).thenReturn(holding);
+        ImmutableState state = new BitsetState.Builder(index)
+                .tell(mockInitialEffect)
+                .build();
+
+        SimplePlannerHelper plannerHelper = createHelper();
+        BitsetState newState = (BitsetState) plannerHelper.apply(state, action);
+
+        assertTrue(action.isIndexed());
+        assertTrue(newState.ask(index.getId(clear)));
+        verify(mockDomainHelper, never()).getGroundedCondition(any(Condition.class), any(Map.class));
+        verify(mockStateService, never()).apply(any(ImmutableState.class), any(List.class));
+    }
+
+    /**
+     * Test that a ground action whose preconditions are false in a bitset state is rejected.
+     * @throws PlanNotFound if the test passes
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testApplyGroundActionFailsPreconditions() throws PlanNotFound {
+
+        LogicFactory logicFactory = new SimpleLogicFactory();
+        Predicate holding = logicFactory.createPredicate("holding", logicFactory.createConstant("a"));
+        FactIndex.Builder indexBuilder = new FactIndex.Builder();
+        indexBuilder.add(holding);
+        FactIndex index = indexBuilder.build();
+
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(holding);
+        List<Condition> conditions = new ArrayList<Condition>();
+        conditions.add(mockCondition);
+        GroundAction action = new GroundAction.Builder()
+                .setOperator(mock(Operator.class))
+                .setConditions(conditions)
+                .setIndex(index)
+                .build();
+
+        SimplePlannerHelper plannerHelper = createHelper();
+        plannerHelper.apply(new BitsetState.Builder(index).build(), action);
+    }
+
+    /**
+     * Test that a plan is built from actions in the order given.
+     */
+    @Test
+    public final void testCreatePlan() {
+
+        List<Action> mockActions = setupPlanBuilderFactory(2);
+
+        SimplePlannerHelper plannerHelper = createHelper();
+        Plan plan = plannerHelper.createPlan(mockActions);
+
+        assertEquals(mockActions, plan.getActions());
+    }
+
     /**
      * Test finding a plan for an unactionable primitive task.
      * @throws PlanNotFound if the test passes
@@ -19,13 +19,18 @@ package org.gerryai.htn.simple.planner.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.gerryai.htn.domain.Method;
 import org.gerryai.htn.plan.Action;
@@ -34,6 +39,8 @@ import org.gerryai.htn.planner.PlanNotFound;
 import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
 import org.gerryai.htn.simple.planner.DecompositionNotFound;
 import org.gerryai.htn.simple.planner.ImmutablePlannerHelper;
+import org.gerryai.htn.simple.planner.PlanningTimeout;
+import org.gerryai.htn.simple.planner.SearchBudget;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.simple.tasknetwork.ImmutableTaskNetwork;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
@@ -62,7 +69,7 @@ public class SimplePlannerTest {
 		
 		// Create a mock planner helper that will throw an exception if no primitive tasks were found
 		// And no plan if an empty network is searched
-		ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
 		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
 		when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenReturn(mockPlan);
 		ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
@@ -94,7 +101,7 @@ public class SimplePlannerTest {
 		
 		// Create a mock planner helper that will throw an exception since no non-primitive tasks were found
 		// and an exception when trying to action the primitive task
-		ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
 		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
 		when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenThrow(new PlanNotFound());
 		ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
@@ -124,7 +131,7 @@ public class SimplePlannerTest {
 		
 		// Create a mock planner helper that will throw an exception since no non-primitive tasks were found
 		// and an exception when trying to action the primitive task
-		ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
 		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
 		ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
 		Set<Method> methods = new HashSet<Method>();
@@ -167,7 +174,7 @@ public class SimplePlannerTest {
 		
 		// Create a mock planner helper that will throw an exception since no non-primitive tasks were found
 		// and an exception when trying to action the primitive task
-		ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
 		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
 		when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethodA))
 				.thenThrow(new DecompositionNotFound());
@@ -205,7 +212,7 @@ public class SimplePlannerTest {
 		
 		// Create a mock planner helper that will throw an exception if no primitive tasks were found
 		// and a plan that returns one action in response to our network of one primitive task
-		ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
 		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenThrow(new NonPrimitiveTaskNotFound());
 		when(mockPlannerHelper.findPlanForPrimitive(mockState, mockTaskNetwork)).thenReturn(mockPlan);
 		ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
@@ -262,7 +269,7 @@ public class SimplePlannerTest {
 		when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods);
 		
 		// Create a mock planner helper
-		ImmutablePlannerHelper mockPlannerHelper = mock(ImmutablePlannerHelper.class);
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
 		// Task A is primitive
 		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
 		// Method A will decompose task A into task B
@@ -283,4 +290,42 @@ public class SimplePlannerTest {
 		assertEquals(1, plan.getActions().size());
 		assertEquals(mockActionB, plan.getActions().get(0));
 	}
+
+	/**
+	 * Test that the search gives up with a timeout once its budget of expansions is used up,
+	 * having charged the budget once for each method applied.
+	 * @throws NonPrimitiveTaskNotFound only if the test is broken
+	 * @throws PlanNotFound only if the test fails
+	 * @throws DecompositionNotFound only if the test is broken
+	 * @throws InvalidConstraint only if the test is broken
+	 */
+	@Test
+	public final void testBudgetUsedUp()
+			throws NonPrimitiveTaskNotFound, PlanNotFound, DecompositionNotFound, InvalidConstraint {
+
+		ImmutableState mockState = mock(ImmutableState.class);
+		Task mockTaskA = mock(Task.class);
+		ImmutableTaskNetwork mockTaskNetwork = mock(ImmutableTaskNetwork.class);
+
+		Method mockMethod = mock(Method.class);
+		ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+		when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(Collections.singleton(mockMethod));
+
+		// The method decomposes the task into itself, so the search never ends on its own
+		ImmutablePlannerHelper mockPlannerHelper = PlannerHelperMocks.create();
+		when(mockPlannerHelper.getNonPrimitiveTask(mockTaskNetwork)).thenReturn(mockTaskA);
+		when(mockPlannerHelper.decompose(mockTaskNetwork, mockTaskA, mockMethod)).thenReturn(mockTaskNetwork);
+
+		final long maxExpansions = 100;
+		SearchBudget budget = new SearchBudget(SearchBudget.UNBOUNDED, TimeUnit.NANOSECONDS, maxExpansions);
+		SimplePlanner planner = new SimplePlanner(mockDomainHelper, mockPlannerHelper);
+
+		try {
+			planner.findPlan(mockState, mockTaskNetwork, budget);
+			fail("Expected the budget to be used up");
+		} catch (PlanningTimeout e) {
+			assertEquals(maxExpansions, budget.getExpansions());
+			verify(mockPlannerHelper, times((int) maxExpansions)).decompose(mockTaskNetwork, mockTaskA, mockMethod);
+		}
+	}
 }
@@ -20,6 +20,8 @@ package org.gerryai.htn.simple.planner.impl;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,6 +30,7 @@ import org.gerryai.htn.planner.PlanNotFound;
 import org.gerryai.htn.simple.domain.ImmutableDomain;
 import org.gerryai.htn.simple.planner.ImmutablePlanner;
 import org.gerryai.htn.simple.planner.ImmutablePlannerFactory;
+import org.gerryai.htn.simple.planner.SearchBudget;
 import org.gerryai.htn.simple.problem.ImmutableProblem;
 import org.gerryai.htn.simple.problem.ImmutableState;
 import org.gerryai.htn.simple.tasknetwork.ImmutableTaskNetwork;
@@ -65,6 +68,70 @@ public class SimplePlanningServiceTest {
 		assertEquals(mockPlan, plan);
 	}
 
+	/**
+	 * Test that the service passes the search budget on to the planner.
+	 * @throws PlanNotFound only if the test fails
+	 */
+	@Test
+	public final void testSolveWithBudget() throws PlanNotFound {
+		
+		Plan mockPlan = mock(Plan.class);
+		ImmutableProblem mockProblem = createMockProblem();
+		SearchBudget budget = SearchBudget.unlimited();
+		ImmutablePlanner mockPlanner = mock(ImmutablePlanner.class);
+		when(mockPlanner.findPlan(mockProblem.getState(), mockProblem.getTaskNetwork(), budget)).thenReturn(mockPlan);
+		ImmutablePlannerFactory mockPlannerFactory = mock(ImmutablePlannerFactory.class);
+		
+		when(mockPlannerFactory.create(any(ImmutableDomain.class))).thenReturn(mockPlanner);
+		
+		// Create the service to be tested
+		SimplePlanningService plannerService = new SimplePlanningService(mockPlannerFactory);
+		
+		// Try and solve the problem within the budget
+		Plan plan = plannerService.solve(mockProblem, budget);
+		
+		assertEquals(mockPlan, plan);
+	}
+
+	/**
+	 * Test that the planner created for a domain is reused for later problems in the same domain.
+	 * @throws PlanNotFound only if the test fails
+	 */
+	@Test
+	public final void testSolveReusesPlanner() throws PlanNotFound {
+		
+		ImmutableProblem mockProblem = createMockProblem();
+		ImmutablePlanner mockPlanner = mock(ImmutablePlanner.class);
+		ImmutablePlannerFactory mockPlannerFactory = mock(ImmutablePlannerFactory.class);
+		when(mockPlannerFactory.create(any(ImmutableDomain.class))).thenReturn(mockPlanner);
+		
+		SimplePlanningService plannerService = new SimplePlanningService(mockPlannerFactory);
+		plannerService.solve(mockProblem);
+		plannerService.solve(mockProblem);
+		
+		verify(mockPlannerFactory, times(1)).create(mockProblem.getDomain());
+		verify(mockPlanner, times(2)).findPlan(mockProblem.getState(), mockProblem.getTaskNetwork());
+	}
+
+	/**
+	 * Test that a planner is created for every problem when caching is turned off.
+	 * @throws PlanNotFound only if the test fails
+	 */
+	@Test
+	public final void testSolveWithoutCache() throws PlanNotFound {
+		
+		ImmutableProblem mockProblem = createMockProblem();
+		ImmutablePlanner mockPlanner = mock(ImmutablePlanner.class);
+		ImmutablePlannerFactory mockPlannerFactory = mock(ImmutablePlannerFactory.class);
+		when(mockPlannerFactory.create(any(ImmutableDomain.class))).thenReturn(mockPlanner);
+		
+		SimplePlanningService plannerService = new SimplePlanningService(mockPlannerFactory, false, 0);
+		plannerService.solve(mockProblem);
+		plannerService.solve(mockProblem);
+		
+		verify(mockPlannerFactory, times(2)).create(mockProblem.getDomain());
+	}
+
 	/**
 	 * Test that the service throws a PlanNotFound exception if no plan is found.
 	 * @throws PlanNotFound if the test passes
@@ -86,6 +153,27 @@ public class SimplePlanningServiceTest {
 		plannerService.solve(mockProblem);
 	}
 	
+	/**
+	 * Test that a grounded service asks for a planner ground against the problem.
+	 * @throws PlanNotFound only if the test fails
+	 */
+	@Test
+	public final void testSolveGrounded() throws PlanNotFound {
+
+		Plan mockPlan = mock(Plan.class);
+		ImmutableProblem mockProblem = createMockProblem();
+		ImmutablePlanner mockPlanner = mock(ImmutablePlanner.class);
+		when(mockPlanner.findPlan(mockProblem.getState(), mockProblem.getTaskNetwork())).thenReturn(mockPlan);
+		ImmutablePlannerFactory mockPlannerFactory = mock(ImmutablePlannerFactory.class);
+
+		when(mockPlannerFactory.createGrounded(mockProblem)).thenReturn(mockPlanner);
+
+		SimplePlanningService plannerService = new SimplePlanningService(mockPlannerFactory, true);
+
+		assertEquals(mockPlan, plannerService.solve(mockProblem));
+		verify(mockPlannerFactory, never()).create(any(ImmutableDomain.class));
+	}
+	
 	/**
 	 * Create a simple mocked Problem.
 	 * @return a mock problem
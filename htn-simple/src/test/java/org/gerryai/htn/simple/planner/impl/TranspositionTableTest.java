@@ -0,0 +1,277 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.plan.Action;
+import org.gerryai.htn.simple.constraint.impl.SimpleConstraintFactory;
+import org.gerryai.htn.simple.constraint.validation.impl.SimpleConstraintValidatorFactory;
+import org.gerryai.htn.simple.domain.impl.SimpleDomainBuilderFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.tasknetwork.impl.SimpleTaskNetworkFactory;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * @author David Edwards <david@more.fool.me.uk>
+ *
+ */
+public class TranspositionTableTest {
+
+    /**
+     * Test that keys for different task network instances with the same content are equal.
+     */
+    @Test
+    public final void testKeyComparesContent() {
+
+        Task mockTask = mock(Task.class);
+        ImmutableState mockState = mock(ImmutableState.class);
+        Set<Task> applied = new HashSet<Task>();
+
+        TranspositionTable.Key key = TranspositionTable.key(mockTaskNetwork(mockTask), mockState, applied);
+        TranspositionTable.Key sameKey = TranspositionTable.key(mockTaskNetwork(mockTask), mockState, applied);
+        TranspositionTable.Key otherKey = TranspositionTable.key(mockTaskNetwork(mock(Task.class)), mockState, applied);
+
+        assertEquals(key, sameKey);
+        assertEquals(key.hashCode(), sameKey.hashCode());
+        assertFalse(key.equals(otherKey));
+    }
+
+    /**
+     * Test that networks differing only in the instances of their renamed variables share an entry, while
+     * those sharing variables differently do not.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testKeyIgnoresInstances() throws InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Set<Task> applied = new HashSet<Task>();
+        TranspositionTable table = new TranspositionTable();
+
+        table.recordFailure(TranspositionTable.key(createTaskNetwork(5, 6, 6), mockState, applied), 3);
+        TranspositionTable.Entry entry = table.get(
+                TranspositionTable.key(createTaskNetwork(12, 9, 9), mockState, applied));
+
+        assertEquals(3, entry.getFailureDepth());
+        assertEquals(TranspositionTable.key(createTaskNetwork(5, 6, 6), mockState, applied).hashCode(),
+                TranspositionTable.key(createTaskNetwork(12, 9, 9), mockState, applied).hashCode());
+        assertNull(table.get(TranspositionTable.key(createTaskNetwork(5, 6, 5), mockState, applied)));
+    }
+
+    /**
+     * Test that variables only mentioned by the condition of a constraint are also given canonical instances.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testKeyIgnoresInstancesInConditions() throws InvalidConstraint {
+
+        ImmutableState mockState = mock(ImmutableState.class);
+        Set<Task> applied = new HashSet<Task>();
+        TranspositionTable table = new TranspositionTable();
+
+        table.recordFailure(TranspositionTable.key(createConstrainedTaskNetwork(5, 6), mockState, applied), 3);
+        TranspositionTable.Entry entry = table.get(
+                TranspositionTable.key(createConstrainedTaskNetwork(12, 9), mockState, applied));
+
+        assertEquals(3, entry.getFailureDepth());
+        assertNull(table.get(TranspositionTable.key(createConstrainedTaskNetwork(5, 5), mockState, applied)));
+    }
+
+    /**
+     * Test that lookups are counted as hits and misses.
+     */
+    @Test
+    public final void testCounters() {
+
+        TranspositionTable table = new TranspositionTable();
+        TranspositionTable.Key key = mockKey();
+
+        assertNull(table.get(key));
+        table.recordFailure(key, TranspositionTable.UNBOUNDED);
+        assertFalse(table.get(key).isSolved());
+
+        assertEquals(1, table.getHits());
+        assertEquals(1, table.getMisses());
+    }
+
+    /**
+     * Test that a recorded sub-plan is returned.
+     */
+    @Test
+    public final void testRecordPlan() {
+
+        TranspositionTable table = new TranspositionTable();
+        TranspositionTable.Key key = mockKey();
+        List<Action> actions = new ArrayList<Action>();
+        actions.add(mock(Action.class));
+
+        table.recordPlan(key, actions);
+        TranspositionTable.Entry entry = table.get(key);
+
+        assertTrue(entry.isSolved());
+        assertEquals(actions, entry.getActions());
+    }
+
+    /**
+     * Test that a shallower failure does not replace a deeper one.
+     */
+    @Test
+    public final void testRecordFailureKeepsDeepest() {
+
+        TranspositionTable table = new TranspositionTable();
+        TranspositionTable.Key key = mockKey();
+
+        table.recordFailure(key, 2);
+        table.recordFailure(key, 1);
+        assertEquals(2, table.get(key).getFailureDepth());
+
+        table.recordFailure(key, TranspositionTable.UNBOUNDED);
+        assertEquals(TranspositionTable.UNBOUNDED, table.get(key).getFailureDepth());
+    }
+
+    /**
+     * Test that the least recently used entry is evicted once the weight bound is exceeded.
+     */
+    @Test
+    public final void testEvictsLeastRecentlyUsed() {
+
+        // Each key holds one task, so each failure weighs two
+        TranspositionTable table = new TranspositionTable(4);
+        TranspositionTable.Key keyA = mockKey();
+        TranspositionTable.Key keyB = mockKey();
+        TranspositionTable.Key keyC = mockKey();
+
+        table.recordFailure(keyA, 1);
+        table.recordFailure(keyB, 1);
+        table.get(keyA);
+        table.recordFailure(keyC, 1);
+
+        assertEquals(2, table.size());
+        assertEquals(4, table.getWeight());
+        assertEquals(1, table.getEvictions());
+        assertNull(table.get(keyB));
+        assertEquals(1, table.get(keyA).getFailureDepth());
+        assertEquals(1, table.get(keyC).getFailureDepth());
+    }
+
+    /**
+     * Create a key for a network holding a single new task.
+     * @return the key
+     */
+    private TranspositionTable.Key mockKey() {
+        return TranspositionTable.key(mockTaskNetwork(mock(Task.class)), mock(ImmutableState.class),
+                new HashSet<Task>());
+    }
+
+    /**
+     * Create a mock task network holding a single task and no constraints.
+     * @param task the task
+     * @return the mock task network
+     */
+    private TaskNetwork mockTaskNetwork(Task task) {
+        Set<Task> tasks = new HashSet<Task>();
+        tasks.add(task);
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+        return mockTaskNetwork;
+    }
+
+    /**
+     * Create a task network holding task t(?x, ?y) ordered before task s(?z), over renamed variables.
+     * @param instanceX the instance of ?x
+     * @param instanceY the instance of ?y
+     * @param instanceZ the instance of ?z, which is the same variable as ?y if it has the same instance
+     * @return the task network
+     * @throws InvalidConstraint only if the test fails
+     */
+    private TaskNetwork createTaskNetwork(long instanceX, long instanceY, long instanceZ)
+            throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        SimpleVariable variable = (SimpleVariable) logicFactory.createVariable("?x");
+        Term variableX = variable.rename(instanceX);
+        Term variableY = variable.rename(instanceY);
+        Term variableZ = variable.rename(instanceZ);
+        Task taskT = factory.createTaskBuilder()
+                .setName("t")
+                .addArgument(variableX)
+                .addArgument(variableY)
+                .setIsPrimitive(false)
+                .build();
+        Task taskS = factory.createTaskBuilder()
+                .setName("s")
+                .addArgument(variableZ)
+                .setIsPrimitive(false)
+                .build();
+        return factory.createTaskNetworkBuilder()
+                .addTask(taskT)
+                .addTask(taskS)
+                .addPrecedenceConstraint(new SimpleConstraintFactory().createPrecedenceConstraint(taskT, taskS))
+                .build();
+    }
+
+    /**
+     * Create a task network holding task t(?x) with the condition have(?x) holding before it, over renamed
+     * variables.
+     * @param taskInstance the instance of ?x in the task
+     * @param conditionInstance the instance of ?x in the condition, which is the same variable as in the task
+     *     if it has the same instance
+     * @return the task network
+     * @throws InvalidConstraint only if the test fails
+     */
+    private TaskNetwork createConstrainedTaskNetwork(long taskInstance, long conditionInstance)
+            throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        SimpleVariable variable = (SimpleVariable) logicFactory.createVariable("?x");
+        Task task = factory.createTaskBuilder()
+                .setName("t")
+                .addArgument(variable.rename(taskInstance))
+                .setIsPrimitive(false)
+                .build();
+        Condition condition = new SimpleDomainBuilderFactory().createConditionBuilder()
+                .setSentence(logicFactory.sentenceBuilder().predicate("have")
+                        .addTerm(variable.rename(conditionInstance))
+                        .build())
+                .build();
+        return factory.createTaskNetworkBuilder()
+                .addTask(task)
+                .addBeforeConstraint(new SimpleConstraintFactory().createBeforeConstraint(task, condition))
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.gerryai.htn.simple.logic.impl.SimpleVariable;
+import org.gerryai.htn.simple.planner.impl.NonPrimitiveTaskNotFound;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * Unit tests for DeterministicTaskSelector.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class DeterministicTaskSelectorTest {
+
+    /**
+     * Test that the same task is chosen whatever order the network holds its tasks in.
+     * @throws NonPrimitiveTaskNotFound only if the test fails
+     */
+    @Test
+    public final void testSelect() throws NonPrimitiveTaskNotFound {
+        Term mockTermA = mockTerm("a");
+        Term mockTermB = mockTerm("b");
+        Task mockPrimitiveTask = mockTask("alpha", true);
+        Task mockTaskB = mockTask("beta", false, mockTermB);
+        Task mockTaskA = mockTask("beta", false, mockTermA);
+        Task mockTaskC = mockTask("gamma", false);
+
+        DeterministicTaskSelector selector = new DeterministicTaskSelector();
+
+        assertEquals(mockTaskA, selector.select(mockTaskNetwork(mockPrimitiveTask, mockTaskB, mockTaskA, mockTaskC)));
+        assertEquals(mockTaskA, selector.select(mockTaskNetwork(mockTaskC, mockTaskA, mockTaskB, mockPrimitiveTask)));
+    }
+
+    /**
+     * Test that renamed variables are ordered by instance number rather than by how it prints.
+     * @throws NonPrimitiveTaskNotFound only if the test fails
+     */
+    @Test
+    public final void testSelectRenamedVariables() throws NonPrimitiveTaskNotFound {
+        SimpleVariable variable = new SimpleVariable("?x");
+        Task mockTaskNine = mockTask("beta", false, variable.rename(9));
+        Task mockTaskTen = mockTask("beta", false, variable.rename(10));
+        Task mockTaskY = mockTask("beta", false, new SimpleVariable("?y").rename(1));
+
+        DeterministicTaskSelector selector = new DeterministicTaskSelector();
+
+        assertEquals(mockTaskNine, selector.select(mockTaskNetwork(mockTaskTen, mockTaskY, mockTaskNine)));
+        assertEquals(mockTaskNine, selector.select(mockTaskNetwork(mockTaskNine, mockTaskTen, mockTaskY)));
+        assertEquals(mockTaskTen, selector.select(mockTaskNetwork(mockTaskY, mockTaskTen)));
+    }
+
+    /**
+     * Test that a network with no non-primitive tasks is reported.
+     * @throws NonPrimitiveTaskNotFound if the test passes
+     */
+    @Test(expected = NonPrimitiveTaskNotFound.class)
+    public final void testSelectNone() throws NonPrimitiveTaskNotFound {
+        new DeterministicTaskSelector().select(mockTaskNetwork(mockTask("alpha", true)));
+    }
+
+    /**
+     * Create a mock term.
+     * @param name the name the term is printed as
+     * @return the term
+     */
+    private Term mockTerm(String name) {
+        Term term = mock(Term.class);
+        when(term.toString()).thenReturn(name);
+        return term;
+    }
+
+    /**
+     * Create a mock task.
+     * @param name the name of the task
+     * @param primitive whether the task is primitive
+     * @param arguments the task's arguments
+     * @return the task
+     */
+    private Task mockTask(String name, boolean primitive, Term... arguments) {
+        Task task = mock(Task.class);
+        when(task.getName()).thenReturn(name);
+        when(task.isPrimitive()).thenReturn(primitive);
+        when(task.getArguments()).thenReturn(Arrays.asList(arguments));
+        return task;
+    }
+
+    /**
+     * Create a mock task network holding the given tasks in order.
+     * @param tasks the tasks
+     * @return the task network
+     */
+    private TaskNetwork mockTaskNetwork(Task... tasks) {
+        Set<Task> taskSet = new LinkedHashSet<Task>();
+        Collections.addAll(taskSet, tasks);
+        TaskNetwork taskNetwork = mock(TaskNetwork.class);
+        when(taskNetwork.getTasks()).thenReturn(taskSet);
+        return taskNetwork;
+    }
+}
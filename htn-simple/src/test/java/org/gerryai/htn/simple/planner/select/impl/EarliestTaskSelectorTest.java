@@ -0,0 +1,126 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.simple.planner.impl.NonPrimitiveTaskNotFound;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * Unit tests for EarliestTaskSelector.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class EarliestTaskSelectorTest {
+
+    /**
+     * Test that the non-primitive task earliest in the partial order is chosen, even when it sorts last by name
+     * and comes after a primitive task.
+     * @throws NonPrimitiveTaskNotFound only if the test fails
+     */
+    @Test
+    public final void testSelect() throws NonPrimitiveTaskNotFound {
+        Task mockPrimitiveTask = mockTask("alpha", true);
+        Task mockTaskA = mockTask("beta", false);
+        Task mockTaskB = mockTask("gamma", false);
+        Task mockTaskC = mockTask("zeta", false);
+
+        // alpha before beta and beta before gamma, while zeta is unconstrained and so earliest of all
+        Set<PrecedenceConstraint> constraints = new HashSet<PrecedenceConstraint>();
+        constraints.add(mockPrecedence(mockPrimitiveTask, mockTaskA));
+        constraints.add(mockPrecedence(mockTaskA, mockTaskB));
+
+        Set<Task> tasks = new LinkedHashSet<Task>();
+        tasks.add(mockTaskB);
+        tasks.add(mockTaskA);
+        tasks.add(mockPrimitiveTask);
+        tasks.add(mockTaskC);
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+        when(mockTaskNetwork.getPrecedenceConstraints()).thenReturn(constraints);
+
+        assertEquals(mockTaskC, new EarliestTaskSelector().select(mockTaskNetwork));
+
+        tasks.remove(mockTaskC);
+        assertEquals(mockTaskA, new EarliestTaskSelector().select(mockTaskNetwork));
+    }
+
+    /**
+     * Test that tasks are ordered by their place in the partial order, with ties ordered by name,
+     * whatever order they are given in.
+     */
+    @Test
+    public final void testOrder() {
+        Task mockPrimitiveTask = mockTask("alpha", true);
+        Task mockTaskA = mockTask("beta", false);
+        Task mockTaskB = mockTask("gamma", false);
+        Task mockTaskC = mockTask("zeta", false);
+
+        Set<PrecedenceConstraint> constraints = new HashSet<PrecedenceConstraint>();
+        constraints.add(mockPrecedence(mockPrimitiveTask, mockTaskA));
+        constraints.add(mockPrecedence(mockTaskA, mockTaskB));
+
+        Set<Task> tasks = new LinkedHashSet<Task>(Arrays.asList(mockTaskB, mockTaskA, mockPrimitiveTask, mockTaskC));
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+        when(mockTaskNetwork.getPrecedenceConstraints()).thenReturn(constraints);
+
+        assertEquals(Arrays.asList(mockPrimitiveTask, mockTaskC, mockTaskA, mockTaskB),
+                new EarliestTaskSelector().order(mockTaskNetwork,
+                        Arrays.asList(mockTaskB, mockTaskC, mockTaskA, mockPrimitiveTask)));
+    }
+
+    /**
+     * Create a mock task.
+     * @param name the name of the task
+     * @param primitive whether the task is primitive
+     * @return the task
+     */
+    private Task mockTask(String name, boolean primitive) {
+        Task task = mock(Task.class);
+        when(task.getName()).thenReturn(name);
+        when(task.isPrimitive()).thenReturn(primitive);
+        when(task.getArguments()).thenReturn(Collections.<Term>emptyList());
+        return task;
+    }
+
+    /**
+     * Create a mock precedence constraint between two tasks.
+     * @param precedingTask the task that must come first
+     * @param procedingTask the task that must come after it
+     * @return the constraint
+     */
+    private PrecedenceConstraint mockPrecedence(Task precedingTask, Task procedingTask) {
+        PrecedenceConstraint constraint = mock(PrecedenceConstraint.class);
+        when(constraint.getPrecedingTasks()).thenReturn(Collections.singleton(precedingTask));
+        when(constraint.getProcedingTasks()).thenReturn(Collections.singleton(procedingTask));
+        return constraint;
+    }
+}
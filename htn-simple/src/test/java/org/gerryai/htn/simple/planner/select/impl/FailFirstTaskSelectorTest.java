@@ -0,0 +1,106 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.select.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Method;
+import org.gerryai.htn.simple.decomposition.UnificationService;
+import org.gerryai.htn.simple.decomposition.UnifierNotFound;
+import org.gerryai.htn.simple.domain.ImmutableDomainHelper;
+import org.gerryai.htn.simple.planner.impl.NonPrimitiveTaskNotFound;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.junit.Test;
+
+/**
+ * Unit tests for FailFirstTaskSelector.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class FailFirstTaskSelectorTest {
+
+    /**
+     * Test that the task with the fewest applicable methods is chosen, counting only methods that unify.
+     * @throws NonPrimitiveTaskNotFound only if the test fails
+     * @throws UnifierNotFound only if the test is broken
+     */
+    @Test
+    public final void testSelect() throws NonPrimitiveTaskNotFound, UnifierNotFound {
+        Task mockTaskA = mockTask("alpha");
+        Task mockTaskB = mockTask("beta");
+        Method mockMethodA1 = mock(Method.class);
+        Method mockMethodA2 = mock(Method.class);
+        Method mockMethodB1 = mock(Method.class);
+        Method mockMethodB2 = mock(Method.class);
+        Method mockMethodB3 = mock(Method.class);
+
+        ImmutableDomainHelper mockDomainHelper = mock(ImmutableDomainHelper.class);
+        when(mockDomainHelper.getMethodsByTask(mockTaskA)).thenReturn(methods(mockMethodA1, mockMethodA2));
+        when(mockDomainHelper.getMethodsByTask(mockTaskB))
+                .thenReturn(methods(mockMethodB1, mockMethodB2, mockMethodB3));
+
+        // Task B has more methods, but only one of them applies
+        UnificationService mockUnificationService = mock(UnificationService.class);
+        when(mockUnificationService.findUnifier(mockTaskA, mockMethodA1)).thenReturn(new HashMap<Term, Term>());
+        when(mockUnificationService.findUnifier(mockTaskA, mockMethodA2)).thenReturn(new HashMap<Term, Term>());
+        when(mockUnificationService.findUnifier(mockTaskB, mockMethodB1)).thenReturn(new HashMap<Term, Term>());
+        when(mockUnificationService.findUnifier(mockTaskB, mockMethodB2)).thenThrow(new UnifierNotFound());
+        when(mockUnificationService.findUnifier(mockTaskB, mockMethodB3)).thenThrow(new UnifierNotFound());
+
+        Set<Task> tasks = new LinkedHashSet<Task>();
+        tasks.add(mockTaskA);
+        tasks.add(mockTaskB);
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        when(mockTaskNetwork.getTasks()).thenReturn(tasks);
+
+        FailFirstTaskSelector selector = new FailFirstTaskSelector(mockDomainHelper, mockUnificationService);
+
+        assertEquals(mockTaskB, selector.select(mockTaskNetwork));
+    }
+
+    /**
+     * Create a mock non-primitive task.
+     * @param name the name of the task
+     * @return the task
+     */
+    private Task mockTask(String name) {
+        Task task = mock(Task.class);
+        when(task.getName()).thenReturn(name);
+        when(task.getArguments()).thenReturn(Collections.<Term>emptyList());
+        return task;
+    }
+
+    /**
+     * Collect methods into a set.
+     * @param methods the methods
+     * @return the set of methods
+     */
+    private Set<Method> methods(Method... methods) {
+        Set<Method> methodSet = new LinkedHashSet<Method>();
+        Collections.addAll(methodSet, methods);
+        return methodSet;
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.planner.sort.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.planner.PlanNotFound;
+import org.gerryai.htn.simple.planner.sort.PrecedenceCycle;
+import org.gerryai.htn.tasknetwork.Task;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for SimpleSortService.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class SimpleSortServiceTest {
+
+    /**
+     * Tasks to sort, in the order they are given to the service.
+     */
+    private Set<Task> tasks;
+
+    /**
+     * The tasks as an array.
+     */
+    private Task[] mockTasks;
+
+    /**
+     * Create the tasks.
+     */
+    @Before
+    public final void setUp() {
+        final int numTasks = 4;
+        mockTasks = new Task[numTasks];
+        tasks = new LinkedHashSet<Task>();
+        for (int i = 0; i < numTasks; i++) {
+            mockTasks[i] = mock(Task.class);
+            tasks.add(mockTasks[i]);
+        }
+    }
+
+    /**
+     * Test that tasks with no constraints keep their order.
+     * @throws PlanNotFound only if the test fails
+     */
+    @Test
+    public final void testSortUnconstrained() throws PlanNotFound {
+        List<Task> sorted = new SimpleSortService().sortByConstaints(tasks,
+                Collections.<PrecedenceConstraint>emptySet());
+
+        assertEquals(Arrays.asList(mockTasks), sorted);
+    }
+
+    /**
+     * Test that constraints are respected, and that otherwise the original order is kept.
+     * @throws PlanNotFound only if the test fails
+     */
+    @Test
+    public final void testSortConstrained() throws PlanNotFound {
+        Set<PrecedenceConstraint> constraints = new HashSet<PrecedenceConstraint>();
+        constraints.add(mockPrecedence(mockTasks[3], mockTasks[0]));
+        constraints.add(mockPrecedence(mockTasks[2], mockTasks[1]));
+
+        List<Task> sorted = new SimpleSortService().sortByConstaints(tasks, constraints);
+
+        assertEquals(Arrays.asList(mockTasks[2], mockTasks[1], mockTasks[3], mockTasks[0]), sorted);
+    }
+
+    /**
+     * Test that the service can be reused for a larger set of tasks.
+     * @throws PlanNotFound only if the test fails
+     */
+    @Test
+    public final void testSortReused() throws PlanNotFound {
+        final int numTasks = 40;
+        SimpleSortService sortService = new SimpleSortService();
+        sortService.sortByConstaints(tasks, Collections.singleton(mockPrecedence(mockTasks[1], mockTasks[0])));
+
+        Set<Task> moreTasks = new LinkedHashSet<Task>();
+        Set<PrecedenceConstraint> constraints = new HashSet<PrecedenceConstraint>();
+        Task previous = null;
+        for (int i = 0; i < numTasks; i++) {
+            Task task = mock(Task.class);
+            moreTasks.add(task);
+            if (previous != null) {
+                constraints.add(mockPrecedence(task, previous));
+            }
+            previous = task;
+        }
+        List<Task> sorted = sortService.sortByConstaints(moreTasks, constraints);
+
+        assertEquals(numTasks, sorted.size());
+        assertEquals(previous, sorted.get(0));
+    }
+
+    /**
+     * Test that a cycle is reported along with the tasks that could not be sorted.
+     * @throws PlanNotFound if the test passes
+     */
+    @Test
+    public final void testSortCycle() throws PlanNotFound {
+        Set<PrecedenceConstraint> constraints = new HashSet<PrecedenceConstraint>();
+        constraints.add(mockPrecedence(mockTasks[0], mockTasks[1]));
+        constraints.add(mockPrecedence(mockTasks[1], mockTasks[2]));
+        constraints.add(mockPrecedence(mockTasks[2], mockTasks[1]));
+
+        try {
+            new SimpleSortService().sortByConstaints(tasks, constraints);
+        } catch (PrecedenceCycle e) {
+            assertEquals(2, e.getTasks().size());
+            assertTrue(e.getTasks().contains(mockTasks[1]));
+            assertTrue(e.getTasks().contains(mockTasks[2]));
+            return;
+        }
+        throw new AssertionError("Cycle not reported");
+    }
+
+    /**
+     * Test that a constraint on a task that is not being sorted is rejected.
+     * @throws PlanNotFound if the test passes
+     */
+    @Test(expected = PlanNotFound.class)
+    public final void testSortUnknownTask() throws PlanNotFound {
+        new SimpleSortService().sortByConstaints(tasks,
+                Collections.singleton(mockPrecedence(mockTasks[0], mock(Task.class))));
+    }
+
+    /**
+     * Create a mock precedence constraint between two tasks.
+     * @param precedingTask the task that must come first
+     * @param procedingTask the task that must come after it
+     * @return the constraint
+     */
+    private PrecedenceConstraint mockPrecedence(Task precedingTask, Task procedingTask) {
+        PrecedenceConstraint constraint = mock(PrecedenceConstraint.class);
+        when(constraint.getPrecedingTasks()).thenReturn(Collections.singleton(precedingTask));
+        when(constraint.getProcedingTasks()).thenReturn(Collections.singleton(procedingTask));
+        return constraint;
+    }
+}
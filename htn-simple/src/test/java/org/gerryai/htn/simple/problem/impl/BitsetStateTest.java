@@ -0,0 +1,260 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.simple.logic.LogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for BitsetState.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class BitsetStateTest {
+
+    /**
+     * Factory used to create real predicates, since the fact index needs to look them up.
+     */
+    private LogicFactory factory = new SimpleLogicFactory();
+
+    /**
+     * A fact in the index.
+     */
+    private Predicate onAB;
+
+    /**
+     * Another fact in the index.
+     */
+    private Predicate onBA;
+
+    /**
+     * Index over the facts.
+     */
+    private FactIndex index;
+
+    /**
+     * Set up the fact index.
+     */
+    @Before
+    public final void setUp() {
+        onAB = on("a", "b");
+        onBA = on("b", "a");
+        FactIndex.Builder builder = new FactIndex.Builder();
+        builder.add(onAB);
+        builder.add(onBA);
+        index = builder.build();
+    }
+
+    /**
+     * Test for simple tell/ask.
+     */
+    @Test
+    public final void testAsk() {
+
+        ImmutableState state = new BitsetState.Builder(index)
+                .tell(effect(onAB))
+                .build();
+
+        assertTrue(state.ask(condition(onAB)));
+        assertFalse(state.ask(condition(onBA)));
+        assertTrue(((BitsetState) state).ask(index.getId(onAB)));
+    }
+
+    /**
+     * Test that revoking a fact in a copy leaves the original unchanged.
+     */
+    @Test
+    public final void testTellRevoke() {
+
+        ImmutableState oldState = new BitsetState.Builder(index)
+                .tell(effect(onAB))
+                .build();
+
+        ImmutableState newState = oldState.createCopyBuilder()
+                .tell(effect(negate(onAB)))
+                .build();
+
+        assertTrue(oldState.ask(condition(onAB)));
+        assertFalse(newState.ask(condition(onAB)));
+    }
+
+    /**
+     * Test that a sentence outside the index is still remembered.
+     */
+    @Test
+    public final void testTellOutsideIndex() {
+
+        Predicate onCA = on("c", "a");
+
+        ImmutableState state = new BitsetState.Builder(index)
+                .tell(effect(onCA))
+                .build();
+
+        assertTrue(state.ask(condition(onCA)));
+        assertTrue(state.getAssertions().contains(onCA));
+    }
+
+    /**
+     * Test applying effects given as bitsets deletes before adding.
+     */
+    @Test
+    public final void testApplyMasks() {
+
+        long[] deleteMask = index.createMask(Arrays.asList(onAB, onBA));
+        long[] addMask = index.createMask(Arrays.asList(onBA));
+
+        BitsetState oldState = (BitsetState) new BitsetState.Builder(index)
+                .tell(effect(onAB))
+                .build();
+        BitsetState newState = (BitsetState) ((BitsetState.Builder) oldState.createCopyBuilder())
+                .apply(deleteMask, addMask)
+                .build();
+
+        assertTrue(oldState.ask(condition(onAB)));
+        assertFalse(newState.ask(condition(onAB)));
+        assertTrue(newState.ask(condition(onBA)));
+        assertTrue(newState.askAll(addMask));
+        assertFalse(oldState.askAll(addMask));
+    }
+
+    /**
+     * Test applying effects given as fact numbers, and asking about several facts at once.
+     */
+    @Test
+    public final void testApplyIds() {
+
+        int[] ab = new int[] {index.getId(onAB)};
+        int[] ba = new int[] {index.getId(onBA)};
+
+        BitsetState oldState = (BitsetState) new BitsetState.Builder(index)
+                .tell(effect(onAB))
+                .build();
+        BitsetState newState = (BitsetState) ((BitsetState.Builder) oldState.createCopyBuilder())
+                .apply(ab, ba)
+                .build();
+
+        assertTrue(oldState.askAll(ab));
+        assertTrue(oldState.askNone(ba));
+        assertTrue(newState.askAll(ba));
+        assertTrue(newState.askNone(ab));
+    }
+
+    /**
+     * Test that applying effects together deletes before adding, whatever order they are given in.
+     */
+    @Test
+    public final void testApplyDeletesBeforeAdds() {
+
+        List<Effect> effects = new ArrayList<Effect>();
+        effects.add(effect(onAB));
+        effects.add(effect(negate(onAB)));
+
+        ImmutableState state = new BitsetState.Builder(index)
+                .apply(effects)
+                .build();
+
+        assertTrue(state.ask(condition(onAB)));
+    }
+
+    /**
+     * Test that a state copied from another implementation holds the same assertions.
+     */
+    @Test
+    public final void testCopyFromSimpleState() {
+
+        ImmutableState simpleState = new SimpleState.Builder()
+                .tell(effect(onAB))
+                .build();
+
+        ImmutableState state = new BitsetState.Builder(index)
+                .copy(simpleState)
+                .build();
+        ImmutableState other = new BitsetState.Builder(index)
+                .tell(effect(onAB))
+                .build();
+
+        assertEquals(simpleState.getAssertions(), state.getAssertions());
+        assertEquals(other, state);
+        assertEquals(other.hashCode(), state.hashCode());
+        assertTrue(state.query(on("a", "b")).hasNext());
+    }
+
+    /**
+     * Create an on/2 predicate over two constants.
+     * @param first the name of the first constant
+     * @param second the name of the second constant
+     * @return the predicate
+     */
+    private Predicate on(String first, String second) {
+        List<Term> terms = new ArrayList<Term>();
+        terms.add(factory.createConstant(first));
+        terms.add(factory.createConstant(second));
+        return factory.createPredicate("on", terms);
+    }
+
+    /**
+     * Create a mock negation of a sentence.
+     * @param sentence the sentence to negate
+     * @return the negated sentence
+     */
+    private NegatedSentence negate(Sentence sentence) {
+        NegatedSentence mockNegatedSentence = mock(NegatedSentence.class);
+        when(mockNegatedSentence.getSentence()).thenReturn(sentence);
+        return mockNegatedSentence;
+    }
+
+    /**
+     * Create a mock effect for a sentence.
+     * @param sentence the sentence
+     * @return the effect
+     */
+    private Effect effect(Sentence sentence) {
+        Effect mockEffect = mock(Effect.class);
+        when(mockEffect.getSentence()).thenReturn(sentence);
+        return mockEffect;
+    }
+
+    /**
+     * Create a mock condition for a sentence.
+     * @param sentence the sentence
+     * @return the condition
+     */
+    private Condition condition(Sentence sentence) {
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(sentence);
+        return mockCondition;
+    }
+}
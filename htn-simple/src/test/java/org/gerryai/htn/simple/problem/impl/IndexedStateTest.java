@@ -0,0 +1,355 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.simple.logic.LogicFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.htn.simple.problem.ImmutableStateBuilder;
+import org.gerryai.logic.Constant;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Predicate;
+import org.gerryai.logic.Sentence;
+import org.gerryai.logic.Term;
+import org.gerryai.logic.Variable;
+import org.junit.Test;
+
+/**
+ * Unit tests for IndexedState.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class IndexedStateTest {
+
+    /**
+     * Factory used to create real predicates, since the index needs their names and terms.
+     */
+    private LogicFactory factory = new SimpleLogicFactory();
+
+    /**
+     * Test for simple tell/ask.
+     */
+    @Test
+    public final void testAsk() {
+
+        Predicate on = on(constant("a"), constant("b"));
+
+        ImmutableState state = new IndexedState.Builder()
+                .tell(effect(on))
+                .build();
+
+        assertTrue(state.ask(condition(on)));
+        assertFalse(state.ask(condition(on(constant("b"), constant("a")))));
+    }
+
+    /**
+     * Test that asserting a negated sentence revokes the assertion in the copy only.
+     */
+    @Test
+    public final void testTellRevoke() {
+
+        Predicate on = on(constant("a"), constant("b"));
+
+        ImmutableState oldState = new IndexedState.Builder()
+                .tell(effect(on))
+                .build();
+
+        ImmutableState newState = oldState.createCopyBuilder()
+                .tell(effect(negate(on)))
+                .build();
+
+        assertTrue(oldState.ask(condition(on)));
+        assertFalse(newState.ask(condition(on)));
+        assertTrue(oldState.query(on(variable("x"), constant("b"))).hasNext());
+        assertFalse(newState.query(on(variable("x"), constant("b"))).hasNext());
+    }
+
+    /**
+     * Test that changing a copy does not change the index of the state it was copied from.
+     */
+    @Test
+    public final void testCopyIsolation() {
+
+        ImmutableState oldState = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))))
+                .build();
+
+        ImmutableState newState = oldState.createCopyBuilder()
+                .tell(effect(on(constant("c"), constant("b"))))
+                .build();
+
+        assertEquals(1, count(oldState.query(on(variable("x"), constant("b")))));
+        assertEquals(2, count(newState.query(on(variable("x"), constant("b")))));
+    }
+
+    /**
+     * Test that revoking a fact in a copy removes it from every position's index of the copy only.
+     */
+    @Test
+    public final void testRevokeFromCopyIndex() {
+
+        ImmutableState oldState = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))))
+                .tell(effect(on(constant("c"), constant("b"))))
+                .tell(effect(on(constant("a"), constant("d"))))
+                .build();
+
+        ImmutableState newState = oldState.createCopyBuilder()
+                .tell(effect(negate(on(constant("a"), constant("b")))))
+                .tell(effect(negate(on(constant("a"), constant("d")))))
+                .build();
+
+        assertEquals(2, count(oldState.query(on(variable("x"), constant("b")))));
+        assertEquals(2, count(oldState.query(on(constant("a"), variable("y")))));
+        assertEquals(1, count(newState.query(on(variable("x"), constant("b")))));
+        assertEquals(0, count(newState.query(on(constant("a"), variable("y")))));
+        assertEquals(1, count(newState.query(on(variable("x"), variable("y")))));
+    }
+
+    /**
+     * Test that changing a builder after building a state, including dropping a predicate's last fact,
+     * leaves the built state unchanged.
+     */
+    @Test
+    public final void testBuilderReusedAfterBuild() {
+
+        ImmutableStateBuilder builder = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))));
+        ImmutableState firstState = builder.build();
+        ImmutableState secondState = builder
+                .tell(effect(negate(on(constant("a"), constant("b")))))
+                .tell(effect(on(constant("c"), constant("d"))))
+                .build();
+
+        assertEquals(1, count(firstState.query(on(constant("a"), variable("y")))));
+        assertEquals(0, count(firstState.query(on(constant("c"), variable("y")))));
+        assertEquals(0, count(secondState.query(on(constant("a"), variable("y")))));
+        assertEquals(1, count(secondState.query(on(constant("c"), variable("y")))));
+    }
+
+    /**
+     * Test that a query binds its variables to the matching facts' terms.
+     */
+    @Test
+    public final void testQueryBindsVariables() {
+
+        ImmutableState state = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))))
+                .tell(effect(on(constant("c"), constant("b"))))
+                .tell(effect(on(constant("b"), constant("d"))))
+                .build();
+
+        Variable x = variable("x");
+        Set<Term> bound = new HashSet<Term>();
+        Iterator<Map<Variable, Term>> bindings = state.query(on(x, constant("b")));
+        while (bindings.hasNext()) {
+            bound.add(bindings.next().get(x));
+        }
+
+        assertEquals(new HashSet<Term>(Arrays.<Term>asList(constant("a"), constant("c"))), bound);
+    }
+
+    /**
+     * Test that a query with only constants matches the single equal fact.
+     */
+    @Test
+    public final void testQueryConstants() {
+
+        ImmutableState state = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))))
+                .tell(effect(on(constant("b"), constant("c"))))
+                .build();
+
+        Iterator<Map<Variable, Term>> bindings = state.query(on(constant("a"), constant("b")));
+
+        assertTrue(bindings.hasNext());
+        assertTrue(bindings.next().isEmpty());
+        assertFalse(bindings.hasNext());
+    }
+
+    /**
+     * Test that a variable repeated in a query must be bound to the same term each time.
+     */
+    @Test
+    public final void testQueryRepeatedVariable() {
+
+        ImmutableState state = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))))
+                .tell(effect(on(constant("c"), constant("c"))))
+                .build();
+
+        Variable x = variable("x");
+        Iterator<Map<Variable, Term>> bindings = state.query(on(x, x));
+
+        assertTrue(bindings.hasNext());
+        assertEquals(constant("c"), bindings.next().get(x));
+        assertFalse(bindings.hasNext());
+    }
+
+    /**
+     * Test that a query for an unknown predicate or constant matches nothing.
+     */
+    @Test
+    public final void testQueryNoMatch() {
+
+        ImmutableState state = new IndexedState.Builder()
+                .tell(effect(on(constant("a"), constant("b"))))
+                .build();
+
+        List<Term> terms = new ArrayList<Term>();
+        terms.add(variable("x"));
+        assertFalse(state.query(factory.createPredicate("clear", terms)).hasNext());
+        assertFalse(state.query(on(variable("x"), constant("z"))).hasNext());
+    }
+
+    /**
+     * Test that applying effects together deletes before adding, whatever order they are given in.
+     */
+    @Test
+    public final void testApplyDeletesBeforeAdds() {
+
+        Predicate on = on(constant("a"), constant("b"));
+        List<Effect> effects = new ArrayList<Effect>();
+        effects.add(effect(on));
+        effects.add(effect(negate(on)));
+
+        ImmutableState state = new IndexedState.Builder()
+                .apply(effects)
+                .build();
+
+        assertTrue(state.ask(condition(on)));
+        assertEquals(1, count(state.query(on(variable("x"), variable("y")))));
+    }
+
+    /**
+     * Test that states holding the same assertions are equal, and copies from other states index their facts.
+     */
+    @Test
+    public final void testCopyFromSimpleState() {
+
+        Predicate on = on(constant("a"), constant("b"));
+
+        ImmutableState simpleState = new SimpleState.Builder()
+                .tell(effect(on))
+                .build();
+
+        ImmutableState state = new IndexedState.Builder()
+                .copy(simpleState)
+                .build();
+        ImmutableState other = new IndexedState.Builder()
+                .tell(effect(on))
+                .build();
+
+        assertEquals(other, state);
+        assertEquals(other.hashCode(), state.hashCode());
+        assertTrue(state.query(on(variable("x"), constant("b"))).hasNext());
+    }
+
+    /**
+     * Create an on/2 predicate.
+     * @param first the first term
+     * @param second the second term
+     * @return the predicate
+     */
+    private Predicate on(Term first, Term second) {
+        List<Term> terms = new ArrayList<Term>();
+        terms.add(first);
+        terms.add(second);
+        return factory.createPredicate("on", terms);
+    }
+
+    /**
+     * Create a constant.
+     * @param name the name of the constant
+     * @return the constant
+     */
+    private Constant constant(String name) {
+        return factory.createConstant(name);
+    }
+
+    /**
+     * Create a variable.
+     * @param name the name of the variable
+     * @return the variable
+     */
+    private Variable variable(String name) {
+        return factory.createVariable(name);
+    }
+
+    /**
+     * Create a mock negation of a sentence.
+     * @param sentence the sentence to negate
+     * @return the negated sentence
+     */
+    private NegatedSentence negate(Sentence sentence) {
+        NegatedSentence mockNegatedSentence = mock(NegatedSentence.class);
+        when(mockNegatedSentence.getSentence()).thenReturn(sentence);
+        return mockNegatedSentence;
+    }
+
+    /**
+     * Create a mock effect for a sentence.
+     * @param sentence the sentence
+     * @return the effect
+     */
+    private Effect effect(Sentence sentence) {
+        Effect mockEffect = mock(Effect.class);
+        when(mockEffect.getSentence()).thenReturn(sentence);
+        return mockEffect;
+    }
+
+    /**
+     * Create a mock condition for a sentence.
+     * @param sentence the sentence
+     * @return the condition
+     */
+    private Condition condition(Sentence sentence) {
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(sentence);
+        return mockCondition;
+    }
+
+    /**
+     * Count the bindings a query yields.
+     * @param bindings the bindings
+     * @return the number of bindings
+     */
+    private int count(Iterator<Map<Variable, Term>> bindings) {
+        int count = 0;
+        while (bindings.hasNext()) {
+            bindings.next();
+            count++;
+        }
+        return count;
+    }
+}
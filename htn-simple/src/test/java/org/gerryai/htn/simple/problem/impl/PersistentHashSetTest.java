@@ -0,0 +1,194 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for PersistentHashSet.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class PersistentHashSetTest {
+
+    /**
+     * Test that adding to a set leaves the original set unchanged.
+     */
+    @Test
+    public final void testPlusIsPersistent() {
+        PersistentHashSet<String> empty = PersistentHashSet.empty();
+        PersistentHashSet<String> one = empty.plus("a");
+        PersistentHashSet<String> two = one.plus("b");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(1, one.size());
+        assertFalse(one.contains("b"));
+        assertEquals(2, two.size());
+        assertTrue(two.contains("a"));
+        assertTrue(two.contains("b"));
+    }
+
+    /**
+     * Test that adding an element already present, or removing one that is absent, returns the same set.
+     */
+    @Test
+    public final void testUnchanged() {
+        PersistentHashSet<String> set = PersistentHashSet.<String>empty().plus("a");
+
+        assertSame(set, set.plus("a"));
+        assertSame(set, set.minus("b"));
+    }
+
+    /**
+     * Test that elements with the same hash code are kept apart.
+     */
+    @Test
+    public final void testCollisions() {
+        Key a = new Key("a", 7);
+        Key b = new Key("b", 7);
+        Key c = new Key("c", 7 + (1 << 20));
+
+        PersistentHashSet<Key> set = PersistentHashSet.<Key>empty().plus(a).plus(b).plus(c);
+
+        assertEquals(3, set.size());
+        assertTrue(set.contains(new Key("a", 7)));
+        assertTrue(set.contains(new Key("b", 7)));
+        assertFalse(set.contains(new Key("d", 7)));
+
+        PersistentHashSet<Key> smaller = set.minus(a);
+        assertEquals(2, smaller.size());
+        assertFalse(smaller.contains(a));
+        assertTrue(smaller.contains(b));
+        assertTrue(smaller.contains(c));
+        assertTrue(smaller.minus(b).minus(c).isEmpty());
+    }
+
+    /**
+     * Test that getting an element returns the one held, including among elements with the same hash code.
+     */
+    @Test
+    public final void testGet() {
+        Key a = new Key("a", 7);
+        Key b = new Key("b", 7);
+        Key c = new Key("c", 8);
+
+        PersistentHashSet<Key> set = PersistentHashSet.<Key>empty().plus(a).plus(b).plus(c);
+
+        assertSame(a, set.get(new Key("a", 7)));
+        assertSame(b, set.get(new Key("b", 7)));
+        assertSame(c, set.get(new Key("c", 8)));
+        assertNull(set.get(new Key("d", 7)));
+        assertNull(set.get(new Key("d", 9)));
+        assertNull(PersistentHashSet.empty().get(a));
+    }
+
+    /**
+     * Test a long sequence of random changes against a java.util.HashSet.
+     */
+    @Test
+    public final void testAgainstHashSet() {
+        final int operations = 20000;
+        final int range = 2000;
+        Random random = new Random(1L);
+        Set<Integer> expected = new HashSet<Integer>();
+        PersistentHashSet<Integer> actual = PersistentHashSet.empty();
+
+        for (int i = 0; i < operations; i++) {
+            // Spread some values into the high hash bits
+            Integer value = random.nextInt(range);
+            if (random.nextBoolean()) {
+                value = value * (-1 << 16);
+            }
+            if (random.nextBoolean()) {
+                expected.add(value);
+                actual = actual.plus(value);
+            } else {
+                expected.remove(value);
+                actual = actual.minus(value);
+            }
+        }
+
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected, actual);
+        assertEquals(actual, expected);
+        assertEquals(expected.hashCode(), actual.hashCode());
+        Set<Integer> iterated = new HashSet<Integer>();
+        for (Integer value : actual) {
+            assertTrue(iterated.add(value));
+        }
+        assertEquals(expected, iterated);
+    }
+
+    /**
+     * Test that the set cannot be changed through the Set interface.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public final void testImmutable() {
+        PersistentHashSet.<String>empty().plus("a").add("b");
+    }
+
+    /**
+     * Element with a chosen hash code.
+     */
+    private static final class Key {
+
+        /**
+         * The name of the key.
+         */
+        private final String name;
+
+        /**
+         * The hash code to report.
+         */
+        private final int hash;
+
+        /**
+         * Constructor.
+         * @param name the name
+         * @param hash the hash code
+         */
+        private Key(String name, int hash) {
+            this.name = name;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Key) {
+                final Key other = (Key) obj;
+                return name.equals(other.name);
+            } else {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.problem.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gerryai.htn.domain.Condition;
+import org.gerryai.htn.domain.Effect;
+import org.gerryai.htn.simple.problem.ImmutableState;
+import org.gerryai.logic.NegatedSentence;
+import org.gerryai.logic.Sentence;
+import org.junit.Test;
+
+/**
+ * Unit tests for PersistentState.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class PersistentStateTest {
+
+    /**
+     * Test for simple tell/ask.
+     */
+    @Test
+    public final void testAsk() {
+        
+        Sentence mockSentenceA = mock(Sentence.class);
+        
+        Effect mockEffectA = mock(Effect.class);
+        when(mockEffectA.getSentence()).thenReturn(mockSentenceA);
+
+        Condition mockConditionA = mock(Condition.class);
+        when(mockConditionA.getSentence()).thenReturn(mockSentenceA);
+        
+        ImmutableState state = new PersistentState.Builder()
+                .tell(mockEffectA)
+                .build();
+        
+        assertTrue(state.ask(mockConditionA));
+    }
+
+    /**
+     * Test asking a negated sentence on an empty state.
+     */
+    @Test
+    public final void testAskNegatedEmpty() {
+        
+        Sentence mockSentence = mock(Sentence.class);
+        NegatedSentence mockNegatedSentence = mock(NegatedSentence.class);
+        when(mockNegatedSentence.getSentence()).thenReturn(mockSentence);
+        Effect mockEffectA = mock(Effect.class);
+        when(mockEffectA.getSentence()).thenReturn(mockSentence);
+
+        Condition mockConditionA = mock(Condition.class);
+        when(mockConditionA.getSentence()).thenReturn(mockNegatedSentence);
+        
+        ImmutableState state = new PersistentState.Builder()
+                .build();
+        
+        assertTrue(state.ask(mockConditionA));
+    }
+    /**
+     * Test adding a new assertion remembers old and new assertions.
+     */
+    @Test
+    public final void testCopyTell() {
+        
+        Sentence mockSentenceA = mock(Sentence.class);
+        Sentence mockSentenceB = mock(Sentence.class);
+        
+        Effect mockEffectA = mock(Effect.class);
+        Effect mockEffectB = mock(Effect.class);
+        when(mockEffectA.getSentence()).thenReturn(mockSentenceA);
+        when(mockEffectB.getSentence()).thenReturn(mockSentenceB);
+
+        Condition mockConditionA = mock(Condition.class);
+        Condition mockConditionB = mock(Condition.class);
+        when(mockConditionA.getSentence()).thenReturn(mockSentenceA);
+        when(mockConditionB.getSentence()).thenReturn(mockSentenceB);
+        
+        ImmutableState oldState = new PersistentState.Builder()
+                .tell(mockEffectA)
+                .build();
+        
+        ImmutableState newState = oldState.createCopyBuilder()
+                .tell(mockEffectB)
+                .build();
+        
+        assertTrue(newState.ask(mockConditionA));
+        assertTrue(newState.ask(mockConditionB));
+    }
+
+    /**
+     * Test that asserting a negated sentence revokes the negated assertion.
+     */
+    @Test
+    public final void testTellRevoke() {
+        
+        Sentence mockSentence = mock(Sentence.class);
+        NegatedSentence mockNegatedSentence = mock(NegatedSentence.class);
+        when(mockNegatedSentence.getSentence()).thenReturn(mockSentence);
+
+        Effect mockEffectA = mock(Effect.class);
+        Effect mockEffectB = mock(Effect.class);
+        when(mockEffectA.getSentence()).thenReturn(mockSentence);
+        when(mockEffectB.getSentence()).thenReturn(mockNegatedSentence);
+
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(mockSentence);
+        
+        ImmutableState oldState = new PersistentState.Builder()
+                .tell(mockEffectA)
+                .build();
+        
+        ImmutableState newState = oldState.createCopyBuilder()
+                .tell(mockEffectB)
+                .build();
+        
+        assertTrue(oldState.ask(mockCondition));
+        assertFalse(newState.ask(mockCondition));
+    }
+
+    /**
+     * Test that a state can be copied from a state of another implementation.
+     */
+    @Test
+    public final void testCopyFromSimpleState() {
+
+        Sentence mockSentence = mock(Sentence.class);
+        Effect mockEffect = mock(Effect.class);
+        when(mockEffect.getSentence()).thenReturn(mockSentence);
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(mockSentence);
+
+        ImmutableState simpleState = new SimpleState.Builder()
+                .tell(mockEffect)
+                .build();
+
+        ImmutableState state = new PersistentState.Builder()
+                .copy(simpleState)
+                .build();
+
+        assertTrue(state.ask(mockCondition));
+    }
+
+    /**
+     * Test that states holding the same assertions are equal.
+     */
+    @Test
+    public final void testEquals() {
+
+        Sentence mockSentence = mock(Sentence.class);
+        Effect mockEffect = mock(Effect.class);
+        when(mockEffect.getSentence()).thenReturn(mockSentence);
+
+        ImmutableState stateA = new PersistentState.Builder()
+                .tell(mockEffect)
+                .build();
+        ImmutableState stateB = new PersistentState.Builder()
+                .tell(mockEffect)
+                .build();
+
+        assertEquals(stateA, stateB);
+        assertEquals(stateA.hashCode(), stateB.hashCode());
+    }
+
+    /**
+     * Test that applying effects together deletes before adding, whatever order they are given in.
+     */
+    @Test
+    public final void testApplyDeletesBeforeAdds() {
+
+        Sentence mockSentence = mock(Sentence.class);
+        NegatedSentence mockNegatedSentence = mock(NegatedSentence.class);
+        when(mockNegatedSentence.getSentence()).thenReturn(mockSentence);
+
+        Effect mockAddEffect = mock(Effect.class);
+        Effect mockDeleteEffect = mock(Effect.class);
+        when(mockAddEffect.getSentence()).thenReturn(mockSentence);
+        when(mockDeleteEffect.getSentence()).thenReturn(mockNegatedSentence);
+
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(mockSentence);
+
+        List<Effect> effects = new ArrayList<Effect>();
+        effects.add(mockAddEffect);
+        effects.add(mockDeleteEffect);
+
+        ImmutableState state = new PersistentState.Builder()
+                .apply(effects)
+                .build();
+
+        assertTrue(state.ask(mockCondition));
+    }
+}
@@ -22,6 +22,9 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.gerryai.htn.domain.Condition;
 import org.gerryai.htn.domain.Effect;
 import org.gerryai.htn.simple.problem.ImmutableState;
@@ -136,4 +139,33 @@ public class SimpleStateTest {
         assertTrue(oldState.ask(mockCondition));
         assertFalse(newState.ask(mockCondition));
     }
+
+    /**
+     * Test that applying effects together deletes before adding, whatever order they are given in.
+     */
+    @Test
+    public final void testApplyDeletesBeforeAdds() {
+
+        Sentence mockSentence = mock(Sentence.class);
+        NegatedSentence mockNegatedSentence = mock(NegatedSentence.class);
+        when(mockNegatedSentence.getSentence()).thenReturn(mockSentence);
+
+        Effect mockAddEffect = mock(Effect.class);
+        Effect mockDeleteEffect = mock(Effect.class);
+        when(mockAddEffect.getSentence()).thenReturn(mockSentence);
+        when(mockDeleteEffect.getSentence()).thenReturn(mockNegatedSentence);
+
+        Condition mockCondition = mock(Condition.class);
+        when(mockCondition.getSentence()).thenReturn(mockSentence);
+
+        List<Effect> effects = new ArrayList<Effect>();
+        effects.add(mockAddEffect);
+        effects.add(mockDeleteEffect);
+
+        ImmutableState state = new SimpleState.Builder()
+                .apply(effects)
+                .build();
+
+        assertTrue(state.ask(mockCondition));
+    }
 }
@@ -19,11 +19,14 @@ package org.gerryai.htn.simple.tasknetwork.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -32,8 +35,11 @@ import org.gerryai.htn.constraint.AfterConstraint;
 import org.gerryai.htn.constraint.BeforeConstraint;
 import org.gerryai.htn.constraint.BetweenConstraint;
 import org.gerryai.htn.constraint.PrecedenceConstraint;
+import org.gerryai.htn.simple.constraint.impl.SimpleConstraintFactory;
 import org.gerryai.htn.simple.constraint.validation.ConstraintValidator;
 import org.gerryai.htn.simple.constraint.validation.ConstraintValidatorFactory;
+import org.gerryai.htn.simple.constraint.validation.impl.SimpleConstraintValidatorFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
 import org.gerryai.htn.tasknetwork.InvalidConstraint;
 import org.gerryai.htn.tasknetwork.Task;
 import org.gerryai.htn.tasknetwork.TaskNetwork;
@@ -340,6 +346,26 @@ public class SimpleTaskNetworkTest {
         verify(mockConstraintValidator).add(mockConstraintB);
     }
     
+    /**
+     * Test that copying a simple task network adopts its contents without validating them again.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testCopySimpleTaskNetwork() throws InvalidConstraint {
+        ConstraintValidatorFactory mockValidatorFactory = mock(ConstraintValidatorFactory.class);
+        ConstraintValidator mockConstraintValidator = mock(ConstraintValidator.class);
+        when(mockValidatorFactory.create()).thenReturn(mockConstraintValidator);
+        Task mockTask = mock(Task.class);
+
+        TaskNetwork original = new SimpleTaskNetwork.Builder(mockValidatorFactory)
+                .addTask(mockTask)
+                .build();
+        new SimpleTaskNetwork.Builder(mockValidatorFactory, original);
+
+        verify(mockConstraintValidator).copy(original);
+        verify(mockConstraintValidator, times(1)).add(mockTask);
+    }
+
     /**
      * Test building by copying.
      * @throws InvalidConstraint only if test fails
@@ -582,4 +608,227 @@ public class SimpleTaskNetworkTest {
 		assertTrue(taskNetwork.getPrecedenceConstraints().contains(mockPrecedenceConstraintA));
 		assertTrue(taskNetwork.getPrecedenceConstraints().contains(mockPrecedenceConstraintB));
    }
+
+    /**
+     * Test that applying an empty substitution returns the original network.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testApplyEmptySubstitution() throws InvalidConstraint {
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(new SimpleLogicFactory(),
+                new SimpleConstraintValidatorFactory());
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(createTask(factory, "a", new SimpleLogicFactory().createVariable("?x")))
+                .build();
+
+        assertSame(taskNetwork, taskNetwork.apply(new HashMap<Term, Term>()));
+    }
+
+    /**
+     * Test that applying a substitution that mentions nothing in the network returns the original network.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testApplyIrrelevantSubstitution() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        Task taskA = createTask(factory, "a", logicFactory.createVariable("?x"));
+        Task taskB = createTask(factory, "b", logicFactory.createConstant("y"));
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addPrecedenceConstraint(new SimpleConstraintFactory().createPrecedenceConstraint(taskA, taskB))
+                .build();
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?z"), logicFactory.createConstant("z"));
+
+        assertSame(taskNetwork, taskNetwork.apply(substitution));
+    }
+
+    /**
+     * Test that applying a substitution updates the tasks it mentions and the constraints on them.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testApplySubstitution() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        SimpleConstraintFactory constraintFactory = new SimpleConstraintFactory();
+        Task taskA = createTask(factory, "a", logicFactory.createVariable("?x"));
+        Task taskB = createTask(factory, "b", logicFactory.createConstant("y"));
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addPrecedenceConstraint(constraintFactory.createPrecedenceConstraint(taskA, taskB))
+                .build();
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?x"), logicFactory.createConstant("x"));
+
+        TaskNetwork result = taskNetwork.apply(substitution);
+
+        Task newTaskA = createTask(factory, "a", logicFactory.createConstant("x"));
+        assertEquals(2, result.getTasks().size());
+        assertTrue(result.getTasks().contains(newTaskA));
+        assertTrue(result.getTasks().contains(taskB));
+        assertEquals(1, result.getPrecedenceConstraints().size());
+        assertTrue(result.getPrecedenceConstraints().contains(
+                constraintFactory.createPrecedenceConstraint(newTaskA, taskB)));
+        assertTrue(taskNetwork.getTasks().contains(taskA));
+    }
+
+    /**
+     * Test that replacing a task keeps the constraints that do not mention it and leaves the original
+     * network unchanged.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testReplaceSharesUnaffectedConstraints() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        SimpleConstraintFactory constraintFactory = new SimpleConstraintFactory();
+        Task taskA = createTask(factory, "a", logicFactory.createConstant("x"));
+        Task taskB = createTask(factory, "b", logicFactory.createConstant("x"));
+        Task taskC = createTask(factory, "c", logicFactory.createConstant("x"));
+        Task taskD = createTask(factory, "d", logicFactory.createConstant("x"));
+        Task taskE = createTask(factory, "e", logicFactory.createConstant("x"));
+        PrecedenceConstraint constraintAB = constraintFactory.createPrecedenceConstraint(taskA, taskB);
+        PrecedenceConstraint constraintCD = constraintFactory.createPrecedenceConstraint(taskC, taskD);
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addTask(taskC)
+                .addTask(taskD)
+                .addPrecedenceConstraint(constraintAB)
+                .addPrecedenceConstraint(constraintCD)
+                .build();
+        TaskNetwork subNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskE)
+                .build();
+
+        TaskNetwork result = taskNetwork.replace(taskA, subNetwork);
+
+        assertEquals(4, result.getTasks().size());
+        assertFalse(result.getTasks().contains(taskA));
+        assertTrue(result.getTasks().contains(taskE));
+        assertEquals(2, result.getPrecedenceConstraints().size());
+        assertTrue(result.getPrecedenceConstraints().contains(
+                constraintFactory.createPrecedenceConstraint(taskE, taskB)));
+        boolean shared = false;
+        for (PrecedenceConstraint constraint : result.getPrecedenceConstraints()) {
+            shared = shared || constraint == constraintCD;
+        }
+        assertTrue(shared);
+        assertTrue(taskNetwork.getTasks().contains(taskA));
+        assertTrue(taskNetwork.getPrecedenceConstraints().contains(constraintAB));
+    }
+
+    /**
+     * Test that replacing a task with one already in the network is validated, so a cycle is rejected.
+     * @throws InvalidConstraint if the test passes
+     */
+    @Test(expected = InvalidConstraint.class)
+    public final void testReplaceWithExistingTaskClosingCycle() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        Task taskA = createTask(factory, "a", logicFactory.createConstant("x"));
+        Task taskB = createTask(factory, "b", logicFactory.createConstant("x"));
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addPrecedenceConstraint(new SimpleConstraintFactory().createPrecedenceConstraint(taskA, taskB))
+                .build();
+        TaskNetwork subNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskB)
+                .build();
+
+        taskNetwork.replace(taskA, subNetwork);
+    }
+
+    /**
+     * Test that a substitution making two ordered tasks equal is validated, so the cycle it leaves is rejected.
+     * @throws InvalidConstraint if the test passes
+     */
+    @Test(expected = InvalidConstraint.class)
+    public final void testApplyMergingOrderedTasks() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        Task taskA = createTask(factory, "t", logicFactory.createVariable("?a"));
+        Task taskB = createTask(factory, "t", logicFactory.createVariable("?b"));
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addPrecedenceConstraint(new SimpleConstraintFactory().createPrecedenceConstraint(taskA, taskB))
+                .build();
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?a"), logicFactory.createConstant("c"));
+        substitution.put(logicFactory.createVariable("?b"), logicFactory.createConstant("c"));
+
+        taskNetwork.apply(substitution);
+    }
+
+    /**
+     * Test that a substitution making a task equal to an unchanged one it is ordered against is validated,
+     * so the cycle it leaves is rejected.
+     * @throws InvalidConstraint if the test passes
+     */
+    @Test(expected = InvalidConstraint.class)
+    public final void testApplyMergingWithUnchangedTask() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        Task taskA = createTask(factory, "t", logicFactory.createVariable("?a"));
+        Task taskB = createTask(factory, "t", logicFactory.createConstant("c"));
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addPrecedenceConstraint(new SimpleConstraintFactory().createPrecedenceConstraint(taskA, taskB))
+                .build();
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?a"), logicFactory.createConstant("c"));
+
+        taskNetwork.apply(substitution);
+    }
+
+    /**
+     * Test that a substitution making two unordered tasks equal merges them into one.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testApplyMergingUnorderedTasks() throws InvalidConstraint {
+        SimpleLogicFactory logicFactory = new SimpleLogicFactory();
+        SimpleTaskNetworkFactory factory = new SimpleTaskNetworkFactory(logicFactory,
+                new SimpleConstraintValidatorFactory());
+        TaskNetwork taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(createTask(factory, "t", logicFactory.createVariable("?a")))
+                .addTask(createTask(factory, "t", logicFactory.createVariable("?b")))
+                .build();
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?a"), logicFactory.createConstant("c"));
+        substitution.put(logicFactory.createVariable("?b"), logicFactory.createConstant("c"));
+
+        TaskNetwork result = taskNetwork.apply(substitution);
+
+        assertEquals(1, result.getTasks().size());
+        assertTrue(result.getTasks().contains(createTask(factory, "t", logicFactory.createConstant("c"))));
+    }
+
+    /**
+     * Create a primitive task with a single argument.
+     * @param factory the factory to build the task with
+     * @param name the name of the task
+     * @param argument the argument
+     * @return the task
+     */
+    private Task createTask(SimpleTaskNetworkFactory factory, String name, Term argument) {
+        return factory.createTaskBuilder()
+                .setName(name)
+                .addArgument(argument)
+                .setIsPrimitive(true)
+                .build();
+    }
 }
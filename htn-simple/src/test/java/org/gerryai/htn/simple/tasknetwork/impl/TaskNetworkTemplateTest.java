@@ -0,0 +1,188 @@
+/**
+ *  Gerry AI - Open framework for automated planning algorithms
+ *  Copyright (C) 2012  David Edwards
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Affero General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gerryai.htn.simple.tasknetwork.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.gerryai.htn.simple.constraint.impl.SimpleConstraintFactory;
+import org.gerryai.htn.simple.constraint.validation.impl.SimpleConstraintValidatorFactory;
+import org.gerryai.htn.simple.logic.impl.SimpleLogicFactory;
+import org.gerryai.htn.tasknetwork.InvalidConstraint;
+import org.gerryai.htn.tasknetwork.Task;
+import org.gerryai.htn.tasknetwork.TaskNetwork;
+import org.gerryai.logic.Term;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for TaskNetworkTemplate.
+ * @author David Edwards <david@more.fool.me.uk>
+ */
+public class TaskNetworkTemplateTest {
+
+    /**
+     * Logic factory for creating terms.
+     */
+    private SimpleLogicFactory logicFactory;
+
+    /**
+     * Task network factory for creating tasks and networks.
+     */
+    private SimpleTaskNetworkFactory factory;
+
+    /**
+     * Task with one variable and one constant argument.
+     */
+    private Task taskA;
+
+    /**
+     * Task with one variable argument.
+     */
+    private Task taskB;
+
+    /**
+     * Task with only a constant argument.
+     */
+    private Task taskC;
+
+    /**
+     * Network of the three tasks, with A before B and B before C.
+     */
+    private TaskNetwork taskNetwork;
+
+    /**
+     * Build the network.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Before
+    public final void setUp() throws InvalidConstraint {
+        logicFactory = new SimpleLogicFactory();
+        factory = new SimpleTaskNetworkFactory(logicFactory, new SimpleConstraintValidatorFactory());
+        SimpleConstraintFactory constraintFactory = new SimpleConstraintFactory();
+        taskA = factory.createTaskBuilder()
+                .setName("a")
+                .addArgument(logicFactory.createVariable("?x"))
+                .addArgument(logicFactory.createConstant("k"))
+                .setIsPrimitive(true)
+                .build();
+        taskB = factory.createTaskBuilder()
+                .setName("b")
+                .addArgument(logicFactory.createVariable("?y"))
+                .setIsPrimitive(false)
+                .build();
+        taskC = factory.createTaskBuilder()
+                .setName("c")
+                .addArgument(logicFactory.createConstant("k"))
+                .setIsPrimitive(true)
+                .build();
+        taskNetwork = factory.createTaskNetworkBuilder()
+                .addTask(taskA)
+                .addTask(taskB)
+                .addTask(taskC)
+                .addPrecedenceConstraint(constraintFactory.createPrecedenceConstraint(taskA, taskB))
+                .addPrecedenceConstraint(constraintFactory.createPrecedenceConstraint(taskB, taskC))
+                .build();
+    }
+
+    /**
+     * Test that each distinct variable gets a slot.
+     */
+    @Test
+    public final void testCompile() {
+        TaskNetworkTemplate template = TaskNetworkTemplate.compile(taskNetwork);
+
+        assertTrue(template.isCompiled());
+        assertEquals(2, template.getVariables().size());
+        assertTrue(template.getVariables().contains(logicFactory.createVariable("?x")));
+        assertTrue(template.getVariables().contains(logicFactory.createVariable("?y")));
+    }
+
+    /**
+     * Test that instantiating gives the same network as applying the substitution.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testInstantiateMatchesApply() throws InvalidConstraint {
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?x"), logicFactory.createConstant("p"));
+        substitution.put(logicFactory.createVariable("?y"), logicFactory.createConstant("q"));
+
+        TaskNetwork instance = TaskNetworkTemplate.compile(taskNetwork).instantiate(substitution);
+        TaskNetwork applied = taskNetwork.apply(substitution);
+
+        assertEquals(applied.getTasks(), instance.getTasks());
+        assertEquals(applied.getPrecedenceConstraints(), instance.getPrecedenceConstraints());
+        assertFalse(instance.getTasks().contains(taskA));
+    }
+
+    /**
+     * Test that tasks with no variables are shared with the template.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testInstantiateSharesGroundTasks() throws InvalidConstraint {
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?x"), logicFactory.createConstant("p"));
+
+        TaskNetwork instance = TaskNetworkTemplate.compile(taskNetwork).instantiate(substitution);
+
+        boolean shared = false;
+        for (Task task : instance.getTasks()) {
+            shared = shared || task == taskC;
+        }
+        assertTrue(shared);
+        assertTrue(instance.getTasks().contains(taskB));
+    }
+
+    /**
+     * Test that a substitution binding none of the slots returns the original network.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testInstantiateUnbound() throws InvalidConstraint {
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        substitution.put(logicFactory.createVariable("?z"), logicFactory.createConstant("p"));
+
+        assertSame(taskNetwork, TaskNetworkTemplate.compile(taskNetwork).instantiate(substitution));
+    }
+
+    /**
+     * Test that a network that cannot be compiled has the substitution applied to it.
+     * @throws InvalidConstraint only if the test fails
+     */
+    @Test
+    public final void testInstantiateNotCompiled() throws InvalidConstraint {
+        TaskNetwork mockTaskNetwork = mock(TaskNetwork.class);
+        TaskNetwork mockAppliedTaskNetwork = mock(TaskNetwork.class);
+        Map<Term, Term> substitution = new HashMap<Term, Term>();
+        when(mockTaskNetwork.apply(substitution)).thenReturn(mockAppliedTaskNetwork);
+
+        TaskNetworkTemplate template = TaskNetworkTemplate.compile(mockTaskNetwork);
+
+        assertFalse(template.isCompiled());
+        assertSame(mockAppliedTaskNetwork, template.instantiate(substitution));
+    }
+}